@@ -0,0 +1,60 @@
+package com.real.benchmark;
+
+import com.real.service.XBoxDataService;
+import com.real.util.CsvProjection;
+import com.real.util.CsvUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of CSV row parsing, movie rows and quoted multi-value feed rows, full and projected to the matched columns
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvParseBenchmark {
+    private static final int ROWS = 4096;
+
+    private String[] movieRows;
+    private String[] feedRows;
+    private CsvProjection feedProjection;
+    private int next;
+
+    @Setup
+    public void setup() {
+        SyntheticData data = new SyntheticData(ROWS, 42);
+        movieRows = data.movies().toArray(new String[0]);
+        feedRows = data.xboxFeed(ROWS, 0.6).toArray(new String[0]);
+        feedProjection = new XBoxDataService().projection(SyntheticData.csvStream(SyntheticData.XBOX_HEADER, List.of()));
+    }
+
+    @Benchmark
+    public String[] parseMovieRow() throws IOException {
+        return CsvUtil.parse(movieRows[next++ & (ROWS - 1)]);
+    }
+
+    @Benchmark
+    public String[] parseFeedRow() throws IOException {
+        return CsvUtil.parse(feedRows[next++ & (ROWS - 1)]);
+    }
+
+    @Benchmark
+    public String[] parseFeedRowProjected() throws IOException {
+        return feedProjection.parse(feedRows[next++ & (ROWS - 1)]);
+    }
+}
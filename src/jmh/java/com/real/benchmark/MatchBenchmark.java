@@ -0,0 +1,72 @@
+package com.real.benchmark;
+
+import com.real.matcher.Matcher;
+import com.real.matcher.MatcherImpl;
+import com.real.persistence.PersistenceManager;
+import com.real.persistence.repository.movie.ActorRepository;
+import com.real.persistence.repository.movie.MovieRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.real.benchmark.SyntheticData.ACTORS_HEADER;
+import static com.real.benchmark.SyntheticData.MOVIES_HEADER;
+import static com.real.benchmark.SyntheticData.XBOX_HEADER;
+import static com.real.benchmark.SyntheticData.csvStream;
+
+/**
+ * End-to-end match of Xbox feeds of several sizes against a loaded internal database, batch and streaming API
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MatchBenchmark {
+
+    @Param({"200000"})
+    private int movies;
+
+    @Param({"1000", "10000", "100000"})
+    private int feedSize;
+
+    @Param({"0.6"})
+    private double matchRatio;
+
+    private MatcherImpl matcher;
+    private List<String> feedRows;
+
+    @Setup
+    public void load() {
+        SyntheticData data = new SyntheticData(movies, 42);
+        PersistenceManager.getInstance().dropTable(MovieRepository.MOVIE_TABLE);
+        PersistenceManager.getInstance().dropTable(ActorRepository.ACTOR_TABLE);
+        matcher = new MatcherImpl(csvStream(MOVIES_HEADER, data.movies()),
+                csvStream(ACTORS_HEADER, data.actorsAndDirectors()));
+        feedRows = data.xboxFeed(feedSize, matchRatio);
+    }
+
+    @Benchmark
+    public List<Matcher.IdMapping> match() {
+        return matcher.match(Matcher.DatabaseType.XBOX, csvStream(XBOX_HEADER, feedRows));
+    }
+
+    @Benchmark
+    public List<Matcher.IdMapping> matchStream() {
+        return matcher.matchStream(Matcher.DatabaseType.XBOX, csvStream(XBOX_HEADER, feedRows))
+                .collectList()
+                .block();
+    }
+}
@@ -0,0 +1,72 @@
+package com.real.benchmark;
+
+import com.real.matcher.Matcher;
+import com.real.persistence.PersistenceManager;
+import com.real.persistence.repository.movie.ActorRepository;
+import com.real.persistence.repository.movie.MovieRepository;
+import com.real.service.IntegrationDataService;
+import com.real.service.MatchConfig;
+import com.real.service.VodDataServiceImpl;
+import com.real.service.XBoxDataService;
+import com.real.service.ingestion.PipelineConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.real.benchmark.SyntheticData.ACTORS_HEADER;
+import static com.real.benchmark.SyntheticData.MOVIES_HEADER;
+import static com.real.benchmark.SyntheticData.XBOX_HEADER;
+import static com.real.benchmark.SyntheticData.csvStream;
+
+/**
+ * Batch match of a parsed provider feed by worker count, the feed is parsed once so only the index probes are measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParallelMatchBenchmark {
+
+    @Param({"200000"})
+    private int movies;
+
+    @Param({"1000000"})
+    private int feedSize;
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    private VodDataServiceImpl vodService;
+    private Set<IntegrationDataService.ExternalDbRecord> feed;
+
+    @Setup
+    public void load() {
+        SyntheticData data = new SyntheticData(movies, 42);
+        PersistenceManager.getInstance().dropTable(MovieRepository.MOVIE_TABLE);
+        PersistenceManager.getInstance().dropTable(ActorRepository.ACTOR_TABLE);
+        vodService = new VodDataServiceImpl(PipelineConfig.defaults(),
+                MatchConfig.builder().parallelism(parallelism).build());
+        vodService.populateDatabase(csvStream(MOVIES_HEADER, data.movies()),
+                csvStream(ACTORS_HEADER, data.actorsAndDirectors())).block();
+        feed = new XBoxDataService().populateExternalData(csvStream(XBOX_HEADER, data.xboxFeed(feedSize, 0.6)));
+    }
+
+    @Benchmark
+    public List<Matcher.IdMapping> match() {
+        return vodService.match(feed);
+    }
+}
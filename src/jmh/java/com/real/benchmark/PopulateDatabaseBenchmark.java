@@ -0,0 +1,77 @@
+package com.real.benchmark;
+
+import com.real.execution.ExecutionConfig;
+import com.real.execution.ExecutionStrategy;
+import com.real.persistence.PersistenceManager;
+import com.real.persistence.repository.movie.ActorRepository;
+import com.real.persistence.repository.movie.MovieRepository;
+import com.real.service.VodDataServiceImpl;
+import com.real.service.ingestion.PipelineConfig;
+import com.real.service.ingestion.LoadReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.real.benchmark.SyntheticData.ACTORS_HEADER;
+import static com.real.benchmark.SyntheticData.MOVIES_HEADER;
+import static com.real.benchmark.SyntheticData.csvStream;
+
+/**
+ * Time of loading the internal database from CSV streams into empty movie and actor tables, per execution strategy,
+ * in bulk batches or in batches of the pipeline batch size.
+ * Virtual threads fall back to fixed pools below Java 21.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PopulateDatabaseBenchmark {
+
+    @Param({"20000", "200000"})
+    private int movies;
+
+    @Param({"FIXED", "WORK_STEALING", "VIRTUAL_THREADS"})
+    private ExecutionStrategy strategy;
+
+    @Param({"true", "false"})
+    private boolean bulkLoad;
+
+    private List<String> movieRows;
+    private List<String> actorRows;
+    private VodDataServiceImpl vodService;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        PersistenceManager.getInstance().configureExecution(ExecutionConfig.builder().strategy(strategy).build());
+        SyntheticData data = new SyntheticData(movies, 42);
+        movieRows = data.movies();
+        actorRows = data.actorsAndDirectors();
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyTables() {
+        PersistenceManager.getInstance().dropTable(MovieRepository.MOVIE_TABLE);
+        PersistenceManager.getInstance().dropTable(ActorRepository.ACTOR_TABLE);
+        vodService = new VodDataServiceImpl(PipelineConfig.builder().bulkLoad(bulkLoad).build());
+    }
+
+    @Benchmark
+    public List<LoadReport> populateDatabase() {
+        return vodService.populateDatabase(csvStream(MOVIES_HEADER, movieRows), csvStream(ACTORS_HEADER, actorRows))
+                .block();
+    }
+}
@@ -0,0 +1,149 @@
+package com.real.benchmark;
+
+import com.real.matcher.Matcher;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic generator of synthetic movie catalog and provider feeds.
+ * The same movie count and seed always produce the same CSV rows, so benchmark runs are comparable.
+ */
+public class SyntheticData {
+    public static final String MOVIES_HEADER = "id,title,year";
+    public static final String ACTORS_HEADER = "movie_id,name,role";
+    public static final String XBOX_HEADER = "MediaId,Title,OriginalReleaseDate,MediaType,Actors,Director,XboxLiveURL";
+
+    private static final String[] WORDS = {"Love", "War", "Night", "Day", "Star", "Dark", "Light", "King", "Queen",
+            "City", "River", "Storm", "Ghost", "Blood", "Fire", "Ice", "Dream", "Road", "Home", "Story"};
+    private static final int MIN_YEAR = 1950;
+    private static final int YEARS = 71;
+    private static final int MAX_CAST = 6;
+
+    private final long seed;
+    private final String[] titles;
+    private final int[] years;
+    private final String[][] directors;
+    private final String[][] cast;
+
+    /**
+     * Parameterised constructor generating the movie catalog
+     *
+     * @param movieCount - count of movies in catalog
+     * @param seed - random seed
+     */
+    public SyntheticData(int movieCount, long seed) {
+        this.seed = seed;
+        this.titles = new String[movieCount];
+        this.years = new int[movieCount];
+        this.directors = new String[movieCount][];
+        this.cast = new String[movieCount][];
+
+        Random random = new Random(seed);
+        int directorPool = Math.max(100, movieCount / 25);
+        int actorPool = Math.max(1000, movieCount / 10);
+        for (int i = 0; i < movieCount; i++) {
+            StringBuilder title = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+            for (int words = random.nextInt(3); words > 0; words--) {
+                title.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            if (random.nextInt(10) == 0) {
+                title.append(", The");
+            }
+            titles[i] = title.toString();
+            years[i] = MIN_YEAR + random.nextInt(YEARS);
+
+            directors[i] = new String[random.nextInt(4) == 0 ? 2 : 1];
+            for (int d = 0; d < directors[i].length; d++) {
+                directors[i][d] = "Director " + random.nextInt(directorPool);
+            }
+            cast[i] = new String[1 + random.nextInt(MAX_CAST)];
+            for (int c = 0; c < cast[i].length; c++) {
+                cast[i][c] = "Actor " + random.nextInt(actorPool);
+            }
+        }
+    }
+
+    /**
+     * Rows of movies CSV without header, movie IDs start from 1
+     *
+     * @return List<String> - CSV rows
+     */
+    public List<String> movies() {
+        List<String> rows = new ArrayList<>(titles.length);
+        for (int i = 0; i < titles.length; i++) {
+            rows.add((i + 1) + "," + quote(titles[i]) + "," + years[i]);
+        }
+
+        return rows;
+    }
+
+    /**
+     * Rows of actors and directors CSV without header
+     *
+     * @return List<String> - CSV rows
+     */
+    public List<String> actorsAndDirectors() {
+        List<String> rows = new ArrayList<>(titles.length * (MAX_CAST / 2 + 2));
+        for (int i = 0; i < titles.length; i++) {
+            for (String actor : cast[i]) {
+                rows.add((i + 1) + ",\"" + actor + "\",cast");
+            }
+            for (String director : directors[i]) {
+                rows.add((i + 1) + "," + director + ",director");
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * Rows of Xbox feed CSV without header.
+     * Matching rows copy title, year and one of the directors of a random catalog movie,
+     * the other rows have titles which aren't in the catalog.
+     *
+     * @param size - count of feed rows
+     * @param matchRatio - share of rows matching a catalog movie, from 0 to 1
+     * @return List<String> - CSV rows
+     */
+    public List<String> xboxFeed(int size, double matchRatio) {
+        Random random = new Random(seed ^ size);
+        List<String> rows = new ArrayList<>(size);
+        for (int k = 0; k < size; k++) {
+            String title = "Nomatch " + k;
+            int year = 2001;
+            String director = "Nobody";
+            String actors = "Nobody";
+            if (titles.length > 0 && random.nextDouble() < matchRatio) {
+                int movie = random.nextInt(titles.length);
+                title = titles[movie];
+                year = years[movie];
+                director = directors[movie][random.nextInt(directors[movie].length)];
+                actors = String.join(", ", cast[movie]);
+            }
+            rows.add(new UUID(random.nextLong(), random.nextLong()) + "," + quote(title) + ","
+                    + (1 + random.nextInt(12)) + "/" + (1 + random.nextInt(28)) + "/" + year + " 12:00:00 AM,Movie,"
+                    + quote(actors) + "," + director + ",http://video.xbox.com/" + k);
+        }
+
+        return rows;
+    }
+
+    /**
+     * Single use CSV stream over generated rows
+     *
+     * @param headerRow - CSV header
+     * @param rows - CSV rows
+     * @return Matcher.CsvStream - CSV stream
+     */
+    public static Matcher.CsvStream csvStream(@NonNull final String headerRow, @NonNull final List<String> rows) {
+        return new Matcher.CsvStream(headerRow, rows.stream());
+    }
+
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+}
@@ -0,0 +1,135 @@
+package com.real.benchmark;
+
+import com.real.model.CsvMetadata;
+import com.real.persistence.core.IndexDefinition;
+import com.real.persistence.core.Row;
+import com.real.persistence.core.Schema;
+import com.real.persistence.core.StorageType;
+import com.real.persistence.core.Table;
+import com.real.persistence.core.TableMetadata;
+import com.real.util.CsvUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of index lookups, query specification searches and count on a loaded movie table
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TableBenchmark {
+    private static final String TITLE_YEAR_INDEX = "title_year";
+    private static final int KEYS = 1024;
+
+    @Param({"200000"})
+    private int movies;
+
+    @Param({"HEAP", "COLUMNAR", "OFF_HEAP"})
+    private StorageType storageType;
+
+    private Table table;
+    private String[] keys;
+    private List<Map<String, String>> querySpecs;
+    private int next;
+
+    @Setup
+    public void load() throws IOException {
+        Map<String, TableMetadata> metadata = new HashMap<>();
+        metadata.put(CsvMetadata.ID.name(), TableMetadata.LONG);
+        metadata.put(CsvMetadata.TITLE.name(), TableMetadata.STRING);
+        metadata.put(CsvMetadata.YEAR.name(), TableMetadata.DATE);
+        Schema schema = new Schema("BENCHMARK");
+        schema.createTable(MovieTable.NAME, metadata, storageType);
+        table = schema.getTableMap().get(MovieTable.NAME);
+        table.createIndex(IndexDefinition.builder()
+                .name(TITLE_YEAR_INDEX)
+                .column(CsvMetadata.TITLE.name())
+                .column(CsvMetadata.YEAR.name())
+                .build());
+
+        List<String> rows = new SyntheticData(movies, 42).movies();
+        for (String row : rows) {
+            table.insertRow(MovieTable.row(CsvUtil.parse(row)));
+        }
+
+        keys = new String[KEYS];
+        querySpecs = new ArrayList<>(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            String[] values = CsvUtil.parse(rows.get(i * (rows.size() / KEYS)));
+            keys[i] = values[1] + IndexDefinition.KEY_DELIMITER + values[2];
+            querySpecs.add(Map.of(CsvMetadata.TITLE.name(), values[1], CsvMetadata.YEAR.name(), values[2]));
+        }
+    }
+
+    @Benchmark
+    public Optional<String> findIdByIndex() {
+        return table.findIdByIndex(TITLE_YEAR_INDEX, keys[next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public Optional<String> findIdByIndexMiss() {
+        return table.findIdByIndex(TITLE_YEAR_INDEX, keys[next++ & (KEYS - 1)] + "?");
+    }
+
+    @Benchmark
+    public List<Row> findByQuerySpecIndexed() {
+        return table.findByQuerySpec(querySpecs.get(next++ & (KEYS - 1)));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Row> findByQuerySpecScan() {
+        return table.findByQuerySpec(Map.of(CsvMetadata.ID.name(), Integer.toString(1 + (next++ % movies))));
+    }
+
+    @Benchmark
+    public long count() {
+        return table.count();
+    }
+
+    /*
+     * Movie table rows built the way the loader builds them
+     */
+    private static final class MovieTable {
+        static final String NAME = "movie";
+
+        static Row row(String[] values) {
+            ConcurrentHashMap<String, String> record = new ConcurrentHashMap<>(4);
+            record.put(CsvMetadata.ID.name(), values[0]);
+            record.put(CsvMetadata.TITLE.name(), values[1]);
+            record.put(CsvMetadata.YEAR.name(), values[2]);
+            ConcurrentLinkedQueue<ConcurrentHashMap<String, String>> records = new ConcurrentLinkedQueue<>();
+            records.add(record);
+
+            return Row.builder()
+                    .rowId(values[0])
+                    .rowValues(records)
+                    .createdAt(LocalDateTime.now())
+                    .updatedAt(LocalDateTime.now())
+                    .build();
+        }
+    }
+}
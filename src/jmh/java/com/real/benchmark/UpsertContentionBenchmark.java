@@ -0,0 +1,143 @@
+package com.real.benchmark;
+
+import com.real.model.CsvMetadata;
+import com.real.persistence.core.IndexDefinition;
+import com.real.persistence.core.Row;
+import com.real.persistence.core.RowMerger;
+import com.real.persistence.core.Schema;
+import com.real.persistence.core.StorageType;
+import com.real.persistence.core.Table;
+import com.real.persistence.core.TableMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of concurrent actor credit upserts by loader thread count.
+ * Credits of few hot movies contend on the same row IDs, credits spread over many movies show the lock striping.
+ * Throughput growing with the thread count on the spread keys means the load isn't serialized.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpsertContentionBenchmark {
+    private static final String DIRECTOR_INDEX = "director";
+    private static final int CREDITS = 1 << 16;
+
+    @Param({"16", "100000"})
+    private int movies;
+
+    @Param({"APPEND", "DISTINCT"})
+    private String merger;
+
+    private Table table;
+    private Row[] credits;
+
+    @Setup(Level.Trial)
+    public void credits() {
+        credits = new Row[CREDITS];
+        for (int i = 0; i < CREDITS; i++) {
+            credits[i] = credit(i);
+        }
+    }
+
+    /*
+     * Fresh table per iteration, so appended rows don't grow through the whole run
+     */
+    @Setup(Level.Iteration)
+    public void table() {
+        Map<String, TableMetadata> metadata = new HashMap<>();
+        metadata.put(CsvMetadata.MOVIE_ID.name(), TableMetadata.LONG);
+        metadata.put(CsvMetadata.NAME.name(), TableMetadata.STRING);
+        metadata.put(CsvMetadata.ROLE.name(), TableMetadata.STRING);
+        Schema schema = new Schema("BENCHMARK");
+        schema.createTable("actor", metadata, StorageType.HEAP,
+                "DISTINCT".equals(merger) ? RowMerger.DISTINCT : RowMerger.APPEND);
+        table = schema.getTableMap().get("actor");
+        table.createIndex(IndexDefinition.builder()
+                .name(DIRECTOR_INDEX)
+                .column(CsvMetadata.NAME.name())
+                .filterColumn(CsvMetadata.ROLE.name())
+                .filter(record -> "director".equals(record.get(CsvMetadata.ROLE.name())))
+                .caseInsensitive(true)
+                .build());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void upsert1Thread() {
+        upsert();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void upsert2Threads() {
+        upsert();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void upsert4Threads() {
+        upsert();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void upsert8Threads() {
+        upsert();
+    }
+
+    private void upsert() {
+        table.insertRow(copy(credits[ThreadLocalRandom.current().nextInt(CREDITS)]));
+    }
+
+    private Row credit(int i) {
+        String movieId = String.valueOf(i % movies);
+        ConcurrentHashMap<String, String> record = new ConcurrentHashMap<>(4);
+        record.put(CsvMetadata.MOVIE_ID.name(), movieId);
+        record.put(CsvMetadata.NAME.name(), "Actor " + (i % 4096));
+        record.put(CsvMetadata.ROLE.name(), i % 10 == 0 ? "director" : "cast");
+        ConcurrentLinkedQueue<ConcurrentHashMap<String, String>> records = new ConcurrentLinkedQueue<>();
+        records.add(record);
+
+        return Row.builder()
+                .rowId(movieId)
+                .rowValues(records)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+
+    /*
+     * Stored rows are merged into, so every insert gets its own row instance
+     */
+    private static Row copy(Row credit) {
+        return Row.builder()
+                .rowId(credit.getRowId())
+                .rowValues(new ConcurrentLinkedQueue<>(credit.getRowValues()))
+                .createdAt(credit.getCreatedAt())
+                .updatedAt(credit.getUpdatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,127 @@
+package com.real.benchmark;
+
+import com.real.model.CsvMetadata;
+import com.real.persistence.core.Row;
+import com.real.persistence.core.RowMerger;
+import com.real.persistence.core.Schema;
+import com.real.persistence.core.StorageType;
+import com.real.persistence.core.Table;
+import com.real.persistence.core.TableMetadata;
+import com.real.persistence.wal.WalConfig;
+import com.real.persistence.wal.WriteAheadLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of movie inserts with and without the write-ahead log.
+ * The difference of the logged and the unlogged score is the log overhead per insert,
+ * the multi-threaded score shows whether appenders wait for each other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteAheadLogBenchmark {
+    private static final int MOVIES = 1 << 16;
+
+    @Param({"false", "true"})
+    private boolean logged;
+
+    private Row[] movies;
+    private Table table;
+    private Path logPath;
+    private WriteAheadLog writeAheadLog;
+
+    @Setup(Level.Trial)
+    public void movies() {
+        movies = new Row[MOVIES];
+        for (int i = 0; i < MOVIES; i++) {
+            movies[i] = movie(i);
+        }
+    }
+
+    /*
+     * Fresh table and log per iteration, so the table and the log file don't grow through the whole run
+     */
+    @Setup(Level.Iteration)
+    public void table() throws IOException {
+        Map<String, TableMetadata> metadata = new HashMap<>();
+        metadata.put(CsvMetadata.ID.name(), TableMetadata.LONG);
+        metadata.put(CsvMetadata.TITLE.name(), TableMetadata.STRING);
+        metadata.put(CsvMetadata.YEAR.name(), TableMetadata.DATE);
+        Schema schema = new Schema("BENCHMARK");
+        schema.createTable("movie", metadata, StorageType.HEAP, RowMerger.REPLACE, TableMetadata.LONG);
+        table = schema.getTableMap().get("movie");
+        if (logged) {
+            logPath = Files.createTempFile("benchmark", ".wal");
+            writeAheadLog = WriteAheadLog.open(logPath, WalConfig.defaults());
+            schema.setMutationLog(writeAheadLog);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+            Files.deleteIfExists(logPath);
+            writeAheadLog = null;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void insert1Thread() {
+        insert();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void insert4Threads() {
+        insert();
+    }
+
+    private void insert() {
+        table.insertRow(movies[ThreadLocalRandom.current().nextInt(MOVIES)]);
+    }
+
+    private static Row movie(int i) {
+        ConcurrentHashMap<String, String> record = new ConcurrentHashMap<>(4);
+        record.put(CsvMetadata.ID.name(), String.valueOf(i));
+        record.put(CsvMetadata.TITLE.name(), "Movie " + i);
+        record.put(CsvMetadata.YEAR.name(), String.valueOf(1950 + i % 70));
+        ConcurrentLinkedQueue<ConcurrentHashMap<String, String>> records = new ConcurrentLinkedQueue<>();
+        records.add(record);
+
+        return Row.builder()
+                .rowId(String.valueOf(i))
+                .rowValues(records)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,39 @@
+package com.real.execution;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.NonNull;
+
+/**
+ * Execution strategy configuration.
+ * CPU-bound stages share a pool sized to the cores, blocking stages share a larger pool,
+ * virtual threads aren't limited by the pool sizes.
+ */
+@Data
+@Builder
+public class ExecutionConfig {
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    @NonNull
+    @Builder.Default
+    private final ExecutionStrategy strategy = ExecutionStrategy.FIXED;
+    /*
+     * Count of threads running CPU-bound stages
+     */
+    @Builder.Default
+    private final int cpuParallelism = CORES;
+    /*
+     * Count of threads running blocking stages
+     */
+    @Builder.Default
+    private final int blockingParallelism = CORES * 10;
+
+    /**
+     * Configuration with fixed pools, CPU-bound pool of available processors and blocking pool ten times larger
+     *
+     * @return ExecutionConfig - default configuration
+     */
+    public static ExecutionConfig defaults() {
+        return ExecutionConfig.builder().build();
+    }
+}
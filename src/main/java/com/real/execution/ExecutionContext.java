@@ -0,0 +1,153 @@
+package com.real.execution;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+/**
+ * Singleton holder of the schedulers all Reactor pipelines run on.
+ * Stages ask for the scheduler of their workload, schedulers are created on first use by the configured strategy.
+ * The context is configured once at startup, reconfiguration disposes the schedulers of the previous strategy,
+ * so it shouldn't happen while pipelines run.
+ */
+@Slf4j
+public final class ExecutionContext {
+
+    private static ExecutionContext instance;
+
+    private final Map<Workload, Scheduler> schedulers;
+    private ExecutionConfig config;
+
+    /**
+     * Non parameterized constructor.
+     * Instantiating the singleton with the default configuration.
+     */
+    private ExecutionContext() {
+        schedulers = new EnumMap<>(Workload.class);
+        config = ExecutionConfig.defaults();
+    }
+
+    /**
+     * Load execution context singleton instance
+     *
+     * @return ExecutionContext - singleton instance
+     */
+    public static synchronized ExecutionContext getInstance() {
+        if (instance == null) {
+            instance = new ExecutionContext();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Replace execution configuration, a strategy the JVM doesn't support falls back to fixed pools.
+     * The schedulers are kept if the configuration doesn't change.
+     *
+     * @param config - execution strategy and pool sizes
+     */
+    public synchronized void configure(@NonNull final ExecutionConfig config) {
+        ExecutionConfig applied = config;
+        if (!config.getStrategy().isSupported()) {
+            log.error("Execution strategy {} isn't supported by the JVM, using {}", config.getStrategy(),
+                    ExecutionStrategy.FIXED);
+            applied = ExecutionConfig.builder()
+                    .strategy(ExecutionStrategy.FIXED)
+                    .cpuParallelism(config.getCpuParallelism())
+                    .blockingParallelism(config.getBlockingParallelism())
+                    .build();
+        }
+
+        if (applied.equals(this.config)) {
+            return;
+        }
+        schedulers.values().forEach(Scheduler::dispose);
+        schedulers.clear();
+        this.config = applied;
+    }
+
+    /**
+     * Scheduler of the workload, shared by all stages declaring the workload
+     *
+     * @param workload - CPU-bound or blocking
+     * @return Scheduler - scheduler backed by the configured strategy
+     */
+    public synchronized Scheduler scheduler(@NonNull final Workload workload) {
+        return schedulers.computeIfAbsent(workload, this::newScheduler);
+    }
+
+    /**
+     * Run chunked CPU-bound task in parallel and wait for all chunks.
+     * The calling thread works on the chunks too, so the call completes even when all workers are busy,
+     * e.g. when it's called from a CPU-bound stage.
+     *
+     * @param chunks - count of chunks
+     * @param task - chunk task taking the chunk index
+     * @exception RuntimeException - the first failure of the chunk tasks, the other chunks still run
+     */
+    public void runChunks(int chunks, @NonNull final IntConsumer task) {
+        if (chunks <= 1) {
+            if (chunks == 1) {
+                task.accept(0);
+            }
+            return;
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(chunks);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            for (int chunk = next.getAndIncrement(); chunk < chunks; chunk = next.getAndIncrement()) {
+                try {
+                    task.accept(chunk);
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        Scheduler scheduler = scheduler(Workload.CPU_BOUND);
+        int helpers = Math.min(chunks, getConfig().getCpuParallelism()) - 1;
+        for (int i = 0; i < helpers; i++) {
+            scheduler.schedule(worker);
+        }
+        worker.run();
+
+        try {
+            // every chunk is taken by now, the helpers still running them don't wait for anything
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for chunk tasks", e);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * Current execution configuration
+     *
+     * @return ExecutionConfig - applied configuration
+     */
+    public synchronized ExecutionConfig getConfig() {
+        return config;
+    }
+
+    private Scheduler newScheduler(Workload workload) {
+        String name = "exec-" + workload.name().toLowerCase(Locale.ROOT).replace('_', '-');
+        int threads = workload == Workload.BLOCKING ? config.getBlockingParallelism() : config.getCpuParallelism();
+
+        return Schedulers.fromExecutorService(config.getStrategy().newExecutor(name, threads), name);
+    }
+}
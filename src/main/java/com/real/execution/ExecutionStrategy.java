@@ -0,0 +1,69 @@
+package com.real.execution;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors backing the pipeline schedulers
+ */
+public enum ExecutionStrategy {
+    /*
+     * Bounded pool of platform threads
+     */
+    FIXED {
+        @Override
+        ExecutorService newExecutor(String name, int threads) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    },
+    /*
+     * Work-stealing pool of platform threads, idle workers take queued tasks of busy ones
+     */
+    WORK_STEALING {
+        @Override
+        ExecutorService newExecutor(String name, int threads) {
+            AtomicInteger counter = new AtomicInteger();
+            return new ForkJoinPool(threads, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(name + "-" + counter.incrementAndGet());
+                return thread;
+            }, null, true);
+        }
+    },
+    /*
+     * New virtual thread per task, available only on Java 21 or newer
+     */
+    VIRTUAL_THREADS {
+        @Override
+        ExecutorService newExecutor(String name, int threads) {
+            return VirtualThreads.newExecutor(name);
+        }
+
+        @Override
+        public boolean isSupported() {
+            return VirtualThreads.isSupported();
+        }
+    };
+
+    /*
+     * New executor of the strategy, the thread count is ignored by executors without a thread limit
+     */
+    abstract ExecutorService newExecutor(String name, int threads);
+
+    /**
+     * Check whether the running JVM supports the strategy
+     *
+     * @return boolean - true if executors of the strategy can be created
+     */
+    public boolean isSupported() {
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package com.real.execution;
+
+import java.util.concurrent.ExecutorService;
+
+/*
+ * Virtual thread executors, not available before Java 21.
+ * The Java 21 version of the class is in META-INF/versions/21 of the multi-release jar.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return false;
+    }
+
+    static ExecutorService newExecutor(String name) {
+        throw new UnsupportedOperationException("Virtual threads need Java 21 or newer");
+    }
+}
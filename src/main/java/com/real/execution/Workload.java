@@ -0,0 +1,15 @@
+package com.real.execution;
+
+/**
+ * Kind of work a pipeline stage runs, stages of different kinds are scheduled on different pools
+ */
+public enum Workload {
+    /*
+     * In-memory work, e.g. parsing, matching or table inserts, runs on as many threads as there are cores
+     */
+    CPU_BOUND,
+    /*
+     * Work waiting for IO, e.g. reading a feed or fsyncing a log, runs on a larger pool
+     */
+    BLOCKING
+}
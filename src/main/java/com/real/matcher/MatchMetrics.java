@@ -0,0 +1,46 @@
+package com.real.matcher;
+
+import com.real.metrics.LatencyHistogram;
+import com.real.metrics.MetricRegistry;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Match metrics of a provider feed, published in metric group match.PROVIDER:
+ * call latency, count of feed records, count of matched records, count of records resolved from the known-mapping store
+ * and the match rate gauge
+ */
+final class MatchMetrics {
+    private static final Map<Matcher.DatabaseType, MatchMetrics> PROVIDERS = new EnumMap<>(Matcher.DatabaseType.class);
+
+    static {
+        for (Matcher.DatabaseType databaseType : Matcher.DatabaseType.values()) {
+            PROVIDERS.put(databaseType, new MatchMetrics(databaseType));
+        }
+    }
+
+    final LatencyHistogram calls;
+    final LongAdder records;
+    final LongAdder matched;
+    final LongAdder resolved;
+
+    private MatchMetrics(Matcher.DatabaseType databaseType) {
+        MetricRegistry registry = MetricRegistry.getInstance();
+        String group = "match." + databaseType.name().toLowerCase(Locale.ROOT);
+        this.calls = registry.histogram(group + ".call");
+        this.records = registry.counter(group + ".records");
+        this.matched = registry.counter(group + ".matched");
+        this.resolved = registry.counter(group + ".resolved");
+        registry.gauge(group + ".matchRate", () -> {
+            long total = records.sum();
+            return total == 0 ? 0.0 : (double) matched.sum() / total;
+        });
+    }
+
+    static MatchMetrics of(Matcher.DatabaseType databaseType) {
+        return PROVIDERS.get(databaseType);
+    }
+}
@@ -2,6 +2,9 @@ package com.real.matcher;
 
 import com.real.service.IntegrationDataService;
 import com.real.service.XBoxDataService;
+import com.real.util.CsvRecord;
+import com.real.util.LineCsvRecord;
+import reactor.core.publisher.Flux;
 
 import java.util.HashMap;
 import java.util.List;
@@ -47,18 +50,49 @@ public interface Matcher {
 
     private final String headerRow;
     private final Stream<String> dataRows;
+    private final Stream<CsvRecord> records;
 
     public CsvStream(String headerRow, Stream<String> dataRows) {
+      this(headerRow, dataRows, null);
+    }
+
+    private CsvStream(String headerRow, Stream<String> dataRows, Stream<CsvRecord> records) {
       this.headerRow = headerRow;
       this.dataRows = dataRows;
+      this.records = records;
+    }
+
+    /**
+     * CSV stream backed by record views, e.g. records of a memory-mapped file
+     *
+     * @param headerRow - header record text
+     * @param records - data records
+     * @return CsvStream - CSV stream
+     */
+    public static CsvStream fromRecords(String headerRow, Stream<CsvRecord> records) {
+      return new CsvStream(headerRow, null, records);
     }
 
     public String getHeaderRow() {
       return headerRow;
     }
 
+    /**
+     * Data rows as text, decoded from the record views when the stream is backed by records
+     *
+     * @return Stream<String> - data rows
+     */
     public Stream<String> getDataRows() {
-      return dataRows;
+      return dataRows != null ? dataRows : records.map(CsvRecord::line);
+    }
+
+    /**
+     * Data rows as record views, fields are parsed and decoded only when requested
+     *
+     * @return Stream<CsvRecord> - data records
+     */
+    public Stream<CsvRecord> getRecords() {
+      return records != null ? records : dataRows.map(LineCsvRecord::new);
     }
   }
 
@@ -70,5 +104,24 @@ public interface Matcher {
     put(DatabaseType.XBOX, new XBoxDataService());
   }};
 
+  /**
+   * Match the whole external feed, records with unchanged matching fields may be resolved from a known-mapping
+   * store of previous matches
+   *
+   * @param databaseType - external data provider
+   * @param externalDb - external feed
+   * @return List<IdMapping> - mappings, each external ID at most once
+   */
   List<IdMapping> match(DatabaseType databaseType, CsvStream externalDb);
+
+  /**
+   * Streaming match, the external feed is read lazily and every mapping is emitted as soon as it's found.
+   * The feed isn't read until subscription and is read no faster than the subscriber requests mappings.
+   * Unlike match, every record is matched against the internal database, no known-mapping store is read or written.
+   *
+   * @param databaseType - external data provider
+   * @param externalDb - external feed
+   * @return Flux<IdMapping> - mappings, each external ID at most once
+   */
+  Flux<IdMapping> matchStream(DatabaseType databaseType, CsvStream externalDb);
 }
@@ -1,10 +1,32 @@
 package com.real.matcher;
 
+import com.real.execution.ExecutionConfig;
+import com.real.execution.ExecutionContext;
+import com.real.execution.Workload;
+import com.real.persistence.PersistenceManager;
+import com.real.persistence.mapping.KnownMapping;
+import com.real.persistence.mapping.KnownMappingStore;
+import com.real.persistence.mapping.MappingStoreConfig;
+import com.real.persistence.repository.movie.ActorRepository;
+import com.real.persistence.repository.movie.MovieRepository;
+import com.real.persistence.wal.WalConfig;
 import com.real.service.IntegrationDataService;
 import com.real.service.VodDataServiceImpl;
+import com.real.service.ingestion.LoadReport;
+import com.real.service.ingestion.PipelineConfig;
+import com.real.util.MappedCsvFile;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 @Slf4j
@@ -12,21 +34,277 @@ public class MatcherImpl implements Matcher {
 
     private VodDataServiceImpl vodService;
 
+    private PipelineConfig pipelineConfig = PipelineConfig.defaults();
+
+    private volatile KnownMappingStore mappingStore;
+
     public MatcherImpl(CsvStream movieDb, CsvStream actorAndDirectorDb) {
+        this(movieDb, actorAndDirectorDb, PipelineConfig.defaults());
+    }
+
+    public MatcherImpl(CsvStream movieDb, CsvStream actorAndDirectorDb, PipelineConfig pipelineConfig) {
+        this(movieDb, actorAndDirectorDb, pipelineConfig, ExecutionContext.getInstance().getConfig());
+    }
+
+    /**
+     * Import internal database with the execution strategy all following pipelines run on
+     *
+     * @param movieDb - movies CSV stream
+     * @param actorAndDirectorDb - actors and directors CSV stream
+     * @param pipelineConfig - database load pipeline configuration
+     * @param executionConfig - execution strategy and pool sizes
+     */
+    public MatcherImpl(CsvStream movieDb, CsvStream actorAndDirectorDb, PipelineConfig pipelineConfig,
+                       ExecutionConfig executionConfig) {
+        PersistenceManager.getInstance().configureExecution(executionConfig);
         log.info("importing database");
-        initializeInternalDatabase(movieDb, actorAndDirectorDb);
+        initializeInternalDatabase(movieDb, actorAndDirectorDb, pipelineConfig);
 
         log.info("database imported");
     }
 
+    /**
+     * Import internal database from CSV files, the files are memory-mapped and their records are parsed
+     * in place, so no line is copied before its fields are read
+     *
+     * @param movieDb - movies CSV file
+     * @param actorAndDirectorDb - actors and directors CSV file
+     * @exception IOException - file reading exception
+     */
+    public MatcherImpl(Path movieDb, Path actorAndDirectorDb) throws IOException {
+        this(movieDb, actorAndDirectorDb, PipelineConfig.defaults());
+    }
+
+    /**
+     * Import internal database from memory-mapped CSV files
+     *
+     * @param movieDb - movies CSV file
+     * @param actorAndDirectorDb - actors and directors CSV file
+     * @param pipelineConfig - database load pipeline configuration
+     * @exception IOException - file reading exception
+     */
+    public MatcherImpl(Path movieDb, Path actorAndDirectorDb, PipelineConfig pipelineConfig) throws IOException {
+        log.info("importing database from {} and {}", movieDb, actorAndDirectorDb);
+        try (MappedCsvFile movies = MappedCsvFile.open(movieDb);
+             MappedCsvFile actorsAndDirectors = MappedCsvFile.open(actorAndDirectorDb)) {
+            initializeInternalDatabase(movies.toCsvStream(), actorsAndDirectors.toCsvStream(), pipelineConfig);
+        }
+
+        log.info("database imported");
+    }
+
+    /**
+     * Warm start from binary snapshot of the internal database, no CSV is parsed and no index is rebuilt
+     *
+     * @param snapshot - snapshot file written by snapshot(Path)
+     * @exception IOException - snapshot reading exception
+     */
+    public MatcherImpl(Path snapshot) throws IOException {
+        log.info("restoring database from {}", snapshot);
+        PersistenceManager.getInstance().restore(snapshot);
+        vodService = new VodDataServiceImpl();
+
+        log.info("database restored");
+    }
+
+    /**
+     * Recover internal database from the last snapshot and the write-ahead log of the following mutations,
+     * the mutations after the recovery are logged to the same write-ahead log
+     *
+     * @param snapshot - snapshot file, the database starts empty if there is no snapshot
+     * @param writeAheadLog - write-ahead log file
+     * @param walConfig - write-ahead log group commit configuration
+     * @exception IOException - snapshot or log reading exception
+     */
+    public MatcherImpl(Path snapshot, Path writeAheadLog, WalConfig walConfig) throws IOException {
+        log.info("recovering database from {} and {}", snapshot, writeAheadLog);
+        PersistenceManager manager = PersistenceManager.getInstance();
+        if (Files.exists(snapshot)) {
+            manager.restore(snapshot);
+        }
+        vodService = new VodDataServiceImpl();
+        long replayed = manager.replay(writeAheadLog);
+        manager.enableWriteAheadLog(writeAheadLog, walConfig);
+
+        log.info("database recovered, {} logged mutations replayed", replayed);
+    }
+
+    /**
+     * Write internal database to binary snapshot file
+     *
+     * @param snapshot - snapshot file path
+     * @exception IOException - snapshot writing exception
+     */
+    public void snapshot(Path snapshot) throws IOException {
+        PersistenceManager.getInstance().snapshot(snapshot);
+    }
+
+    /**
+     * Replace the internal database by the CSV streams, with the pipeline configuration of the initial import.
+     * The known-mapping store is cleared first, its mappings refer to the replaced database.
+     * Matches shouldn't run during the reload.
+     *
+     * @param movieDb - movies CSV stream
+     * @param actorAndDirectorDb - actors and directors CSV stream
+     * @exception IOException - known-mapping store clearing exception, the database isn't reloaded
+     */
+    public synchronized void reloadDatabase(CsvStream movieDb, CsvStream actorAndDirectorDb) throws IOException {
+        KnownMappingStore store = mappingStore;
+        if (store != null) {
+            store.clear();
+        }
+        log.info("reloading database");
+        PersistenceManager manager = PersistenceManager.getInstance();
+        manager.dropTable(MovieRepository.MOVIE_TABLE);
+        manager.dropTable(ActorRepository.ACTOR_TABLE);
+        initializeInternalDatabase(movieDb, actorAndDirectorDb, pipelineConfig);
+
+        log.info("database reloaded");
+    }
+
+    /**
+     * Replace the internal database by memory-mapped CSV files, the same way as the CSV streams
+     *
+     * @param movieDb - movies CSV file
+     * @param actorAndDirectorDb - actors and directors CSV file
+     * @exception IOException - file reading or known-mapping store clearing exception
+     */
+    public synchronized void reloadDatabase(Path movieDb, Path actorAndDirectorDb) throws IOException {
+        try (MappedCsvFile movies = MappedCsvFile.open(movieDb);
+             MappedCsvFile actorsAndDirectors = MappedCsvFile.open(actorAndDirectorDb)) {
+            reloadDatabase(movies.toCsvStream(), actorsAndDirectors.toCsvStream());
+        }
+    }
+
+    /**
+     * Resolve the following feed matches from the known-mapping store, records with unchanged matching fields
+     * aren't matched again. The store is cleared when the database is reloaded by reloadDatabase,
+     * a store written against another database should be cleared by the caller.
+     * Streaming matches don't use the store.
+     *
+     * @param path - known-mapping store file
+     * @param config - store cache configuration
+     * @exception IOException - store opening exception
+     */
+    public synchronized void enableMappingStore(Path path, MappingStoreConfig config) throws IOException {
+        if (mappingStore != null) {
+            log.error("Known-mapping store is already enabled");
+            return;
+        }
+        mappingStore = KnownMappingStore.open(path, config);
+    }
+
+    /**
+     * Sync and close the known-mapping store, the following feeds are matched completely
+     *
+     * @exception IOException - store writing exception
+     */
+    public synchronized void disableMappingStore() throws IOException {
+        if (mappingStore != null) {
+            mappingStore.close();
+            mappingStore = null;
+        }
+    }
+
     @Override
     public List<IdMapping> match(DatabaseType databaseType, CsvStream externalDb) {
+        final long start = System.nanoTime();
+        final MatchMetrics metrics = MatchMetrics.of(databaseType);
         Set<IntegrationDataService.ExternalDbRecord> records = DATA_SERVICE_FACTORY.get(databaseType).populateExternalData(externalDb);
-        return vodService.match(records);
+        KnownMappingStore store = mappingStore;
+        List<IdMapping> mappings = store == null ? vodService.match(records) : match(databaseType, records, store, metrics);
+
+        metrics.records.add(records.size());
+        metrics.matched.add(mappings.size());
+        metrics.calls.recordSince(start);
+        return mappings;
     }
 
-    private void initializeInternalDatabase(CsvStream movieDb, CsvStream actorAndDirectorDb) {
-        vodService = new VodDataServiceImpl();
-        vodService.populateDatabase(movieDb, actorAndDirectorDb);
+    @Override
+    public Flux<IdMapping> matchStream(DatabaseType databaseType, CsvStream externalDb) {
+        final MatchMetrics metrics = MatchMetrics.of(databaseType);
+        return Flux.defer(() -> {
+            final long start = System.nanoTime();
+            return vodService.match(DATA_SERVICE_FACTORY.get(databaseType).streamExternalData(externalDb)
+                            .doOnNext(record -> metrics.records.increment())
+                            .subscribeOn(ExecutionContext.getInstance().scheduler(Workload.BLOCKING)))
+                    .doOnNext(mapping -> metrics.matched.increment())
+                    .doFinally(signal -> metrics.calls.recordSince(start));
+        });
+    }
+
+    /*
+     * Resolve records with unchanged fingerprints from the store, match only new and changed records
+     * and store their results, including the records without match.
+     * An external ID shared by several records is never resolved nor stored, all its records are matched again,
+     * so the ID is mapped at most once like without the store. The mappings are in feed order, a matched mapping
+     * takes the place of the first matched again record of its external ID.
+     */
+    private List<IdMapping> match(DatabaseType databaseType, Set<IntegrationDataService.ExternalDbRecord> records,
+                                  KnownMappingStore store, MatchMetrics metrics) {
+        String provider = databaseType.name();
+        try {
+            Map<String, Integer> occurrences = new HashMap<>();
+            records.forEach(record -> occurrences.merge(record.getExternalId(), 1, Integer::sum));
+
+            // resolved mappings by feed position, null for the records matched again
+            IdMapping[] resolved = new IdMapping[records.size()];
+            Set<IntegrationDataService.ExternalDbRecord> changed = new LinkedHashSet<>();
+            int position = 0;
+            for (IntegrationDataService.ExternalDbRecord record : records) {
+                Optional<KnownMapping> known = occurrences.get(record.getExternalId()) == 1
+                        ? store.get(provider, record.getExternalId()) : Optional.empty();
+                if (known.isPresent() && known.get().getFingerprint() == record.fingerprint()) {
+                    if (known.get().isMatched()) {
+                        resolved[position] = new IdMapping(known.get().getInternalId(), record.getExternalId());
+                    }
+                } else {
+                    changed.add(record);
+                }
+                position++;
+            }
+            metrics.resolved.add(records.size() - changed.size());
+
+            Map<String, Integer> internalIds = new HashMap<>();
+            for (IdMapping mapping : vodService.match(changed)) {
+                internalIds.put(mapping.getExternalId(), mapping.getInternalId());
+            }
+            for (IntegrationDataService.ExternalDbRecord record : changed) {
+                // the result of an external ID shared by several records can't be told apart, it's matched again
+                if (occurrences.get(record.getExternalId()) == 1) {
+                    store.put(provider, record.getExternalId(), new KnownMapping(record.fingerprint(),
+                            internalIds.getOrDefault(record.getExternalId(), KnownMapping.NO_MATCH)));
+                }
+            }
+            store.sync();
+
+            List<IdMapping> mappings = new ArrayList<>();
+            position = 0;
+            for (IntegrationDataService.ExternalDbRecord record : records) {
+                if (resolved[position] != null) {
+                    mappings.add(resolved[position]);
+                } else {
+                    Integer internalId = internalIds.remove(record.getExternalId());
+                    if (internalId != null) {
+                        mappings.add(new IdMapping(internalId, record.getExternalId()));
+                    }
+                }
+                position++;
+            }
+
+            return mappings;
+        } catch (IOException e) {
+            log.error("Known-mapping store failed, matching all {} records", provider, e);
+            return vodService.match(records);
+        }
+    }
+
+    private void initializeInternalDatabase(CsvStream movieDb, CsvStream actorAndDirectorDb, PipelineConfig pipelineConfig) {
+        this.pipelineConfig = pipelineConfig;
+        vodService = new VodDataServiceImpl(pipelineConfig);
+        List<LoadReport> reports = vodService.populateDatabase(movieDb, actorAndDirectorDb).block();
+        if (reports != null) {
+            reports.forEach(report -> log.info("{}", report));
+        }
     }
 }
@@ -0,0 +1,136 @@
+package com.real.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Lock-free latency histogram.
+ * Durations are counted in log-linear buckets, every power of two is split into SUB_BUCKETS buckets,
+ * so quantiles are reported with at most 1/SUB_BUCKETS relative error. Every bucket is a striped LongAdder,
+ * concurrent recorders don't contend on a shared counter.
+ */
+public class LatencyHistogram implements Metric {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets;
+    private final LongAdder count;
+    private final LongAdder totalNanos;
+    private final LongAccumulator maxNanos;
+
+    /**
+     * Non parameterized constructor.
+     * Initializing empty histogram
+     */
+    public LatencyHistogram() {
+        this.buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+        this.count = new LongAdder();
+        this.totalNanos = new LongAdder();
+        this.maxNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Record duration since the start time
+     *
+     * @param startNanos - System.nanoTime() at the start of the measured operation
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Record duration
+     *
+     * @param nanos - duration in nanoseconds, negative durations are recorded as zero
+     */
+    public void record(long nanos) {
+        long duration = Math.max(0, nanos);
+        buckets[bucket(duration)].increment();
+        count.increment();
+        totalNanos.add(duration);
+        maxNanos.accumulate(duration);
+    }
+
+    /**
+     * Count of recorded durations
+     *
+     * @return long - count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Upper bound of the bucket holding the quantile of recorded durations
+     *
+     * @param quantile - quantile from 0 to 1
+     * @return long - duration in nanoseconds, zero if nothing is recorded
+     */
+    public long quantile(double quantile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxNanos.get());
+            }
+        }
+
+        return maxNanos.get();
+    }
+
+    @Override
+    public void collect(String name, BiConsumer<String, Number> sink) {
+        long total = count.sum();
+        sink.accept(name + ".count", total);
+        sink.accept(name + ".meanNanos", total == 0 ? 0 : totalNanos.sum() / total);
+        sink.accept(name + ".p50Nanos", quantile(0.5));
+        sink.accept(name + ".p99Nanos", quantile(0.99));
+        sink.accept(name + ".maxNanos", maxNanos.get());
+    }
+
+    /**
+     * cleanup histogram
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    /*
+     * Values below SUB_BUCKETS get a bucket each, larger values are bucketed by their highest bits
+     */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> exponent) & (SUB_BUCKETS - 1);
+
+        return (exponent + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+
+        return ((SUB_BUCKETS + subBucket + 1) << exponent) - 1;
+    }
+}
@@ -0,0 +1,17 @@
+package com.real.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.SortedMap;
+
+/**
+ * Reporter writing metric snapshots to the application log, one line per attribute
+ */
+@Slf4j
+public class LoggingMetricsReporter implements MetricsReporter {
+
+    @Override
+    public void report(SortedMap<String, Number> metrics) {
+        metrics.forEach((name, value) -> log.info("{} = {}", name, value));
+    }
+}
@@ -0,0 +1,14 @@
+package com.real.metrics;
+
+import java.util.function.BiConsumer;
+
+/*
+ * Registered metric, publishes its current values as flat numeric attributes
+ */
+interface Metric {
+
+    /*
+     * Publish current values, attribute names are prefixed by the metric name
+     */
+    void collect(String name, BiConsumer<String, Number> sink);
+}
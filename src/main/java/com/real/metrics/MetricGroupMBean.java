@@ -0,0 +1,90 @@
+package com.real.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/*
+ * Read-only MBean of a metric group, every metric attribute of the group is an MBean attribute.
+ * Attributes are evaluated on read, metrics registered later appear in the next MBeanInfo.
+ */
+final class MetricGroupMBean implements DynamicMBean {
+    private final String group;
+    private final MetricRegistry registry;
+
+    MetricGroupMBean(String group, MetricRegistry registry) {
+        this.group = group;
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Number value = attributes().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException("No metric " + attribute + " in group " + group);
+        }
+
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        SortedMap<String, Number> attributes = attributes();
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            Number value = attributes.get(name);
+            if (value != null) {
+                list.add(new Attribute(name, value));
+            }
+        }
+
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metric " + attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("Metric group " + group + " has no operations");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        SortedMap<String, Number> attributes = attributes();
+        MBeanAttributeInfo[] infos = new MBeanAttributeInfo[attributes.size()];
+        int i = 0;
+        for (Map.Entry<String, Number> attribute : attributes.entrySet()) {
+            infos[i++] = new MBeanAttributeInfo(attribute.getKey(), attribute.getValue().getClass().getName(),
+                    attribute.getKey(), true, false, false);
+        }
+
+        return new MBeanInfo(getClass().getName(), "Metrics of " + group, infos, null,
+                new MBeanOperationInfo[0], null);
+    }
+
+    /*
+     * Current values of the group metrics with the group prefix stripped
+     */
+    private SortedMap<String, Number> attributes() {
+        SortedMap<String, Number> attributes = new TreeMap<>();
+        int prefixLength = group.length() + 1;
+        registry.collect(group, (name, value) -> attributes.put(name.substring(prefixLength), value));
+
+        return attributes;
+    }
+}
@@ -0,0 +1,240 @@
+package com.real.metrics;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Singleton registry of application metrics.
+ * Metric names are dot separated, the part before the last dot is the metric group (e.g. table.movie) and every
+ * group is published as an MBean com.real:type=Metrics,group=GROUP. Registered metrics are looked up once and kept
+ * by the instrumented code, recording is lock free.
+ */
+@Slf4j
+public final class MetricRegistry {
+    private static final String DOMAIN = "com.real";
+
+    private static MetricRegistry instance;
+
+    private final ConcurrentHashMap<String, Metric> metrics;
+    private final Set<String> groups;
+    private final MBeanServer mBeanServer;
+    private final ScheduledExecutorService reportExecutor;
+
+    /**
+     * Non parameterized constructor.
+     * Instantiating the singleton with the platform MBean server.
+     */
+    private MetricRegistry() {
+        metrics = new ConcurrentHashMap<>();
+        groups = ConcurrentHashMap.newKeySet();
+        mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        reportExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Load metric registry singleton instance
+     *
+     * @return MetricRegistry - singleton instance
+     */
+    public static synchronized MetricRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricRegistry();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Counter by name, registered on first use
+     *
+     * @param name - dot separated metric name
+     * @return LongAdder - counter
+     */
+    public LongAdder counter(@NonNull final String name) {
+        Metric metric = register(name, () -> new CounterMetric(new LongAdder()));
+        if (!(metric instanceof CounterMetric)) {
+            throw new IllegalArgumentException("Metric " + name + " isn't a counter");
+        }
+
+        return ((CounterMetric) metric).counter;
+    }
+
+    /**
+     * Latency histogram by name, registered on first use
+     *
+     * @param name - dot separated metric name
+     * @return LatencyHistogram - histogram
+     */
+    public LatencyHistogram histogram(@NonNull final String name) {
+        Metric metric = register(name, LatencyHistogram::new);
+        if (!(metric instanceof LatencyHistogram)) {
+            throw new IllegalArgumentException("Metric " + name + " isn't a histogram");
+        }
+
+        return (LatencyHistogram) metric;
+    }
+
+    /**
+     * Register gauge evaluated on every read, replaces the gauge previously registered with the name
+     *
+     * @param name - dot separated metric name
+     * @param gauge - current value supplier
+     */
+    public void gauge(@NonNull final String name, @NonNull final Supplier<? extends Number> gauge) {
+        validate(name);
+        metrics.put(name, (metricName, sink) -> sink.accept(metricName, gauge.get()));
+        registerGroup(name);
+    }
+
+    /**
+     * Remove metric by name
+     *
+     * @param name - dot separated metric name
+     */
+    public void remove(@NonNull final String name) {
+        metrics.remove(name);
+    }
+
+    /**
+     * Remove all metrics of the group and its MBean, e.g. when a table is dropped
+     *
+     * @param group - metric group
+     */
+    public void removeGroup(@NonNull final String group) {
+        metrics.keySet().removeIf(name -> group.equals(groupOf(name)));
+        if (groups.remove(group)) {
+            try {
+                mBeanServer.unregisterMBean(objectName(group));
+            } catch (JMException e) {
+                log.error("Can't unregister metrics MBean of group {}", group, e);
+            }
+        }
+    }
+
+    /**
+     * Current values of all metric attributes
+     *
+     * @return SortedMap<String, Number> - attribute name as KEY and current value as VALUE
+     */
+    public SortedMap<String, Number> snapshot() {
+        SortedMap<String, Number> snapshot = new TreeMap<>();
+        metrics.forEach((name, metric) -> collect(name, metric, snapshot::put));
+
+        return snapshot;
+    }
+
+    /**
+     * Publish snapshots to the reporter periodically
+     *
+     * @param reporter - snapshot sink
+     * @param interval - reporting interval
+     * @return ScheduledFuture<?> - reporting task, cancel it to stop reporting
+     */
+    public ScheduledFuture<?> schedule(@NonNull final MetricsReporter reporter, @NonNull final Duration interval) {
+        long nanos = interval.toNanos();
+        return reportExecutor.scheduleAtFixedRate(() -> {
+            try {
+                reporter.report(snapshot());
+            } catch (RuntimeException e) {
+                log.error("Metrics reporter {} failed", reporter.getClass().getName(), e);
+            }
+        }, nanos, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /*
+     * Publish current values of the group metrics
+     */
+    void collect(String group, BiConsumer<String, Number> sink) {
+        metrics.forEach((name, metric) -> {
+            if (group.equals(groupOf(name))) {
+                collect(name, metric, sink);
+            }
+        });
+    }
+
+    private Metric register(String name, Supplier<Metric> factory) {
+        validate(name);
+        Metric metric = metrics.get(name);
+        if (metric != null) {
+            return metric;
+        }
+
+        metric = metrics.computeIfAbsent(name, key -> factory.get());
+        registerGroup(name);
+        return metric;
+    }
+
+    private void registerGroup(String name) {
+        String group = groupOf(name);
+        if (groups.add(group)) {
+            try {
+                ObjectName objectName = objectName(group);
+                if (!mBeanServer.isRegistered(objectName)) {
+                    mBeanServer.registerMBean(new MetricGroupMBean(group, this), objectName);
+                }
+            } catch (JMException e) {
+                log.error("Can't register metrics MBean of group {}", group, e);
+            }
+        }
+    }
+
+    private static void collect(String name, Metric metric, BiConsumer<String, Number> sink) {
+        try {
+            metric.collect(name, sink);
+        } catch (RuntimeException e) {
+            log.error("Can't collect metric {}", name, e);
+        }
+    }
+
+    private static void validate(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot <= 0 || dot == name.length() - 1) {
+            throw new IllegalArgumentException("Metric name " + name + " must be GROUP.NAME");
+        }
+    }
+
+    private static String groupOf(String name) {
+        return name.substring(0, name.lastIndexOf('.'));
+    }
+
+    private static ObjectName objectName(String group) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Metrics,group=" + ObjectName.quote(group));
+    }
+
+    /*
+     * Striped counter metric
+     */
+    private static final class CounterMetric implements Metric {
+        private final LongAdder counter;
+
+        CounterMetric(LongAdder counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public void collect(String name, BiConsumer<String, Number> sink) {
+            sink.accept(name, counter.sum());
+        }
+    }
+}
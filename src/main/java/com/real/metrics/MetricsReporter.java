@@ -0,0 +1,16 @@
+package com.real.metrics;
+
+import java.util.SortedMap;
+
+/**
+ * Pluggable sink of periodic metric snapshots, e.g. log, push gateway or time series database
+ */
+public interface MetricsReporter {
+
+    /**
+     * Publish snapshot of all registered metrics
+     *
+     * @param metrics - attribute name as KEY and current value as VALUE, sorted by name
+     */
+    void report(SortedMap<String, Number> metrics);
+}
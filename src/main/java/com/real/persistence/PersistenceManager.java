@@ -1,28 +1,50 @@
 package com.real.persistence;
 
+import com.real.execution.ExecutionConfig;
+import com.real.execution.ExecutionContext;
+import com.real.metrics.MetricRegistry;
+import com.real.persistence.core.IndexDefinition;
+import com.real.persistence.core.LogPosition;
+import com.real.persistence.core.QueryPlan;
 import com.real.persistence.core.Row;
+import com.real.persistence.core.RowMerger;
 import com.real.persistence.core.Schema;
+import com.real.persistence.core.StorageType;
 import com.real.persistence.core.Table;
 import com.real.persistence.core.TableMetadata;
+import com.real.persistence.core.TableStatistics;
+import com.real.persistence.wal.WalConfig;
+import com.real.persistence.wal.WriteAheadLog;
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
 
 /**
  * Singleton class for Persistence Sessions and Operations Manager
  */
+@Slf4j
 public final class PersistenceManager {
 
     private final Schema SCHEMA;
 
     private static PersistenceManager instance;
 
+    private volatile WriteAheadLog writeAheadLog;
+
     /**
      * Non parameterized constructor.
      * Instantiating the singleton and creating a new schema named MOVIE_DATA.
      */
     private PersistenceManager() {
         SCHEMA = new Schema("MOVIE_DATA");
+        MetricRegistry registry = MetricRegistry.getInstance();
+        registry.gauge("persistence.tables", () -> SCHEMA.getTableMap().size());
+        registry.gauge("persistence.walAppendedRecords", () -> writeAheadLog == null ? 0 : writeAheadLog.getAppendedRecords());
+        registry.gauge("persistence.walSyncs", () -> writeAheadLog == null ? 0 : writeAheadLog.getSyncs());
     }
 
     /**
@@ -42,6 +64,36 @@ public final class PersistenceManager {
         SCHEMA.createTable(tableName, tableMeta);
     }
 
+    public void createTable(@NonNull final String tableName, @NonNull final Map<String, TableMetadata> tableMeta,
+                            @NonNull final StorageType storageType) {
+        SCHEMA.createTable(tableName, tableMeta, storageType);
+    }
+
+    public void createTable(@NonNull final String tableName, @NonNull final Map<String, TableMetadata> tableMeta,
+                            @NonNull final StorageType storageType, @NonNull final RowMerger merger) {
+        SCHEMA.createTable(tableName, tableMeta, storageType, merger);
+    }
+
+    /**
+     * Create table keyed by row IDs of the given type, numeric row IDs are kept as longs by the heap storage
+     * and the indexes
+     *
+     * @param tableName - unique name of table
+     * @param tableMeta - table columns types metadata information
+     * @param storageType - storage engine of the table records
+     * @param keyType - type of the row IDs
+     */
+    public void createTable(@NonNull final String tableName, @NonNull final Map<String, TableMetadata> tableMeta,
+                            @NonNull final StorageType storageType, @NonNull final TableMetadata keyType) {
+        SCHEMA.createTable(tableName, tableMeta, storageType, RowMerger.APPEND, keyType);
+    }
+
+    public void createIndex(@NonNull final String tableName, @NonNull final IndexDefinition definition) {
+        if (SCHEMA.getTableMap().containsKey(tableName)) {
+            SCHEMA.getTableMap().get(tableName).createIndex(definition);
+        }
+    }
+
     public void dropTable(@NonNull final String tableName) {
         SCHEMA.dropTable(tableName);
     }
@@ -57,7 +109,169 @@ public final class PersistenceManager {
         return SCHEMA.getTableMap().get(tableName);
     }
 
+    public QueryPlan explain(@NonNull final String tableName, @NonNull final Map<String, String> querySpec) {
+        return SCHEMA.getTableMap().get(tableName).explain(querySpec);
+    }
+
     public long count(@NonNull final String tableName) {
         return SCHEMA.getTableMap().get(tableName).count();
     }
+
+    /**
+     * Live statistics of table: row and record counts, null and empty counts, distinct values estimates
+     * and value histograms of every column
+     *
+     * @param tableName - unique name of table
+     * @return TableStatistics - table statistics catalog
+     */
+    public TableStatistics statistics(@NonNull final String tableName) {
+        return SCHEMA.getTableMap().get(tableName).getStatistics();
+    }
+
+    /**
+     * Rebuild column statistics of table from its rows, drops deleted values from the distinct values estimates
+     *
+     * @param tableName - unique name of table
+     */
+    public void analyze(@NonNull final String tableName) {
+        SCHEMA.getTableMap().get(tableName).analyze();
+    }
+
+    public boolean existsTable(@NonNull final String tableName) {
+        return SCHEMA.getTableMap().containsKey(tableName);
+    }
+
+    /**
+     * Write snapshot of all tables with the position of the write-ahead log they include,
+     * table writers wait until the snapshot is written
+     *
+     * @param path - snapshot file path
+     * @exception IOException - snapshot or log writing exception
+     */
+    public synchronized void snapshot(@NonNull final Path path) throws IOException {
+        SCHEMA.withoutWriters(() -> SCHEMA.snapshot(path, logPosition()));
+    }
+
+    public void restore(@NonNull final Path path) throws IOException {
+        SCHEMA.restore(path);
+    }
+
+    /**
+     * Recover tables after restart: restore the last snapshot if it exists and replay the write-ahead log on top of it.
+     * Mutations the snapshot already includes are skipped, e.g. when the log wasn't truncated after the snapshot
+     * by a crash in the middle of a checkpoint. Mutations of tables which don't exist after the restore are skipped.
+     *
+     * @param snapshot - snapshot file path
+     * @param logPath - write-ahead log file path
+     * @return long - count of replayed mutations
+     * @exception IOException - snapshot or log reading exception
+     */
+    public long recover(@NonNull final Path snapshot, @NonNull final Path logPath) throws IOException {
+        LogPosition covered = Files.exists(snapshot) ? SCHEMA.restore(snapshot) : LogPosition.NONE;
+
+        return replay(logPath, covered);
+    }
+
+    /**
+     * Apply logged mutations to the tables, must be called before the log is enabled
+     *
+     * @param logPath - write-ahead log file path
+     * @return long - count of replayed mutations
+     * @exception IOException - log reading exception
+     */
+    public long replay(@NonNull final Path logPath) throws IOException {
+        return replay(logPath, LogPosition.NONE);
+    }
+
+    /*
+     * Apply logged mutations after the position to the tables
+     */
+    private long replay(Path logPath, LogPosition from) throws IOException {
+        if (writeAheadLog != null) {
+            throw new IllegalStateException("Write-ahead log must be replayed before it's enabled");
+        }
+
+        return WriteAheadLog.replay(logPath, from, record -> {
+            Table table = SCHEMA.getTableMap().get(record.getTableName());
+            if (table == null) {
+                log.error("Can't replay {} of not existing table {}", record.getType(), record.getTableName());
+                return;
+            }
+            switch (record.getType()) {
+                case INSERT:
+                    table.insertRow(record.getRow());
+                    break;
+                case DELETE:
+                    table.deleteById(record.getRowId());
+                    break;
+                case CLEAR:
+                    table.deleteAll();
+                    break;
+            }
+        });
+    }
+
+    /**
+     * Choose the execution strategy of all Reactor pipelines, should be configured before the pipelines run
+     *
+     * @param config - execution strategy and pool sizes
+     */
+    public void configureExecution(@NonNull final ExecutionConfig config) {
+        ExecutionContext.getInstance().configure(config);
+    }
+
+    /**
+     * Log all following table mutations to write-ahead log
+     *
+     * @param logPath - write-ahead log file path
+     * @param config - group commit configuration
+     * @exception IOException - log opening exception
+     */
+    public synchronized void enableWriteAheadLog(@NonNull final Path logPath, @NonNull final WalConfig config)
+            throws IOException {
+        if (writeAheadLog != null) {
+            log.error("Write-ahead log is already enabled");
+            return;
+        }
+        writeAheadLog = WriteAheadLog.open(logPath, config);
+        SCHEMA.setMutationLog(writeAheadLog);
+    }
+
+    /**
+     * Write snapshot of all tables and truncate write-ahead log, so recovery starts from the new snapshot.
+     * Table writers wait until the checkpoint completes. The snapshot keeps the log position it includes,
+     * so a crash before the log is truncated doesn't replay the included mutations twice.
+     *
+     * @param snapshot - snapshot file path
+     * @exception IOException - snapshot or log writing exception
+     */
+    public synchronized void checkpoint(@NonNull final Path snapshot) throws IOException {
+        SCHEMA.withoutWriters(() -> {
+            SCHEMA.snapshot(snapshot, logPosition());
+            if (writeAheadLog != null) {
+                writeAheadLog.truncate();
+            }
+        });
+    }
+
+    /*
+     * Position of the write-ahead log after all appended mutations, NONE if the log isn't enabled
+     */
+    private LogPosition logPosition() throws IOException {
+        WriteAheadLog wal = writeAheadLog;
+        return wal == null ? LogPosition.NONE : wal.position();
+    }
+
+    /**
+     * Commit pending mutations and stop logging
+     *
+     * @exception IOException - log writing exception
+     */
+    public synchronized void disableWriteAheadLog() throws IOException {
+        if (writeAheadLog != null) {
+            SCHEMA.setMutationLog(null);
+            writeAheadLog.close();
+            writeAheadLog = null;
+        }
+    }
 }
@@ -0,0 +1,108 @@
+package com.real.persistence.core;
+
+import com.real.util.HashUtil;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Blocked Bloom filter of index keys.
+ * All bits of a key are set in one 512-bit block, so a negative lookup reads a single cache line.
+ * Keys are added concurrently without locks and are never removed, removed keys are dropped by rebuilding the filter.
+ */
+public final class BloomFilter {
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 7;
+    private static final int BLOCK_BITS = 512;
+    private static final int BLOCK_WORDS = BLOCK_BITS / Long.SIZE;
+    private static final int PROBE_BITS = 9;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final AtomicLongArray words;
+    private final int blockMask;
+    private final int capacity;
+
+    private BloomFilter(int blocks) {
+        this.words = new AtomicLongArray(blocks * BLOCK_WORDS);
+        this.blockMask = blocks - 1;
+        this.capacity = blocks * BLOCK_BITS / BITS_PER_KEY;
+    }
+
+    /**
+     * Empty filter sized for the expected count of keys at about 1% false positive rate
+     *
+     * @param expectedKeys - count of keys the filter is sized for
+     * @return BloomFilter - empty filter
+     */
+    public static BloomFilter forKeys(int expectedKeys) {
+        long bits = Math.max(1L, (long) expectedKeys) * BITS_PER_KEY;
+        int blocks = (int) Math.min(1 << 26, Long.highestOneBit(Math.max(1, (bits - 1) / BLOCK_BITS)) << 1);
+
+        return new BloomFilter(blocks);
+    }
+
+    /**
+     * Hash of index key used by the filter, the string hash code is cached by the key
+     *
+     * @param key - normalized index key
+     * @return long - 64-bit key hash
+     */
+    public static long hash(String key) {
+        return HashUtil.mix64(key.hashCode());
+    }
+
+    /**
+     * Add key hash to the filter
+     *
+     * @param hash - key hash
+     */
+    public void put(long hash) {
+        int block = ((int) (hash >>> 32) & blockMask) * BLOCK_WORDS;
+        long probes = hash * GOLDEN_GAMMA;
+        for (int i = 0; i < HASHES; i++, probes >>>= PROBE_BITS) {
+            int bit = (int) probes & (BLOCK_BITS - 1);
+            int index = block + (bit >>> 6);
+            long mask = 1L << bit;
+            long word = words.get(index);
+            while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+                word = words.get(index);
+            }
+        }
+    }
+
+    /**
+     * Check whether key hash might have been added to the filter
+     *
+     * @param hash - key hash
+     * @return boolean - false if the key has never been added, true if it might have been
+     */
+    public boolean mightContain(long hash) {
+        int block = ((int) (hash >>> 32) & blockMask) * BLOCK_WORDS;
+        long probes = hash * GOLDEN_GAMMA;
+        for (int i = 0; i < HASHES; i++, probes >>>= PROBE_BITS) {
+            int bit = (int) probes & (BLOCK_BITS - 1);
+            if ((words.get(block + (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Count of keys the filter holds at about 1% false positive rate
+     *
+     * @return int - filter capacity
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Filter size
+     *
+     * @return long - size of the bit array in bytes
+     */
+    public long sizeInBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+}
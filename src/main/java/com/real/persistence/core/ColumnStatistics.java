@@ -0,0 +1,209 @@
+package com.real.persistence.core;
+
+import com.real.util.HashUtil;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live statistics of a table column: null, empty and non-null value counts, distinct values estimate,
+ * histogram of value lengths and, for date columns, histogram of years.
+ * Counts and histograms are updated on every insert and delete, the distinct values estimate
+ * keeps removed values until the table statistics are rebuilt.
+ */
+public class ColumnStatistics {
+    /*
+     * Length histogram buckets: zero length, then lengths from 2^(i-1) to 2^i - 1, the last bucket is open
+     */
+    private static final int LENGTH_BUCKETS = 17;
+    /*
+     * 2^12 registers, about 1.6% standard error of the distinct values estimate
+     */
+    private static final int SKETCH_PRECISION = 12;
+
+    @Getter
+    private final String column;
+    private final HyperLogLog distinct;
+    private final LongAdder values;
+    private final LongAdder nulls;
+    private final LongAdder empties;
+    private final LongAdder[] lengths;
+    /*
+     * Records per year of date column values, null for not date columns
+     */
+    private final Map<Integer, LongAdder> years;
+
+    ColumnStatistics(String column, TableMetadata type) {
+        this.column = column;
+        this.distinct = new HyperLogLog(SKETCH_PRECISION);
+        this.values = new LongAdder();
+        this.nulls = new LongAdder();
+        this.empties = new LongAdder();
+        this.lengths = new LongAdder[LENGTH_BUCKETS];
+        for (int i = 0; i < LENGTH_BUCKETS; i++) {
+            lengths[i] = new LongAdder();
+        }
+        this.years = type == TableMetadata.DATE || type == TableMetadata.DATE_TIME ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * Count of records with a value of the column
+     *
+     * @return long - non-null values count
+     */
+    public long valueCount() {
+        return values.sum();
+    }
+
+    /**
+     * Count of records without a value of the column
+     *
+     * @return long - null values count
+     */
+    public long nullCount() {
+        return nulls.sum();
+    }
+
+    /**
+     * Count of records with empty or blank value of the column
+     *
+     * @return long - empty values count
+     */
+    public long emptyCount() {
+        return empties.sum();
+    }
+
+    /**
+     * Estimated count of distinct values, values of deleted records are counted until the statistics are rebuilt
+     *
+     * @return long - distinct values estimate
+     */
+    public long distinctCount() {
+        return Math.min(distinct.cardinality(), values.sum());
+    }
+
+    /**
+     * Histogram of value lengths, bucket 0 counts empty values and bucket i counts lengths
+     * from 2^(i-1) to 2^i - 1, the last bucket counts all longer values
+     *
+     * @return long[] - value counts per length bucket
+     */
+    public long[] lengthHistogram() {
+        long[] histogram = new long[LENGTH_BUCKETS];
+        for (int i = 0; i < LENGTH_BUCKETS; i++) {
+            histogram[i] = lengths[i].sum();
+        }
+
+        return histogram;
+    }
+
+    /**
+     * Histogram of years of date column values, values not starting with a year are skipped
+     *
+     * @return SortedMap<Integer, Long> - value counts per year, empty for not date columns
+     */
+    public SortedMap<Integer, Long> yearHistogram() {
+        if (years == null) {
+            return Collections.emptySortedMap();
+        }
+
+        SortedMap<Integer, Long> histogram = new TreeMap<>();
+        years.forEach((year, count) -> {
+            long sum = count.sum();
+            if (sum > 0) {
+                histogram.put(year, sum);
+            }
+        });
+
+        return Collections.unmodifiableSortedMap(histogram);
+    }
+
+    /**
+     * Size of the distinct values sketch
+     *
+     * @return long - sketch size in bytes
+     */
+    public long sketchBytes() {
+        return distinct.sizeInBytes();
+    }
+
+    void add(String value) {
+        if (value == null) {
+            nulls.increment();
+            return;
+        }
+
+        values.increment();
+        distinct.add(HashUtil.mix64(value.hashCode()));
+        update(value, 1);
+    }
+
+    void remove(String value) {
+        if (value == null) {
+            nulls.decrement();
+            return;
+        }
+
+        values.decrement();
+        update(value, -1);
+    }
+
+    void clear() {
+        distinct.clear();
+        values.reset();
+        nulls.reset();
+        empties.reset();
+        for (LongAdder length : lengths) {
+            length.reset();
+        }
+        if (years != null) {
+            years.clear();
+        }
+    }
+
+    /*
+     * Update empty count and histograms by the value
+     */
+    private void update(String value, int delta) {
+        if (value.isBlank()) {
+            empties.add(delta);
+        }
+        lengths[lengthBucket(value.length())].add(delta);
+        if (years != null) {
+            int year = year(value);
+            if (year >= 0) {
+                years.computeIfAbsent(year, y -> new LongAdder()).add(delta);
+            }
+        }
+    }
+
+    private static int lengthBucket(int length) {
+        return Math.min(LENGTH_BUCKETS - 1, Integer.SIZE - Integer.numberOfLeadingZeros(length));
+    }
+
+    /*
+     * Year of ISO date or plain year value, -1 if the value doesn't start with four digits
+     */
+    private static int year(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() < 4 || (trimmed.length() > 4 && Character.isDigit(trimmed.charAt(4)))) {
+            return -1;
+        }
+
+        int year = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = trimmed.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            year = year * 10 + (c - '0');
+        }
+
+        return year;
+    }
+}
@@ -0,0 +1,930 @@
+package com.real.persistence.core;
+
+import com.real.util.HashUtil;
+import lombok.NonNull;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Column oriented storage of table records.
+ * Each column declared in table metadata is kept as a contiguous typed array (long[] for LONG, int[] for INTEGER,
+ * double[] for DOUBLE and dictionary IDs for STRING and date columns), a record is a position across the columns.
+ * Records of the same row ID are chained by position, deleted and replaced positions are tombstoned.
+ * Once tombstones make up more than COMPACTION_RATIO of the positions, the live records are moved down
+ * over them in place, so replacing rows doesn't grow the columns without bound.
+ * Values of columns which are not declared in table metadata are not stored.
+ */
+public class ColumnarStore implements StorageEngine {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NO_POSITION = -1;
+    /*
+     * Share of tombstoned positions which triggers compaction, small stores aren't compacted
+     */
+    private static final double COMPACTION_RATIO = 0.5;
+
+    private final Map<String, Column> columns;
+    /*
+     * Last record position of every row ID
+     */
+    private final Positions lastPositions;
+    private final ReadWriteLock lock;
+    private String[] rowIds;
+    private int[] previousPositions;
+    private long[] timestamps;
+    private BitSet deleted;
+    private int size;
+    private int liveCount;
+
+    /**
+     * Parameterised constructor for initializing columns by table metadata
+     *
+     * @param tableMetadata - table columns types metadata information
+     * @param dictionaries - dictionaries of the dictionary encoded columns
+     */
+    public ColumnarStore(@NonNull final Map<String, TableMetadata> tableMetadata,
+                         @NonNull final Map<String, Dictionary> dictionaries) {
+        this.columns = new LinkedHashMap<>();
+        tableMetadata.forEach((name, type) -> columns.put(name, type.isDictionaryEncoded()
+                ? new DictionaryColumn(dictionaries.get(name)) : Column.of(type)));
+        this.lastPositions = new Positions();
+        this.lock = new ReentrantReadWriteLock();
+        reset();
+    }
+
+    @Override
+    public StorageType getType() {
+        return StorageType.COLUMNAR;
+    }
+
+    /**
+     * Append row records to the columns
+     *
+     * @param row - insertable record
+     */
+    @Override
+    public void insert(@NonNull final Row row) {
+        final long timestamp = row.getUpdatedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+        lock.writeLock().lock();
+        try {
+            String rowId = row.getRowId();
+            int previous = lastPositions.get(rowId);
+            for (Map<String, String> values : row.getRowValues()) {
+                previous = append(rowId, values, previous, timestamp);
+            }
+            lastPositions.put(rowId, previous);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Grow the columns and the row positions map to hold the expected rows. The columns at least double,
+     * so the hints of consecutive load batches don't copy the columns per batch.
+     *
+     * @param rows - expected count of rows
+     */
+    @Override
+    public void reserve(int rows) {
+        lock.writeLock().lock();
+        try {
+            if (rowIds.length < rows) {
+                grow((int) Math.min(Integer.MAX_VALUE - 8, Math.max(rows, (long) rowIds.length << 1)));
+            }
+            lastPositions.reserve(rows);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace row records by the records of the given row
+     *
+     * @param row - stored record
+     */
+    @Override
+    public void put(@NonNull final Row row) {
+        lock.writeLock().lock();
+        try {
+            int last = lastPositions.remove(row.getRowId());
+            if (last != NO_POSITION) {
+                tombstone(last);
+                compactIfSparse();
+            }
+            insert(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove row records by row ID
+     *
+     * @param rowId - table's record ID
+     * @return Row - removed row or null if not found
+     */
+    @Override
+    public Row delete(@NonNull final String rowId) {
+        lock.writeLock().lock();
+        try {
+            int last = lastPositions.remove(rowId);
+            if (last == NO_POSITION) {
+                return null;
+            }
+            Row row = materialize(rowId, last);
+            tombstone(last);
+            compactIfSparse();
+
+            return row;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * cleanup store
+     */
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            lastPositions.clear();
+            columns.values().forEach(Column::clear);
+            reset();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * return count of live records
+     *
+     * @return long - records count
+     */
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * return count of live rows
+     *
+     * @return int - rows count
+     */
+    @Override
+    public int rowCount() {
+        lock.readLock().lock();
+        try {
+            return lastPositions.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Check availability of row by row ID
+     *
+     * @param rowId - String record ID
+     * @return boolean - true if row exists
+     */
+    @Override
+    public boolean contains(@NonNull final String rowId) {
+        lock.readLock().lock();
+        try {
+            return lastPositions.get(rowId) != NO_POSITION;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Materialize row by row ID
+     *
+     * @param rowId - String record ID
+     * @return Row - row with all its records or null if not found
+     */
+    @Override
+    public Row find(@NonNull final String rowId) {
+        lock.readLock().lock();
+        try {
+            int last = lastPositions.get(rowId);
+            return last == NO_POSITION ? null : materialize(rowId, last);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Materialize all rows
+     *
+     * @return List<Row> - all rows
+     */
+    @Override
+    public List<Row> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Row> result = new ArrayList<>(lastPositions.size());
+            lastPositions.forEach((rowId, last) -> result.add(materialize(rowId, last)));
+
+            return Collections.unmodifiableList(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Search rows by query specification, the columns are scanned one at a time.
+     * A row matches when at least one of its records has all specified column values.
+     *
+     * @param querySpec - Specification Map with table column name as KEY and expected VALUE
+     * @return List<Row> - matched rows
+     */
+    @Override
+    public List<Row> findByQuerySpec(@NonNull final Map<String, String> querySpec) {
+        lock.readLock().lock();
+        try {
+            BitSet positions = new BitSet(size);
+            positions.set(0, size);
+            positions.andNot(deleted);
+            for (Map.Entry<String, String> spec : querySpec.entrySet()) {
+                Column column = columns.get(spec.getKey());
+                if (column == null || spec.getValue() == null) {
+                    return List.of();
+                }
+                column.filter(spec.getValue(), positions, size);
+                if (positions.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            Set<String> matchedRowIds = new LinkedHashSet<>();
+            for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+                matchedRowIds.add(rowIds[position]);
+            }
+            List<Row> result = new ArrayList<>(matchedRowIds.size());
+            matchedRowIds.forEach(rowId -> result.add(materialize(rowId, lastPositions.get(rowId))));
+
+            return Collections.unmodifiableList(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Count of record positions in the columns, live and tombstoned
+     */
+    int positions() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Mark all chained record positions ending at the last position as deleted
+     */
+    private void tombstone(int last) {
+        for (int position = last; position != NO_POSITION; position = previousPositions[position]) {
+            deleted.set(position);
+            liveCount--;
+        }
+    }
+
+    /*
+     * Move the live records down over the tombstones once they make up too much of the columns.
+     * Live positions keep their order, so a record never moves up and every chained previous position
+     * is remapped before the records pointing to it.
+     */
+    private void compactIfSparse() {
+        int dead = size - liveCount;
+        if (size < INITIAL_CAPACITY || dead <= size * COMPACTION_RATIO) {
+            return;
+        }
+
+        int[] moved = new int[size];
+        int next = 0;
+        for (int position = deleted.nextClearBit(0); position < size; position = deleted.nextClearBit(position + 1)) {
+            final int from = position;
+            final int to = next++;
+            moved[from] = to;
+            rowIds[to] = rowIds[from];
+            timestamps[to] = timestamps[from];
+            previousPositions[to] = previousPositions[from] == NO_POSITION ? NO_POSITION : moved[previousPositions[from]];
+            if (from != to) {
+                columns.values().forEach(column -> column.move(from, to));
+            }
+        }
+        final int compacted = next;
+        Arrays.fill(rowIds, compacted, size, null);
+        columns.values().forEach(column -> column.truncate(compacted, size));
+        lastPositions.replaceAll(last -> moved[last]);
+        deleted = new BitSet();
+        size = compacted;
+    }
+
+    /*
+     * Append a single record at the end of the columns
+     */
+    private int append(String rowId, Map<String, String> values, int previous, long timestamp) {
+        if (size == rowIds.length) {
+            grow(size << 1);
+        }
+
+        final int position = size++;
+        rowIds[position] = rowId;
+        previousPositions[position] = previous;
+        timestamps[position] = timestamp;
+        columns.forEach((name, column) -> column.set(position, values.get(name)));
+        liveCount++;
+
+        return position;
+    }
+
+    /*
+     * Build Row instance from the chained record positions, keeping the insertion order of the records
+     */
+    private Row materialize(String rowId, int last) {
+        Deque<ConcurrentHashMap<String, String>> records = new ArrayDeque<>();
+        long createdAt = Long.MAX_VALUE;
+        long updatedAt = Long.MIN_VALUE;
+        for (int position = last; position != NO_POSITION; position = previousPositions[position]) {
+            records.addFirst(record(position));
+            createdAt = Math.min(createdAt, timestamps[position]);
+            updatedAt = Math.max(updatedAt, timestamps[position]);
+        }
+
+        return Row.builder()
+                .rowId(rowId)
+                .rowValues(new ConcurrentLinkedQueue<>(records))
+                .createdAt(toDateTime(createdAt))
+                .updatedAt(toDateTime(updatedAt))
+                .build();
+    }
+
+    private ConcurrentHashMap<String, String> record(int position) {
+        ConcurrentHashMap<String, String> record = new ConcurrentHashMap<>();
+        columns.forEach((name, column) -> {
+            String value = column.get(position);
+            if (value != null) {
+                record.put(name, value);
+            }
+        });
+
+        return record;
+    }
+
+    private void grow(int capacity) {
+        rowIds = Arrays.copyOf(rowIds, capacity);
+        previousPositions = Arrays.copyOf(previousPositions, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        columns.values().forEach(column -> column.grow(capacity));
+    }
+
+    private void reset() {
+        rowIds = new String[INITIAL_CAPACITY];
+        previousPositions = new int[INITIAL_CAPACITY];
+        timestamps = new long[INITIAL_CAPACITY];
+        deleted = new BitSet();
+        size = 0;
+        liveCount = 0;
+        columns.values().forEach(column -> column.grow(INITIAL_CAPACITY));
+    }
+
+    private static LocalDateTime toDateTime(long epochMilli) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMilli, 1000L),
+                (int) Math.floorMod(epochMilli, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /*
+     * Typed column storage
+     */
+    private abstract static class Column {
+        protected BitSet nulls = new BitSet();
+
+        static Column of(TableMetadata type) {
+            switch (type) {
+                case LONG:
+                    return new LongColumn();
+                case INTEGER:
+                    return new IntColumn();
+                case DOUBLE:
+                    return new DoubleColumn();
+                default:
+                    throw new IllegalArgumentException("Column type " + type + " is dictionary encoded");
+            }
+        }
+
+        void set(int position, String value) {
+            if (value == null) {
+                nulls.set(position);
+            } else {
+                setValue(position, value);
+            }
+        }
+
+        String get(int position) {
+            return nulls.get(position) ? null : getValue(position);
+        }
+
+        /*
+         * Copy the value of a position to a lower position
+         */
+        void move(int from, int to) {
+            nulls.set(to, nulls.get(from));
+            moveValue(from, to);
+        }
+
+        /*
+         * Forget the values of the positions from the new size on
+         */
+        void truncate(int size, int oldSize) {
+            nulls.clear(size, oldSize);
+        }
+
+        void clear() {
+            nulls = new BitSet();
+        }
+
+        abstract void moveValue(int from, int to);
+
+        abstract void setValue(int position, String value);
+
+        abstract String getValue(int position);
+
+        /*
+         * Retain only positions with the value in the column
+         */
+        abstract void filter(String value, BitSet positions, int size);
+
+        abstract void grow(int capacity);
+    }
+
+    /*
+     * Numeric column, values which don't have canonical numeric representation (e.g. "007" or "N/A")
+     * are kept aside as strings so the column always returns the original value
+     */
+    private abstract static class NumericColumn extends Column {
+        protected BitSet irregular = new BitSet();
+        protected Map<Integer, String> irregularValues = new HashMap<>();
+
+        @Override
+        void setValue(int position, String value) {
+            if (!setNumber(position, value)) {
+                irregular.set(position);
+                irregularValues.put(position, value);
+            }
+        }
+
+        @Override
+        String getValue(int position) {
+            return irregular.get(position) ? irregularValues.get(position) : getNumber(position);
+        }
+
+        @Override
+        void moveValue(int from, int to) {
+            if (irregular.get(from)) {
+                irregular.set(to);
+                irregularValues.put(to, irregularValues.remove(from));
+            } else {
+                irregular.clear(to);
+                irregularValues.remove(to);
+                moveNumber(from, to);
+            }
+        }
+
+        @Override
+        void truncate(int size, int oldSize) {
+            super.truncate(size, oldSize);
+            irregular.clear(size, oldSize);
+            irregularValues.keySet().removeIf(position -> position >= size);
+        }
+
+        @Override
+        void filter(String value, BitSet positions, int size) {
+            BitSet hits = new BitSet(size);
+            if (!matchNumber(value, hits, size)) {
+                irregularValues.forEach((position, irregularValue) -> {
+                    if (irregularValue.equals(value)) {
+                        hits.set(position);
+                    }
+                });
+            } else {
+                hits.andNot(irregular);
+                hits.andNot(nulls);
+            }
+            positions.and(hits);
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            irregular = new BitSet();
+            irregularValues = new HashMap<>();
+        }
+
+        /*
+         * Store canonical numeric value, false if the value isn't canonical number
+         */
+        abstract boolean setNumber(int position, String value);
+
+        abstract String getNumber(int position);
+
+        abstract void moveNumber(int from, int to);
+
+        /*
+         * Scan the column for numeric value, false if the value isn't canonical number
+         */
+        abstract boolean matchNumber(String value, BitSet hits, int size);
+
+        static boolean isCanonicalInteger(String value, int maxDigits) {
+            int length = value.length();
+            int start = length > 1 && value.charAt(0) == '-' ? 1 : 0;
+            int digits = length - start;
+            if (digits == 0 || digits > maxDigits || (digits > 1 && value.charAt(start) == '0')
+                    || (start == 1 && value.charAt(1) == '0')) {
+                return false;
+            }
+            for (int i = start; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private static final class LongColumn extends NumericColumn {
+        private long[] values = new long[0];
+
+        @Override
+        boolean setNumber(int position, String value) {
+            Long number = parse(value);
+            if (number == null) {
+                return false;
+            }
+            values[position] = number;
+
+            return true;
+        }
+
+        @Override
+        String getNumber(int position) {
+            return Long.toString(values[position]);
+        }
+
+        @Override
+        void moveNumber(int from, int to) {
+            values[to] = values[from];
+        }
+
+        @Override
+        boolean matchNumber(String value, BitSet hits, int size) {
+            Long number = parse(value);
+            if (number == null) {
+                return false;
+            }
+            final long expected = number;
+            final long[] column = values;
+            for (int i = 0; i < size; i++) {
+                if (column[i] == expected) {
+                    hits.set(i);
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        private static Long parse(String value) {
+            if (!isCanonicalInteger(value, 19)) {
+                return null;
+            }
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final class IntColumn extends NumericColumn {
+        private int[] values = new int[0];
+
+        @Override
+        boolean setNumber(int position, String value) {
+            Integer number = parse(value);
+            if (number == null) {
+                return false;
+            }
+            values[position] = number;
+
+            return true;
+        }
+
+        @Override
+        String getNumber(int position) {
+            return Integer.toString(values[position]);
+        }
+
+        @Override
+        void moveNumber(int from, int to) {
+            values[to] = values[from];
+        }
+
+        @Override
+        boolean matchNumber(String value, BitSet hits, int size) {
+            Integer number = parse(value);
+            if (number == null) {
+                return false;
+            }
+            final int expected = number;
+            final int[] column = values;
+            for (int i = 0; i < size; i++) {
+                if (column[i] == expected) {
+                    hits.set(i);
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        private static Integer parse(String value) {
+            if (!isCanonicalInteger(value, 10)) {
+                return null;
+            }
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final class DoubleColumn extends NumericColumn {
+        private long[] bits = new long[0];
+
+        @Override
+        boolean setNumber(int position, String value) {
+            Double number = parse(value);
+            if (number == null) {
+                return false;
+            }
+            bits[position] = Double.doubleToLongBits(number);
+
+            return true;
+        }
+
+        @Override
+        String getNumber(int position) {
+            return Double.toString(Double.longBitsToDouble(bits[position]));
+        }
+
+        @Override
+        void moveNumber(int from, int to) {
+            bits[to] = bits[from];
+        }
+
+        @Override
+        boolean matchNumber(String value, BitSet hits, int size) {
+            Double number = parse(value);
+            if (number == null) {
+                return false;
+            }
+            final long expected = Double.doubleToLongBits(number);
+            final long[] column = bits;
+            for (int i = 0; i < size; i++) {
+                if (column[i] == expected) {
+                    hits.set(i);
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        void grow(int capacity) {
+            bits = Arrays.copyOf(bits, capacity);
+        }
+
+        private static Double parse(String value) {
+            try {
+                double number = Double.parseDouble(value);
+                return Double.toString(number).equals(value) ? number : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /*
+     * Column of dictionary IDs, the dictionary is owned by the table and isn't cleared with the column
+     */
+    private static final class DictionaryColumn extends Column {
+        private final Dictionary dictionary;
+        private int[] ids = new int[0];
+
+        DictionaryColumn(Dictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        void setValue(int position, String value) {
+            ids[position] = dictionary.encode(value);
+        }
+
+        @Override
+        String getValue(int position) {
+            return dictionary.decode(ids[position]);
+        }
+
+        @Override
+        void moveValue(int from, int to) {
+            ids[to] = ids[from];
+        }
+
+        @Override
+        void filter(String value, BitSet positions, int size) {
+            final int expected = dictionary.lookup(value);
+            if (expected == Dictionary.NOT_FOUND) {
+                positions.clear();
+                return;
+            }
+
+            BitSet hits = new BitSet(size);
+            final int[] column = ids;
+            for (int i = 0; i < size; i++) {
+                if (column[i] == expected) {
+                    hits.set(i);
+                }
+            }
+            hits.andNot(nulls);
+            positions.and(hits);
+        }
+
+        @Override
+        void grow(int capacity) {
+            ids = Arrays.copyOf(ids, capacity);
+        }
+    }
+
+    /*
+     * Open addressing map of row IDs to record positions, the positions are kept as primitive ints.
+     * Guarded by the store lock.
+     */
+    private static final class Positions {
+        private static final int MIN_CAPACITY = 16;
+
+        private String[] keys;
+        private int[] values;
+        private int mask;
+        private int size;
+
+        private Positions() {
+            allocate(MIN_CAPACITY);
+        }
+
+        /*
+         * Position of the row ID or NO_POSITION
+         */
+        private int get(String key) {
+            for (int slot = slot(key); keys[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot].equals(key)) {
+                    return values[slot];
+                }
+            }
+
+            return NO_POSITION;
+        }
+
+        private void put(String key, int value) {
+            if ((size + 1) << 2 > keys.length * 3) {
+                resize(keys.length << 1);
+            }
+
+            int slot = slot(key);
+            while (keys[slot] != null) {
+                if (keys[slot].equals(key)) {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        }
+
+        /*
+         * Remove the row ID and shift the following entries of the probe sequence back into the hole,
+         * returns the removed position or NO_POSITION
+         */
+        private int remove(String key) {
+            int slot = slot(key);
+            while (keys[slot] != null && !keys[slot].equals(key)) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == null) {
+                return NO_POSITION;
+            }
+
+            int removed = values[slot];
+            int hole = slot;
+            for (int i = (slot + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+                int home = slot(keys[i]);
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    values[hole] = values[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = null;
+            size--;
+
+            return removed;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private void forEach(ObjIntConsumer<String> consumer) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != null) {
+                    consumer.accept(keys[slot], values[slot]);
+                }
+            }
+        }
+
+        private void replaceAll(IntUnaryOperator function) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != null) {
+                    values[slot] = function.applyAsInt(values[slot]);
+                }
+            }
+        }
+
+        private void reserve(int expected) {
+            long capacity = Math.max(MIN_CAPACITY, ((long) expected << 2) / 3 + 1);
+            capacity = Math.min(1 << 30, Long.highestOneBit(capacity - 1) << 1);
+            if (capacity > keys.length) {
+                resize((int) capacity);
+            }
+        }
+
+        private void clear() {
+            allocate(MIN_CAPACITY);
+            size = 0;
+        }
+
+        private int slot(String key) {
+            return (int) HashUtil.mix64(key.hashCode()) & mask;
+        }
+
+        private void resize(int capacity) {
+            String[] oldKeys = keys;
+            int[] oldValues = values;
+            allocate(capacity);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = slot(oldKeys[i]);
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            keys = new String[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+        }
+    }
+}
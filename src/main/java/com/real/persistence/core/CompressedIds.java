@@ -0,0 +1,268 @@
+package com.real.persistence.core;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable compressed posting list of numeric row IDs, sorted in ascending order.
+ * IDs are split into blocks of BLOCK_SIZE, the first ID of every block is kept in the skip table and
+ * the following IDs of the block as variable length deltas from the previous ID, so dense lists take
+ * about a byte per ID. Lookups binary search the skip table and decode at most one block.
+ */
+public final class CompressedIds {
+    /*
+     * List of no IDs
+     */
+    public static final CompressedIds EMPTY = new CompressedIds(new byte[0], new long[0], new int[0], 0);
+    /*
+     * Count of IDs of a block, a power of two
+     */
+    private static final int BLOCK_SIZE = 64;
+
+    private final byte[] deltas;
+    /*
+     * First ID and offset of the first delta of every block
+     */
+    private final long[] blockIds;
+    private final int[] blockOffsets;
+    private final int size;
+
+    private CompressedIds(byte[] deltas, long[] blockIds, int[] blockOffsets, int size) {
+        this.deltas = deltas;
+        this.blockIds = blockIds;
+        this.blockOffsets = blockOffsets;
+        this.size = size;
+    }
+
+    /**
+     * Compress sorted IDs
+     *
+     * @param ids - IDs in strictly ascending order
+     * @param size - count of IDs of the array
+     * @return CompressedIds - compressed list
+     * @exception IllegalArgumentException - the IDs aren't in strictly ascending order
+     */
+    public static CompressedIds of(@NonNull final long[] ids, int size) {
+        if (size == 0) {
+            return EMPTY;
+        }
+
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        long[] blockIds = new long[blocks];
+        int[] blockOffsets = new int[blocks];
+        byte[] deltas = new byte[size];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            if (i % BLOCK_SIZE == 0) {
+                blockIds[i / BLOCK_SIZE] = ids[i];
+                blockOffsets[i / BLOCK_SIZE] = offset;
+                continue;
+            }
+            if (ids[i] <= ids[i - 1]) {
+                throw new IllegalArgumentException("IDs must be in strictly ascending order, but " + ids[i]
+                        + " follows " + ids[i - 1]);
+            }
+            if (deltas.length - offset < 10) {
+                deltas = Arrays.copyOf(deltas, Math.max(deltas.length << 1, offset + 10));
+            }
+            // unsigned delta in 7-bit groups, the high bit marks a following group
+            long delta = ids[i] - ids[i - 1];
+            while ((delta & ~0x7FL) != 0) {
+                deltas[offset++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            deltas[offset++] = (byte) delta;
+        }
+
+        return new CompressedIds(Arrays.copyOf(deltas, offset), blockIds, blockOffsets, size);
+    }
+
+    /**
+     * Count of IDs
+     *
+     * @return int - list size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether the list has no IDs
+     *
+     * @return boolean - true if the list is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Check whether the list has the ID
+     *
+     * @param id - row ID
+     * @return boolean - true if the list has the ID
+     */
+    public boolean contains(long id) {
+        Cursor cursor = cursor();
+        return cursor.advance(id) && cursor.current() == id;
+    }
+
+    /**
+     * Decompressed IDs
+     *
+     * @return LongIds - row IDs in ascending order
+     */
+    public LongIds toLongIds() {
+        long[] ids = new long[size];
+        Cursor cursor = cursor();
+        for (int i = 0; i < size; i++) {
+            cursor.next();
+            ids[i] = cursor.current();
+        }
+
+        return LongIds.of(ids, size);
+    }
+
+    /**
+     * Size of the compressed list
+     *
+     * @return long - deltas and skip table size in bytes
+     */
+    public long sizeInBytes() {
+        return deltas.length + (long) blockIds.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * IDs of all the lists, the lists are walked together from the shortest one and the longer lists
+     * skip whole blocks between the IDs of the shorter ones
+     *
+     * @param lists - intersected lists
+     * @return LongIds - IDs in every list in ascending order, empty if no list is given
+     */
+    public static LongIds intersect(@NonNull final List<CompressedIds> lists) {
+        if (lists.isEmpty()) {
+            return LongIds.EMPTY;
+        }
+
+        List<CompressedIds> sorted = new ArrayList<>(lists);
+        sorted.sort(Comparator.comparingInt(CompressedIds::size));
+        CompressedIds shortest = sorted.get(0);
+        long[] ids = new long[shortest.size];
+        Cursor cursor = shortest.cursor();
+        for (int i = 0; i < shortest.size; i++) {
+            cursor.next();
+            ids[i] = cursor.current();
+        }
+
+        return retain(ids, shortest.size, sorted.subList(1, sorted.size()));
+    }
+
+    /**
+     * Candidate IDs present in all the lists
+     *
+     * @param candidates - candidate IDs
+     * @param lists - intersected lists
+     * @return LongIds - candidates in every list in ascending order, all candidates if no list is given
+     */
+    public static LongIds retain(@NonNull final LongIds candidates, @NonNull final List<CompressedIds> lists) {
+        return retain(candidates.toArray(), candidates.size(), lists);
+    }
+
+    private static LongIds retain(long[] ids, int size, List<CompressedIds> lists) {
+        Cursor[] cursors = new Cursor[lists.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = lists.get(i).cursor();
+        }
+
+        int retained = 0;
+        candidates:
+        for (int i = 0; i < size; i++) {
+            long id = ids[i];
+            for (Cursor cursor : cursors) {
+                if (!cursor.advance(id)) {
+                    break candidates;
+                }
+                if (cursor.current() != id) {
+                    continue candidates;
+                }
+            }
+            ids[retained++] = id;
+        }
+
+        return LongIds.of(ids, retained);
+    }
+
+    private Cursor cursor() {
+        return new Cursor();
+    }
+
+    /*
+     * Forward iterator over the IDs, positioned before the first ID
+     */
+    private final class Cursor {
+        private int index = -1;
+        private int offset;
+        private long current;
+
+        private long current() {
+            return current;
+        }
+
+        /*
+         * Move to the following ID, false past the last ID
+         */
+        private boolean next() {
+            if (index + 1 >= size) {
+                index = size;
+                return false;
+            }
+
+            index++;
+            if (index % BLOCK_SIZE == 0) {
+                current = blockIds[index / BLOCK_SIZE];
+                offset = blockOffsets[index / BLOCK_SIZE];
+            } else {
+                long delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = deltas[offset++];
+                    delta |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                current += delta;
+            }
+
+            return true;
+        }
+
+        /*
+         * Move to the smallest ID not less than the target, the cursor never moves back.
+         * Blocks starting below the target are skipped by binary search of the skip table.
+         */
+        private boolean advance(long target) {
+            if (index >= size) {
+                return false;
+            }
+            if (index >= 0 && current >= target) {
+                return true;
+            }
+
+            int block = Arrays.binarySearch(blockIds, Math.max(0, index / BLOCK_SIZE), blockIds.length, target);
+            block = block >= 0 ? block : -block - 2;
+            if (block >= 0 && block * BLOCK_SIZE > index) {
+                index = block * BLOCK_SIZE - 1;
+            }
+            while (next()) {
+                if (current >= target) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.real.persistence.core;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary encoding of column values.
+ * Every distinct value is mapped to a compact integer ID, so the column stores ints instead of strings
+ * and every occurrence of the value shares a single canonical String instance.
+ * Lookups are lock free, registration of new values is safe for concurrent loaders.
+ */
+public class Dictionary {
+    /*
+     * ID returned by lookup when the value has never been encoded
+     */
+    public static final int NOT_FOUND = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ConcurrentHashMap<String, Integer> ids;
+    private volatile String[] values;
+    private int size;
+
+    /**
+     * Non parameterized constructor.
+     * Initializing empty dictionary
+     */
+    public Dictionary() {
+        this.ids = new ConcurrentHashMap<>();
+        this.values = new String[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Build dictionaries for all dictionary encoded columns of the table
+     *
+     * @param tableMetadata - table columns types metadata information
+     * @return Map<String, Dictionary> - unmodifiable map of column name as KEY and column dictionary as VALUE
+     */
+    public static Map<String, Dictionary> forColumns(@NonNull final Map<String, TableMetadata> tableMetadata) {
+        Map<String, Dictionary> dictionaries = new HashMap<>();
+        tableMetadata.forEach((column, type) -> {
+            if (type.isDictionaryEncoded()) {
+                dictionaries.put(column, new Dictionary());
+            }
+        });
+
+        return Collections.unmodifiableMap(dictionaries);
+    }
+
+    /**
+     * Encode value, registering it in the dictionary if it's not there yet
+     *
+     * @param value - column value
+     * @return int - dictionary ID of the value
+     */
+    public int encode(@NonNull final String value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+            id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+
+            String[] current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size << 1);
+            }
+            current[size] = value;
+            values = current;
+            ids.put(value, size);
+
+            return size++;
+        }
+    }
+
+    /**
+     * Find dictionary ID of value without registering it
+     *
+     * @param value - column value
+     * @return int - dictionary ID or NOT_FOUND
+     */
+    public int lookup(@NonNull final String value) {
+        Integer id = ids.get(value);
+        return id == null ? NOT_FOUND : id;
+    }
+
+    /**
+     * Decode dictionary ID to the original value
+     *
+     * @param id - dictionary ID
+     * @return String - column value
+     */
+    public String decode(int id) {
+        return values[id];
+    }
+
+    /**
+     * Replace value by its canonical instance, registering it in the dictionary if it's not there yet
+     *
+     * @param value - column value
+     * @return String - canonical instance of the value
+     */
+    public String intern(@NonNull final String value) {
+        return decode(encode(value));
+    }
+
+    /**
+     * Count of distinct values in dictionary
+     *
+     * @return int - dictionary size
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * cleanup dictionary
+     */
+    public synchronized void clear() {
+        ids.clear();
+        values = new String[INITIAL_CAPACITY];
+        size = 0;
+    }
+}
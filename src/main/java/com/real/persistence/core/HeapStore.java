@@ -0,0 +1,112 @@
+package com.real.persistence.core;
+
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Heap storage of table records, rows are kept as Row instances by row ID.
+ * Values of dictionary encoded columns are replaced by their canonical instances on insert.
+ * Count of records is kept on every write, so counting doesn't walk the rows.
+ */
+public class HeapStore implements StorageEngine {
+    private final Map<String, Dictionary> dictionaries;
+    private volatile ConcurrentHashMap<String, Row> rows;
+    private final LongAdder records;
+
+    /**
+     * Parameterised constructor
+     *
+     * @param dictionaries - dictionaries of the dictionary encoded columns
+     */
+    public HeapStore(@NonNull final Map<String, Dictionary> dictionaries) {
+        this.dictionaries = dictionaries;
+        this.rows = new ConcurrentHashMap<>();
+        this.records = new LongAdder();
+    }
+
+    @Override
+    public StorageType getType() {
+        return StorageType.HEAP;
+    }
+
+    @Override
+    public void insert(@NonNull final Row row) {
+        row.getRowValues().forEach(record -> internValues(dictionaries, record));
+        rows.merge(row.getRowId(), row, RowMerger.APPEND::merge);
+        records.add(row.getRowValues().size());
+    }
+
+    @Override
+    public void put(@NonNull final Row row) {
+        row.getRowValues().forEach(record -> internValues(dictionaries, record));
+        Row previous = rows.put(row.getRowId(), row);
+        records.add(row.getRowValues().size() - (previous == null ? 0 : previous.getRowValues().size()));
+    }
+
+    @Override
+    public Row delete(@NonNull final String rowId) {
+        Row row = rows.remove(rowId);
+        if (row != null) {
+            records.add(-row.getRowValues().size());
+        }
+
+        return row;
+    }
+
+    /**
+     * Replace the empty row map by a map sized for the expected rows, so the load doesn't rehash it.
+     * A map holding rows grows on its own.
+     *
+     * @param rows - expected count of rows
+     */
+    @Override
+    public void reserve(int rows) {
+        if (this.rows.isEmpty()) {
+            this.rows = new ConcurrentHashMap<>(rows);
+        }
+    }
+
+    @Override
+    public void clear() {
+        rows.clear();
+        records.reset();
+    }
+
+    @Override
+    public long count() {
+        return records.sum();
+    }
+
+    @Override
+    public int rowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public Row find(@NonNull final String rowId) {
+        return rows.get(rowId);
+    }
+
+    @Override
+    public boolean contains(@NonNull final String rowId) {
+        return rows.containsKey(rowId);
+    }
+
+    @Override
+    public Iterable<Row> findAll() {
+        return rows.values();
+    }
+
+    /*
+     * Replace values of dictionary encoded columns by their canonical instances
+     */
+    static void internValues(Map<String, Dictionary> dictionaries, Map<String, String> record) {
+        record.replaceAll((column, value) -> {
+            Dictionary dictionary = dictionaries.get(column);
+            return dictionary == null ? value : dictionary.intern(value);
+        });
+    }
+}
@@ -0,0 +1,96 @@
+package com.real.persistence.core;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * HyperLogLog sketch estimating count of distinct values.
+ * Every value hash updates the maximum rank of one of 2^precision registers, the registers are
+ * 8-bit wide and packed four in an int, so values are added concurrently without locks.
+ * Values are never removed, the sketch is cleared and filled again to drop removed values.
+ */
+public final class HyperLogLog {
+    private static final int REGISTERS_PER_WORD = 4;
+    private static final int REGISTER_BITS = 8;
+    private static final int REGISTER_MASK = (1 << REGISTER_BITS) - 1;
+
+    private final int precision;
+    private final int registers;
+    private final AtomicIntegerArray words;
+
+    /**
+     * Empty sketch, standard error of the estimate is about 1.04 / sqrt(2^precision)
+     *
+     * @param precision - count of hash bits choosing the register, from 4 to 16
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("HyperLogLog precision must be from 4 to 16, but was " + precision);
+        }
+        this.precision = precision;
+        this.registers = 1 << precision;
+        this.words = new AtomicIntegerArray(registers / REGISTERS_PER_WORD);
+    }
+
+    /**
+     * Add value hash to the sketch
+     *
+     * @param hash - well mixed 64-bit hash of the value
+     */
+    public void add(long hash) {
+        int register = (int) (hash >>> (Long.SIZE - precision));
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        int index = register / REGISTERS_PER_WORD;
+        int shift = (register % REGISTERS_PER_WORD) * REGISTER_BITS;
+        int word = words.get(index);
+        while (((word >>> shift) & REGISTER_MASK) < rank
+                && !words.compareAndSet(index, word, (word & ~(REGISTER_MASK << shift)) | (rank << shift))) {
+            word = words.get(index);
+        }
+    }
+
+    /**
+     * Estimated count of distinct added values, small counts are estimated by linear counting of empty registers
+     *
+     * @return long - distinct values estimate
+     */
+    public long cardinality() {
+        double sum = 0;
+        int empty = 0;
+        for (int i = 0; i < words.length(); i++) {
+            int word = words.get(i);
+            for (int shift = 0; shift < Integer.SIZE; shift += REGISTER_BITS) {
+                int rank = (word >>> shift) & REGISTER_MASK;
+                sum += Math.scalb(1.0, -rank);
+                if (rank == 0) {
+                    empty++;
+                }
+            }
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / registers);
+        double estimate = alpha * registers * registers / sum;
+        if (estimate <= 2.5 * registers && empty > 0) {
+            estimate = registers * Math.log((double) registers / empty);
+        }
+
+        return Math.round(estimate);
+    }
+
+    /**
+     * Drop all added values
+     */
+    public void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0);
+        }
+    }
+
+    /**
+     * Sketch size
+     *
+     * @return long - size of the registers in bytes
+     */
+    public long sizeInBytes() {
+        return (long) words.length() * Integer.BYTES;
+    }
+}
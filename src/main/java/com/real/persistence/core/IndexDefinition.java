@@ -0,0 +1,102 @@
+package com.real.persistence.core;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.NonNull;
+import lombok.Singular;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Predicate;
+
+/**
+ * Declaration of a table secondary index.
+ * The index key is built from the values of the index columns joined by KEY_DELIMITER,
+ * only records accepted by the filter are indexed. A filter reading record columns declares them
+ * as filter columns, the index answers only queries which fix those columns to values the filter accepts.
+ */
+@Data
+@Builder
+public class IndexDefinition {
+    /*
+     * Delimiter of column values in multi-column index key
+     */
+    public static final String KEY_DELIMITER = "_";
+    /*
+     * Default filter, every record with key column values is indexed
+     */
+    private static final Predicate<Map<String, String>> ALL_RECORDS = record -> true;
+
+    @NonNull
+    private final String name;
+    @NonNull
+    @Singular
+    private final List<String> columns;
+    @NonNull
+    @Builder.Default
+    private final Predicate<Map<String, String>> filter = ALL_RECORDS;
+    /*
+     * Record columns read by the filter
+     */
+    @NonNull
+    @Singular
+    private final List<String> filterColumns;
+    /*
+     * Keys are compared ignoring case
+     */
+    private final boolean caseInsensitive;
+
+    /**
+     * Build key from record values
+     *
+     * @param record - record column values
+     * @return String - normalized key or null if the filter rejects the record or a key column has no value
+     */
+    public String key(@NonNull final Map<String, String> record) {
+        if (!filter.test(record)) {
+            return null;
+        }
+
+        StringJoiner key = new StringJoiner(KEY_DELIMITER);
+        for (String column : columns) {
+            String value = record.get(column);
+            if (value == null) {
+                return null;
+            }
+            key.add(value);
+        }
+
+        return normalize(key.toString());
+    }
+
+    /**
+     * Check whether the index holds every record matching the query: the query fixes all the index columns
+     * and, if the index is filtered, all the filter columns to values the filter accepts.
+     * A filtered index without declared filter columns can't be checked and answers no query.
+     *
+     * @param querySpec - Specification Map with table column name as KEY and expected VALUE
+     * @return boolean - true if the index lookup doesn't miss records matching the query
+     */
+    public boolean answers(@NonNull final Map<String, String> querySpec) {
+        if (!querySpec.keySet().containsAll(columns)) {
+            return false;
+        }
+        if (filter == ALL_RECORDS) {
+            return true;
+        }
+
+        return !filterColumns.isEmpty() && querySpec.keySet().containsAll(filterColumns) && filter.test(querySpec);
+    }
+
+    /**
+     * Normalize key for comparison, case insensitive keys are lower cased
+     *
+     * @param key - key built from column values or looked up
+     * @return String - normalized key
+     */
+    public String normalize(@NonNull final String key) {
+        return caseInsensitive ? key.toLowerCase(Locale.ROOT) : key;
+    }
+}
@@ -0,0 +1,164 @@
+package com.real.persistence.core;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only inverted index of a table with numeric row IDs: every key holds a compressed sorted posting list
+ * of the row IDs of the records with the key, e.g. actor name to the movies of the actor.
+ * Unlike secondary indexes it isn't updated by table mutations, it's built from a table snapshot in one pass
+ * and rebuilt when Table.version() moves, which keeps the posting lists compressed and the lookups lock free.
+ */
+@Slf4j
+public final class InvertedIndex {
+    @Getter
+    private final IndexDefinition definition;
+    private final Map<String, CompressedIds> postings;
+
+    private InvertedIndex(IndexDefinition definition, Map<String, CompressedIds> postings) {
+        this.definition = definition;
+        this.postings = postings;
+    }
+
+    /**
+     * Build index of table records, records rejected by the definition filter or without key column values
+     * aren't indexed
+     *
+     * @param table - indexed table with numeric row IDs
+     * @param definition - index key declaration
+     * @return InvertedIndex - index of the current table records
+     * @exception IllegalStateException - the table row IDs aren't numeric
+     */
+    public static InvertedIndex build(@NonNull final Table table, @NonNull final IndexDefinition definition) {
+        if (!table.getKeyType().isNumeric()) {
+            throw new IllegalStateException("Inverted index " + definition.getName() + " needs numeric row IDs, but table "
+                    + table.getTableName() + " is keyed by " + table.getKeyType());
+        }
+
+        Map<String, IdBuffer> buffers = new HashMap<>();
+        for (Row row : table.findAll()) {
+            long id = Long.parseLong(row.getRowId());
+            for (Map<String, String> record : row.getRowValues()) {
+                String key = definition.key(record);
+                if (key != null) {
+                    buffers.computeIfAbsent(key, k -> new IdBuffer()).add(id);
+                }
+            }
+        }
+
+        Map<String, CompressedIds> postings = new HashMap<>(buffers.size() * 4 / 3 + 1);
+        buffers.forEach((key, buffer) -> postings.put(key, buffer.compress()));
+        log.debug("Inverted index {} of {} keys built from table {}", definition.getName(), postings.size(),
+                table.getTableName());
+
+        return new InvertedIndex(definition, postings);
+    }
+
+    /**
+     * Find posting list by key
+     *
+     * @param key - index key, normalized by the index definition
+     * @return CompressedIds - sorted row IDs, empty if nothing is indexed by the key
+     */
+    public CompressedIds find(@NonNull final String key) {
+        return postings.getOrDefault(definition.normalize(key), CompressedIds.EMPTY);
+    }
+
+    /**
+     * Row IDs indexed by all the keys
+     *
+     * @param keys - index keys
+     * @return LongIds - sorted row IDs of every key, empty if no key is given
+     */
+    public LongIds intersect(@NonNull final Collection<String> keys) {
+        return CompressedIds.intersect(lookup(keys));
+    }
+
+    /**
+     * Candidate row IDs indexed by all the keys
+     *
+     * @param candidates - candidate row IDs
+     * @param keys - index keys
+     * @return LongIds - sorted candidates of every key, all candidates if no key is given
+     */
+    public LongIds retain(@NonNull final LongIds candidates, @NonNull final Collection<String> keys) {
+        return candidates.isEmpty() ? LongIds.EMPTY : CompressedIds.retain(candidates, lookup(keys));
+    }
+
+    /**
+     * Count of distinct keys in index
+     *
+     * @return int - index size
+     */
+    public int size() {
+        return postings.size();
+    }
+
+    /**
+     * Size of the compressed posting lists
+     *
+     * @return long - posting lists size in bytes
+     */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (CompressedIds ids : postings.values()) {
+            bytes += ids.sizeInBytes();
+        }
+
+        return bytes;
+    }
+
+    private List<CompressedIds> lookup(Collection<String> keys) {
+        List<CompressedIds> lists = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            lists.add(find(key));
+        }
+
+        return lists;
+    }
+
+    /*
+     * Growable row IDs of a key, rows are mostly scanned in ascending ID order
+     */
+    private static final class IdBuffer {
+        private long[] ids = new long[4];
+        private int size;
+        private boolean sorted = true;
+
+        private void add(long id) {
+            if (size > 0 && id <= ids[size - 1]) {
+                if (id == ids[size - 1]) {
+                    return;
+                }
+                sorted = false;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size << 1);
+            }
+            ids[size++] = id;
+        }
+
+        private CompressedIds compress() {
+            if (!sorted) {
+                Arrays.sort(ids, 0, size);
+                int distinct = 0;
+                for (int i = 0; i < size; i++) {
+                    if (distinct == 0 || ids[i] != ids[distinct - 1]) {
+                        ids[distinct++] = ids[i];
+                    }
+                }
+                size = distinct;
+            }
+
+            return CompressedIds.of(ids, size);
+        }
+    }
+}
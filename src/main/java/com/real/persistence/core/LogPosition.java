@@ -0,0 +1,22 @@
+package com.real.persistence.core;
+
+import lombok.Data;
+
+/**
+ * Position in a mutation log: the generation of the log file, started anew by every truncate,
+ * and the byte offset of the first mutation after the position.
+ * Snapshots keep the log position they include, so recovery replays only the mutations after it.
+ */
+@Data
+public class LogPosition {
+    /*
+     * Position of no log, the snapshot includes no logged mutation
+     */
+    public static final LogPosition NONE = new LogPosition(0, 0);
+
+    /*
+     * Random ID of the log generation, 0 if the log has no generation
+     */
+    private final long generation;
+    private final long offset;
+}
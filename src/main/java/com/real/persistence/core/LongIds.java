@@ -0,0 +1,258 @@
+package com.real.persistence.core;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable posting list of numeric row IDs of an index key, read in ascending order.
+ * Index writers derive a new list per change under the key lock: an added ID is written in place into the spare
+ * capacity of the shared array past the end of the current list, so lists already handed out to readers never
+ * change. An ID out of ascending order leaves the new list unsorted, it's sorted and deduplicated into its own
+ * array on the first read, so loads indexing rows out of ID order don't copy the list per added ID.
+ * Sorted lists are read without locks or boxing.
+ */
+public final class LongIds extends PostingList {
+    /*
+     * List of no IDs
+     */
+    public static final LongIds EMPTY = new LongIds(new long[0], 0, true);
+
+    /*
+     * IDs in append order until the list is sorted, replaced by the sorted copy then
+     */
+    private long[] ids;
+    private int size;
+    /*
+     * Set after the IDs are sorted and deduplicated, the IDs don't change afterwards
+     */
+    private volatile boolean sorted;
+
+    private LongIds(long[] ids, int size, boolean sorted) {
+        this.ids = ids;
+        this.size = size;
+        this.sorted = sorted;
+    }
+
+    /*
+     * List of the first IDs of the sorted array, the array is taken over
+     */
+    static LongIds of(long[] ids, int size) {
+        return size == 0 ? EMPTY : new LongIds(ids, size, true);
+    }
+
+    /**
+     * Count of IDs
+     *
+     * @return int - list size
+     */
+    @Override
+    public int size() {
+        sort();
+        return size;
+    }
+
+    /**
+     * Check whether the list has no IDs
+     *
+     * @return boolean - true if the list is empty
+     */
+    public boolean isEmpty() {
+        sort();
+        return size == 0;
+    }
+
+    /**
+     * ID at the list position
+     *
+     * @param index - position from 0 to size - 1
+     * @return long - row ID
+     */
+    public long get(int index) {
+        sort();
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of posting list of " + size + " IDs");
+        }
+
+        return ids[index];
+    }
+
+    /**
+     * Check whether the list has the ID by binary search
+     *
+     * @param id - row ID
+     * @return boolean - true if the list has the ID
+     */
+    public boolean contains(long id) {
+        sort();
+        return indexOf(id) >= 0;
+    }
+
+    /**
+     * Smallest ID of the list
+     *
+     * @return long - first row ID
+     * @exception NoSuchElementException - the list is empty
+     */
+    public long min() {
+        sort();
+        if (size == 0) {
+            throw new NoSuchElementException("Posting list is empty");
+        }
+
+        return ids[0];
+    }
+
+    /**
+     * Copy of the IDs
+     *
+     * @return long[] - row IDs in ascending order
+     */
+    public long[] toArray() {
+        sort();
+        long[] copy = new long[size];
+        System.arraycopy(ids, 0, copy, 0, size);
+        return copy;
+    }
+
+    /**
+     * Row IDs of the list as decimal strings, every access decodes the IDs
+     *
+     * @return Set<String> - unmodifiable view of the row IDs
+     */
+    @Override
+    public Set<String> rowIds() {
+        sort();
+        return new AbstractSet<>() {
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof String)) {
+                    return false;
+                }
+                try {
+                    return LongIds.this.contains(Long.parseLong((String) o));
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        return Long.toString(ids[next++]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /*
+     * List with the ID added, called only on the current list of the key under the key lock
+     */
+    @Override
+    LongIds add(String rowId) {
+        long id = Long.parseLong(rowId);
+        long[] current;
+        int count;
+        boolean ascending;
+        synchronized (this) {
+            current = ids;
+            count = size;
+            ascending = sorted;
+        }
+        if (ascending && count > 0 && id <= current[count - 1] && indexOf(id) >= 0) {
+            return this;
+        }
+
+        boolean stillSorted = ascending && (count == 0 || id > current[count - 1]);
+        if (count < current.length) {
+            current[count] = id;
+            return new LongIds(current, count + 1, stillSorted);
+        }
+        long[] grown = new long[Math.max(2, count + (count >> 1))];
+        System.arraycopy(current, 0, grown, 0, count);
+        grown[count] = id;
+
+        return new LongIds(grown, count + 1, stillSorted);
+    }
+
+    /*
+     * List without the ID or null if no ID is left, called only on the current list of the key under the key lock
+     */
+    @Override
+    LongIds remove(String rowId) {
+        sort();
+        long id;
+        try {
+            id = Long.parseLong(rowId);
+        } catch (NumberFormatException e) {
+            return this;
+        }
+
+        int index = indexOf(id);
+        if (index < 0) {
+            return this;
+        }
+        if (size == 1) {
+            return null;
+        }
+
+        long[] copy = new long[size - 1];
+        System.arraycopy(ids, 0, copy, 0, index);
+        System.arraycopy(ids, index + 1, copy, index, size - index - 1);
+
+        return new LongIds(copy, size - 1, true);
+    }
+
+    /*
+     * Sort and deduplicate the appended IDs into a new array once, the shared array of the appended IDs
+     * is left as is for the lists derived from this one
+     */
+    private void sort() {
+        if (sorted) {
+            return;
+        }
+        synchronized (this) {
+            if (sorted) {
+                return;
+            }
+            long[] copy = Arrays.copyOf(ids, size);
+            Arrays.sort(copy);
+            int unique = 0;
+            for (int i = 0; i < copy.length; i++) {
+                if (unique == 0 || copy[i] != copy[unique - 1]) {
+                    copy[unique++] = copy[i];
+                }
+            }
+            ids = copy;
+            size = unique;
+            sorted = true;
+        }
+    }
+
+    /*
+     * Position of the ID, or -(insertion point) - 1 if the list doesn't have it
+     */
+    private int indexOf(long id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+}
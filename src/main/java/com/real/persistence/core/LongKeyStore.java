@@ -0,0 +1,157 @@
+package com.real.persistence.core;
+
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Heap storage of table records keyed by numeric row IDs.
+ * Rows are kept as Row instances in a primitive long-keyed map, so entries don't carry boxed or string keys
+ * and lookups don't allocate. Row IDs are compared as numbers, an ID which isn't a decimal long is rejected
+ * on write and isn't found on read.
+ * Values of dictionary encoded columns are replaced by their canonical instances on insert.
+ */
+public class LongKeyStore implements StorageEngine {
+    private final Map<String, Dictionary> dictionaries;
+    private final LongRowMap rows;
+    private final LongAdder records;
+
+    /**
+     * Parameterised constructor
+     *
+     * @param dictionaries - dictionaries of the dictionary encoded columns
+     */
+    public LongKeyStore(@NonNull final Map<String, Dictionary> dictionaries) {
+        this.dictionaries = dictionaries;
+        this.rows = new LongRowMap();
+        this.records = new LongAdder();
+    }
+
+    @Override
+    public StorageType getType() {
+        return StorageType.HEAP;
+    }
+
+    @Override
+    public void insert(@NonNull final Row row) {
+        long key = key(row.getRowId());
+        row.getRowValues().forEach(record -> HeapStore.internValues(dictionaries, record));
+        rows.merge(key, row, RowMerger.APPEND::merge);
+        records.add(row.getRowValues().size());
+    }
+
+    @Override
+    public void put(@NonNull final Row row) {
+        long key = key(row.getRowId());
+        row.getRowValues().forEach(record -> HeapStore.internValues(dictionaries, record));
+        Row previous = rows.put(key, row);
+        records.add(row.getRowValues().size() - (previous == null ? 0 : previous.getRowValues().size()));
+    }
+
+    @Override
+    public Row delete(@NonNull final String rowId) {
+        Row row = isKey(rowId) ? rows.remove(Long.parseLong(rowId)) : null;
+        if (row != null) {
+            records.add(-row.getRowValues().size());
+        }
+
+        return row;
+    }
+
+    /**
+     * Grow the row map to hold the expected rows without rehashing
+     *
+     * @param rows - expected count of rows
+     */
+    @Override
+    public void reserve(int rows) {
+        this.rows.reserve(rows);
+    }
+
+    @Override
+    public void clear() {
+        rows.clear();
+        records.reset();
+    }
+
+    @Override
+    public long count() {
+        return records.sum();
+    }
+
+    @Override
+    public int rowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public Row find(@NonNull final String rowId) {
+        return isKey(rowId) ? rows.get(Long.parseLong(rowId)) : null;
+    }
+
+    @Override
+    public boolean contains(@NonNull final String rowId) {
+        return find(rowId) != null;
+    }
+
+    @Override
+    public Iterable<Row> findAll() {
+        return rows.values();
+    }
+
+    /*
+     * Numeric key of the written row
+     */
+    private static long key(String rowId) {
+        if (!isKey(rowId)) {
+            throw new IllegalArgumentException("Row ID " + rowId + " isn't a numeric key");
+        }
+
+        return Long.parseLong(rowId);
+    }
+
+    /*
+     * Canonical decimal form of numeric row ID without sign or leading zeros, e.g. "7" for "007" or "+7",
+     * null if the row ID isn't numeric. Canonical IDs are returned as is without parsing.
+     */
+    static String canonical(String rowId) {
+        if (!isKey(rowId)) {
+            return null;
+        }
+
+        int start = rowId.charAt(0) == '-' ? 1 : 0;
+        boolean canonical = rowId.charAt(0) != '+' && (rowId.charAt(start) != '0' || rowId.length() == 1);
+
+        return canonical ? rowId : Long.toString(Long.parseLong(rowId));
+    }
+
+    /*
+     * Check the row ID is an optionally signed decimal long, short IDs are checked without a failing parse
+     */
+    static boolean isKey(String rowId) {
+        int length = rowId.length();
+        int start = length > 0 && (rowId.charAt(0) == '-' || rowId.charAt(0) == '+') ? 1 : 0;
+        if (length == start || length - start > 19) {
+            return false;
+        }
+        for (int i = start; i < length; i++) {
+            char c = rowId.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+
+        if (length - start < 19) {
+            return true;
+        }
+
+        // 19 digits may overflow a long
+        try {
+            Long.parseLong(rowId);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
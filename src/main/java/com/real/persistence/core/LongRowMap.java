@@ -0,0 +1,351 @@
+package com.real.persistence.core;
+
+import com.real.util.HashUtil;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BinaryOperator;
+
+/**
+ * Concurrent map of rows by numeric row ID, keys are kept as primitive longs without boxing.
+ * The map is split into segments by the key hash and every segment is a linear probing table guarded by its own
+ * stamped lock. Writers of the same segment wait for each other, readers probe the table optimistically and take
+ * the read lock only if a write raced the probe, so lookups don't allocate.
+ */
+public final class LongRowMap {
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    private final Segment[] segments;
+
+    /**
+     * Empty map
+     */
+    public LongRowMap() {
+        this(0);
+    }
+
+    /**
+     * Empty map sized for the expected rows
+     *
+     * @param expectedRows - expected count of rows
+     */
+    public LongRowMap(int expectedRows) {
+        this.segments = new Segment[SEGMENTS];
+        int capacity = segmentCapacity(expectedRows);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * Find row by numeric row ID
+     *
+     * @param key - numeric row ID
+     * @return Row - stored row or null if not found
+     */
+    public Row get(long key) {
+        long hash = HashUtil.mix64(key);
+        Segment segment = segment(hash);
+        StampedLock lock = segment.lock;
+        long stamp = lock.tryOptimisticRead();
+        Row row = segment.slots.find(key, hash);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                row = segment.slots.find(key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return row;
+    }
+
+    /**
+     * Store row, replacing the stored row with the same ID
+     *
+     * @param key - numeric row ID
+     * @param row - stored row
+     * @return Row - replaced row or null if the ID wasn't stored
+     */
+    public Row put(long key, @NonNull final Row row) {
+        return merge(key, row, (stored, inserted) -> inserted);
+    }
+
+    /**
+     * Store row or merge it into the stored row with the same ID, the merge runs under the segment lock
+     *
+     * @param key - numeric row ID
+     * @param row - inserted row
+     * @param merger - merge function of the stored and inserted rows
+     * @return Row - replaced row or null if the ID wasn't stored
+     */
+    public Row merge(long key, @NonNull final Row row, @NonNull final BinaryOperator<Row> merger) {
+        long hash = HashUtil.mix64(key);
+        Segment segment = segment(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.merge(key, hash, row, merger);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove row by numeric row ID
+     *
+     * @param key - numeric row ID
+     * @return Row - removed row or null if not found
+     */
+    public Row remove(long key) {
+        long hash = HashUtil.mix64(key);
+        Segment segment = segment(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.remove(key, hash);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Count of stored rows
+     *
+     * @return int - rows count
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+
+        return size;
+    }
+
+    /**
+     * Check whether the map has no rows
+     *
+     * @return boolean - true if no row is stored
+     */
+    public boolean isEmpty() {
+        for (Segment segment : segments) {
+            if (segment.size > 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Grow the segments to hold the expected rows without rehashing
+     *
+     * @param expectedRows - expected count of rows
+     */
+    public void reserve(int expectedRows) {
+        int capacity = segmentCapacity(expectedRows);
+        for (Segment segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                if (segment.slots.keys.length < capacity) {
+                    segment.resize(capacity);
+                }
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Remove all rows, the segments keep their capacity
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                segment.slots = new Slots(segment.slots.keys.length);
+                segment.size = 0;
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Weakly consistent view of the stored rows, every segment is copied when the iteration reaches it
+     *
+     * @return Iterable<Row> - stored rows
+     */
+    public Iterable<Row> values() {
+        return () -> new Iterator<>() {
+            private int next;
+            private Iterator<Row> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && next < SEGMENTS) {
+                    current = segments[next++].rows().iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Row next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    private Segment segment(long hash) {
+        return segments[(int) (hash >>> (Long.SIZE - SEGMENT_BITS))];
+    }
+
+    /*
+     * Power of two segment capacity holding the segment share of the rows below 3/4 load
+     */
+    private static int segmentCapacity(int expectedRows) {
+        long rows = (Math.max(0, expectedRows) + SEGMENTS - 1) / SEGMENTS;
+        long capacity = Math.max(MIN_SEGMENT_CAPACITY, (rows << 2) / 3 + 1);
+
+        return (int) Math.min(1 << 30, Long.highestOneBit(capacity - 1) << 1);
+    }
+
+    /*
+     * Linear probing table, replaced as a whole on resize so an optimistic probe always reads matching arrays
+     */
+    private static final class Slots {
+        private final long[] keys;
+        private final Row[] rows;
+        private final int mask;
+
+        private Slots(int capacity) {
+            this.keys = new long[capacity];
+            this.rows = new Row[capacity];
+            this.mask = capacity - 1;
+        }
+
+        /*
+         * Probe bounded by the capacity, so a probe racing a write ends even if it reads a torn table
+         */
+        private Row find(long key, long hash) {
+            for (int slot = (int) hash & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+                Row row = rows[slot];
+                if (row == null) {
+                    return null;
+                }
+                if (keys[slot] == key) {
+                    return row;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    private static final class Segment {
+        private final StampedLock lock;
+        private volatile Slots slots;
+        /*
+         * Count of stored rows, written under the write lock
+         */
+        private volatile int size;
+
+        private Segment(int capacity) {
+            this.lock = new StampedLock();
+            this.slots = new Slots(capacity);
+        }
+
+        private Row merge(long key, long hash, Row row, BinaryOperator<Row> merger) {
+            if ((size + 1) << 2 > slots.keys.length * 3) {
+                resize(slots.keys.length << 1);
+            }
+
+            Slots table = slots;
+            int slot = (int) hash & table.mask;
+            while (table.rows[slot] != null) {
+                if (table.keys[slot] == key) {
+                    Row stored = table.rows[slot];
+                    table.rows[slot] = merger.apply(stored, row);
+                    return stored;
+                }
+                slot = (slot + 1) & table.mask;
+            }
+            table.keys[slot] = key;
+            table.rows[slot] = row;
+            size++;
+
+            return null;
+        }
+
+        /*
+         * Remove the key and shift the following entries of the probe sequence back into the hole
+         */
+        private Row remove(long key, long hash) {
+            Slots table = slots;
+            int mask = table.mask;
+            int slot = (int) hash & mask;
+            while (table.rows[slot] != null && table.keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            Row removed = table.rows[slot];
+            if (removed == null) {
+                return null;
+            }
+
+            int hole = slot;
+            for (int i = (slot + 1) & mask; table.rows[i] != null; i = (i + 1) & mask) {
+                int home = (int) HashUtil.mix64(table.keys[i]) & mask;
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    table.keys[hole] = table.keys[i];
+                    table.rows[hole] = table.rows[i];
+                    hole = i;
+                }
+            }
+            table.rows[hole] = null;
+            size--;
+
+            return removed;
+        }
+
+        private void resize(int capacity) {
+            Slots old = slots;
+            Slots table = new Slots(capacity);
+            for (int i = 0; i < old.rows.length; i++) {
+                if (old.rows[i] != null) {
+                    int slot = (int) HashUtil.mix64(old.keys[i]) & table.mask;
+                    while (table.rows[slot] != null) {
+                        slot = (slot + 1) & table.mask;
+                    }
+                    table.keys[slot] = old.keys[i];
+                    table.rows[slot] = old.rows[i];
+                }
+            }
+            slots = table;
+        }
+
+        private List<Row> rows() {
+            long stamp = lock.readLock();
+            try {
+                List<Row> rows = new ArrayList<>(size);
+                for (Row row : slots.rows) {
+                    if (row != null) {
+                        rows.add(row);
+                    }
+                }
+                return rows;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.real.persistence.core;
+
+/**
+ * Listener of table mutations. A mutation is encoded before the table takes the lock of the mutated row,
+ * the returned entry is appended under the lock before the mutation is applied, so the mutations of a row
+ * are logged in the order they're applied while the lock is held only for the append.
+ */
+public interface MutationLog {
+
+    /**
+     * Row records are inserted
+     *
+     * @param tableName - mutated table name
+     * @param row - inserted row
+     * @return Entry - encoded mutation
+     */
+    Entry inserted(String tableName, Row row);
+
+    /**
+     * Row is deleted by ID
+     *
+     * @param tableName - mutated table name
+     * @param rowId - deleted row ID
+     * @return Entry - encoded mutation
+     */
+    Entry deleted(String tableName, String rowId);
+
+    /**
+     * All table rows are deleted
+     *
+     * @param tableName - mutated table name
+     * @return Entry - encoded mutation
+     */
+    Entry cleared(String tableName);
+
+    /**
+     * Encoded mutation waiting for its place in the log
+     */
+    @FunctionalInterface
+    interface Entry {
+
+        /**
+         * Append the mutation to the log, called once under the lock of the mutated row
+         */
+        void append();
+    }
+}
@@ -0,0 +1,535 @@
+package com.real.persistence.core;
+
+import lombok.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.real.util.BinaryCodec.readString;
+import static com.real.util.BinaryCodec.readVarInt;
+import static com.real.util.BinaryCodec.toDateTime;
+import static com.real.util.BinaryCodec.toEpochMilli;
+import static com.real.util.BinaryCodec.writeString;
+import static com.real.util.BinaryCodec.writeVarInt;
+
+/**
+ * Off-heap storage of table records.
+ * Rows are encoded into direct memory slabs and found by an open-addressing index of row ID hashes and slab
+ * addresses, so the stored records are out of the garbage collector's view and Row instances are only
+ * materialized on read. Appending records to a stored row writes a new version of the row,
+ * space of replaced and deleted versions is reclaimed by compaction once it's the larger part of the slabs.
+ *
+ * <pre>
+ * entry  := length keyLength rowId createdAt updatedAt recordCount record*
+ * record := fieldCount (columnRef value)*
+ * </pre>
+ * Lengths are fixed size ints so the index compares row IDs in place, counts and column references
+ * are unsigned varints, values are UTF-8 strings prefixed by their length.
+ */
+public class OffHeapStore implements StorageEngine {
+    private static final int DEFAULT_SLAB_SIZE = 1 << 20;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int ENTRY_HEADER_SIZE = Integer.BYTES;
+    private static final long EMPTY = -1L;
+
+    private final int slabSize;
+    private final ReadWriteLock lock;
+    /*
+     * Column names referenced from the encoded records by their position
+     */
+    private final List<String> columns;
+    private final Map<String, Integer> columnRefs;
+    /*
+     * Encoding buffer of the inserted row, guarded by the write lock
+     */
+    private final EntryBuffer entry;
+    private final DataOutputStream out;
+    private List<ByteBuffer> slabs;
+    private ByteBuffer slab;
+    private int[] hashes;
+    /*
+     * Slab index in the high and entry offset in the low half, EMPTY for free slots
+     */
+    private long[] addresses;
+    private int size;
+    private long records;
+    private long usedBytes;
+    private long garbageBytes;
+    private long allocatedBytes;
+
+    /**
+     * Non parameterized constructor.
+     * Initializing store with 1 MiB slabs
+     */
+    public OffHeapStore() {
+        this(DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * Parameterised constructor
+     *
+     * @param slabSize - size of direct memory slab in bytes, rows larger than the slab get a slab of their own
+     */
+    public OffHeapStore(int slabSize) {
+        if (slabSize <= 0) {
+            throw new IllegalArgumentException("Slab size must be positive");
+        }
+        this.slabSize = slabSize;
+        this.lock = new ReentrantReadWriteLock();
+        this.columns = new ArrayList<>();
+        this.columnRefs = new HashMap<>();
+        this.entry = new EntryBuffer();
+        this.out = new DataOutputStream(entry);
+        reset();
+    }
+
+    @Override
+    public StorageType getType() {
+        return StorageType.OFF_HEAP;
+    }
+
+    @Override
+    public void insert(@NonNull final Row row) {
+        store(row, true);
+    }
+
+    @Override
+    public void put(@NonNull final Row row) {
+        store(row, false);
+    }
+
+    /**
+     * Grow the key index to hold the expected rows without rehashing
+     *
+     * @param rows - expected count of rows
+     */
+    @Override
+    public void reserve(int rows) {
+        // the index is grown when it's half full
+        int capacity = (int) Math.min(1 << 30, Long.highestOneBit(Math.max(INITIAL_CAPACITY, 2L * rows - 1)) << 1);
+        lock.writeLock().lock();
+        try {
+            if (capacity > addresses.length) {
+                rehash(capacity);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Row delete(@NonNull final String rowId) {
+        final byte[] key = rowId.getBytes(StandardCharsets.UTF_8);
+        final int hash = hash(rowId);
+        lock.writeLock().lock();
+        try {
+            int slot = slot(key, hash);
+            long address = addresses[slot];
+            if (address == EMPTY) {
+                return null;
+            }
+            Row row = materialize(address);
+            garbageBytes += entrySize(address);
+            records -= row.getRowValues().size();
+            size--;
+            removeSlot(slot);
+            compactIfNeeded();
+
+            return row;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * cleanup store, the slabs are released once they are garbage collected
+     */
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return records;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int rowCount() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Row find(@NonNull final String rowId) {
+        final byte[] key = rowId.getBytes(StandardCharsets.UTF_8);
+        final int hash = hash(rowId);
+        lock.readLock().lock();
+        try {
+            long address = addresses[slot(key, hash)];
+            return address == EMPTY ? null : materialize(address);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(@NonNull final String rowId) {
+        final byte[] key = rowId.getBytes(StandardCharsets.UTF_8);
+        final int hash = hash(rowId);
+        lock.readLock().lock();
+        try {
+            return addresses[slot(key, hash)] != EMPTY;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Materialize all rows
+     *
+     * @return List<Row> - all rows
+     */
+    @Override
+    public List<Row> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Row> result = new ArrayList<>(size);
+            for (long address : addresses) {
+                if (address != EMPTY) {
+                    result.add(materialize(address));
+                }
+            }
+
+            return Collections.unmodifiableList(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return allocatedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Write new version of the row, appending the records of the stored version if requested
+     */
+    private void store(Row row, boolean append) {
+        final byte[] key = row.getRowId().getBytes(StandardCharsets.UTF_8);
+        final int hash = hash(row.getRowId());
+        lock.writeLock().lock();
+        try {
+            int slot = slot(key, hash);
+            long previous = addresses[slot];
+            int length = encode(key, row, append ? previous : EMPTY);
+            long address = allocate(length);
+            slab.put(entry.bytes(), 0, length);
+
+            if (previous == EMPTY) {
+                hashes[slot] = hash;
+                addresses[slot] = address;
+                if (++size << 1 > addresses.length) {
+                    rehash(addresses.length << 1);
+                }
+            } else {
+                if (!append) {
+                    records -= recordCount(previous);
+                }
+                addresses[slot] = address;
+                garbageBytes += entrySize(previous);
+            }
+            records += row.getRowValues().size();
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Slot of the row ID, or the free slot where the row ID belongs if it's not stored
+     */
+    private int slot(byte[] key, int hash) {
+        int mask = addresses.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            long address = addresses[slot];
+            if (address == EMPTY || hashes[slot] == hash && keyEquals(address, key)) {
+                return slot;
+            }
+        }
+    }
+
+    private boolean keyEquals(long address, byte[] key) {
+        ByteBuffer buffer = slabs.get(slabIndex(address));
+        int position = offset(address) + ENTRY_HEADER_SIZE;
+        if (buffer.getInt(position) != key.length) {
+            return false;
+        }
+        position += Integer.BYTES;
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(position + i) != key[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * Backward shift deletion, following entries of the probe sequence are moved into the freed slot,
+     * so lookups never need tombstones
+     */
+    private void removeSlot(int slot) {
+        int mask = addresses.length - 1;
+        int hole = slot;
+        for (int i = (slot + 1) & mask; addresses[i] != EMPTY; i = (i + 1) & mask) {
+            int home = hashes[i] & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                addresses[hole] = addresses[i];
+                hashes[hole] = hashes[i];
+                hole = i;
+            }
+        }
+        addresses[hole] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldHashes = hashes;
+        long[] oldAddresses = addresses;
+        hashes = new int[capacity];
+        addresses = new long[capacity];
+        Arrays.fill(addresses, EMPTY);
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldAddresses.length; i++) {
+            if (oldAddresses[i] != EMPTY) {
+                int slot = oldHashes[i] & mask;
+                while (addresses[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                addresses[slot] = oldAddresses[i];
+            }
+        }
+    }
+
+    /*
+     * Encode row into the entry buffer, records of the previous row version are copied in front of the new ones
+     */
+    private int encode(byte[] key, Row row, long previous) {
+        try {
+            entry.reset();
+            out.writeInt(0);
+            out.writeInt(key.length);
+            out.write(key);
+
+            long createdAt = toEpochMilli(row.getCreatedAt());
+            long updatedAt = toEpochMilli(row.getUpdatedAt());
+            int recordCount = row.getRowValues().size();
+            ByteBuffer previousRecords = null;
+            if (previous != EMPTY) {
+                previousRecords = view(previous);
+                int keyLength = previousRecords.getInt();
+                previousRecords.position(previousRecords.position() + keyLength);
+                createdAt = Math.min(createdAt, previousRecords.getLong());
+                updatedAt = Math.max(updatedAt, previousRecords.getLong());
+                recordCount += readVarInt(previousRecords);
+            }
+            out.writeLong(createdAt);
+            out.writeLong(updatedAt);
+            writeVarInt(out, recordCount);
+            if (previousRecords != null) {
+                byte[] bytes = new byte[previousRecords.remaining()];
+                previousRecords.get(bytes);
+                out.write(bytes);
+            }
+            for (Map<String, String> record : row.getRowValues()) {
+                writeVarInt(out, record.size());
+                for (Map.Entry<String, String> field : record.entrySet()) {
+                    writeVarInt(out, columnRef(field.getKey()));
+                    writeString(out, field.getValue());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int length = entry.size();
+        ByteBuffer.wrap(entry.bytes()).putInt(0, length - ENTRY_HEADER_SIZE);
+
+        return length;
+    }
+
+    private Row materialize(long address) {
+        ByteBuffer in = view(address);
+        byte[] key = new byte[in.getInt()];
+        in.get(key);
+        long createdAt = in.getLong();
+        long updatedAt = in.getLong();
+        int recordCount = readVarInt(in);
+
+        ConcurrentLinkedQueue<ConcurrentHashMap<String, String>> rowValues = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < recordCount; i++) {
+            int fieldCount = readVarInt(in);
+            ConcurrentHashMap<String, String> record = new ConcurrentHashMap<>(fieldCount << 1);
+            for (int j = 0; j < fieldCount; j++) {
+                record.put(columns.get(readVarInt(in)), readString(in));
+            }
+            rowValues.add(record);
+        }
+
+        return Row.builder()
+                .rowId(new String(key, StandardCharsets.UTF_8))
+                .rowValues(rowValues)
+                .createdAt(toDateTime(createdAt))
+                .updatedAt(toDateTime(updatedAt))
+                .build();
+    }
+
+    /*
+     * Buffer positioned after the entry length and limited to the entry end
+     */
+    private ByteBuffer view(long address) {
+        ByteBuffer buffer = slabs.get(slabIndex(address)).duplicate();
+        int position = offset(address);
+        buffer.limit(position + ENTRY_HEADER_SIZE + buffer.getInt(position));
+        buffer.position(position + ENTRY_HEADER_SIZE);
+
+        return buffer;
+    }
+
+    private int recordCount(long address) {
+        ByteBuffer in = view(address);
+        int keyLength = in.getInt();
+        in.position(in.position() + keyLength + 2 * Long.BYTES);
+
+        return readVarInt(in);
+    }
+
+    private int entrySize(long address) {
+        return ENTRY_HEADER_SIZE + slabs.get(slabIndex(address)).getInt(offset(address));
+    }
+
+    /*
+     * Address of the next entry of the given length in the current slab, a new slab is allocated if it doesn't fit
+     */
+    private long allocate(int length) {
+        if (slab == null || slab.remaining() < length) {
+            slab = ByteBuffer.allocateDirect(Math.max(slabSize, length));
+            slabs.add(slab);
+            allocatedBytes += slab.capacity();
+        }
+        usedBytes += length;
+
+        return ((long) (slabs.size() - 1) << 32) | slab.position();
+    }
+
+    /*
+     * Copy live entries into new slabs when replaced and deleted entries take more than half of the used space
+     */
+    private void compactIfNeeded() {
+        if (garbageBytes < slabSize || garbageBytes < usedBytes >> 1) {
+            return;
+        }
+
+        List<ByteBuffer> oldSlabs = slabs;
+        slabs = new ArrayList<>();
+        slab = null;
+        usedBytes = 0;
+        garbageBytes = 0;
+        allocatedBytes = 0;
+        for (int i = 0; i < addresses.length; i++) {
+            long address = addresses[i];
+            if (address != EMPTY) {
+                ByteBuffer source = oldSlabs.get(slabIndex(address)).duplicate();
+                int position = offset(address);
+                source.limit(position + ENTRY_HEADER_SIZE + source.getInt(position)).position(position);
+                addresses[i] = allocate(source.remaining());
+                slab.put(source);
+            }
+        }
+    }
+
+    private int columnRef(String column) {
+        Integer ref = columnRefs.get(column);
+        if (ref == null) {
+            ref = columns.size();
+            columns.add(column);
+            columnRefs.put(column, ref);
+        }
+
+        return ref;
+    }
+
+    private void reset() {
+        slabs = new ArrayList<>();
+        slab = null;
+        hashes = new int[INITIAL_CAPACITY];
+        addresses = new long[INITIAL_CAPACITY];
+        Arrays.fill(addresses, EMPTY);
+        size = 0;
+        records = 0;
+        usedBytes = 0;
+        garbageBytes = 0;
+        allocatedBytes = 0;
+    }
+
+    private static int hash(String rowId) {
+        int hash = rowId.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int slabIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    /*
+     * Byte array output exposing its buffer, so the encoded entry is copied only into the slab
+     */
+    private static final class EntryBuffer extends ByteArrayOutputStream {
+        EntryBuffer() {
+            super(256);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+    }
+}
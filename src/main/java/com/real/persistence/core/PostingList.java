@@ -0,0 +1,74 @@
+package com.real.persistence.core;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Posting list of the row IDs of an index key.
+ * Tables keyed by numeric row IDs keep them as sorted primitive longs, other tables keep the row ID strings.
+ * Changes are made by the index under the lock of the key and return the list to keep for the key.
+ */
+abstract class PostingList {
+
+    /*
+     * Empty posting list of the table key type
+     */
+    static PostingList empty(boolean numericIds) {
+        return numericIds ? LongIds.EMPTY : new RowIdSet();
+    }
+
+    /**
+     * Count of row IDs
+     *
+     * @return int - list size
+     */
+    public abstract int size();
+
+    /**
+     * Row IDs of the list
+     *
+     * @return Set<String> - unmodifiable view of the row IDs
+     */
+    public abstract Set<String> rowIds();
+
+    /*
+     * List with the row ID added
+     */
+    abstract PostingList add(String rowId);
+
+    /*
+     * List without the row ID, null if no row ID is left
+     */
+    abstract PostingList remove(String rowId);
+
+    /*
+     * Row ID strings in a concurrent set, changed in place
+     */
+    private static final class RowIdSet extends PostingList {
+        private final Set<String> ids = ConcurrentHashMap.newKeySet();
+        private final Set<String> view = Collections.unmodifiableSet(ids);
+
+        @Override
+        public int size() {
+            return ids.size();
+        }
+
+        @Override
+        public Set<String> rowIds() {
+            return view;
+        }
+
+        @Override
+        PostingList add(String rowId) {
+            ids.add(rowId);
+            return this;
+        }
+
+        @Override
+        PostingList remove(String rowId) {
+            ids.remove(rowId);
+            return ids.isEmpty() ? null : this;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.real.persistence.core;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NonNull;
+import lombok.Singular;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Execution plan of table query specification
+ */
+@Data
+@Builder
+public class QueryPlan {
+    /**
+     * Access path of the plan
+     */
+    public enum Access {
+        /*
+         * Nothing can match, the table isn't touched
+         */
+        EMPTY,
+        /*
+         * Posting list of a single index is filtered by the residual predicates
+         */
+        INDEX_LOOKUP,
+        /*
+         * Posting lists of several indexes are intersected, starting from the shortest one
+         */
+        INDEX_INTERSECTION,
+        /*
+         * Every row is filtered by the residual predicates
+         */
+        FULL_SCAN,
+        /*
+         * Every column of the residual predicates is scanned one at a time
+         */
+        COLUMN_SCAN
+    }
+
+    @NonNull
+    private final Access access;
+    @Singular
+    private final List<IndexProbe> probes;
+    @NonNull
+    private final Map<String, String> residual;
+    private final long estimatedRows;
+
+    /**
+     * Human readable description of the plan
+     *
+     * @return String - plan description
+     */
+    public String explain() {
+        StringJoiner plan = new StringJoiner(" -> ");
+        if (!probes.isEmpty()) {
+            StringJoiner lookups = new StringJoiner(" AND ", access + "[", "]");
+            probes.forEach(probe -> lookups.add(probe.toString()));
+            plan.add(lookups.toString());
+        } else {
+            plan.add(access.name());
+        }
+        if (access != Access.EMPTY && !residual.isEmpty()) {
+            plan.add("FILTER" + residual.keySet());
+        }
+
+        return plan + " (estimated rows: " + estimatedRows + ")";
+    }
+
+    /**
+     * Index lookup step of the plan
+     */
+    @Data
+    @AllArgsConstructor
+    public static class IndexProbe {
+        private final String indexName;
+        private final String key;
+        private final Set<String> rowIds;
+
+        @Override
+        public String toString() {
+            return indexName + "='" + key + "' (" + rowIds.size() + " rows)";
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.real.persistence.core;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query planner of table query specification.
+ * An index is usable when it answers the query: the query fixes all the index columns and all the filter columns
+ * to values the index filter accepts, so no record matching the query was left out of the index.
+ * The shortest posting list drives the plan, posting lists of the other usable indexes are intersected with it.
+ * Posting lists hold row IDs and a row has many records, so rows in several posting lists may match every probe
+ * by a different record. The residual filter is the whole query unless a single exact index covers the query.
+ */
+public final class QueryPlanner {
+
+    private QueryPlanner() {
+    }
+
+    /**
+     * Build execution plan of query specification
+     *
+     * @param indexes - table secondary indexes
+     * @param querySpec - Specification Map with table column name as KEY and expected VALUE
+     * @param columnar - table records are stored column-at-a-time
+     * @param tableSize - count of records in table
+     * @return QueryPlan - execution plan
+     */
+    public static QueryPlan plan(@NonNull final Collection<SecondaryIndex> indexes,
+                                 @NonNull final Map<String, String> querySpec, boolean columnar, long tableSize) {
+        List<QueryPlan.IndexProbe> probes = new ArrayList<>();
+        boolean covered = false;
+        for (SecondaryIndex index : indexes) {
+            IndexDefinition definition = index.getDefinition();
+            String key = index.answers(querySpec) ? index.key(querySpec) : null;
+            if (key == null) {
+                continue;
+            }
+
+            probes.add(new QueryPlan.IndexProbe(definition.getName(), key, index.find(key)));
+            // joined multi-column keys and case insensitive keys can match more than the query
+            covered |= querySpec.size() == 1 && definition.getColumns().size() == 1 && !definition.isCaseInsensitive();
+        }
+        Map<String, String> residual = covered && probes.size() == 1 ? Map.of() : new HashMap<>(querySpec);
+        probes.sort(Comparator.comparingInt(probe -> probe.getRowIds().size()));
+
+        if (probes.isEmpty()) {
+            return QueryPlan.builder()
+                    .access(columnar ? QueryPlan.Access.COLUMN_SCAN : QueryPlan.Access.FULL_SCAN)
+                    .residual(residual)
+                    .estimatedRows(tableSize)
+                    .build();
+        }
+
+        int estimatedRows = probes.get(0).getRowIds().size();
+        return QueryPlan.builder()
+                .access(estimatedRows == 0 ? QueryPlan.Access.EMPTY
+                        : probes.size() == 1 ? QueryPlan.Access.INDEX_LOOKUP : QueryPlan.Access.INDEX_INTERSECTION)
+                .probes(probes)
+                .residual(residual)
+                .estimatedRows(estimatedRows)
+                .build();
+    }
+
+    /**
+     * Plan of query which can't match any record
+     *
+     * @param querySpec - Specification Map with table column name as KEY and expected VALUE
+     * @return QueryPlan - empty execution plan
+     */
+    public static QueryPlan empty(@NonNull final Map<String, String> querySpec) {
+        return QueryPlan.builder()
+                .access(QueryPlan.Access.EMPTY)
+                .residual(querySpec)
+                .estimatedRows(0)
+                .build();
+    }
+}
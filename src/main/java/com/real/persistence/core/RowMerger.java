@@ -0,0 +1,77 @@
+package com.real.persistence.core;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Merge function of a row inserted with an already stored row ID.
+ * The table calls the merger under the lock of the row ID, so the merge is atomic for the row
+ * and rows with other IDs are merged in parallel.
+ */
+@FunctionalInterface
+public interface RowMerger {
+    /*
+     * Append the inserted records to the stored row
+     */
+    RowMerger APPEND = new RowMerger() {
+        @Override
+        public Row merge(Row stored, Row inserted) {
+            stored.getRowValues().addAll(inserted.getRowValues());
+            return stored;
+        }
+
+        @Override
+        public boolean isAppend() {
+            return true;
+        }
+    };
+
+    /*
+     * Replace the stored row by the inserted one
+     */
+    RowMerger REPLACE = (stored, inserted) -> inserted;
+
+    /*
+     * Append only the inserted records which the stored row doesn't have yet, so repeated records don't grow the row
+     */
+    RowMerger DISTINCT = (stored, inserted) -> {
+        Set<Map<String, String>> records = new HashSet<>(stored.getRowValues());
+        ConcurrentLinkedQueue<ConcurrentHashMap<String, String>> rowValues =
+                new ConcurrentLinkedQueue<>(stored.getRowValues());
+        for (ConcurrentHashMap<String, String> record : inserted.getRowValues()) {
+            if (records.add(record)) {
+                rowValues.add(record);
+            }
+        }
+
+        return Row.builder()
+                .rowId(stored.getRowId())
+                .rowValues(rowValues)
+                .createdAt(stored.getCreatedAt())
+                .updatedAt(inserted.getUpdatedAt())
+                .build();
+    };
+
+    /**
+     * Merge inserted row into the stored one, the stored row may be modified and returned as the result
+     * only if the merger is an append
+     *
+     * @param stored - row stored with the same ID
+     * @param inserted - inserted row
+     * @return Row - row to store
+     */
+    Row merge(Row stored, Row inserted);
+
+    /**
+     * Append mergers only add the inserted records, so the storage engine appends them in place
+     * and only the inserted records are indexed
+     *
+     * @return boolean - true if the merged row is the stored row followed by the inserted records
+     */
+    default boolean isAppend() {
+        return false;
+    }
+}
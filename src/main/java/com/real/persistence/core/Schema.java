@@ -4,7 +4,11 @@ import lombok.Data;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -18,6 +22,7 @@ import java.util.concurrent.ConcurrentHashMap;
 public class Schema {
     private String name;
     private Map<String, Table> tableMap;
+    private MutationLog mutationLog;
 
     /**
      * Parameterised constructor for initializing schema with name
@@ -36,16 +41,124 @@ public class Schema {
      * @param tableMetadata - table columns types metadata information
      */
     public void createTable(@NonNull final String tableName, Map<String, TableMetadata> tableMetadata) {
+        createTable(tableName, tableMetadata, StorageType.HEAP);
+    }
+
+    /**
+     * Table initialization as database schema member
+     *
+     * @param tableName - unique name of table
+     * @param tableMetadata - table columns types metadata information
+     * @param storageType - storage engine of the table records
+     */
+    public void createTable(@NonNull final String tableName, Map<String, TableMetadata> tableMetadata,
+                            @NonNull final StorageType storageType) {
+        createTable(tableName, tableMetadata, storageType, RowMerger.APPEND);
+    }
+
+    /**
+     * Table initialization as database schema member
+     *
+     * @param tableName - unique name of table
+     * @param tableMetadata - table columns types metadata information
+     * @param storageType - storage engine of the table records
+     * @param merger - merge function of rows inserted with an already stored row ID
+     */
+    public void createTable(@NonNull final String tableName, Map<String, TableMetadata> tableMetadata,
+                            @NonNull final StorageType storageType, @NonNull final RowMerger merger) {
+        createTable(tableName, tableMetadata, storageType, merger, TableMetadata.STRING);
+    }
+
+    /**
+     * Table initialization as database schema member
+     *
+     * @param tableName - unique name of table
+     * @param tableMetadata - table columns types metadata information
+     * @param storageType - storage engine of the table records
+     * @param merger - merge function of rows inserted with an already stored row ID
+     * @param keyType - type of the row IDs, numeric row IDs are kept as longs
+     */
+    public void createTable(@NonNull final String tableName, Map<String, TableMetadata> tableMetadata,
+                            @NonNull final StorageType storageType, @NonNull final RowMerger merger,
+                            @NonNull final TableMetadata keyType) {
         if (tableMap.containsKey(tableName)) {
             log.error("A table already exists with the given name {}", tableName);
         } else {
-            tableMap.put(tableName, Table.builder()
-                    .tableName(tableName)
-                    .tableMetadata(tableMetadata)
-                    .rows(new ConcurrentHashMap<>())
-                    .indexes(new HashMap<>())
-                    .build());
-            log.debug("Table {} successfully created", tableName);
+            Table table = Table.create(tableName, tableMetadata, storageType, keyType);
+            table.setMerger(merger);
+            attach(table);
+            log.debug("Table {} successfully created with {} storage", tableName, storageType);
+        }
+    }
+
+    /**
+     * Attach mutation log to all tables of the schema, including tables created or restored later
+     *
+     * @param mutationLog - log of table mutations, null detaches the current log
+     */
+    public void setMutationLog(final MutationLog mutationLog) {
+        this.mutationLog = mutationLog;
+        tableMap.values().forEach(table -> table.setMutationLog(mutationLog));
+    }
+
+    /**
+     * Write all tables with their metadata, dictionaries and index contents to binary snapshot file
+     *
+     * @param path - snapshot file path
+     * @exception IOException - file writing exception
+     */
+    public void snapshot(@NonNull final Path path) throws IOException {
+        snapshot(path, LogPosition.NONE);
+    }
+
+    /**
+     * Write all tables to binary snapshot file with the position of the mutation log the tables include,
+     * writers should be blocked by withoutWriters, so no logged mutation is missing or included twice
+     *
+     * @param path - snapshot file path
+     * @param logPosition - position of the mutation log after the last mutation the tables include
+     * @exception IOException - file writing exception
+     */
+    public void snapshot(@NonNull final Path path, @NonNull final LogPosition logPosition) throws IOException {
+        SchemaSnapshot.write(this, path, logPosition);
+        log.debug("Schema {} snapshot written to {} at log position {}", name, path, logPosition);
+    }
+
+    /**
+     * Restore tables from binary snapshot file, tables with the same names are replaced.
+     * Restored indexes are taken over by the matching createIndex declarations, restored tables append merged rows.
+     *
+     * @param path - snapshot file path
+     * @return LogPosition - position of the mutation log the restored tables include, NONE if it isn't known
+     * @exception IOException - file reading exception or corrupted snapshot
+     */
+    public LogPosition restore(@NonNull final Path path) throws IOException {
+        return SchemaSnapshot.read(this, path);
+    }
+
+    /**
+     * Run action while no row of any schema table is written, e.g. a checkpoint snapshotting the tables
+     * and truncating the mutation log. The row locks of the tables are taken in table name order,
+     * writers wait until the action completes. Bulk loads index their rows without the row locks,
+     * so they should complete before the action.
+     *
+     * @param action - action run without concurrent writers
+     * @exception IOException - action exception
+     */
+    public void withoutWriters(@NonNull final Action action) throws IOException {
+        List<Table> tables = new ArrayList<>(tableMap.values());
+        tables.sort(Comparator.comparing(Table::getTableName));
+        int locked = 0;
+        try {
+            for (Table table : tables) {
+                table.lockWriters();
+                locked++;
+            }
+            action.run();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                tables.get(i).unlockWriters();
+            }
         }
     }
 
@@ -55,11 +168,35 @@ public class Schema {
      * @param tableName - unique name of table
      */
     public void dropTable(@NonNull final String tableName) {
-        if (tableMap.containsKey(tableName)) {
-            tableMap.remove(tableName);
+        Table table = tableMap.remove(tableName);
+        if (table != null) {
+            table.getMetrics().unregister();
             log.debug("Table {} successfully dropped", tableMap);
         } else {
             log.debug("Table {} not exists", tableName);
         }
     }
+
+    /**
+     * Schema action which may fail on IO
+     */
+    @FunctionalInterface
+    public interface Action {
+
+        /**
+         * Run the action
+         *
+         * @exception IOException - action exception
+         */
+        void run() throws IOException;
+    }
+
+    /*
+     * Add table to schema with the schema mutation log and registered table metrics, replacing table with the same name
+     */
+    void attach(Table table) {
+        table.setMutationLog(mutationLog);
+        table.setMetrics(TableMetrics.register(table));
+        tableMap.put(table.getTableName(), table);
+    }
 }
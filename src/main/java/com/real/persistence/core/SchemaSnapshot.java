@@ -0,0 +1,413 @@
+package com.real.persistence.core;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+import static com.real.util.BinaryCodec.readString;
+import static com.real.util.BinaryCodec.readVarInt;
+import static com.real.util.BinaryCodec.toDateTime;
+import static com.real.util.BinaryCodec.toEpochMilli;
+import static com.real.util.BinaryCodec.writeString;
+import static com.real.util.BinaryCodec.writeVarInt;
+
+/**
+ * Binary snapshot of schema tables.
+ * The snapshot keeps table metadata, column dictionaries, rows and secondary index posting lists, so a restore
+ * rebuilds the tables without parsing CSV and without re-indexing. The file is written sequentially and restored
+ * from a single read-only mapping.
+ *
+ * <pre>
+ * file   := MAGIC VERSION createdAt logGeneration logOffset schemaName tableCount table* CRC32C
+ * table  := name storageType keyType metadata dictionaries rowCount row* indexCount index*
+ * row    := rowId createdAt updatedAt recordCount (fieldCount (columnRef value)*)*
+ * index  := name caseInsensitive columns keyCount (key postingCount rowOrdinal*)*
+ * </pre>
+ * Counts, ordinals and dictionary IDs are unsigned varints, strings are UTF-8 bytes prefixed by their length,
+ * timestamps are epoch milliseconds UTC. Posting lists refer to rows by their ordinal in the table section.
+ * The log generation and offset are the position of the write-ahead log the snapshot includes.
+ * Version 1 snapshots keep a columnar flag instead of the storage type name,
+ * tables of version 1 and 2 snapshots are keyed by row ID strings, snapshots before version 4 have no log position.
+ */
+@Slf4j
+final class SchemaSnapshot {
+    private static final int MAGIC = 0x52534E50;
+    private static final int VERSION = 4;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int CHECKSUM_SIZE = Long.BYTES;
+
+    private SchemaSnapshot() {
+    }
+
+    /**
+     * Write all schema tables to snapshot file. The file is replaced atomically once it's completely written
+     * and forced to the disk, the directory is forced after the replace, so the snapshot is durable on return.
+     * Tables shouldn't be modified while the snapshot is written.
+     *
+     * @param schema - snapshot schema
+     * @param path - snapshot file path
+     * @param logPosition - position of the mutation log the tables include
+     * @exception IOException - file writing exception
+     */
+    static void write(Schema schema, Path path, LogPosition logPosition) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        CRC32C checksum = new CRC32C();
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream file = Channels.newOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(file, checksum), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeLong(logPosition.getGeneration());
+            out.writeLong(logPosition.getOffset());
+            writeString(out, schema.getName());
+
+            List<Table> tables = new ArrayList<>(schema.getTableMap().values());
+            writeVarInt(out, tables.size());
+            for (Table table : tables) {
+                writeTable(out, table);
+            }
+            out.flush();
+            new DataOutputStream(file).writeLong(checksum.getValue());
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(path.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Restore tables from snapshot file into schema, tables with the same names are replaced
+     *
+     * @param schema - restored schema
+     * @param path - snapshot file path
+     * @return LogPosition - position of the mutation log the tables include
+     * @exception IOException - file reading exception or corrupted snapshot
+     */
+    static LogPosition read(Schema schema, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + path + " is too large to be mapped");
+            }
+            if (fileSize < 2 * Integer.BYTES + CHECKSUM_SIZE) {
+                throw new IOException("Snapshot " + path + " is truncated");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            ByteBuffer in = buffer.duplicate().limit((int) fileSize - CHECKSUM_SIZE);
+            if (in.getInt() != MAGIC) {
+                throw new IOException(path + " is not a schema snapshot");
+            }
+            int version = in.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " of " + path);
+            }
+            CRC32C checksum = new CRC32C();
+            checksum.update(in.duplicate().rewind());
+            if (checksum.getValue() != buffer.getLong((int) fileSize - CHECKSUM_SIZE)) {
+                throw new IOException("Snapshot " + path + " is corrupted, checksum mismatch");
+            }
+
+            try {
+                long createdAt = in.getLong();
+                LogPosition logPosition = version < 4 ? LogPosition.NONE : new LogPosition(in.getLong(), in.getLong());
+                String schemaName = readString(in);
+                int tableCount = readVarInt(in);
+                for (int i = 0; i < tableCount; i++) {
+                    Table table = readTable(in, version);
+                    schema.attach(table);
+                    log.debug("Table {} restored with {} records", table.getTableName(), table.count());
+                }
+                log.debug("Schema {} snapshot taken at {} restored", schemaName, toDateTime(createdAt));
+
+                return logPosition;
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("Snapshot " + path + " is truncated", e);
+            }
+        }
+    }
+
+    /*
+     * Force the directory entries to the disk, so the replaced snapshot survives a power loss.
+     * Platforms which can't open directories, e.g. Windows, make the rename durable by themselves.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (AccessDeniedException | UnsupportedOperationException e) {
+            log.debug("Directory {} of the snapshot can't be forced", directory, e);
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private static void writeTable(DataOutputStream out, Table table) throws IOException {
+        writeString(out, table.getTableName());
+        writeString(out, table.getStorageType().name());
+        writeString(out, table.getKeyType().name());
+
+        Map<String, TableMetadata> metadata = table.getTableMetadata();
+        writeVarInt(out, metadata.size());
+        for (Map.Entry<String, TableMetadata> column : metadata.entrySet()) {
+            writeString(out, column.getKey());
+            writeString(out, column.getValue().name());
+        }
+
+        Map<String, Dictionary> dictionaries = table.getDictionaries();
+        writeVarInt(out, dictionaries.size());
+        for (Map.Entry<String, Dictionary> dictionary : dictionaries.entrySet()) {
+            int size = dictionary.getValue().size();
+            writeString(out, dictionary.getKey());
+            writeVarInt(out, size);
+            for (int id = 0; id < size; id++) {
+                writeString(out, dictionary.getValue().decode(id));
+            }
+        }
+
+        List<Row> rows = new ArrayList<>();
+        table.findAll().forEach(rows::add);
+        Map<String, Integer> ordinals = new HashMap<>(rows.size() << 1);
+        Map<String, Integer> columnRefs = new HashMap<>();
+        writeVarInt(out, rows.size());
+        for (Row row : rows) {
+            // numeric posting lists return canonical decimal row IDs
+            ordinals.put(table.getKeyType().isNumeric() ? Long.toString(Long.parseLong(row.getRowId())) : row.getRowId(),
+                    ordinals.size());
+            writeString(out, row.getRowId());
+            out.writeLong(toEpochMilli(row.getCreatedAt()));
+            out.writeLong(toEpochMilli(row.getUpdatedAt()));
+            List<ConcurrentHashMap<String, String>> records = new ArrayList<>(row.getRowValues());
+            writeVarInt(out, records.size());
+            for (Map<String, String> record : records) {
+                writeRecord(out, record, dictionaries, columnRefs);
+            }
+        }
+
+        List<SecondaryIndex> indexes = new ArrayList<>(table.getIndexes().values());
+        writeVarInt(out, indexes.size());
+        for (SecondaryIndex index : indexes) {
+            writeIndex(out, index, ordinals);
+        }
+    }
+
+    /*
+     * Fields refer to columns by the order of their first appearance in the table section,
+     * a column which hasn't appeared yet is written inline. Values of dictionary encoded columns are written
+     * as dictionary ID + 1, zero means the value follows inline.
+     */
+    private static void writeRecord(DataOutputStream out, Map<String, String> record,
+                                    Map<String, Dictionary> dictionaries, Map<String, Integer> columnRefs)
+            throws IOException {
+        List<Map.Entry<String, String>> fields = new ArrayList<>(record.entrySet());
+        writeVarInt(out, fields.size());
+        for (Map.Entry<String, String> field : fields) {
+            Integer columnRef = columnRefs.get(field.getKey());
+            if (columnRef == null) {
+                writeVarInt(out, columnRefs.size());
+                writeString(out, field.getKey());
+                columnRefs.put(field.getKey(), columnRefs.size());
+            } else {
+                writeVarInt(out, columnRef);
+            }
+
+            Dictionary dictionary = dictionaries.get(field.getKey());
+            if (dictionary == null) {
+                writeString(out, field.getValue());
+                continue;
+            }
+            int id = dictionary.lookup(field.getValue());
+            writeVarInt(out, id + 1);
+            if (id == Dictionary.NOT_FOUND) {
+                writeString(out, field.getValue());
+            }
+        }
+    }
+
+    private static void writeIndex(DataOutputStream out, SecondaryIndex index, Map<String, Integer> ordinals)
+            throws IOException {
+        IndexDefinition definition = index.getDefinition();
+        writeString(out, definition.getName());
+        out.writeBoolean(definition.isCaseInsensitive());
+        writeVarInt(out, definition.getColumns().size());
+        for (String column : definition.getColumns()) {
+            writeString(out, column);
+        }
+
+        List<Map.Entry<String, PostingList>> postings = new ArrayList<>(index.postings().entrySet());
+        writeVarInt(out, postings.size());
+        for (Map.Entry<String, PostingList> posting : postings) {
+            Set<String> rowIds = posting.getValue().rowIds();
+            int[] rowOrdinals = new int[rowIds.size()];
+            int count = 0;
+            for (String rowId : rowIds) {
+                Integer ordinal = ordinals.get(rowId);
+                if (ordinal != null && count < rowOrdinals.length) {
+                    rowOrdinals[count++] = ordinal;
+                }
+            }
+            writeString(out, posting.getKey());
+            writeVarInt(out, count);
+            for (int i = 0; i < count; i++) {
+                writeVarInt(out, rowOrdinals[i]);
+            }
+        }
+    }
+
+    private static Table readTable(ByteBuffer in, int version) throws IOException {
+        String tableName = readString(in);
+        StorageType storageType;
+        if (version == 1) {
+            storageType = in.get() != 0 ? StorageType.COLUMNAR : StorageType.HEAP;
+        } else {
+            String type = readString(in);
+            try {
+                storageType = StorageType.valueOf(type);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown storage type " + type + " of table " + tableName, e);
+            }
+        }
+
+        TableMetadata keyType = TableMetadata.STRING;
+        if (version >= 3) {
+            String type = readString(in);
+            try {
+                keyType = TableMetadata.valueOf(type);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown row ID type " + type + " of table " + tableName, e);
+            }
+        }
+
+        int columnCount = readVarInt(in);
+        Map<String, TableMetadata> metadata = new LinkedHashMap<>(columnCount << 1);
+        for (int i = 0; i < columnCount; i++) {
+            String column = readString(in);
+            String type = readString(in);
+            try {
+                metadata.put(column, TableMetadata.valueOf(type));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown column type " + type + " of " + tableName + "." + column, e);
+            }
+        }
+
+        Table table = Table.create(tableName, metadata, storageType, keyType);
+        Map<String, Dictionary> dictionaries = table.getDictionaries();
+        int dictionaryCount = readVarInt(in);
+        for (int i = 0; i < dictionaryCount; i++) {
+            Dictionary dictionary = dictionaries.get(readString(in));
+            if (dictionary == null) {
+                throw new IOException("Dictionary of not dictionary encoded column in table " + tableName);
+            }
+            int size = readVarInt(in);
+            for (int id = 0; id < size; id++) {
+                dictionary.encode(readString(in));
+            }
+        }
+
+        int rowCount = readVarInt(in);
+        String[] rowIds = new String[rowCount];
+        List<String> columns = new ArrayList<>();
+        for (int i = 0; i < rowCount; i++) {
+            Row row = readRow(in, dictionaries, columns);
+            rowIds[i] = row.getRowId();
+            table.getStorage().insert(row);
+        }
+
+        int indexCount = readVarInt(in);
+        for (int i = 0; i < indexCount; i++) {
+            SecondaryIndex index = readIndex(in, rowIds, keyType.isNumeric());
+            table.getIndexes().put(index.getDefinition().getName(), index);
+        }
+        table.analyze();
+
+        return table;
+    }
+
+    private static Row readRow(ByteBuffer in, Map<String, Dictionary> dictionaries, List<String> columns)
+            throws IOException {
+        String rowId = readString(in);
+        long createdAt = in.getLong();
+        long updatedAt = in.getLong();
+        int recordCount = readVarInt(in);
+        ConcurrentLinkedQueue<ConcurrentHashMap<String, String>> records = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < recordCount; i++) {
+            int fieldCount = readVarInt(in);
+            ConcurrentHashMap<String, String> record = new ConcurrentHashMap<>(fieldCount);
+            for (int j = 0; j < fieldCount; j++) {
+                int columnRef = readVarInt(in);
+                if (columnRef == columns.size()) {
+                    columns.add(readString(in));
+                } else if (columnRef > columns.size()) {
+                    throw new IOException("Invalid column reference " + columnRef + " in row " + rowId);
+                }
+                String column = columns.get(columnRef);
+
+                Dictionary dictionary = dictionaries.get(column);
+                if (dictionary == null) {
+                    record.put(column, readString(in));
+                    continue;
+                }
+                int id = readVarInt(in) - 1;
+                record.put(column, id == Dictionary.NOT_FOUND ? dictionary.intern(readString(in)) : dictionary.decode(id));
+            }
+            records.add(record);
+        }
+
+        return Row.builder()
+                .rowId(rowId)
+                .rowValues(records)
+                .createdAt(toDateTime(createdAt))
+                .updatedAt(toDateTime(updatedAt))
+                .build();
+    }
+
+    private static SecondaryIndex readIndex(ByteBuffer in, String[] rowIds, boolean numericIds) {
+        IndexDefinition.IndexDefinitionBuilder definition = IndexDefinition.builder()
+                .name(readString(in))
+                .caseInsensitive(in.get() != 0);
+        int columnCount = readVarInt(in);
+        for (int i = 0; i < columnCount; i++) {
+            definition.column(readString(in));
+        }
+
+        int keyCount = readVarInt(in);
+        ConcurrentHashMap<String, PostingList> postings = new ConcurrentHashMap<>(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            String key = readString(in);
+            int count = readVarInt(in);
+            PostingList ids = PostingList.empty(numericIds);
+            for (int j = 0; j < count; j++) {
+                ids = ids.add(rowIds[readVarInt(in)]);
+            }
+            postings.put(key, ids);
+        }
+
+        return new SecondaryIndex(definition.build(), postings, numericIds, true);
+    }
+}
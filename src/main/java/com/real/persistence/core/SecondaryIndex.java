@@ -0,0 +1,294 @@
+package com.real.persistence.core;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Multi-valued table secondary index.
+ * Every index key holds a posting list of all row IDs with the key, so rows sharing a key don't overwrite each other.
+ * Indexes of tables keyed by numeric row IDs keep the row IDs as sorted primitive longs.
+ * Posting lists are updated atomically per key, the index is safe for concurrent loaders.
+ * A Bloom filter of the keys answers most lookups of missing keys without probing the posting lists.
+ * The filter is rebuilt from the keys when they outgrow it or when the removed keys exceed half of the live keys.
+ */
+public class SecondaryIndex {
+    private static final int MIN_FILTER_KEYS = 1024;
+
+    @Getter
+    private final IndexDefinition definition;
+    private final ConcurrentHashMap<String, PostingList> postings;
+    /*
+     * Row IDs are numeric and posting lists keep them as longs
+     */
+    @Getter
+    private final boolean numericIds;
+    /*
+     * Index content is restored from snapshot and its definition doesn't carry the original record filter
+     */
+    @Getter
+    private final boolean restored;
+    private volatile BloomFilter filter;
+    /*
+     * Filter being rebuilt, keys added during the rebuild are put into both filters
+     */
+    private volatile BloomFilter building;
+    private final AtomicBoolean rebuilding;
+    /*
+     * Keys removed since the filter was built, their bits are still set
+     */
+    private final LongAdder removedKeys;
+    private final LongAdder filterRejects;
+    private final LongAdder filterFalsePositives;
+
+    /**
+     * Parameterised constructor for initializing empty index of row ID strings
+     *
+     * @param definition - index declaration
+     */
+    public SecondaryIndex(@NonNull final IndexDefinition definition) {
+        this(definition, false);
+    }
+
+    /**
+     * Parameterised constructor for initializing empty index
+     *
+     * @param definition - index declaration
+     * @param numericIds - row IDs are numeric, posting lists keep them as longs
+     */
+    public SecondaryIndex(@NonNull final IndexDefinition definition, boolean numericIds) {
+        this(definition, new ConcurrentHashMap<>(), numericIds, false);
+    }
+
+    /*
+     * Index over already built posting lists
+     */
+    SecondaryIndex(IndexDefinition definition, ConcurrentHashMap<String, PostingList> postings, boolean numericIds,
+                   boolean restored) {
+        this.definition = definition;
+        this.postings = postings;
+        this.numericIds = numericIds;
+        this.restored = restored;
+        this.rebuilding = new AtomicBoolean();
+        this.removedKeys = new LongAdder();
+        this.filterRejects = new LongAdder();
+        this.filterFalsePositives = new LongAdder();
+        this.filter = build(postings);
+    }
+
+    /**
+     * Add record's row ID to the posting list of the record key
+     *
+     * @param record - record column values
+     * @param rowId - table's record ID
+     */
+    public void add(@NonNull final Map<String, String> record, @NonNull final String rowId) {
+        String key = key(record);
+        if (key != null) {
+            postings.compute(key, (k, ids) -> (ids == null ? PostingList.empty(numericIds) : ids).add(rowId));
+            mark(key);
+        }
+    }
+
+    /**
+     * Remove record's row ID from the posting list of the record key
+     *
+     * @param record - record column values
+     * @param rowId - table's record ID
+     */
+    public void remove(@NonNull final Map<String, String> record, @NonNull final String rowId) {
+        String key = key(record);
+        if (key != null) {
+            postings.computeIfPresent(key, (k, ids) -> {
+                PostingList left = ids.remove(rowId);
+                if (left == null) {
+                    removedKeys.increment();
+                }
+                return left;
+            });
+            if (removedKeys.sum() > Math.max(MIN_FILTER_KEYS, postings.size()) >> 1) {
+                rebuild();
+            }
+        }
+    }
+
+    /**
+     * Find all row IDs by index key
+     *
+     * @param key - index key
+     * @return Set<String> - unmodifiable posting list, empty if nothing is indexed by the key
+     */
+    public Set<String> find(@NonNull final String key) {
+        PostingList ids = lookup(key);
+        return ids == null ? Set.of() : ids.rowIds();
+    }
+
+    /**
+     * Find all numeric row IDs by index key without boxing them
+     *
+     * @param key - index key
+     * @return LongIds - sorted posting list, empty if nothing is indexed by the key
+     * @exception IllegalStateException - the index doesn't keep numeric row IDs
+     */
+    public LongIds findLongIds(@NonNull final String key) {
+        if (!numericIds) {
+            throw new IllegalStateException("Index " + definition.getName() + " doesn't keep numeric row IDs");
+        }
+
+        PostingList ids = lookup(key);
+        return ids == null ? LongIds.EMPTY : (LongIds) ids;
+    }
+
+    /**
+     * Build index key from record values
+     *
+     * @param record - record column values
+     * @return String - index key or null if the record isn't indexed
+     */
+    public String key(@NonNull final Map<String, String> record) {
+        return definition.key(record);
+    }
+
+    /**
+     * Count of distinct keys in index
+     *
+     * @return int - index size
+     */
+    public int size() {
+        return postings.size();
+    }
+
+    /**
+     * Count of row IDs in all posting lists
+     *
+     * @return long - posting lists total size
+     */
+    public long postingCount() {
+        long count = 0;
+        for (PostingList ids : postings.values()) {
+            count += ids.size();
+        }
+
+        return count;
+    }
+
+    /**
+     * Share of lookups of missing keys the Bloom filter didn't reject
+     *
+     * @return double - observed false positive rate, zero before the first lookup of a missing key
+     */
+    public double falsePositiveRate() {
+        long falsePositives = filterFalsePositives.sum();
+        long negatives = falsePositives + filterRejects.sum();
+        return negatives == 0 ? 0.0 : (double) falsePositives / negatives;
+    }
+
+    /**
+     * Size of the Bloom filter of the keys
+     *
+     * @return long - filter size in bytes
+     */
+    public long filterBytes() {
+        return filter.sizeInBytes();
+    }
+
+    /**
+     * cleanup index
+     */
+    public void clear() {
+        postings.clear();
+        filter = BloomFilter.forKeys(MIN_FILTER_KEYS);
+        removedKeys.reset();
+    }
+
+    /**
+     * Check whether the index holds every record matching the query, restored indexes don't know
+     * their record filter until they're declared again
+     *
+     * @param querySpec - Specification Map with table column name as KEY and expected VALUE
+     * @return boolean - true if the index lookup doesn't miss records matching the query
+     */
+    public boolean answers(@NonNull final Map<String, String> querySpec) {
+        return !restored && definition.answers(querySpec);
+    }
+
+    /*
+     * Check whether the restored index content was built by the declared index
+     */
+    boolean isRestoredAs(IndexDefinition declared) {
+        return restored && definition.getColumns().equals(declared.getColumns())
+                && definition.isCaseInsensitive() == declared.isCaseInsensitive();
+    }
+
+    /*
+     * Live posting lists of the index
+     */
+    ConcurrentHashMap<String, PostingList> postings() {
+        return postings;
+    }
+
+    /*
+     * Posting list of the key, the filter answers first
+     */
+    private PostingList lookup(String key) {
+        String normalized = definition.normalize(key);
+        if (!filter.mightContain(BloomFilter.hash(normalized))) {
+            filterRejects.increment();
+            return null;
+        }
+
+        PostingList ids = postings.get(normalized);
+        if (ids == null) {
+            filterFalsePositives.increment();
+        }
+
+        return ids;
+    }
+
+    /*
+     * Put added key into the filter, the rebuilt filter is read first, so a key missed by the rebuild
+     * is put into the rebuilt filter, and the filter is rebuilt when the keys outgrow it
+     */
+    private void mark(String key) {
+        long hash = BloomFilter.hash(key);
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(hash);
+        }
+        BloomFilter current = filter;
+        current.put(hash);
+        if (postings.size() > current.capacity()) {
+            rebuild();
+        }
+    }
+
+    /*
+     * Build filter sized for twice the current keys, a concurrent rebuild is left to the thread running it
+     */
+    private void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            removedKeys.reset();
+            BloomFilter rebuilt = BloomFilter.forKeys(Math.max(MIN_FILTER_KEYS, postings.size() << 1));
+            building = rebuilt;
+            postings.keySet().forEach(key -> rebuilt.put(BloomFilter.hash(key)));
+            filter = rebuilt;
+            building = null;
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private static BloomFilter build(ConcurrentHashMap<String, PostingList> postings) {
+        BloomFilter filter = BloomFilter.forKeys(Math.max(MIN_FILTER_KEYS, postings.size() << 1));
+        postings.keySet().forEach(key -> filter.put(BloomFilter.hash(key)));
+        return filter;
+    }
+}
@@ -0,0 +1,112 @@
+package com.real.persistence.core;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage engine of table records.
+ * The engine keeps the rows of a single table, the table maintains its indexes and dictionaries on top of it.
+ * Records inserted with an already stored row ID are appended to the stored row atomically,
+ * other merges of the same row ID are serialized by the table.
+ */
+public interface StorageEngine {
+
+    /**
+     * Kind of the engine, chosen when the table is created
+     *
+     * @return StorageType - storage type
+     */
+    StorageType getType();
+
+    /**
+     * Add row records, appending them to the stored row with the same ID
+     *
+     * @param row - insertable record
+     */
+    void insert(Row row);
+
+    /**
+     * Store row, replacing the stored row with the same ID
+     *
+     * @param row - stored record
+     */
+    void put(Row row);
+
+    /**
+     * Remove row by row ID
+     *
+     * @param rowId - table's record ID
+     * @return Row - removed row or null if not found
+     */
+    Row delete(String rowId);
+
+    /**
+     * cleanup storage
+     */
+    void clear();
+
+    /**
+     * return count of records of all rows
+     *
+     * @return long - records count
+     */
+    long count();
+
+    /**
+     * return count of rows
+     *
+     * @return int - rows count
+     */
+    int rowCount();
+
+    /**
+     * Load row by row ID
+     *
+     * @param rowId - String record ID
+     * @return Row - row with all its records or null if not found
+     */
+    Row find(String rowId);
+
+    /**
+     * Check availability of row by row ID
+     *
+     * @param rowId - String record ID
+     * @return boolean - true if row exists
+     */
+    boolean contains(String rowId);
+
+    /**
+     * Load all rows
+     *
+     * @return Iterable<Row> - all rows
+     */
+    Iterable<Row> findAll();
+
+    /**
+     * Pre-size the engine for the expected count of rows, also when it already holds rows, e.g. before every batch
+     * of a bulk load. Engines without pre-sizing ignore it. The table calls it only while no row is being written.
+     *
+     * @param rows - expected count of rows
+     */
+    default void reserve(int rows) {
+    }
+
+    /**
+     * Search rows by query specification scanning the stored columns, supported by column oriented engines only
+     *
+     * @param querySpec - Specification Map with table column name as KEY and expected VALUE
+     * @return List<Row> - matched rows
+     */
+    default List<Row> findByQuerySpec(Map<String, String> querySpec) {
+        throw new UnsupportedOperationException("Column scan is not supported by " + getType() + " storage");
+    }
+
+    /**
+     * Memory allocated outside of the Java heap
+     *
+     * @return long - off-heap bytes
+     */
+    default long offHeapBytes() {
+        return 0;
+    }
+}
@@ -0,0 +1,97 @@
+package com.real.persistence.core;
+
+import lombok.NonNull;
+
+import java.util.Map;
+
+/**
+ * Storage engines of table records
+ */
+public enum StorageType {
+    /*
+     * Row instances in a concurrent hash map, or in a primitive long-keyed map for numeric row IDs
+     */
+    HEAP(true, false) {
+        @Override
+        public StorageEngine create(@NonNull final Map<String, TableMetadata> tableMetadata,
+                                    @NonNull final Map<String, Dictionary> dictionaries) {
+            return new HeapStore(dictionaries);
+        }
+
+        @Override
+        public StorageEngine create(@NonNull final Map<String, TableMetadata> tableMetadata,
+                                    @NonNull final Map<String, Dictionary> dictionaries,
+                                    @NonNull final TableMetadata keyType) {
+            return keyType.isNumeric() ? new LongKeyStore(dictionaries) : new HeapStore(dictionaries);
+        }
+    },
+    /*
+     * Typed column arrays scanned column-at-a-time
+     */
+    COLUMNAR(true, true) {
+        @Override
+        public StorageEngine create(@NonNull final Map<String, TableMetadata> tableMetadata,
+                                    @NonNull final Map<String, Dictionary> dictionaries) {
+            return new ColumnarStore(tableMetadata, dictionaries);
+        }
+    },
+    /*
+     * Encoded rows in direct memory slabs, values are kept inline instead of in heap dictionaries
+     */
+    OFF_HEAP(false, false) {
+        @Override
+        public StorageEngine create(@NonNull final Map<String, TableMetadata> tableMetadata,
+                                    @NonNull final Map<String, Dictionary> dictionaries) {
+            return new OffHeapStore();
+        }
+    };
+
+    private final boolean dictionaryEncoded;
+    private final boolean columnScan;
+
+    StorageType(boolean dictionaryEncoded, boolean columnScan) {
+        this.dictionaryEncoded = dictionaryEncoded;
+        this.columnScan = columnScan;
+    }
+
+    /**
+     * Create empty storage engine of the table
+     *
+     * @param tableMetadata - table columns types metadata information
+     * @param dictionaries - dictionaries of the dictionary encoded columns
+     * @return StorageEngine - storage engine
+     */
+    public abstract StorageEngine create(Map<String, TableMetadata> tableMetadata, Map<String, Dictionary> dictionaries);
+
+    /**
+     * Create empty storage engine of the table keyed by row IDs of the given type,
+     * engines without specialized keys store row IDs of every type as strings
+     *
+     * @param tableMetadata - table columns types metadata information
+     * @param dictionaries - dictionaries of the dictionary encoded columns
+     * @param keyType - type of the row IDs
+     * @return StorageEngine - storage engine
+     */
+    public StorageEngine create(Map<String, TableMetadata> tableMetadata, Map<String, Dictionary> dictionaries,
+                                TableMetadata keyType) {
+        return create(tableMetadata, dictionaries);
+    }
+
+    /**
+     * Values of dictionary encoded columns are interned in per column dictionaries
+     *
+     * @return boolean - true if the table keeps column dictionaries
+     */
+    public boolean isDictionaryEncoded() {
+        return dictionaryEncoded;
+    }
+
+    /**
+     * Query specification can be answered by scanning the stored columns
+     *
+     * @return boolean - true if the engine supports column scan
+     */
+    public boolean isColumnScan() {
+        return columnScan;
+    }
+}
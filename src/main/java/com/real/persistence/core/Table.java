@@ -1,86 +1,302 @@
 package com.real.persistence.core;
 
+import com.real.execution.ExecutionContext;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import reactor.core.publisher.Flux;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiPredicate;
-import java.util.stream.Collectors;
 
 /**
- * The Table class represents as schema table and supports CRUD operations
+ * The Table class represents as schema table and supports CRUD operations.
+ * Records are kept by the storage engine chosen when the table is created,
+ * the table maintains secondary indexes, column dictionaries and column statistics on top of the engine.
  */
 @Data
 @Builder
 @Slf4j
 public class Table {
     /*
-     * Represents a predicate boolean valued function of two arguments
+     * Count of row ID lock stripes, a power of two
      */
-    private static BiPredicate<Row, Map<String, String>> QUERY_SPEC = (r, m) -> {
-        AtomicBoolean atomicBoolean = new AtomicBoolean();
-        r.getRowValues().forEach(mp -> m.forEach((k, v) -> atomicBoolean.set(mp.get(k).equals(v))));
+    private static final int STRIPES = 256;
+    /*
+     * Count of rows written or indexed by one task of the bulk load
+     */
+    private static final int BULK_CHUNK_SIZE = 4096;
+    /*
+     * Represents a predicate boolean valued function of two arguments,
+     * true if any of the row records has all the column values of the query specification
+     */
+    private static final BiPredicate<Row, Map<String, String>> QUERY_SPEC = (r, m) -> {
+        for (Map<String, String> record : r.getRowValues()) {
+            if (matches(record, m)) {
+                return true;
+            }
+        }
 
-        return atomicBoolean.get();
+        return false;
     };
     private final String tableName;
     private final Map<String, TableMetadata> tableMetadata;
-    private ConcurrentHashMap<String, Row> rows;
-    private Map<String, String> indexes;
+    private final Map<String, Dictionary> dictionaries;
+    private final StorageEngine storage;
+    /*
+     * Type of the row IDs, numeric row IDs are kept as longs by the heap storage and the indexes
+     */
+    @Builder.Default
+    private final TableMetadata keyType = TableMetadata.STRING;
+    private Map<String, SecondaryIndex> indexes;
+    /*
+     * Optional log of the table mutations, e.g. write-ahead log
+     */
+    private MutationLog mutationLog;
+    /*
+     * Operation latencies and size gauges of the table
+     */
+    private TableMetrics metrics;
+    /*
+     * Live row counts and column statistics of the table
+     */
+    private TableStatistics statistics;
+    /*
+     * Merge function of rows inserted with an already stored row ID
+     */
+    @Builder.Default
+    private volatile RowMerger merger = RowMerger.APPEND;
+    /*
+     * Locks of the row IDs, a row ID is guarded by the stripe of its hash
+     */
+    @Getter(AccessLevel.NONE)
+    @Builder.Default
+    private final Lock[] stripes = newStripes();
+    /*
+     * Count of completed mutations, data derived from the table is stale once the count moves
+     */
+    @Getter(AccessLevel.NONE)
+    @Builder.Default
+    private final AtomicLong modifications = new AtomicLong();
+
+    /**
+     * Build empty table with the storage engine of the given type.
+     * Dictionaries are kept only for engines which store dictionary encoded values.
+     *
+     * @param tableName - unique name of table
+     * @param tableMetadata - table columns types metadata information
+     * @param storageType - storage engine of the table records
+     * @return Table - new table without indexes
+     */
+    public static Table create(@NonNull final String tableName, @NonNull final Map<String, TableMetadata> tableMetadata,
+                               @NonNull final StorageType storageType) {
+        return create(tableName, tableMetadata, storageType, TableMetadata.STRING);
+    }
+
+    /**
+     * Build empty table with the storage engine of the given type keyed by row IDs of the given type.
+     * Numeric row IDs are compared as numbers and rows with not numeric IDs are rejected.
+     *
+     * @param tableName - unique name of table
+     * @param tableMetadata - table columns types metadata information
+     * @param storageType - storage engine of the table records
+     * @param keyType - type of the row IDs
+     * @return Table - new table without indexes
+     */
+    public static Table create(@NonNull final String tableName, @NonNull final Map<String, TableMetadata> tableMetadata,
+                               @NonNull final StorageType storageType, @NonNull final TableMetadata keyType) {
+        final Map<String, Dictionary> dictionaries = storageType.isDictionaryEncoded()
+                ? Dictionary.forColumns(tableMetadata) : Map.of();
+        final StorageEngine storage = storageType.create(tableMetadata, dictionaries, keyType);
+
+        return Table.builder()
+                .tableName(tableName)
+                .tableMetadata(tableMetadata)
+                .dictionaries(dictionaries)
+                .storage(storage)
+                .keyType(keyType)
+                .indexes(new ConcurrentHashMap<>())
+                .statistics(new TableStatistics(tableMetadata, storage))
+                .build();
+    }
 
     /**
-     * Add record in the table
+     * Add record in the table, a row with an already stored row ID is merged into the stored row by the table merger.
+     * The upsert is atomic for the row ID: the merge, index maintenance and mutation logging run under the lock
+     * stripe of the row ID, so concurrent loaders never lose records and only rows of the same stripe wait
+     * for each other. The mutation is encoded for the mutation log before the lock is taken.
      *
-     * @param row - insertable record
+     * @param inserted - insertable record
      */
-    public void insertRow(@NonNull final Row row) {
+    public void insertRow(@NonNull final Row inserted) {
+        final long start = System.nanoTime();
+        Row row = canonical(inserted);
         String rowId = row.getRowId();
-        if (rows.containsKey(rowId)) {
-            Row tmpRow = rows.get(rowId);
-            tmpRow.getRowValues().addAll(row.getRowValues());
-        } else {
-            rows.put(rowId, row);
+        MutationLog.Entry logged = encodeInsert(row);
+        Lock lock = stripe(rowId);
+        lock.lock();
+        try {
+            if (logged != null) {
+                logged.append();
+            }
+            if (merger.isAppend()) {
+                storage.insert(row);
+                statistics.added(row.getRowValues());
+                index(rowId, row.getRowValues());
+            } else {
+                merge(row);
+            }
+        } finally {
+            lock.unlock();
         }
+        modifications.incrementAndGet();
+        metrics.getInserts().recordSince(start);
 
         log.debug("Successfully added a row with ID {}", rowId);
     }
 
+    /**
+     * Bulk load of rows, e.g. the initial import of a provider feed.
+     * The table grows its storage for the size hint before the rows are written, also when earlier batches
+     * of the load are stored. The rows are written in chunks in parallel
+     * and every index is built in one parallel pass after all the rows are written, so the indexes
+     * aren't touched per row. Index lookups may miss the loaded rows until the call returns
+     * and the loaded rows shouldn't be deleted concurrently with the load.
+     * Tables merging rows by other than the append merger insert the rows one by one.
+     *
+     * @param loaded - insertable records
+     * @param sizeHint - expected count of rows in the table after the load
+     */
+    public void bulkInsert(@NonNull final List<Row> loaded, int sizeHint) {
+        final long start = System.nanoTime();
+        if (!merger.isAppend()) {
+            loaded.forEach(this::insertRow);
+            return;
+        }
+
+        List<Row> rows = new ArrayList<>(loaded.size());
+        loaded.forEach(row -> rows.add(canonical(row)));
+        reserve(sizeHint);
+        ExecutionContext context = ExecutionContext.getInstance();
+        int chunks = (rows.size() + BULK_CHUNK_SIZE - 1) / BULK_CHUNK_SIZE;
+        context.runChunks(chunks, chunk -> write(chunk(rows, chunk)));
+        if (!indexes.isEmpty()) {
+            context.runChunks(chunks, chunk -> chunk(rows, chunk)
+                    .forEach(row -> index(row.getRowId(), row.getRowValues())));
+        }
+        modifications.incrementAndGet();
+        metrics.getBulkInserts().recordSince(start);
+
+        log.debug("Successfully loaded {} rows into table {}", rows.size(), tableName);
+    }
+
     /**
      *  Remove record from the table by ID
      *
-     * @param rowId - table's record ID
+     * @param deletedId - table's record ID
      */
-    public void deleteById(@NonNull final String rowId) {
-        rows.remove(rowId);
+    public void deleteById(@NonNull final String deletedId) {
+        final long start = System.nanoTime();
+        String rowId = canonicalKey(deletedId);
+        if (rowId == null) {
+            return;
+        }
+        MutationLog mutations = mutationLog;
+        MutationLog.Entry logged = mutations == null ? null : mutations.deleted(tableName, rowId);
+        Lock lock = stripe(rowId);
+        lock.lock();
+        try {
+            if (logged != null) {
+                logged.append();
+            }
+            Row row = storage.delete(rowId);
+            if (row != null) {
+                statistics.removed(row.getRowValues());
+                unindex(rowId, row.getRowValues());
+            }
+        } finally {
+            lock.unlock();
+        }
+        modifications.incrementAndGet();
+        metrics.getDeletes().recordSince(start);
         log.debug("Row ID {} successfully deleted", rowId);
     }
 
     /**
-     * cleanup table
+     * cleanup table, all the lock stripes are held in order, so no insert or delete runs concurrently
+     * with the cleanup or sees the dictionaries of the columnar storage cleared half way
      */
     public void deleteAll() {
-        rows.clear();
+        MutationLog mutations = mutationLog;
+        MutationLog.Entry logged = mutations == null ? null : mutations.cleared(tableName);
+        lockWriters();
+        try {
+            if (logged != null) {
+                logged.append();
+            }
+            storage.clear();
+            statistics.clear();
+            indexes.values().forEach(SecondaryIndex::clear);
+            dictionaries.values().forEach(Dictionary::clear);
+        } finally {
+            unlockWriters();
+        }
+        modifications.incrementAndGet();
     }
 
     /**
-     *  return count of records in table
+     * Version of the table contents, moved by every completed insert and delete.
+     * Readers caching data derived from the table, e.g. join build sides, compare versions to detect changes.
+     *
+     * @return long - count of completed mutations
+     */
+    public long version() {
+        return modifications.get();
+    }
+
+    /**
+     *  return count of records in table, kept by the storage engine
      *
      * @return long - records count in table
      */
     public long count() {
-        AtomicLong count = new AtomicLong();
-        //Atomically adds the given value to the current value
-        rows.values().forEach(row -> count.addAndGet(row.getRowValues().size()));
+        return storage.count();
+    }
 
-        return count.get();
+    /**
+     * Rebuild column statistics from the stored rows, e.g. to drop deleted values from the distinct values
+     * estimates. All the row stripes are held, so writers wait until the statistics are rebuilt.
+     */
+    public void analyze() {
+        for (Lock lock : stripes) {
+            lock.lock();
+        }
+        try {
+            statistics.clear();
+            findAll().forEach(row -> statistics.added(row.getRowValues()));
+        } finally {
+            for (Lock lock : stripes) {
+                lock.unlock();
+            }
+        }
+        log.debug("Statistics of table {} rebuilt", tableName);
     }
 
     /**
@@ -90,7 +306,8 @@ public class Table {
      * @return Row - record by id
      */
     public Row findById(@NonNull final String rowId) {
-        return rows.get(rowId);
+        String key = canonicalKey(rowId);
+        return key == null ? null : storage.find(key);
     }
 
     /**
@@ -100,7 +317,26 @@ public class Table {
      * @return boolean - true if record exists in table by record ID
      */
     public boolean existsById(@NonNull final String rowId) {
-        return rows.containsKey(rowId);
+        String key = canonicalKey(rowId);
+        return key != null && storage.contains(key);
+    }
+
+    /**
+     * Select records by record IDs in a single pass, missing IDs are skipped
+     *
+     * @param rowIds - record IDs
+     * @return List<Row> - found records in the order of the IDs
+     */
+    public List<Row> findAllById(@NonNull final Iterable<String> rowIds) {
+        List<Row> result = new ArrayList<>(sizeHint(rowIds));
+        for (String rowId : rowIds) {
+            Row row = rowId == null ? null : findById(rowId);
+            if (row != null) {
+                result.add(row);
+            }
+        }
+
+        return Collections.unmodifiableList(result);
     }
 
     /**
@@ -109,7 +345,7 @@ public class Table {
      * @return Iterable<Row> - all records in table
      */
     public Iterable<Row> findAll() {
-        return rows.values();
+        return storage.findAll();
     }
 
     /**
@@ -118,30 +354,532 @@ public class Table {
      * @param querySpec - Specification Map with table column name as KEY and expected VALUE
      * @return List<Row> - filtered records by specified columns values
      */
-    public List<Row> findByQuerySpec(Map<String, String> querySpec) {
-        return Flux.fromIterable(rows.values())
-                .filter(row -> QUERY_SPEC.test(row, querySpec))
-                .collect(Collectors.toUnmodifiableList()).
-                block();
+    public List<Row> findByQuerySpec(@NonNull final Map<String, String> querySpec) {
+        final long start = System.nanoTime();
+        QueryPlan plan = explain(querySpec);
+        log.debug("Query plan on table {}: {}", tableName, plan.explain());
+
+        try {
+            switch (plan.getAccess()) {
+                case EMPTY:
+                    return List.of();
+                case COLUMN_SCAN:
+                    metrics.getScans().increment();
+                    return storage.findByQuerySpec(plan.getResidual());
+                case FULL_SCAN:
+                    metrics.getScans().increment();
+                    return filter(storage.findAll(), storage.rowCount(), plan.getResidual());
+                default:
+                    return filter(intersect(plan.getProbes()), (int) plan.getEstimatedRows(), plan.getResidual());
+            }
+        } finally {
+            metrics.getQuerySpecs().recordSince(start);
+        }
+    }
+
+    /**
+     * Build execution plan of query specification without running it
+     *
+     * @param querySpec - Specification Map with table column name as KEY and expected VALUE
+     * @return QueryPlan - execution plan chosen for the query
+     */
+    public QueryPlan explain(@NonNull final Map<String, String> querySpec) {
+        Optional<Map<String, String>> encodedSpec = encode(querySpec);
+
+        return encodedSpec
+                .map(spec -> QueryPlanner.plan(indexes.values(), spec, getStorageType().isColumnScan(),
+                        isColumnar() ? storage.count() : storage.rowCount()))
+                .orElseGet(() -> QueryPlanner.empty(querySpec));
+    }
+
+    /**
+     * Finding record's ID by table index
+     *
+     * @param indexName - unique name of index
+     * @param key - String index key
+     * @return Optional<String> - the lowest of the record IDs indexed by the key, numeric row IDs are compared
+     * as numbers
+     */
+    public Optional<String> findIdByIndex(@NonNull final String indexName, @NonNull final String key) {
+        if (keyType.isNumeric()) {
+            LongIds ids = findLongIdsByIndex(indexName, key);
+            return ids.isEmpty() ? Optional.empty() : Optional.of(Long.toString(ids.min()));
+        }
+
+        return findIdsByIndex(indexName, key).stream().min(Comparator.naturalOrder());
     }
 
     /**
-     * Finding record's ID by table indexes
+     * Finding all records IDs by table index
      *
+     * @param indexName - unique name of index
      * @param key - String index key
-     * @return Optional<String>
+     * @return Set<String> - record IDs indexed by the key, empty if there is no such index or key
+     */
+    public Set<String> findIdsByIndex(@NonNull final String indexName, @NonNull final String key) {
+        final long start = System.nanoTime();
+        SecondaryIndex index = indexes.get(indexName);
+        Set<String> ids = index == null ? Set.of() : index.find(key);
+        if (ids.isEmpty()) {
+            metrics.getIndexMisses().increment();
+        }
+        metrics.getIndexLookups().recordSince(start);
+
+        return ids;
+    }
+
+    /**
+     * Finding all numeric records IDs by table index without boxing them, for tables keyed by numeric row IDs
+     *
+     * @param indexName - unique name of index
+     * @param key - String index key
+     * @return LongIds - sorted record IDs indexed by the key, empty if there is no such index or key
+     * @exception IllegalStateException - the table isn't keyed by numeric row IDs
+     */
+    public LongIds findLongIdsByIndex(@NonNull final String indexName, @NonNull final String key) {
+        final long start = System.nanoTime();
+        SecondaryIndex index = numericIndex(indexName);
+        LongIds ids = index == null ? LongIds.EMPTY : index.findLongIds(key);
+        if (ids.isEmpty()) {
+            metrics.getIndexMisses().increment();
+        }
+        metrics.getIndexLookups().recordSince(start);
+
+        return ids;
+    }
+
+    /**
+     * Finding numeric records IDs of many keys by table index in a single pass, for tables keyed by numeric row IDs
+     *
+     * @param indexName - unique name of index
+     * @param keys - String index keys
+     * @return List<LongIds> - sorted record IDs of every key in the order of the keys, empty for missing keys
+     * @exception IllegalStateException - the table isn't keyed by numeric row IDs
+     */
+    public List<LongIds> findLongIdsByIndex(@NonNull final String indexName, @NonNull final Iterable<String> keys) {
+        final long start = System.nanoTime();
+        SecondaryIndex index = numericIndex(indexName);
+        List<LongIds> result = new ArrayList<>(sizeHint(keys));
+        long misses = 0;
+        for (String key : keys) {
+            LongIds ids = index == null || key == null ? LongIds.EMPTY : index.findLongIds(key);
+            if (ids.isEmpty()) {
+                misses++;
+            }
+            result.add(ids);
+        }
+        metrics.getIndexMisses().add(misses);
+        metrics.getIndexLookups().recordSince(start);
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Finding records IDs of many keys by table index in a single pass
+     *
+     * @param indexName - unique name of index
+     * @param keys - String index keys
+     * @return List<Set<String>> - record IDs of every key in the order of the keys, empty set for missing keys
+     */
+    public List<Set<String>> findIdsByIndex(@NonNull final String indexName, @NonNull final Iterable<String> keys) {
+        final long start = System.nanoTime();
+        SecondaryIndex index = indexes.get(indexName);
+        List<Set<String>> result = new ArrayList<>(sizeHint(keys));
+        long misses = 0;
+        for (String key : keys) {
+            Set<String> ids = index == null || key == null ? Set.of() : index.find(key);
+            if (ids.isEmpty()) {
+                misses++;
+            }
+            result.add(ids);
+        }
+        metrics.getIndexMisses().add(misses);
+        metrics.getIndexLookups().recordSince(start);
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Secondary index initialization, already existing records are indexed right away
+     * and every following insert or delete maintains the index.
+     * An index restored from snapshot with the same columns keeps its posting lists and takes over the declaration.
+     *
+     * @param definition - index declaration
+     */
+    public void createIndex(@NonNull final IndexDefinition definition) {
+        SecondaryIndex restored = indexes.get(definition.getName());
+        if (restored != null && restored.isRestoredAs(definition)) {
+            SecondaryIndex index = new SecondaryIndex(definition, restored.postings(), restored.isNumericIds(), false);
+            indexes.put(definition.getName(), index);
+            metrics.registerIndex(index);
+            log.debug("Index {} of table {} taken over from snapshot", definition.getName(), tableName);
+            return;
+        }
+
+        SecondaryIndex index = new SecondaryIndex(definition, keyType.isNumeric());
+        if (indexes.putIfAbsent(definition.getName(), index) != null) {
+            log.error("An index already exists with the given name {}", definition.getName());
+            return;
+        }
+
+        findAll().forEach(row -> row.getRowValues().forEach(record -> index.add(record, row.getRowId())));
+        metrics.registerIndex(index);
+        log.debug("Index {} successfully created on table {}", definition.getName(), tableName);
+    }
+
+    /**
+     * Removing secondary index from table
+     *
+     * @param indexName - unique name of index
+     */
+    public void dropIndex(@NonNull final String indexName) {
+        if (indexes.remove(indexName) != null) {
+            metrics.unregisterIndex(indexName);
+            log.debug("Index {} successfully dropped", indexName);
+        } else {
+            log.debug("Index {} not exists", indexName);
+        }
+    }
+
+    /**
+     * Canonical instance of the column value
+     *
+     * @param column - table column name
+     * @param value - column value
+     * @return String - value instance shared by all records of the table
      */
-    public Optional<String> findIdByIndex(@NonNull final String key) {
-        return Optional.ofNullable(indexes.get(key));
+    public String intern(@NonNull final String column, @NonNull final String value) {
+        Dictionary dictionary = dictionaries.get(column);
+        return dictionary == null ? value : dictionary.intern(value);
     }
 
     /**
-     * Table record indexing
+     * Storage engine kind of the table
      *
-     * @param key - index
-     * @param value - associated value
+     * @return StorageType - storage type
+     */
+    public StorageType getStorageType() {
+        return storage.getType();
+    }
+
+    /**
+     * Check storage mode of the table
+     *
+     * @return boolean - true if records are stored column-at-a-time
+     */
+    public boolean isColumnar() {
+        return storage.getType() == StorageType.COLUMNAR;
+    }
+
+    /*
+     * Store the merger result. A merge only appending records to the stored row, e.g. a distinct merge, is written
+     * by the append path of the storage engine and only the appended records are interned and indexed, so merging
+     * few records into a hot row doesn't rewrite the whole row under its lock. Other merges replace the stored row.
+     */
+    private void merge(Row row) {
+        String rowId = row.getRowId();
+        Row stored = storage.find(rowId);
+        if (stored == null) {
+            storage.put(row);
+            statistics.added(row.getRowValues());
+            index(rowId, row.getRowValues());
+            return;
+        }
+
+        List<ConcurrentHashMap<String, String>> replaced = new ArrayList<>(stored.getRowValues());
+        Row merged = merger.merge(stored, row);
+        List<ConcurrentHashMap<String, String>> appended = appended(replaced, merged.getRowValues());
+        if (appended == null) {
+            storage.put(merged);
+            reindex(rowId, replaced, merged.getRowValues());
+        } else if (!appended.isEmpty()) {
+            storage.insert(Row.builder()
+                    .rowId(rowId)
+                    .rowValues(new ConcurrentLinkedQueue<>(appended))
+                    .createdAt(merged.getCreatedAt())
+                    .updatedAt(merged.getUpdatedAt())
+                    .build());
+            statistics.added(appended);
+            index(rowId, appended);
+        }
+    }
+
+    /*
+     * Records the merged row appends to the replaced records, null if the merged row doesn't start with
+     * the replaced records in their order
+     */
+    private static List<ConcurrentHashMap<String, String>> appended(
+            List<ConcurrentHashMap<String, String>> replaced, Collection<ConcurrentHashMap<String, String>> merged) {
+        if (merged.size() < replaced.size()) {
+            return null;
+        }
+
+        Iterator<ConcurrentHashMap<String, String>> records = merged.iterator();
+        for (ConcurrentHashMap<String, String> record : replaced) {
+            if (records.next() != record) {
+                return null;
+            }
+        }
+        List<ConcurrentHashMap<String, String>> appended = new ArrayList<>(merged.size() - replaced.size());
+        records.forEachRemaining(appended::add);
+
+        return appended;
+    }
+
+    /*
+     * Grow the storage for the expected rows, also when it already holds the rows of the previous batches
+     * of a load. All the stripes are held so no row is written meanwhile.
+     */
+    private void reserve(int sizeHint) {
+        if (sizeHint <= storage.rowCount()) {
+            return;
+        }
+
+        lockWriters();
+        try {
+            storage.reserve(sizeHint);
+        } finally {
+            unlockWriters();
+        }
+    }
+
+    /*
+     * Take all the row lock stripes in order, so no row is written until they're released.
+     * The stripes are reentrant, the holder may still write rows.
+     */
+    void lockWriters() {
+        for (Lock lock : stripes) {
+            lock.lock();
+        }
+    }
+
+    void unlockWriters() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    /*
+     * Store rows of the bulk load without indexing them, the rows are merged into stored rows by the append merger
+     */
+    private void write(List<Row> rows) {
+        for (Row row : rows) {
+            MutationLog.Entry logged = encodeInsert(row);
+            Lock lock = stripe(row.getRowId());
+            lock.lock();
+            try {
+                if (logged != null) {
+                    logged.append();
+                }
+                storage.insert(row);
+                statistics.added(row.getRowValues());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /*
+     * Insert of the row encoded by the mutation log, null if the table isn't logged
+     */
+    private MutationLog.Entry encodeInsert(Row row) {
+        MutationLog mutations = mutationLog;
+        return mutations == null ? null : mutations.inserted(tableName, row);
+    }
+
+    private static List<Row> chunk(List<Row> rows, int chunk) {
+        int from = chunk * BULK_CHUNK_SIZE;
+        return rows.subList(from, Math.min(rows.size(), from + BULK_CHUNK_SIZE));
+    }
+
+    /*
+     * Update statistics and indexes by the records the merge dropped and added, records kept by the merger
+     * are the same instances. Kept records may share index keys with the dropped ones, so a merge dropping
+     * records reindexes the whole merged row, a merge only adding records indexes just the added ones.
+     */
+    private void reindex(String rowId, List<? extends Map<String, String>> replaced,
+                         Collection<? extends Map<String, String>> merged) {
+        Set<Map<String, String>> dropped = Collections.newSetFromMap(new IdentityHashMap<>(replaced.size() << 1));
+        dropped.addAll(replaced);
+        List<Map<String, String>> added = new ArrayList<>();
+        for (Map<String, String> record : merged) {
+            if (!dropped.remove(record)) {
+                added.add(record);
+            }
+        }
+        statistics.removed(dropped);
+        statistics.added(added);
+        if (dropped.isEmpty()) {
+            index(rowId, added);
+        } else {
+            unindex(rowId, replaced);
+            index(rowId, merged);
+        }
+    }
+
+    /*
+     * Row with the canonical ID, rejected before anything is written if the table is keyed by numeric row IDs
+     * and the ID isn't numeric. All spellings of a numeric ID, e.g. "007", "+7" and "7", take the same lock stripe
+     * and are stored under the same key by every engine.
      */
-    public void populateIndex(@NonNull final String key, @NonNull final String value) {
-        indexes.put(key, value);
+    private Row canonical(Row row) {
+        String rowId = canonicalKey(row.getRowId());
+        if (rowId == null) {
+            throw new IllegalArgumentException("Row ID " + row.getRowId() + " of table " + tableName + " isn't numeric");
+        }
+
+        return rowId.equals(row.getRowId())
+                ? row
+                : new Row(rowId, row.getRowValues(), row.getCreatedAt(), row.getUpdatedAt());
+    }
+
+    /*
+     * Canonical form of the row ID, null if the table is keyed by numeric row IDs and the ID isn't numeric
+     */
+    private String canonicalKey(String rowId) {
+        return keyType.isNumeric() ? LongKeyStore.canonical(rowId) : rowId;
+    }
+
+    /*
+     * Index of the numeric row IDs or null if there is no such index
+     */
+    private SecondaryIndex numericIndex(String indexName) {
+        if (!keyType.isNumeric()) {
+            throw new IllegalStateException("Table " + tableName + " isn't keyed by numeric row IDs");
+        }
+
+        return indexes.get(indexName);
+    }
+
+    private void index(String rowId, Collection<? extends Map<String, String>> records) {
+        indexes.values().forEach(index -> records.forEach(record -> index.add(record, rowId)));
+    }
+
+    private void unindex(String rowId, Collection<? extends Map<String, String>> records) {
+        indexes.values().forEach(index -> records.forEach(record -> index.remove(record, rowId)));
+    }
+
+    private Lock stripe(String rowId) {
+        int hash = rowId.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static Lock[] newStripes() {
+        Lock[] locks = new Lock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+
+        return locks;
+    }
+
+    private static int sizeHint(Iterable<?> values) {
+        return values instanceof Collection ? ((Collection<?>) values).size() : 16;
+    }
+
+    /*
+     * Filter rows by the residual predicates
+     */
+    private List<Row> filter(Iterable<Row> candidates, int expectedSize, Map<String, String> residual) {
+        List<Row> result = new ArrayList<>(Math.min(expectedSize, 1024));
+        for (Row row : candidates) {
+            if (row != null && (residual.isEmpty() || QUERY_SPEC.test(row, residual))) {
+                result.add(row);
+            }
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /*
+     * Load rows which are in all posting lists of the plan, the shortest posting list drives the intersection.
+     * Sorted numeric posting lists are intersected by one merge walk, only the rows in all of them are loaded.
+     */
+    private List<Row> intersect(List<QueryPlan.IndexProbe> probes) {
+        if (keyType.isNumeric()) {
+            LongIds[] postings = new LongIds[probes.size()];
+            for (int i = 0; i < postings.length; i++) {
+                QueryPlan.IndexProbe probe = probes.get(i);
+                SecondaryIndex index = indexes.get(probe.getIndexName());
+                postings[i] = index == null ? LongIds.EMPTY : index.findLongIds(probe.getKey());
+            }
+
+            return intersect(postings);
+        }
+
+        Set<String> driving = probes.get(0).getRowIds();
+        List<Row> candidates = new ArrayList<>(driving.size());
+        for (String rowId : driving) {
+            boolean inAll = true;
+            for (int i = 1; i < probes.size() && inAll; i++) {
+                inAll = probes.get(i).getRowIds().contains(rowId);
+            }
+            if (inAll) {
+                candidates.add(storage.find(rowId));
+            }
+        }
+
+        return candidates;
+    }
+
+    /*
+     * Rows of the IDs in all the sorted posting lists, every list is walked once
+     */
+    private List<Row> intersect(LongIds[] postings) {
+        LongIds driving = postings[0];
+        int[] cursors = new int[postings.length];
+        List<Row> candidates = new ArrayList<>(driving.size());
+        for (int i = 0; i < driving.size(); i++) {
+            long id = driving.get(i);
+            boolean inAll = true;
+            for (int j = 1; j < postings.length && inAll; j++) {
+                LongIds ids = postings[j];
+                while (cursors[j] < ids.size() && ids.get(cursors[j]) < id) {
+                    cursors[j]++;
+                }
+                if (cursors[j] == ids.size()) {
+                    return candidates;
+                }
+                inAll = ids.get(cursors[j]) == id;
+            }
+            if (inAll) {
+                candidates.add(storage.find(Long.toString(id)));
+            }
+        }
+
+        return candidates;
+    }
+
+    private static boolean matches(Map<String, String> record, Map<String, String> querySpec) {
+        for (Map.Entry<String, String> spec : querySpec.entrySet()) {
+            if (!spec.getValue().equals(record.get(spec.getKey()))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * Replace query values of dictionary encoded columns by their canonical instances.
+     * Empty if any of the values has never been stored in the table, so nothing can match the query.
+     */
+    private Optional<Map<String, String>> encode(Map<String, String> querySpec) {
+        Map<String, String> encodedSpec = new HashMap<>(querySpec.size() << 1);
+        for (Map.Entry<String, String> spec : querySpec.entrySet()) {
+            Dictionary dictionary = dictionaries.get(spec.getKey());
+            if (dictionary == null) {
+                encodedSpec.put(spec.getKey(), spec.getValue());
+                continue;
+            }
+
+            int id = dictionary.lookup(spec.getValue());
+            if (id == Dictionary.NOT_FOUND) {
+                return Optional.empty();
+            }
+            encodedSpec.put(spec.getKey(), dictionary.decode(id));
+        }
+
+        return Optional.of(encodedSpec);
     }
 }
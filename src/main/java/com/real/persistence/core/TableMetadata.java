@@ -5,10 +5,34 @@ package com.real.persistence.core;
  * Table columns metadata
  */
 public enum TableMetadata {
-    STRING,
-    INTEGER,
-    LONG,
-    DOUBLE,
-    DATE,
-    DATE_TIME
+    STRING(true),
+    INTEGER(false),
+    LONG(false),
+    DOUBLE(false),
+    DATE(true),
+    DATE_TIME(true);
+
+    private final boolean dictionaryEncoded;
+
+    TableMetadata(boolean dictionaryEncoded) {
+        this.dictionaryEncoded = dictionaryEncoded;
+    }
+
+    /**
+     * Textual column values repeat across records and are stored as dictionary IDs
+     *
+     * @return boolean - true if column values are dictionary encoded
+     */
+    public boolean isDictionaryEncoded() {
+        return dictionaryEncoded;
+    }
+
+    /**
+     * Row IDs of the type are kept as primitive longs by tables keyed by this type
+     *
+     * @return boolean - true for integral types
+     */
+    public boolean isNumeric() {
+        return this == INTEGER || this == LONG;
+    }
 }
@@ -0,0 +1,131 @@
+package com.real.persistence.core;
+
+import com.real.metrics.LatencyHistogram;
+import com.real.metrics.MetricRegistry;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime metrics of a table, published in metric group table.TABLE_NAME.
+ * Operation latencies are recorded by the table, row count, index size, index filter false positive rate,
+ * estimated heap footprint and off-heap storage size are gauges evaluated only when metrics are read.
+ */
+@Getter
+public class TableMetrics {
+    /*
+     * Rough per object costs of the estimated memory footprint on 64-bit JVM with compressed oops
+     */
+    private static final long ROW_BYTES = 120;
+    private static final long HEAP_RECORD_BYTES = 80;
+    private static final long HEAP_FIELD_BYTES = 32;
+    private static final long COLUMNAR_RECORD_BYTES = 20;
+    private static final long COLUMNAR_FIELD_BYTES = 8;
+    private static final long OFF_HEAP_ROW_BYTES = 24;
+    private static final long DICTIONARY_ENTRY_BYTES = 96;
+    private static final long INDEX_KEY_BYTES = 120;
+    private static final long POSTING_BYTES = 40;
+
+    private final String group;
+    private final LatencyHistogram inserts;
+    private final LatencyHistogram bulkInserts;
+    private final LatencyHistogram deletes;
+    private final LatencyHistogram indexLookups;
+    private final LongAdder indexMisses;
+    private final LatencyHistogram querySpecs;
+    private final LongAdder scans;
+
+    private TableMetrics(String group, MetricRegistry registry) {
+        this.group = group;
+        this.inserts = registry.histogram(group + ".insert");
+        this.bulkInserts = registry.histogram(group + ".bulkInsert");
+        this.deletes = registry.histogram(group + ".delete");
+        this.indexLookups = registry.histogram(group + ".indexLookup");
+        this.indexMisses = registry.counter(group + ".indexMisses");
+        this.querySpecs = registry.histogram(group + ".querySpec");
+        this.scans = registry.counter(group + ".scans");
+    }
+
+    /**
+     * Register metrics and gauges of the table
+     *
+     * @param table - instrumented table
+     * @return TableMetrics - table metrics
+     */
+    public static TableMetrics register(@NonNull final Table table) {
+        MetricRegistry registry = MetricRegistry.getInstance();
+        String group = "table." + table.getTableName();
+        registry.gauge(group + ".rows", table::count);
+        registry.gauge(group + ".indexKeys", () -> table.getIndexes().values().stream()
+                .mapToLong(SecondaryIndex::size)
+                .sum());
+        registry.gauge(group + ".estimatedBytes", () -> estimatedBytes(table));
+        registry.gauge(group + ".offHeapBytes", () -> table.getStorage().offHeapBytes());
+
+        return new TableMetrics(group, registry);
+    }
+
+    /**
+     * Register size gauge of table index, in metric group table.TABLE_NAME.indexKeys,
+     * and Bloom filter false positive rate gauge, in metric group table.TABLE_NAME.filterFalsePositiveRate
+     *
+     * @param index - table index
+     */
+    public void registerIndex(@NonNull final SecondaryIndex index) {
+        MetricRegistry registry = MetricRegistry.getInstance();
+        String indexName = index.getDefinition().getName();
+        registry.gauge(group + ".indexKeys." + indexName, index::size);
+        registry.gauge(group + ".filterFalsePositiveRate." + indexName, index::falsePositiveRate);
+    }
+
+    /**
+     * Remove gauges of dropped table index
+     *
+     * @param indexName - index name
+     */
+    public void unregisterIndex(@NonNull final String indexName) {
+        MetricRegistry registry = MetricRegistry.getInstance();
+        registry.remove(group + ".indexKeys." + indexName);
+        registry.remove(group + ".filterFalsePositiveRate." + indexName);
+    }
+
+    /**
+     * Remove all table metrics, e.g. when the table is dropped
+     */
+    public void unregister() {
+        MetricRegistry registry = MetricRegistry.getInstance();
+        registry.removeGroup(group);
+        registry.removeGroup(group + ".indexKeys");
+        registry.removeGroup(group + ".filterFalsePositiveRate");
+    }
+
+    /*
+     * Estimated heap footprint of records, dictionaries, indexes and column statistics
+     */
+    private static long estimatedBytes(Table table) {
+        long records = table.count();
+        long columns = table.getTableMetadata().size();
+        long bytes;
+        switch (table.getStorageType()) {
+            case COLUMNAR:
+                bytes = records * (COLUMNAR_RECORD_BYTES + columns * COLUMNAR_FIELD_BYTES);
+                break;
+            case OFF_HEAP:
+                // heap part is the key index only, the slabs are reported by offHeapBytes
+                bytes = table.getStorage().rowCount() * OFF_HEAP_ROW_BYTES;
+                break;
+            default:
+                bytes = table.getStorage().rowCount() * ROW_BYTES + records * (HEAP_RECORD_BYTES + columns * HEAP_FIELD_BYTES);
+        }
+        for (Dictionary dictionary : table.getDictionaries().values()) {
+            bytes += dictionary.size() * DICTIONARY_ENTRY_BYTES;
+        }
+        for (SecondaryIndex index : table.getIndexes().values()) {
+            bytes += index.size() * INDEX_KEY_BYTES + index.postingCount() * POSTING_BYTES + index.filterBytes();
+        }
+        bytes += table.getStatistics().sizeInBytes();
+
+        return bytes;
+    }
+}
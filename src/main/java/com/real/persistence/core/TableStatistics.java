@@ -0,0 +1,96 @@
+package com.real.persistence.core;
+
+import lombok.NonNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Live statistics catalog of a table, used for index choice and capacity planning.
+ * Row and record counts are read from the storage engine in constant time, column statistics are
+ * updated by the table on every insert and delete of records.
+ * Distinct values estimates only grow, so after many deletes the statistics should be rebuilt by analyzing the table.
+ */
+public class TableStatistics {
+    private final StorageEngine storage;
+    private final Map<String, ColumnStatistics> columns;
+
+    /**
+     * Parameterised constructor
+     *
+     * @param tableMetadata - table columns types metadata information
+     * @param storage - storage engine of the table records
+     */
+    public TableStatistics(@NonNull final Map<String, TableMetadata> tableMetadata,
+                           @NonNull final StorageEngine storage) {
+        this.storage = storage;
+        Map<String, ColumnStatistics> statistics = new LinkedHashMap<>();
+        tableMetadata.forEach((column, type) -> statistics.put(column, new ColumnStatistics(column, type)));
+        this.columns = Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * Count of rows, i.e. distinct row IDs
+     *
+     * @return int - rows count
+     */
+    public int rowCount() {
+        return storage.rowCount();
+    }
+
+    /**
+     * Count of records of all rows
+     *
+     * @return long - records count
+     */
+    public long recordCount() {
+        return storage.count();
+    }
+
+    /**
+     * Statistics of table column
+     *
+     * @param column - table column name
+     * @return Optional<ColumnStatistics> - column statistics, empty if the table has no such column
+     */
+    public Optional<ColumnStatistics> column(@NonNull final String column) {
+        return Optional.ofNullable(columns.get(column));
+    }
+
+    /**
+     * Statistics of all table columns
+     *
+     * @return Map<String, ColumnStatistics> - column statistics by column name
+     */
+    public Map<String, ColumnStatistics> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Size of the distinct values sketches of all columns
+     *
+     * @return long - sketches size in bytes
+     */
+    public long sizeInBytes() {
+        return columns.values().stream().mapToLong(ColumnStatistics::sketchBytes).sum();
+    }
+
+    void added(Collection<? extends Map<String, String>> records) {
+        for (Map<String, String> record : records) {
+            columns.forEach((column, statistics) -> statistics.add(record.get(column)));
+        }
+    }
+
+    void removed(Collection<? extends Map<String, String>> records) {
+        for (Map<String, String> record : records) {
+            columns.forEach((column, statistics) -> statistics.remove(record.get(column)));
+        }
+    }
+
+    void clear() {
+        columns.values().forEach(ColumnStatistics::clear);
+    }
+}
@@ -0,0 +1,296 @@
+package com.real.persistence.join;
+
+import com.real.persistence.core.IndexDefinition;
+import com.real.persistence.core.LongIds;
+import com.real.persistence.core.Row;
+import com.real.persistence.core.Table;
+import com.real.util.HashUtil;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Hash join operator: the build side is a hash table of projected tuples by join key, built once
+ * from a table, from tuples of another join or from index posting lists of a batch of keys,
+ * and probed by batches of keys or by the records of another table.
+ * A batch is probed in two passes, the first hashes all the keys and the second walks the buckets,
+ * so the hashing loop runs without branching on table contents.
+ * The build side is immutable and safe for concurrent probes, it doesn't see changes of the source table
+ * after the build, compare Table.version() to detect them.
+ */
+@Slf4j
+public final class HashJoin {
+    /*
+     * Count of probe table records probed at once
+     */
+    private static final int PROBE_BATCH_SIZE = 1024;
+
+    /*
+     * Delimiter of the index key and the row ID of a posting key
+     */
+    private static final char POSTING_DELIMITER = '\u0000';
+
+    /*
+     * Names of the projected build columns, in tuple order
+     */
+    @Getter
+    private final List<String> columns;
+    private final String[] keys;
+    private final long[] hashes;
+    private final Tuple[] tuples;
+    /*
+     * First tuple of every bucket and the next tuple of the bucket chain, -1 ends the chain
+     */
+    private final int[] buckets;
+    private final int[] next;
+    private final int mask;
+
+    private HashJoin(List<String> columns, List<String> keys, List<Tuple> tuples) {
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        int size = keys.size();
+        this.keys = keys.toArray(new String[0]);
+        this.tuples = tuples.toArray(new Tuple[0]);
+        this.hashes = new long[size];
+        this.next = new int[size];
+        this.buckets = new int[Math.max(2, Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1)];
+        this.mask = buckets.length - 1;
+        Arrays.fill(buckets, -1);
+        // chains are linked from the last tuple, so every chain follows the build order
+        for (int i = size - 1; i >= 0; i--) {
+            hashes[i] = HashUtil.hash64(this.keys[i]);
+            int bucket = (int) hashes[i] & mask;
+            next[i] = buckets[bucket];
+            buckets[bucket] = i;
+        }
+    }
+
+    /**
+     * Build hash table over table records, records rejected by the key filter or without key column values
+     * are skipped
+     *
+     * @param table - build side table
+     * @param key - join key of the build records
+     * @param projection - build columns kept in the tuples
+     * @return HashJoin - build side
+     */
+    public static HashJoin build(@NonNull final Table table, @NonNull final IndexDefinition key,
+                                 @NonNull final List<String> projection) {
+        List<String> keys = new ArrayList<>(table.getStorage().rowCount());
+        List<Tuple> tuples = new ArrayList<>(table.getStorage().rowCount());
+        for (Row row : table.findAll()) {
+            for (Map<String, String> record : row.getRowValues()) {
+                String joinKey = key.key(record);
+                if (joinKey != null) {
+                    keys.add(joinKey);
+                    tuples.add(project(table, row.getRowId(), record, projection));
+                }
+            }
+        }
+        log.debug("Join build side of {} tuples by key {} built from table {}", keys.size(), key.getName(),
+                table.getTableName());
+
+        return new HashJoin(projection, keys, tuples);
+    }
+
+    /**
+     * Build hash table over tuples, e.g. the output of another join, tuples without key are skipped
+     *
+     * @param columns - names of the tuple columns
+     * @param tuples - build side tuples
+     * @param key - join key of the tuple or null if the tuple has no key
+     * @return HashJoin - build side
+     */
+    public static HashJoin build(@NonNull final List<String> columns, @NonNull final Iterable<Tuple> tuples,
+                                 @NonNull final Function<Tuple, String> key) {
+        List<String> keys = new ArrayList<>();
+        List<Tuple> built = new ArrayList<>();
+        for (Tuple tuple : tuples) {
+            String joinKey = key.apply(tuple);
+            if (joinKey != null) {
+                keys.add(joinKey);
+                built.add(tuple);
+            }
+        }
+
+        return new HashJoin(columns, keys, built);
+    }
+
+    /**
+     * Build hash table over the posting lists of index keys, e.g. of a batch of keys looked up in a secondary
+     * index of a table with numeric row IDs. Every row ID of the posting list of a key becomes a tuple
+     * of the row ID and the key, joined by postingKey(key, id), so probing checks a row ID against the key
+     * without materializing the whole index.
+     *
+     * @param column - name of the tuple column of the index key
+     * @param keys - index keys, normalized the same way as the probe keys
+     * @param postings - sorted row IDs of every key in the order of the keys
+     * @return HashJoin - build side
+     */
+    public static HashJoin build(@NonNull final String column, @NonNull final List<String> keys,
+                                 @NonNull final List<LongIds> postings) {
+        if (keys.size() != postings.size()) {
+            throw new IllegalArgumentException("Count of keys " + keys.size()
+                    + " differs from count of posting lists " + postings.size());
+        }
+
+        int size = 0;
+        for (LongIds ids : postings) {
+            size += ids.size();
+        }
+        List<String> joinKeys = new ArrayList<>(size);
+        List<Tuple> tuples = new ArrayList<>(size);
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            LongIds ids = postings.get(i);
+            for (int j = 0; j < ids.size(); j++) {
+                long id = ids.get(j);
+                joinKeys.add(postingKey(key, id));
+                tuples.add(new Tuple(id, key));
+            }
+        }
+
+        return new HashJoin(List.of(column), joinKeys, tuples);
+    }
+
+    /**
+     * Join key of a row ID of the posting list of an index key
+     *
+     * @param key - index key
+     * @param id - row ID
+     * @return String - posting key
+     */
+    public static String postingKey(@NonNull final String key, long id) {
+        return key + POSTING_DELIMITER + id;
+    }
+
+    /**
+     * Count of build tuples
+     *
+     * @return int - build side size
+     */
+    public int size() {
+        return tuples.length;
+    }
+
+    /**
+     * Probe batch of keys, null keys don't match
+     *
+     * @param keys - probe keys, normalized the same way as the build keys
+     * @param type - join output kind
+     * @return JoinResult - matches ordered by key position
+     */
+    public JoinResult probe(@NonNull final List<String> keys, @NonNull final JoinType type) {
+        return probe(keys, null, type);
+    }
+
+    /**
+     * Probe batch of keys on behalf of their owners, e.g. several candidate keys of one probing record,
+     * matches are reported at the owner position of the key and semi joins report an owner once
+     *
+     * @param keys - probe keys, normalized the same way as the build keys
+     * @param owners - owner position of every key in non-decreasing order, null if every key is its own owner
+     * @param type - join output kind
+     * @return JoinResult - matches ordered by owner position, the matches of one owner follow the key order
+     */
+    public JoinResult probe(@NonNull final List<String> keys, final int[] owners, @NonNull final JoinType type) {
+        int count = keys.size();
+        if (owners != null && owners.length < count) {
+            throw new IllegalArgumentException("Count of keys " + count + " exceeds count of owners " + owners.length);
+        }
+        String[] probed = keys.toArray(new String[0]);
+        long[] probeHashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            probeHashes[i] = probed[i] == null ? 0 : HashUtil.hash64(probed[i]);
+        }
+
+        boolean inner = type == JoinType.INNER;
+        JoinResult result = new JoinResult(count, inner);
+        for (int i = 0; i < count; i++) {
+            String key = probed[i];
+            if (key == null) {
+                continue;
+            }
+            int owner = owners == null ? i : owners[i];
+            if (!inner && result.size() > 0 && result.position(result.size() - 1) == owner) {
+                continue;
+            }
+            long hash = probeHashes[i];
+            for (int entry = buckets[(int) hash & mask]; entry >= 0; entry = next[entry]) {
+                if (hashes[entry] == hash && key.equals(this.keys[entry])) {
+                    result.add(owner, inner ? tuples[entry] : null);
+                    if (!inner) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Join records of the probe table with the build side in batches.
+     * Output tuples have the probe row ID and the probe projection values followed, for inner joins,
+     * by the build tuple values.
+     *
+     * @param table - probe side table
+     * @param key - join key of the probe records, normalized the same way as the build keys
+     * @param projection - probe columns kept in the output tuples
+     * @param type - join output kind
+     * @return List<Tuple> - joined tuples
+     */
+    public List<Tuple> join(@NonNull final Table table, @NonNull final IndexDefinition key,
+                            @NonNull final List<String> projection, @NonNull final JoinType type) {
+        List<Tuple> joined = new ArrayList<>();
+        List<String> batchKeys = new ArrayList<>(PROBE_BATCH_SIZE);
+        List<Tuple> batch = new ArrayList<>(PROBE_BATCH_SIZE);
+        for (Row row : table.findAll()) {
+            for (Map<String, String> record : row.getRowValues()) {
+                String joinKey = key.key(record);
+                if (joinKey == null) {
+                    continue;
+                }
+                batchKeys.add(joinKey);
+                batch.add(project(table, row.getRowId(), record, projection));
+                if (batchKeys.size() == PROBE_BATCH_SIZE) {
+                    join(batchKeys, batch, type, joined);
+                }
+            }
+        }
+        join(batchKeys, batch, type, joined);
+
+        return joined;
+    }
+
+    /*
+     * Probe the batch into the joined tuples and empty the batch
+     */
+    private void join(List<String> batchKeys, List<Tuple> batch, JoinType type, List<Tuple> joined) {
+        JoinResult result = probe(batchKeys, type);
+        for (int i = 0; i < result.size(); i++) {
+            Tuple probed = batch.get(result.position(i));
+            joined.add(type == JoinType.INNER ? probed.concat(result.tuple(i)) : probed);
+        }
+        batchKeys.clear();
+        batch.clear();
+    }
+
+    /*
+     * Tuple of the projected record, row IDs of tables keyed by numeric row IDs are parsed once here
+     */
+    private static Tuple project(Table table, String rowId, Map<String, String> record, List<String> projection) {
+        String[] values = new String[projection.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = record.get(projection.get(i));
+        }
+
+        return table.getKeyType().isNumeric() ? new Tuple(Long.parseLong(rowId), values) : new Tuple(rowId, values);
+    }
+}
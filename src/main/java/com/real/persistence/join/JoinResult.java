@@ -0,0 +1,84 @@
+package com.real.persistence.join;
+
+import java.util.Arrays;
+
+/**
+ * Output of probing a batch of keys: matches as parallel columns of probe positions and build tuples.
+ * Matches are ordered by probe position, the matches of one position follow the build order of the tuples.
+ */
+public final class JoinResult {
+    private int size;
+    private int[] positions;
+    /*
+     * Build tuples of the matches, null for semi joins
+     */
+    private Tuple[] tuples;
+
+    /**
+     * Empty result to be filled by a join in probe position order
+     *
+     * @param capacity - expected count of matches
+     * @param withTuples - true if the matches keep their build tuples, false for semi joins
+     */
+    public JoinResult(int capacity, boolean withTuples) {
+        this.positions = new int[Math.max(1, capacity)];
+        this.tuples = withTuples ? new Tuple[positions.length] : null;
+    }
+
+    /**
+     * Count of matches
+     *
+     * @return int - result size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Position of the matched key in the probed batch
+     *
+     * @param match - match index from 0 to size - 1
+     * @return int - probe key position
+     */
+    public int position(int match) {
+        check(match);
+        return positions[match];
+    }
+
+    /**
+     * Build tuple of the match
+     *
+     * @param match - match index from 0 to size - 1
+     * @return Tuple - projected build record or null for semi joins
+     */
+    public Tuple tuple(int match) {
+        check(match);
+        return tuples == null ? null : tuples[match];
+    }
+
+    /**
+     * Append match, positions are added in non-decreasing order
+     *
+     * @param position - probe key position
+     * @param tuple - matched build tuple, ignored by semi join results
+     */
+    public void add(int position, Tuple tuple) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size << 1);
+            if (tuples != null) {
+                tuples = Arrays.copyOf(tuples, size << 1);
+            }
+        }
+        positions[size] = position;
+        if (tuples != null) {
+            tuples[size] = tuple;
+        }
+        size++;
+    }
+
+    private void check(int match) {
+        if (match < 0 || match >= size) {
+            throw new IndexOutOfBoundsException("Match " + match + " out of join result of " + size + " matches");
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.real.persistence.join;
+
+/**
+ * Kind of hash join output
+ */
+public enum JoinType {
+    /*
+     * Every probe key is paired with every build tuple of the key
+     */
+    INNER,
+    /*
+     * Every probe key with at least one build tuple is emitted once, without build tuples
+     */
+    SEMI
+}
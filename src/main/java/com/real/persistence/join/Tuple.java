@@ -0,0 +1,122 @@
+package com.real.persistence.join;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Projected record of a join: row ID of the record and values of the projected columns in projection order.
+ * Tuples of tables keyed by numeric row IDs carry the row ID as a primitive long, so joins over them
+ * don't parse or box the IDs. Column names are kept by the producing join, so tuples don't repeat them.
+ */
+public final class Tuple {
+    /*
+     * Row ID of a tuple of a table keyed by strings, null for numeric row IDs
+     */
+    private final String rowId;
+    private final long id;
+    private final String[] values;
+
+    /**
+     * Tuple of a record with string row ID
+     *
+     * @param rowId - row ID of the projected record
+     * @param values - projected column values, null if the record has no value of the column
+     */
+    public Tuple(@NonNull final String rowId, @NonNull final String... values) {
+        this.rowId = rowId;
+        this.id = 0;
+        this.values = values;
+    }
+
+    /**
+     * Tuple of a record with numeric row ID
+     *
+     * @param id - numeric row ID of the projected record
+     * @param values - projected column values, null if the record has no value of the column
+     */
+    public Tuple(long id, @NonNull final String... values) {
+        this.rowId = null;
+        this.id = id;
+        this.values = values;
+    }
+
+    /**
+     * Row ID of the projected record, numeric row IDs are formatted in canonical decimal form
+     *
+     * @return String - row ID
+     */
+    public String getRowId() {
+        return rowId != null ? rowId : Long.toString(id);
+    }
+
+    /**
+     * Check whether the tuple has a numeric row ID
+     *
+     * @return boolean - true if the projected record is of a table keyed by numeric row IDs
+     */
+    public boolean isNumeric() {
+        return rowId == null;
+    }
+
+    /**
+     * Numeric row ID of the projected record
+     *
+     * @return long - row ID
+     * @exception IllegalStateException - the tuple has a string row ID
+     */
+    public long getId() {
+        if (rowId != null) {
+            throw new IllegalStateException("Tuple of row " + rowId + " has no numeric row ID");
+        }
+
+        return id;
+    }
+
+    /**
+     * Value of projected column
+     *
+     * @param column - column position in the projection
+     * @return String - column value or null if the record has no value of the column
+     */
+    public String get(int column) {
+        return values[column];
+    }
+
+    /**
+     * Count of projected columns
+     *
+     * @return int - tuple width
+     */
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Tuple)) return false;
+        Tuple that = (Tuple) o;
+        return id == that.id && Objects.equals(rowId, that.rowId) && Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hash(rowId, id) + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return getRowId() + Arrays.toString(values);
+    }
+
+    /*
+     * Tuple of this row ID with the values of both tuples
+     */
+    Tuple concat(Tuple other) {
+        String[] joined = Arrays.copyOf(values, values.length + other.values.length);
+        System.arraycopy(other.values, 0, joined, values.length, other.values.length);
+        return rowId != null ? new Tuple(rowId, joined) : new Tuple(id, joined);
+    }
+}
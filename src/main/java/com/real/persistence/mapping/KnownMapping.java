@@ -0,0 +1,24 @@
+package com.real.persistence.mapping;
+
+import lombok.Data;
+
+/**
+ * Stored match result of a provider feed record: fingerprint of the matching fields of the record
+ * and the internal ID it was matched to, or NO_MATCH if it had no match
+ */
+@Data
+public class KnownMapping {
+    public static final int NO_MATCH = -1;
+
+    private final long fingerprint;
+    private final int internalId;
+
+    /**
+     * Check whether the record was matched to an internal movie
+     *
+     * @return boolean - true if the record has an internal ID
+     */
+    public boolean isMatched() {
+        return internalId != NO_MATCH;
+    }
+}
@@ -0,0 +1,551 @@
+package com.real.persistence.mapping;
+
+import com.real.util.BinaryCodec;
+import com.real.util.HashUtil;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable store of known mappings keyed by provider and external ID.
+ * Mappings are appended to a log file, every mapping is framed as payload length, CRC32C of the payload
+ * and the payload, the last mapping of a key wins. Only a 64-bit hash of every key and the file offset
+ * of its last mapping are kept in memory, the most recently used mappings are cached decoded.
+ * The file is compacted when overwritten mappings outnumber the live ones.
+ * A torn frame at the end of the file, left by a crash in the middle of a write, is truncated on open.
+ * The store doesn't know about internal database changes, it should be cleared when the internal database is reloaded.
+ * Lookups run concurrently: cached mappings are found without taking the store lock, file reads share a read lock
+ * and only writes, syncs and compaction take the write lock.
+ */
+@Slf4j
+public class KnownMappingStore implements Closeable {
+    private static final int MAGIC = 0x4B4D4150;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int FRAME_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+    /*
+     * Count of overwritten mappings the file may hold before it's compacted, in addition to the live mappings
+     */
+    private static final int MIN_GARBAGE = 1 << 12;
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final Path path;
+    private final MappingStoreConfig config;
+    private final MappingCache cache;
+    private final ReentrantReadWriteLock lock;
+    private final ByteArrayOutputStream pending;
+    private final ByteArrayOutputStream payload;
+    private final DataOutputStream payloadOut;
+    private final CRC32C checksum;
+    private FileChannel channel;
+    private OffsetTable offsets;
+    /*
+     * Length of the file written so far, pending frames are appended at this offset
+     */
+    private long fileSize;
+    /*
+     * Count of mapping frames in the file and pending buffer, including the overwritten ones
+     */
+    private long frames;
+    private final LongAdder cacheHits;
+    private final LongAdder cacheMisses;
+
+    private KnownMappingStore(Path path, MappingStoreConfig config, FileChannel channel, OffsetTable offsets,
+                              long fileSize, long frames) {
+        this.path = path;
+        this.config = config;
+        this.channel = channel;
+        this.offsets = offsets;
+        this.fileSize = fileSize;
+        this.frames = frames;
+        this.pending = new ByteArrayOutputStream(BUFFER_SIZE);
+        this.payload = new ByteArrayOutputStream(64);
+        this.payloadOut = new DataOutputStream(payload);
+        this.checksum = new CRC32C();
+        this.cache = new MappingCache(config.getCacheSize());
+        this.lock = new ReentrantReadWriteLock();
+        this.cacheHits = new LongAdder();
+        this.cacheMisses = new LongAdder();
+    }
+
+    /**
+     * Open store, the file is created if it doesn't exist and a torn frame at its end is truncated
+     *
+     * @param path - store file path
+     * @param config - cache size and write buffer configuration
+     * @return KnownMappingStore - opened store
+     * @exception IOException - file opening exception or the file isn't a known-mapping store
+     */
+    public static KnownMappingStore open(@NonNull final Path path, @NonNull final MappingStoreConfig config)
+            throws IOException {
+        OffsetTable offsets = new OffsetTable();
+        long[] frames = {0};
+        long validLength = Files.exists(path) && Files.size(path) > 0 ? scan(path, offsets, frames) : 0;
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (validLength == 0) {
+                channel.truncate(0);
+                write(channel, ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip(), 0);
+                validLength = FILE_HEADER_SIZE;
+            } else if (channel.size() > validLength) {
+                log.error("Truncating torn tail of known-mapping store {} at {} bytes", path, validLength);
+                channel.truncate(validLength);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        return new KnownMappingStore(path, config, channel, offsets, validLength, frames[0]);
+    }
+
+    /**
+     * Find the last mapping stored for provider record
+     *
+     * @param provider - provider name
+     * @param externalId - record ID in the provider feed
+     * @return Optional<KnownMapping> - stored mapping, empty if the record has never been stored
+     * @exception IOException - file reading exception
+     */
+    public Optional<KnownMapping> get(@NonNull final String provider, @NonNull final String externalId)
+            throws IOException {
+        String key = key(provider, externalId);
+        KnownMapping mapping = cache.get(key);
+        if (mapping != null) {
+            cacheHits.increment();
+            return Optional.of(mapping);
+        }
+
+        cacheMisses.increment();
+        long hash = HashUtil.hash64(key);
+        while (true) {
+            lock.readLock().lock();
+            try {
+                long offset = offsets.get(hash);
+                if (offset < 0) {
+                    return Optional.empty();
+                }
+                if (offset < fileSize) {
+                    return Optional.ofNullable(read(key, provider, externalId, offset));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            // the mapping is still buffered, it's written out and looked up again
+            lock.writeLock().lock();
+            try {
+                flush();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Store mapping of provider record, replacing its previous mapping.
+     * The mapping is buffered and written to the file with the following mappings, it's durable after sync.
+     *
+     * @param provider - provider name
+     * @param externalId - record ID in the provider feed
+     * @param mapping - record fingerprint and internal ID
+     * @exception IOException - file writing exception
+     */
+    public void put(@NonNull final String provider, @NonNull final String externalId,
+                    @NonNull final KnownMapping mapping) throws IOException {
+        lock.writeLock().lock();
+        try {
+            append(provider, externalId, mapping);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write and fsync buffered mappings, the file is compacted if it holds more overwritten mappings than live ones
+     *
+     * @exception IOException - file writing exception
+     */
+    public void sync() throws IOException {
+        lock.writeLock().lock();
+        try {
+            flush();
+            channel.force(false);
+            if (frames - offsets.size() > Math.max(MIN_GARBAGE, offsets.size())) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop all stored mappings, e.g. after the internal database has been reloaded
+     *
+     * @exception IOException - file writing exception
+     */
+    public void clear() throws IOException {
+        lock.writeLock().lock();
+        try {
+            pending.reset();
+            channel.truncate(FILE_HEADER_SIZE);
+            channel.force(true);
+            fileSize = FILE_HEADER_SIZE;
+            frames = 0;
+            offsets = new OffsetTable();
+            cache.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Count of stored keys
+     *
+     * @return int - count of keys with a mapping
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return offsets.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Count of lookups answered from the mapping cache since the store was opened
+     *
+     * @return long - cache hits
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Count of lookups which missed the mapping cache since the store was opened
+     *
+     * @return long - cache misses
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * Sync buffered mappings and close the store file
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            sync();
+        } finally {
+            channel.close();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Buffer the mapping frame, guarded by the write lock
+     */
+    private void append(String provider, String externalId, KnownMapping mapping) throws IOException {
+        payload.reset();
+        BinaryCodec.writeString(payloadOut, provider);
+        BinaryCodec.writeString(payloadOut, externalId);
+        payloadOut.writeLong(mapping.getFingerprint());
+        payloadOut.writeInt(mapping.getInternalId());
+
+        checksum.reset();
+        checksum.update(payload.toByteArray());
+        long offset = fileSize + pending.size();
+        DataOutputStream out = new DataOutputStream(pending);
+        out.writeInt(payload.size());
+        out.writeInt((int) checksum.getValue());
+        payload.writeTo(out);
+
+        String key = key(provider, externalId);
+        offsets.put(HashUtil.hash64(key), offset);
+        cache.put(key, mapping);
+        frames++;
+        if (pending.size() >= config.getFlushThreshold()) {
+            flush();
+        }
+    }
+
+    /*
+     * Write buffered frames at the end of the file
+     */
+    private void flush() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        fileSize += write(channel, ByteBuffer.wrap(pending.toByteArray()), fileSize);
+        pending.reset();
+    }
+
+    /*
+     * Rewrite the last mapping of every key to a new file which atomically replaces the store file
+     */
+    private void compact() throws IOException {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        OffsetTable live = new OffsetTable();
+        long size = FILE_HEADER_SIZE;
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(out, ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip(), 0);
+            for (int slot = 0; slot < offsets.hashes.length; slot++) {
+                if (offsets.hashes[slot] != OffsetTable.EMPTY) {
+                    live.put(offsets.hashes[slot], size);
+                    size += write(out, read(offsets.offsets[slot]), size);
+                }
+            }
+            out.force(true);
+        }
+
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        log.debug("Compacted known-mapping store {} from {} to {} mappings", path, frames, live.size());
+        offsets = live;
+        fileSize = size;
+        frames = live.size();
+    }
+
+    /*
+     * Decode the mapping of the key from the frame at the file offset and cache it, guarded by the read lock,
+     * so no newer mapping of the key is cached meanwhile. Returns null if the frame is of another key with the same hash.
+     */
+    private KnownMapping read(String key, String provider, String externalId, long offset) throws IOException {
+        ByteBuffer frame = read(offset);
+        frame.position(FRAME_HEADER_SIZE);
+        // keys with the same 64-bit hash share the offset slot, the slot holds the last stored of them
+        if (!BinaryCodec.readString(frame).equals(provider) || !BinaryCodec.readString(frame).equals(externalId)) {
+            return null;
+        }
+        KnownMapping mapping = new KnownMapping(frame.getLong(), frame.getInt());
+        cache.put(key, mapping);
+
+        return mapping;
+    }
+
+    /*
+     * Read the whole frame at the file offset
+     */
+    private ByteBuffer read(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        readFully(header, offset);
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + header.getInt(0));
+        readFully(frame, offset);
+
+        return frame.flip();
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Known-mapping store " + path + " ends inside the frame at " + offset);
+            }
+        }
+    }
+
+    private static int write(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + length - buffer.remaining());
+        }
+
+        return length;
+    }
+
+    private static String key(String provider, String externalId) {
+        return provider + KEY_SEPARATOR + externalId;
+    }
+
+    /*
+     * Read frames from the start of the file into the offset table and count them.
+     * Returns length of the file prefix of complete frames with valid checksums.
+     */
+    private static long scan(Path path, OffsetTable offsets, long[] frames) throws IOException {
+        long validLength = FILE_HEADER_SIZE;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE))) {
+            long size = channel.size();
+            if (size < FILE_HEADER_SIZE || in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(path + " isn't a known-mapping store of version " + VERSION);
+            }
+
+            CRC32C checksum = new CRC32C();
+            while (size - validLength >= FRAME_HEADER_SIZE) {
+                int length = in.readInt();
+                int expected = in.readInt();
+                if (length < 0 || length > size - validLength - FRAME_HEADER_SIZE) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                checksum.reset();
+                checksum.update(bytes, 0, length);
+                if ((int) checksum.getValue() != expected) {
+                    break;
+                }
+                ByteBuffer frame = ByteBuffer.wrap(bytes);
+                String provider = BinaryCodec.readString(frame);
+                offsets.put(HashUtil.hash64(key(provider, BinaryCodec.readString(frame))), validLength);
+                frames[0]++;
+                validLength += FRAME_HEADER_SIZE + length;
+            }
+        } catch (EOFException e) {
+            log.debug("Known-mapping store {} ends with a torn frame", path);
+        }
+
+        return validLength;
+    }
+
+    /*
+     * Open addressing table of file offsets keyed by 64-bit key hashes, the zero hash is stored as one.
+     * Not thread-safe, guarded by the store lock.
+     */
+    private static final class OffsetTable {
+        private static final int INITIAL_CAPACITY = 1024;
+        private static final long EMPTY = 0L;
+
+        private long[] hashes = new long[INITIAL_CAPACITY];
+        private long[] offsets = new long[INITIAL_CAPACITY];
+        private int size;
+
+        long get(long hash) {
+            long key = hash == EMPTY ? 1L : hash;
+            int mask = hashes.length - 1;
+            for (int slot = (int) key & mask; ; slot = (slot + 1) & mask) {
+                if (hashes[slot] == key) {
+                    return offsets[slot];
+                }
+                if (hashes[slot] == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(long hash, long offset) {
+            long key = hash == EMPTY ? 1L : hash;
+            if ((size + 1) << 1 > hashes.length) {
+                rehash(hashes.length << 1);
+            }
+            int mask = hashes.length - 1;
+            int slot = (int) key & mask;
+            while (hashes[slot] != EMPTY && hashes[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (hashes[slot] == EMPTY) {
+                hashes[slot] = key;
+                size++;
+            }
+            offsets[slot] = offset;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void rehash(int capacity) {
+            long[] previousHashes = hashes;
+            long[] previousOffsets = offsets;
+            hashes = new long[capacity];
+            offsets = new long[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < previousHashes.length; i++) {
+                if (previousHashes[i] != EMPTY) {
+                    int slot = (int) previousHashes[i] & mask;
+                    while (hashes[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    hashes[slot] = previousHashes[i];
+                    offsets[slot] = previousOffsets[i];
+                }
+            }
+        }
+    }
+
+    /*
+     * LRU cache of decoded mappings. Large caches are split into segments by key hash, every segment is an LRU list
+     * under its own monitor, so concurrent lookups of different keys rarely wait for each other.
+     */
+    private static final class MappingCache {
+        private static final int SEGMENTS = 16;
+        private static final int MIN_SEGMENTED_SIZE = 1024;
+
+        private final Segment[] segments;
+
+        MappingCache(int size) {
+            int count = size >= MIN_SEGMENTED_SIZE ? SEGMENTS : 1;
+            segments = new Segment[count];
+            for (int i = 0; i < count; i++) {
+                segments[i] = new Segment((size + count - 1) / count);
+            }
+        }
+
+        KnownMapping get(String key) {
+            Segment segment = segment(key);
+            synchronized (segment) {
+                return segment.get(key);
+            }
+        }
+
+        void put(String key, KnownMapping mapping) {
+            Segment segment = segment(key);
+            synchronized (segment) {
+                segment.put(key, mapping);
+            }
+        }
+
+        void clear() {
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    segment.clear();
+                }
+            }
+        }
+
+        private Segment segment(String key) {
+            return segments[(int) HashUtil.mix64(key.hashCode()) & (segments.length - 1)];
+        }
+
+        private static final class Segment extends LinkedHashMap<String, KnownMapping> {
+            private static final long serialVersionUID = 1L;
+
+            private final int capacity;
+
+            Segment(int capacity) {
+                super(16, 0.75f, true);
+                this.capacity = capacity;
+            }
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, KnownMapping> eldest) {
+                return size() > capacity;
+            }
+        }
+    }
+}
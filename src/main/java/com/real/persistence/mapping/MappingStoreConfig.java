@@ -0,0 +1,33 @@
+package com.real.persistence.mapping;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Known-mapping store configuration.
+ * Only the file offsets of the mappings are kept in memory for all keys, decoded mappings are cached
+ * for the most recently used keys.
+ */
+@Data
+@Builder
+public class MappingStoreConfig {
+    /*
+     * Maximum count of decoded mappings kept in memory, the least recently used mapping is evicted first
+     */
+    @Builder.Default
+    private final int cacheSize = 1 << 16;
+    /*
+     * Size of buffered mapping writes in bytes which makes the store write them to the file right away
+     */
+    @Builder.Default
+    private final int flushThreshold = 1 << 20;
+
+    /**
+     * Configuration with 65536 cached mappings and 1 MiB write buffer
+     *
+     * @return MappingStoreConfig - default configuration
+     */
+    public static MappingStoreConfig defaults() {
+        return MappingStoreConfig.builder().build();
+    }
+}
@@ -1,14 +1,20 @@
 package com.real.persistence.repository;
 
-import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
+import com.real.execution.ExecutionContext;
 
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Generic Repository CRUD Interface
  */
 public interface GenericRepository<T, ID> extends QueryRepository<T, ID> {
+    /*
+     * Count of entities of a batch operation handled by one task
+     */
+    int BATCH_CHUNK_SIZE = 1024;
 
     void save(T entity);
 
@@ -23,28 +29,49 @@ public interface GenericRepository<T, ID> extends QueryRepository<T, ID> {
     void deleteAll();
 
     /**
-     * Records saving asynchronous batch operation
+     * Records saving batch operation, entities are saved in parallel chunks on the CPU-bound scheduler
+     * and the call returns when all of them are saved, like saveAll
      *
      * @param entities - Iterable entities
      */
     default void saveBatch(Iterable<T> entities) {
-        Flux.fromIterable(entities)
-                .filter(Objects::nonNull)
-                .parallel()
-                .flatMap(entity -> Mono.fromRunnable(() -> save(entity)))
-                .subscribe();
+        runBatch(toList(entities), this::save);
     }
 
     /**
-     * Records deleting by ID asynchronous batch operation
+     * Copy non-null entities into list, e.g. before a bulk load
+     *
+     * @param entities - Iterable entities
+     * @return List<E> - non-null entities in the iteration order
+     */
+    static <E> List<E> toList(Iterable<E> entities) {
+        List<E> list = new ArrayList<>(entities instanceof Collection ? ((Collection<E>) entities).size() : 16);
+        for (E entity : entities) {
+            if (entity != null) {
+                list.add(entity);
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * Records deleting by ID batch operation, records are deleted in parallel chunks on the CPU-bound scheduler
+     * and the call returns when all of them are deleted
      *
      * @param ids - Iterable ids
      */
     default void deleteBatchByIds(Iterable<ID> ids) {
-        Flux.fromIterable(ids)
-                .filter(Objects::nonNull)
-                .parallel()
-                .flatMap(id -> Mono.fromRunnable(() -> deleteById(id)))
-                .subscribe();
+        runBatch(toList(ids), this::deleteById);
+    }
+
+    /*
+     * Apply the operation to every element in chunks, the calling thread works on the chunks too
+     */
+    private static <E> void runBatch(List<E> elements, Consumer<E> operation) {
+        int chunks = (elements.size() + BATCH_CHUNK_SIZE - 1) / BATCH_CHUNK_SIZE;
+        ExecutionContext.getInstance().runChunks(chunks, chunk -> elements
+                .subList(chunk * BATCH_CHUNK_SIZE, Math.min(elements.size(), (chunk + 1) * BATCH_CHUNK_SIZE))
+                .forEach(operation));
     }
 }
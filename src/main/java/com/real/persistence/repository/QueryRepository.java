@@ -5,6 +5,7 @@ import lombok.NonNull;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Interface for Table Records Read Operations
@@ -22,4 +23,8 @@ public interface QueryRepository<T, ID> {
     List<T> findByQuerySpec(Map<ID, ID> querySpec);
 
     Optional<ID> findIdByIndex(@NonNull final ID index);
+
+    Set<ID> findIdsByIndex(@NonNull final String indexName, @NonNull final ID key);
+
+    List<Set<ID>> findIdsByIndex(@NonNull final Iterable<ID> keys);
 }
@@ -0,0 +1,101 @@
+package com.real.persistence.repository;
+
+import com.real.execution.ExecutionContext;
+import com.real.execution.Workload;
+import lombok.NonNull;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reactive Repository Interface over a blocking repository.
+ * Operations are lazy, nothing runs until the returned Mono or Flux is subscribed, and completion or failure
+ * of every operation is signalled to the subscriber. Point reads and single saves run on the subscribing thread,
+ * bulk writes, query searches and table cleanup run on the CPU-bound scheduler of the execution context.
+ */
+public interface ReactiveGenericRepository<T, ID> {
+
+    /**
+     * Blocking repository the operations are delegated to
+     *
+     * @return GenericRepository<T, ID> - delegate repository
+     */
+    GenericRepository<T, ID> blocking();
+
+    /**
+     * Bulk write configuration
+     *
+     * @return ReactiveRepositoryConfig - concurrency and batch size
+     */
+    ReactiveRepositoryConfig getConfig();
+
+    /**
+     * Save entity record
+     *
+     * @param entity - entity record
+     * @return Mono<Void> - completes when the entity is saved
+     */
+    default Mono<Void> save(@NonNull final T entity) {
+        return Mono.fromRunnable(() -> blocking().save(entity));
+    }
+
+    /**
+     * Save entities in batches with bounded concurrency, the source is requested as the batches are written
+     *
+     * @param entities - entities publisher
+     * @return Mono<Long> - count of saved entities, emitted when all of them are saved
+     */
+    default Mono<Long> saveAll(@NonNull final Publisher<T> entities) {
+        return Flux.from(entities)
+                .filter(Objects::nonNull)
+                .buffer(getConfig().getBatchSize())
+                .flatMap(batch -> Mono.fromCallable(() -> saveBatch(batch))
+                        .subscribeOn(ExecutionContext.getInstance().scheduler(Workload.CPU_BOUND)),
+                        getConfig().getConcurrency())
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Find entity record by ID
+     *
+     * @param id - record ID
+     * @return Mono<T> - record, empty if there is no record with the ID
+     */
+    default Mono<T> findById(@NonNull final ID id) {
+        return Mono.fromCallable(() -> blocking().findById(id).orElse(null));
+    }
+
+    /**
+     * Search records by query specification based on column -> value (C,V)
+     *
+     * @param querySpec - Specification Map with table column name as KEY and expected VALUE
+     * @return Flux<T> - filtered records
+     */
+    default Flux<T> findByQuerySpec(@NonNull final Map<ID, ID> querySpec) {
+        return Flux.defer(() -> Flux.fromIterable(blocking().findByQuerySpec(querySpec)))
+                .subscribeOn(ExecutionContext.getInstance().scheduler(Workload.CPU_BOUND));
+    }
+
+    /**
+     * Remove all available records
+     *
+     * @return Mono<Void> - completes when the records are removed
+     */
+    default Mono<Void> deleteAll() {
+        return Mono.<Void>fromRunnable(() -> blocking().deleteAll())
+                .subscribeOn(ExecutionContext.getInstance().scheduler(Workload.CPU_BOUND));
+    }
+
+    /*
+     * Bulk load one batch on the calling worker, returns count of saved entities
+     */
+    private long saveBatch(List<T> batch) {
+        blocking().saveAll(batch);
+
+        return batch.size();
+    }
+}
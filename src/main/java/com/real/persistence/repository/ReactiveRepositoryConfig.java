@@ -0,0 +1,35 @@
+package com.real.persistence.repository;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Reactive repository bulk write configuration.
+ * Saved entities are grouped in batches and at most concurrency batches are written at once,
+ * the source is requested only as fast as the batches are written.
+ */
+@Data
+@Builder
+public class ReactiveRepositoryConfig {
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    /*
+     * Count of batches written concurrently
+     */
+    @Builder.Default
+    private final int concurrency = CORES;
+    /*
+     * Count of entities written by one task
+     */
+    @Builder.Default
+    private final int batchSize = 1024;
+
+    /**
+     * Configuration with concurrency equal to available processors and batches of 1024 entities
+     *
+     * @return ReactiveRepositoryConfig - default configuration
+     */
+    public static ReactiveRepositoryConfig defaults() {
+        return ReactiveRepositoryConfig.builder().build();
+    }
+}
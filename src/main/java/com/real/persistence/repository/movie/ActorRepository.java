@@ -1,11 +1,56 @@
 package com.real.persistence.repository.movie;
 
+import com.real.persistence.core.LongIds;
 import com.real.persistence.core.Row;
 import com.real.persistence.repository.GenericRepository;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Actor Repository interface of actor table
  */
 public interface ActorRepository extends GenericRepository<Row, String> {
     String ACTOR_TABLE = "actor";
+    /*
+     * Index of directed movie IDs by director name, the key is case insensitive
+     */
+    String DIRECTOR_INDEX = "director";
+    /*
+     * Inverted index of movie IDs by cast member name, the key is case insensitive
+     */
+    String CAST_INDEX = "cast";
+
+    /**
+     * Confirm candidate movies by cast: candidates with all the actors in the cast
+     *
+     * @param movieIds - candidate movie IDs
+     * @param actors - actor names, case insensitive
+     * @return LongIds - sorted candidates casting all the actors, all candidates if no actor is given
+     */
+    LongIds findMovieIdsWithCast(LongIds movieIds, Collection<String> actors);
+
+    /**
+     * Finding IDs of the movies with all the actors in the cast
+     *
+     * @param actors - actor names, case insensitive
+     * @return LongIds - sorted movie IDs, empty if no actor is given
+     */
+    LongIds findMovieIdsWithCast(Collection<String> actors);
+
+    /**
+     * Finding IDs of the movies directed by the director without boxing them
+     *
+     * @param director - director name, case insensitive
+     * @return LongIds - sorted movie IDs, empty if the director is unknown
+     */
+    LongIds findDirectedMovieIds(String director);
+
+    /**
+     * Finding IDs of the movies directed by many directors in a single pass
+     *
+     * @param directors - director names, case insensitive
+     * @return List<LongIds> - sorted movie IDs of every director in the order of the directors
+     */
+    List<LongIds> findDirectedMovieIds(Iterable<String> directors);
 }
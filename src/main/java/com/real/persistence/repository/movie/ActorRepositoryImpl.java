@@ -2,28 +2,68 @@ package com.real.persistence.repository.movie;
 
 import com.real.model.CsvMetadata;
 import com.real.persistence.PersistenceManager;
+import com.real.persistence.core.IndexDefinition;
+import com.real.persistence.core.InvertedIndex;
+import com.real.persistence.core.LongIds;
 import com.real.persistence.core.Row;
+import com.real.persistence.core.StorageType;
 import com.real.persistence.core.Table;
 import com.real.persistence.core.TableMetadata;
+import com.real.persistence.repository.GenericRepository;
 import lombok.NonNull;
-import reactor.core.publisher.Flux;
-import reactor.core.scheduler.Schedulers;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Actor Repository Implementation  class
  */
 public class ActorRepositoryImpl implements ActorRepository {
+    /*
+     * Index of movie IDs by director name, only records of directors with a name are indexed
+     */
+    static final IndexDefinition DIRECTOR_INDEX_DEFINITION = IndexDefinition.builder()
+            .name(DIRECTOR_INDEX)
+            .column(CsvMetadata.NAME.name())
+            .filterColumn(CsvMetadata.ROLE.name())
+            .filterColumn(CsvMetadata.NAME.name())
+            .filter(record -> CsvMetadata.DIRECTOR.name().equalsIgnoreCase(record.get(CsvMetadata.ROLE.name()))
+                    && !record.getOrDefault(CsvMetadata.NAME.name(), "").isEmpty())
+            .caseInsensitive(true)
+            .build();
+    /*
+     * Inverted index of movie IDs by cast member name, directors aren't cast members
+     */
+    private static final IndexDefinition CAST_INDEX_DEFINITION = IndexDefinition.builder()
+            .name(CAST_INDEX)
+            .column(CsvMetadata.NAME.name())
+            .filterColumn(CsvMetadata.ROLE.name())
+            .filterColumn(CsvMetadata.NAME.name())
+            .filter(record -> !CsvMetadata.DIRECTOR.name().equalsIgnoreCase(record.get(CsvMetadata.ROLE.name()))
+                    && !record.getOrDefault(CsvMetadata.NAME.name(), "").isEmpty())
+            .caseInsensitive(true)
+            .build();
 
     private final PersistenceManager manager;
+    /*
+     * Cast index with the actor table and table version it was built from
+     */
+    private volatile CastIndex castIndex;
 
     /**
      * Non parameterized constructor.
      * Loading PersistenceManager instance and initializing actor Table instance
      */
     public ActorRepositoryImpl() {
+        this(StorageType.HEAP);
+    }
+
+    /**
+     * Parameterised constructor.
+     * Loading PersistenceManager instance and initializing actor Table instance
+     *
+     * @param storageType - storage engine of the actor table records
+     */
+    public ActorRepositoryImpl(@NonNull final StorageType storageType) {
         this.manager = PersistenceManager.getInstance();
 
         final Map<String, TableMetadata> actorTableMetaMap = new HashMap<>();
@@ -31,7 +71,11 @@ public class ActorRepositoryImpl implements ActorRepository {
         actorTableMetaMap.put(CsvMetadata.NAME.name(), TableMetadata.STRING);
         actorTableMetaMap.put(CsvMetadata.ROLE.name(), TableMetadata.STRING);
 
-        manager.createTable(ACTOR_TABLE, actorTableMetaMap);
+        // table restored from snapshot is reused as is
+        if (!manager.existsTable(ACTOR_TABLE)) {
+            manager.createTable(ACTOR_TABLE, actorTableMetaMap, storageType, TableMetadata.LONG);
+        }
+        registerIndexes();
     }
 
     /**
@@ -42,17 +86,18 @@ public class ActorRepositoryImpl implements ActorRepository {
     @Override
     public void save(Row entity) {
         manager.addTableRow(ACTOR_TABLE, entity);
-        populateIndexes(manager.loadTable(ACTOR_TABLE), entity);
     }
 
     /**
-     * Save iterable entities in batch mode
+     * Save iterable entities in one bulk load, the table indexes are built after all the entities are stored
      *
      * @param entities - Iterable<Row> entities
      */
     @Override
-    public void saveAll(Iterable<Row> entities) {
-        saveBatch(entities);
+    public void saveAll(@NonNull Iterable<Row> entities) {
+        List<Row> rows = GenericRepository.toList(entities);
+        Table table = manager.loadTable(ACTOR_TABLE);
+        table.bulkInsert(rows, table.getStorage().rowCount() + rows.size());
     }
 
     /**
@@ -124,22 +169,14 @@ public class ActorRepositoryImpl implements ActorRepository {
     }
 
     /**
-     * Search records by ID
+     * Search records by ID in a single pass over the table
      *
      * @param ids - iterable IDs
-     * @return List<Row> - filtered records by ID
+     * @return List<Row> - found records in the order of the IDs, missing IDs are skipped
      */
     @Override
-    public Iterable<Row> findAllById(@NonNull Iterable<String> ids) {
-        return Flux.fromIterable(ids)
-                .filter(Objects::isNull)
-                .parallel()
-                .runOn(Schedulers.immediate())
-                .map(this::findById)
-                .sequential()
-                .toStream()
-                .flatMap(Optional::stream)
-                .collect(Collectors.toUnmodifiableList());
+    public List<Row> findAllById(@NonNull Iterable<String> ids) {
+        return manager.loadTable(ACTOR_TABLE).findAllById(ids);
     }
 
     /**
@@ -150,7 +187,75 @@ public class ActorRepositoryImpl implements ActorRepository {
      */
     @Override
     public Optional<String> findIdByIndex(@NonNull String index) {
-        return manager.loadTable(ACTOR_TABLE).findIdByIndex(index);
+        return manager.loadTable(ACTOR_TABLE).findIdByIndex(DIRECTOR_INDEX, index);
+    }
+
+    /**
+     * Finding all records IDs by table index
+     *
+     * @param indexName - unique name of index
+     * @param key - String index key
+     * @return Set<String> - record IDs indexed by the key
+     */
+    @Override
+    public Set<String> findIdsByIndex(@NonNull final String indexName, @NonNull final String key) {
+        return manager.loadTable(ACTOR_TABLE).findIdsByIndex(indexName, key);
+    }
+
+    /**
+     * Finding IDs of the movies directed by the director without boxing them
+     *
+     * @param director - director name, case insensitive
+     * @return LongIds - sorted movie IDs
+     */
+    @Override
+    public LongIds findDirectedMovieIds(@NonNull final String director) {
+        return manager.loadTable(ACTOR_TABLE).findLongIdsByIndex(DIRECTOR_INDEX, director);
+    }
+
+    /**
+     * Finding IDs of the movies directed by many directors in a single pass
+     *
+     * @param directors - director names, case insensitive
+     * @return List<LongIds> - sorted movie IDs of every director in the order of the directors
+     */
+    @Override
+    public List<LongIds> findDirectedMovieIds(@NonNull final Iterable<String> directors) {
+        return manager.loadTable(ACTOR_TABLE).findLongIdsByIndex(DIRECTOR_INDEX, directors);
+    }
+
+    /**
+     * Confirm candidate movies by cast: candidates with all the actors in the cast
+     *
+     * @param movieIds - candidate movie IDs
+     * @param actors - actor names, case insensitive
+     * @return LongIds - sorted candidates casting all the actors
+     */
+    @Override
+    public LongIds findMovieIdsWithCast(@NonNull final LongIds movieIds, @NonNull final Collection<String> actors) {
+        return castIndex().index.retain(movieIds, actors);
+    }
+
+    /**
+     * Finding IDs of the movies with all the actors in the cast
+     *
+     * @param actors - actor names, case insensitive
+     * @return LongIds - sorted movie IDs
+     */
+    @Override
+    public LongIds findMovieIdsWithCast(@NonNull final Collection<String> actors) {
+        return castIndex().index.intersect(actors);
+    }
+
+    /**
+     * Finding records IDs of many keys by the director index in a single pass
+     *
+     * @param keys - String index keys
+     * @return List<Set<String>> - record IDs of every key in the order of the keys
+     */
+    @Override
+    public List<Set<String>> findIdsByIndex(@NonNull final Iterable<String> keys) {
+        return manager.loadTable(ACTOR_TABLE).findIdsByIndex(DIRECTOR_INDEX, keys);
     }
 
     /**
@@ -165,19 +270,49 @@ public class ActorRepositoryImpl implements ActorRepository {
     }
 
     /*
-     * Populate table index by Director Name and record ID
-     *
-     * @param table - Table instance
-     * @param row   - Row record
-     */
-    private void populateIndexes(@NonNull Table table, @NonNull Row row) {
-        row.getRowValues().forEach(entity -> {
-            if (entity.get(CsvMetadata.ROLE.name()).equalsIgnoreCase(CsvMetadata.DIRECTOR.name())) {
-                final String directorFullName = entity.get(CsvMetadata.NAME.name());
-                if (directorFullName != null && directorFullName.isEmpty()) {
-                    table.populateIndex(entity.get(CsvMetadata.MOVIE_ID.name()), entity.get(CsvMetadata.NAME.name()));
-                }
+     * Register actor table index by Director Name
+     */
+    private void registerIndexes() {
+        manager.createIndex(ACTOR_TABLE, DIRECTOR_INDEX_DEFINITION);
+    }
+
+    /*
+     * Current cast index, rebuilt by one caller after the actor table changed
+     */
+    private CastIndex castIndex() {
+        Table actors = manager.loadTable(ACTOR_TABLE);
+        CastIndex current = castIndex;
+        if (current != null && current.isBuiltFrom(actors)) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = castIndex;
+            if (current == null || !current.isBuiltFrom(actors)) {
+                current = new CastIndex(actors);
+                castIndex = current;
             }
-        });
+        }
+
+        return current;
+    }
+
+    /*
+     * Cast index of the table version read before the build, so changes racing the build make the index stale
+     */
+    private static final class CastIndex {
+        private final Table actors;
+        private final long version;
+        private final InvertedIndex index;
+
+        private CastIndex(Table actors) {
+            this.actors = actors;
+            this.version = actors.version();
+            this.index = InvertedIndex.build(actors, CAST_INDEX_DEFINITION);
+        }
+
+        private boolean isBuiltFrom(Table actors) {
+            return this.actors == actors && version == actors.version();
+        }
     }
 }
@@ -1,8 +1,43 @@
 package com.real.persistence.repository.movie;
 
+import com.real.persistence.core.LongIds;
 import com.real.persistence.core.Row;
+import com.real.persistence.join.JoinResult;
 import com.real.persistence.repository.GenericRepository;
 
+import java.util.List;
+
 public interface MovieRepository extends GenericRepository<Row, String> {
     String MOVIE_TABLE = "movie";
+    /*
+     * Index of movie IDs by title and year, the key is TITLE_YEAR
+     */
+    String TITLE_YEAR_INDEX = "title_year";
+
+    /**
+     * Finding movie IDs by the title/year index without boxing them
+     *
+     * @param key - title/year index key
+     * @return LongIds - sorted movie IDs, empty if no movie has the title and year
+     */
+    LongIds findMovieIds(String key);
+
+    /**
+     * Finding movie IDs of many keys by the title/year index in a single pass
+     *
+     * @param keys - title/year index keys
+     * @return List<LongIds> - sorted movie IDs of every key in the order of the keys
+     */
+    List<LongIds> findMovieIds(Iterable<String> keys);
+
+    /**
+     * Join title/year keys and their directors with the movies of the title and year directed by the director,
+     * in one hash join pass over the keys. The build side is built per call from the director index
+     * posting lists of the directors of the keys, so it always sees the current tables.
+     *
+     * @param keys - title/year index keys
+     * @param directors - director names of the keys, case insensitive
+     * @return JoinResult - matches by key position, the first match of a position has the smallest movie ID
+     */
+    JoinResult findDirectedMovies(List<String> keys, List<String> directors);
 }
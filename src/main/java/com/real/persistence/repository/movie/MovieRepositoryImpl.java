@@ -2,18 +2,28 @@ package com.real.persistence.repository.movie;
 
 import com.real.model.CsvMetadata;
 import com.real.persistence.PersistenceManager;
+import com.real.persistence.core.IndexDefinition;
+import com.real.persistence.core.LongIds;
 import com.real.persistence.core.Row;
+import com.real.persistence.core.StorageType;
 import com.real.persistence.core.Table;
 import com.real.persistence.core.TableMetadata;
+import com.real.persistence.join.JoinResult;
+import com.real.persistence.join.Tuple;
+import com.real.persistence.repository.GenericRepository;
 import lombok.NonNull;
-import reactor.core.publisher.Flux;
-import reactor.core.scheduler.Schedulers;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class MovieRepositoryImpl implements MovieRepository {
-
+    /*
+     * Index of movie IDs by title and year
+     */
+    private static final IndexDefinition TITLE_YEAR_INDEX_DEFINITION = IndexDefinition.builder()
+            .name(TITLE_YEAR_INDEX)
+            .column(CsvMetadata.TITLE.name())
+            .column(CsvMetadata.YEAR.name())
+            .build();
     private final PersistenceManager manager;
 
     /**
@@ -21,13 +31,27 @@ public class MovieRepositoryImpl implements MovieRepository {
      * Loading PersistenceManager instance and initializing movie Table instance
      */
     public MovieRepositoryImpl() {
+        this(StorageType.HEAP);
+    }
+
+    /**
+     * Parameterised constructor.
+     * Loading PersistenceManager instance and initializing movie Table instance
+     *
+     * @param storageType - storage engine of the movie table records
+     */
+    public MovieRepositoryImpl(@NonNull final StorageType storageType) {
         this.manager = PersistenceManager.getInstance();
 
         final Map<String, TableMetadata> movieTableMetaMap = new HashMap<>();
         movieTableMetaMap.put(CsvMetadata.ID.name(), TableMetadata.LONG);
         movieTableMetaMap.put(CsvMetadata.TITLE.name(), TableMetadata.STRING);
         movieTableMetaMap.put(CsvMetadata.YEAR.name(), TableMetadata.DATE);
-        manager.createTable(MOVIE_TABLE, movieTableMetaMap);
+        // table restored from snapshot is reused as is
+        if (!manager.existsTable(MOVIE_TABLE)) {
+            manager.createTable(MOVIE_TABLE, movieTableMetaMap, storageType, TableMetadata.LONG);
+        }
+        registerIndexes();
     }
 
     /**
@@ -38,17 +62,18 @@ public class MovieRepositoryImpl implements MovieRepository {
     @Override
     public void save(@NonNull Row entity) {
         manager.addTableRow(MOVIE_TABLE, entity);
-        populateIndexes(manager.loadTable(MOVIE_TABLE), entity);
     }
 
     /**
-     * Save iterable entities in batch mode
+     * Save iterable entities in one bulk load, the table indexes are built after all the entities are stored
      *
      * @param entities - Iterable<Row> entities
      */
     @Override
     public void saveAll(@NonNull Iterable<Row> entities) {
-        saveBatch(entities);
+        List<Row> rows = GenericRepository.toList(entities);
+        Table table = manager.loadTable(MOVIE_TABLE);
+        table.bulkInsert(rows, table.getStorage().rowCount() + rows.size());
     }
 
     /**
@@ -119,17 +144,113 @@ public class MovieRepositoryImpl implements MovieRepository {
         return manager.loadTable(MOVIE_TABLE).findAll();
     }
 
+    /**
+     * Search records by ID in a single pass over the table
+     *
+     * @param ids - iterable IDs
+     * @return List<Row> - found records in the order of the IDs, missing IDs are skipped
+     */
+    @Override
+    public List<Row> findAllById(@NonNull Iterable<String> ids) {
+        return manager.loadTable(MOVIE_TABLE).findAllById(ids);
+    }
+
+    /**
+     * Finding records IDs of many keys by the title/year index in a single pass
+     *
+     * @param keys - String index keys
+     * @return List<Set<String>> - record IDs of every key in the order of the keys
+     */
+    @Override
+    public List<Set<String>> findIdsByIndex(@NonNull final Iterable<String> keys) {
+        return manager.loadTable(MOVIE_TABLE).findIdsByIndex(TITLE_YEAR_INDEX, keys);
+    }
+
+    /**
+     * Finding movie IDs by the title/year index without boxing them
+     *
+     * @param key - title/year index key
+     * @return LongIds - sorted movie IDs
+     */
+    @Override
+    public LongIds findMovieIds(@NonNull final String key) {
+        return manager.loadTable(MOVIE_TABLE).findLongIdsByIndex(TITLE_YEAR_INDEX, key);
+    }
+
+    /**
+     * Finding movie IDs of many keys by the title/year index in a single pass
+     *
+     * @param keys - title/year index keys
+     * @return List<LongIds> - sorted movie IDs of every key in the order of the keys
+     */
     @Override
-    public Iterable<Row> findAllById(@NonNull Iterable<String> ids) {
-        return Flux.fromIterable(ids)
-                .filter(Objects::isNull)
-                .parallel()
-                .runOn(Schedulers.immediate())
-                .map(this::findById)
-                .sequential()
-                .toStream()
-                .flatMap(Optional::stream)
-                .collect(Collectors.toUnmodifiableList());
+    public List<LongIds> findMovieIds(@NonNull final Iterable<String> keys) {
+        return manager.loadTable(MOVIE_TABLE).findLongIdsByIndex(TITLE_YEAR_INDEX, keys);
+    }
+
+    /**
+     * Join title/year keys and their directors with the movies of the title and year directed by the director.
+     * The director index posting lists of the distinct directors of the batch are fetched once and every key's
+     * sorted title/year index candidates are merged with the sorted posting list of its director,
+     * so no build side is materialized and no join key is allocated per candidate.
+     *
+     * @param keys - title/year index keys
+     * @param directors - director names of the keys, case insensitive
+     * @return JoinResult - matches by key position, the first match of a position has the smallest movie ID
+     */
+    @Override
+    public JoinResult findDirectedMovies(@NonNull final List<String> keys, @NonNull final List<String> directors) {
+        if (keys.size() != directors.size()) {
+            throw new IllegalArgumentException("Count of keys " + keys.size()
+                    + " differs from count of directors " + directors.size());
+        }
+
+        Table actors = manager.loadTable(ActorRepository.ACTOR_TABLE);
+        List<LongIds> candidates = findMovieIds(keys);
+        String[] directorKeys = new String[keys.size()];
+        Set<String> batchDirectors = new LinkedHashSet<>();
+        for (int i = 0; i < directorKeys.length; i++) {
+            String director = directors.get(i);
+            if (actors != null && director != null && !candidates.get(i).isEmpty()) {
+                directorKeys[i] = ActorRepositoryImpl.DIRECTOR_INDEX_DEFINITION.normalize(director);
+                batchDirectors.add(directorKeys[i]);
+            }
+        }
+        List<String> buildKeys = new ArrayList<>(batchDirectors);
+        List<LongIds> postings = buildKeys.isEmpty()
+                ? List.of()
+                : actors.findLongIdsByIndex(ActorRepository.DIRECTOR_INDEX, buildKeys);
+        Map<String, LongIds> directedMovies = new HashMap<>(buildKeys.size() * 4 / 3 + 1);
+        for (int i = 0; i < buildKeys.size(); i++) {
+            directedMovies.put(buildKeys.get(i), postings.get(i));
+        }
+
+        // candidates and postings are sorted, so the matches of a key are ordered by movie ID
+        JoinResult directed = new JoinResult(keys.size(), true);
+        for (int i = 0; i < directorKeys.length; i++) {
+            if (directorKeys[i] == null) {
+                continue;
+            }
+            LongIds movieIds = candidates.get(i);
+            LongIds directorMovies = directedMovies.get(directorKeys[i]);
+            int j = 0;
+            int k = 0;
+            while (j < movieIds.size() && k < directorMovies.size()) {
+                long movieId = movieIds.get(j);
+                long directedId = directorMovies.get(k);
+                if (movieId == directedId) {
+                    directed.add(i, new Tuple(movieId, directorKeys[i]));
+                }
+                if (movieId <= directedId) {
+                    j++;
+                }
+                if (directedId <= movieId) {
+                    k++;
+                }
+            }
+        }
+
+        return directed;
     }
 
     /**
@@ -151,17 +272,25 @@ public class MovieRepositoryImpl implements MovieRepository {
      */
     @Override
     public Optional<String> findIdByIndex(@NonNull final String index) {
-        return manager.loadTable(MOVIE_TABLE).findIdByIndex(index);
+        return manager.loadTable(MOVIE_TABLE).findIdByIndex(TITLE_YEAR_INDEX, index);
     }
 
-    /*
-     * Populate table index by Director Name and record ID
+    /**
+     * Finding all records IDs by table index
      *
-     * @param table - Table instance
-     * @param row   - Row record
+     * @param indexName - unique name of index
+     * @param key - String index key
+     * @return Set<String> - record IDs indexed by the key
+     */
+    @Override
+    public Set<String> findIdsByIndex(@NonNull final String indexName, @NonNull final String key) {
+        return manager.loadTable(MOVIE_TABLE).findIdsByIndex(indexName, key);
+    }
+
+    /*
+     * Register movie table index by Title and Year
      */
-    private void populateIndexes(@NonNull Table table, @NonNull Row row) {
-        row.getRowValues().forEach(entity -> table.populateIndex(String.format("%s_%s",
-                entity.get(CsvMetadata.TITLE.name()), entity.get(CsvMetadata.YEAR.name())), entity.get(CsvMetadata.ID.name())));
+    private void registerIndexes() {
+        manager.createIndex(MOVIE_TABLE, TITLE_YEAR_INDEX_DEFINITION);
     }
 }
@@ -0,0 +1,46 @@
+package com.real.persistence.repository.movie;
+
+import com.real.persistence.core.Row;
+import com.real.persistence.repository.GenericRepository;
+import com.real.persistence.repository.ReactiveRepositoryConfig;
+import lombok.NonNull;
+
+/**
+ * Reactive Actor Repository Implementation class, operations are delegated to ActorRepository
+ */
+public class ReactiveActorRepositoryImpl implements ReactiveActorRepository {
+
+    private final ActorRepository actorRepository;
+
+    private final ReactiveRepositoryConfig config;
+
+    /**
+     * Non parameterized constructor.
+     * Initializing ActorRepository implementation instance with the default bulk write configuration
+     */
+    public ReactiveActorRepositoryImpl() {
+        this(new ActorRepositoryImpl(), ReactiveRepositoryConfig.defaults());
+    }
+
+    /**
+     * Parameterised constructor
+     *
+     * @param actorRepository - blocking actor repository
+     * @param config - bulk write concurrency and batch size
+     */
+    public ReactiveActorRepositoryImpl(@NonNull final ActorRepository actorRepository,
+                                       @NonNull final ReactiveRepositoryConfig config) {
+        this.actorRepository = actorRepository;
+        this.config = config;
+    }
+
+    @Override
+    public GenericRepository<Row, String> blocking() {
+        return actorRepository;
+    }
+
+    @Override
+    public ReactiveRepositoryConfig getConfig() {
+        return config;
+    }
+}
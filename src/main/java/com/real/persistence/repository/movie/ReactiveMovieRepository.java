@@ -0,0 +1,10 @@
+package com.real.persistence.repository.movie;
+
+import com.real.persistence.core.Row;
+import com.real.persistence.repository.ReactiveGenericRepository;
+
+/**
+ * Reactive Repository interface of movie table
+ */
+public interface ReactiveMovieRepository extends ReactiveGenericRepository<Row, String> {
+}
@@ -0,0 +1,46 @@
+package com.real.persistence.repository.movie;
+
+import com.real.persistence.core.Row;
+import com.real.persistence.repository.GenericRepository;
+import com.real.persistence.repository.ReactiveRepositoryConfig;
+import lombok.NonNull;
+
+/**
+ * Reactive Movie Repository Implementation class, operations are delegated to MovieRepository
+ */
+public class ReactiveMovieRepositoryImpl implements ReactiveMovieRepository {
+
+    private final MovieRepository movieRepository;
+
+    private final ReactiveRepositoryConfig config;
+
+    /**
+     * Non parameterized constructor.
+     * Initializing MovieRepository implementation instance with the default bulk write configuration
+     */
+    public ReactiveMovieRepositoryImpl() {
+        this(new MovieRepositoryImpl(), ReactiveRepositoryConfig.defaults());
+    }
+
+    /**
+     * Parameterised constructor
+     *
+     * @param movieRepository - blocking movie repository
+     * @param config - bulk write concurrency and batch size
+     */
+    public ReactiveMovieRepositoryImpl(@NonNull final MovieRepository movieRepository,
+                                       @NonNull final ReactiveRepositoryConfig config) {
+        this.movieRepository = movieRepository;
+        this.config = config;
+    }
+
+    @Override
+    public GenericRepository<Row, String> blocking() {
+        return movieRepository;
+    }
+
+    @Override
+    public ReactiveRepositoryConfig getConfig() {
+        return config;
+    }
+}
@@ -0,0 +1,112 @@
+package com.real.persistence.wal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/*
+ * Reusable buffer of a single log frame: payload length, CRC32C of the payload and the payload.
+ * Values are written in BinaryCodec format straight into the buffer, ASCII strings without intermediate byte arrays.
+ * Not thread-safe, every appending thread owns its frame.
+ */
+final class LogFrame {
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final CRC32C checksum = new CRC32C();
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    LogFrame start(LogRecord.Type type) {
+        size = HEADER_SIZE;
+        writeByte(type.ordinal());
+        return this;
+    }
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) value;
+    }
+
+    void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    void writeLong(long value) {
+        ensureCapacity(Long.BYTES);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            bytes[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    void writeString(String value) {
+        int length = value.length();
+        if (length < 0x80) {
+            // optimistic single pass copy of ASCII string, rolled back on the first non-ASCII char
+            int start = size;
+            ensureCapacity(length + 1);
+            bytes[size++] = (byte) length;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    size = start;
+                    writeUtf8(value);
+                    return;
+                }
+                bytes[size++] = (byte) c;
+            }
+            return;
+        }
+
+        writeUtf8(value);
+    }
+
+    private void writeUtf8(String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(utf8.length);
+        ensureCapacity(utf8.length);
+        System.arraycopy(utf8, 0, bytes, size, utf8.length);
+        size += utf8.length;
+    }
+
+    /*
+     * Fill the frame header, the frame is ready to be appended
+     */
+    LogFrame seal() {
+        int length = size - HEADER_SIZE;
+        checksum.reset();
+        checksum.update(bytes, HEADER_SIZE, length);
+        writeInt(0, length);
+        writeInt(Integer.BYTES, (int) checksum.getValue());
+        return this;
+    }
+
+    /*
+     * Copy of the sealed frame
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void writeInt(int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, size + extra));
+        }
+    }
+}
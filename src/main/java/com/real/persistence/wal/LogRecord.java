@@ -0,0 +1,154 @@
+package com.real.persistence.wal;
+
+import com.real.persistence.core.Row;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.real.util.BinaryCodec.readString;
+import static com.real.util.BinaryCodec.readVarInt;
+import static com.real.util.BinaryCodec.toDateTime;
+import static com.real.util.BinaryCodec.toEpochMilli;
+
+/**
+ * Table mutation recorded in write-ahead log.
+ * Mutations are encoded straight into log frames and decoded to records on replay.
+ */
+@Data
+@Builder
+public class LogRecord {
+    /**
+     * Mutation type, the ordinal is persisted
+     */
+    public enum Type {
+        INSERT,
+        DELETE,
+        CLEAR,
+        /*
+         * First frame of a log generation holding the generation ID, never passed to replay consumers
+         */
+        GENERATION
+    }
+
+    @NonNull
+    private final Type type;
+    @NonNull
+    private final String tableName;
+    /*
+     * Mutated row ID, null for CLEAR
+     */
+    private final String rowId;
+    /*
+     * Inserted row, null for DELETE and CLEAR
+     */
+    private final Row row;
+
+    /*
+     * Write INSERT mutation: type, table name, row ID, row timestamps and records
+     */
+    static LogFrame encodeInsert(LogFrame frame, String tableName, Row row) {
+        frame.start(Type.INSERT);
+        frame.writeString(tableName);
+        frame.writeString(row.getRowId());
+        frame.writeLong(toEpochMilli(row.getCreatedAt()));
+        frame.writeLong(toEpochMilli(row.getUpdatedAt()));
+        frame.writeVarInt(row.getRowValues().size());
+        for (Map<String, String> record : row.getRowValues()) {
+            frame.writeVarInt(record.size());
+            record.forEach((column, value) -> {
+                frame.writeString(column);
+                frame.writeString(value);
+            });
+        }
+
+        return frame.seal();
+    }
+
+    /*
+     * Write DELETE mutation: type, table name and row ID
+     */
+    static LogFrame encodeDelete(LogFrame frame, String tableName, String rowId) {
+        frame.start(Type.DELETE);
+        frame.writeString(tableName);
+        frame.writeString(rowId);
+
+        return frame.seal();
+    }
+
+    /*
+     * Write CLEAR mutation: type and table name
+     */
+    static LogFrame encodeClear(LogFrame frame, String tableName) {
+        frame.start(Type.CLEAR);
+        frame.writeString(tableName);
+
+        return frame.seal();
+    }
+
+    /*
+     * Write GENERATION marker: type and generation ID
+     */
+    static LogFrame encodeGeneration(LogFrame frame, long generation) {
+        frame.start(Type.GENERATION);
+        frame.writeLong(generation);
+
+        return frame.seal();
+    }
+
+    /*
+     * Generation ID of the payload of a GENERATION marker, null if the payload is of a mutation
+     */
+    static Long decodeGeneration(ByteBuffer in) {
+        return in.remaining() == 1 + Long.BYTES && in.get(in.position()) == Type.GENERATION.ordinal()
+                ? in.getLong(in.position() + 1)
+                : null;
+    }
+
+    /*
+     * Read record from its binary form
+     */
+    static LogRecord decode(ByteBuffer in) throws IOException {
+        int ordinal = in.get();
+        if (ordinal < 0 || ordinal >= Type.GENERATION.ordinal()) {
+            throw new IOException("Unknown log record type " + ordinal);
+        }
+        Type type = Type.values()[ordinal];
+        LogRecordBuilder record = LogRecord.builder()
+                .type(type)
+                .tableName(readString(in));
+        if (type == Type.CLEAR) {
+            return record.build();
+        }
+
+        String rowId = readString(in);
+        record.rowId(rowId);
+        if (type == Type.INSERT) {
+            long createdAt = in.getLong();
+            long updatedAt = in.getLong();
+            int recordCount = readVarInt(in);
+            ConcurrentLinkedQueue<ConcurrentHashMap<String, String>> records = new ConcurrentLinkedQueue<>();
+            for (int i = 0; i < recordCount; i++) {
+                int fieldCount = readVarInt(in);
+                ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>(fieldCount);
+                for (int j = 0; j < fieldCount; j++) {
+                    values.put(readString(in), readString(in));
+                }
+                records.add(values);
+            }
+            record.row(Row.builder()
+                    .rowId(rowId)
+                    .rowValues(records)
+                    .createdAt(toDateTime(createdAt))
+                    .updatedAt(toDateTime(updatedAt))
+                    .build());
+        }
+
+        return record.build();
+    }
+}
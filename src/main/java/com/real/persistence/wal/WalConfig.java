@@ -0,0 +1,37 @@
+package com.real.persistence.wal;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.NonNull;
+
+import java.time.Duration;
+
+/**
+ * Write-ahead log configuration.
+ * Appended mutations are buffered and written with a single fsync per sync interval (group commit),
+ * so a crash loses at most the mutations of the last interval.
+ */
+@Data
+@Builder
+public class WalConfig {
+    /*
+     * Interval between group commits, zero syncs every mutation before it's applied
+     */
+    @NonNull
+    @Builder.Default
+    private final Duration syncInterval = Duration.ofMillis(10);
+    /*
+     * Size of buffered mutations in bytes which makes the appending thread commit the group right away
+     */
+    @Builder.Default
+    private final int flushThreshold = 1 << 20;
+
+    /**
+     * Configuration with 10 ms group commit interval and 1 MiB flush threshold
+     *
+     * @return WalConfig - default configuration
+     */
+    public static WalConfig defaults() {
+        return WalConfig.builder().build();
+    }
+}
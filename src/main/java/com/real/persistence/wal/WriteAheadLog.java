@@ -0,0 +1,513 @@
+package com.real.persistence.wal;
+
+import com.real.persistence.core.LogPosition;
+import com.real.persistence.core.MutationLog;
+import com.real.persistence.core.Row;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead log of table mutations.
+ * Every mutation is framed as payload length, CRC32C of the payload and the payload itself.
+ * Mutating threads encode and checksum the frame in their own buffer before they take the row lock,
+ * under the lock the frame is only linked to the wait-free queue of the pending group by a single atomic swap.
+ * A background thread drains the queue, writes the group and fsyncs it once per sync interval, so one fsync
+ * commits the whole group. A group growing over the flush threshold wakes the background thread to write it
+ * early, appending threads never write to the file unless every mutation is synced.
+ * A torn frame at the end of the log, left by a crash in the middle of a write, is truncated on open and replay.
+ * Every log file starts with the marker of its generation, a random ID replaced by every truncate, so a snapshot
+ * keeping the log position it includes is replayed only from that position and never from a later generation.
+ */
+@Slf4j
+public class WriteAheadLog implements MutationLog, Closeable {
+    private static final int FRAME_HEADER_SIZE = LogFrame.HEADER_SIZE;
+    private static final int BUFFER_SIZE = 1 << 16;
+    /*
+     * Frame buffer of the appending thread, mutations are encoded without per mutation allocations
+     */
+    private static final ThreadLocal<LogFrame> FRAMES = ThreadLocal.withInitial(LogFrame::new);
+
+    private final Path path;
+    private final WalConfig config;
+    private final FileChannel channel;
+    private final ScheduledExecutorService syncExecutor;
+    private final Lock syncLock;
+    private final LongAdder appendedRecords;
+    private final LongAdder syncs;
+    /*
+     * Pending group as frames linked in append order: appenders swap the last frame, the flush walks
+     * from the last drained frame, guarded by syncLock. Size of the pending frames in bytes.
+     */
+    private final AtomicReference<Frame> last;
+    private Frame drained;
+    private final AtomicLong pendingBytes;
+    /*
+     * Early write of the pending group is scheduled
+     */
+    private final AtomicBoolean flushScheduled;
+    /*
+     * Write buffer of the drained frames and written mutations not forced to the disk yet, guarded by syncLock
+     */
+    private final ByteBuffer group;
+    private boolean unsynced;
+    private volatile IOException failure;
+    /*
+     * ID of the log generation, replaced by truncate under syncLock, 0 for logs written before generations
+     */
+    private volatile long generation;
+
+    private WriteAheadLog(Path path, WalConfig config, FileChannel channel, long generation) {
+        this.path = path;
+        this.config = config;
+        this.channel = channel;
+        this.generation = generation;
+        this.syncLock = new ReentrantLock();
+        this.appendedRecords = new LongAdder();
+        this.syncs = new LongAdder();
+        this.drained = new Frame(new byte[0]);
+        this.last = new AtomicReference<>(drained);
+        this.pendingBytes = new AtomicLong();
+        this.flushScheduled = new AtomicBoolean();
+        this.group = ByteBuffer.allocate(BUFFER_SIZE);
+
+        Duration interval = config.getSyncInterval();
+        if (interval.isZero()) {
+            this.syncExecutor = null;
+        } else {
+            this.syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long nanos = interval.toNanos();
+            syncExecutor.scheduleWithFixedDelay(this::groupCommit, nanos, nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Open log for appending, a torn frame at the end of the log is truncated and an empty log starts a new generation
+     *
+     * @param path - log file path, created if it doesn't exist
+     * @param config - group commit configuration
+     * @return WriteAheadLog - opened log
+     * @exception IOException - file opening exception
+     */
+    public static WriteAheadLog open(@NonNull final Path path, @NonNull final WalConfig config) throws IOException {
+        Scan scan = Files.exists(path) ? scan(path, LogPosition.NONE, null) : new Scan();
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        long generation = scan.generation;
+        try {
+            if (channel.size() > scan.validLength) {
+                log.error("Truncating torn tail of write-ahead log {} at {} bytes", path, scan.validLength);
+                channel.truncate(scan.validLength);
+            }
+            channel.position(scan.validLength);
+            if (scan.validLength == 0) {
+                generation = startGeneration(channel);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        return new WriteAheadLog(path, config, channel, generation);
+    }
+
+    /**
+     * Read all complete mutations of the log in append order, a torn frame at the end of the log is truncated
+     *
+     * @param path - log file path
+     * @param consumer - mutation consumer
+     * @return long - count of replayed mutations, zero if the log doesn't exist
+     * @exception IOException - file reading exception or corrupted log record
+     */
+    public static long replay(@NonNull final Path path, @NonNull final Consumer<LogRecord> consumer) throws IOException {
+        return replay(path, LogPosition.NONE, consumer);
+    }
+
+    /**
+     * Read the complete mutations of the log after the position in append order, e.g. after the position
+     * included in a restored snapshot. The whole log is read if it's of another generation than the position.
+     * A torn frame at the end of the log is truncated.
+     *
+     * @param path - log file path
+     * @param from - log position of the first replayed mutation
+     * @param consumer - mutation consumer
+     * @return long - count of replayed mutations, zero if the log doesn't exist
+     * @exception IOException - file reading exception or corrupted log record
+     */
+    public static long replay(@NonNull final Path path, @NonNull final LogPosition from,
+                              @NonNull final Consumer<LogRecord> consumer) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        long[] count = {0};
+        long validLength = scan(path, from, record -> {
+            consumer.accept(record);
+            count[0]++;
+        }).validLength;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (channel.size() > validLength) {
+                log.error("Truncating torn tail of write-ahead log {} at {} bytes", path, validLength);
+                channel.truncate(validLength);
+            }
+        }
+
+        return count[0];
+    }
+
+    @Override
+    public Entry inserted(final String tableName, final Row row) {
+        return entry(LogRecord.encodeInsert(FRAMES.get(), tableName, row));
+    }
+
+    @Override
+    public Entry deleted(final String tableName, final String rowId) {
+        return entry(LogRecord.encodeDelete(FRAMES.get(), tableName, rowId));
+    }
+
+    @Override
+    public Entry cleared(final String tableName) {
+        return entry(LogRecord.encodeClear(FRAMES.get(), tableName));
+    }
+
+    /**
+     * Write and fsync all pending mutations
+     *
+     * @exception UncheckedIOException - log writing exception
+     */
+    public void sync() {
+        flush(true);
+    }
+
+    /**
+     * Write and fsync all pending mutations and return the log position after them, e.g. for a snapshot
+     * including the mutations. Appenders should be blocked, so no mutation is appended meanwhile.
+     *
+     * @return LogPosition - generation and length of the log
+     * @exception IOException - log writing exception
+     */
+    public LogPosition position() throws IOException {
+        syncLock.lock();
+        try {
+            sync();
+            return new LogPosition(generation, channel.position());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * ID of the current log generation
+     *
+     * @return long - generation ID, 0 for logs written before generations
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /*
+     * Entry of the sealed frame, the frame is copied out of the thread's buffer
+     */
+    private Entry entry(LogFrame frame) {
+        return new Frame(frame.toByteArray());
+    }
+
+    /*
+     * Link frame to the pending group, the group is committed by the next sync
+     */
+    private void append(Frame frame) {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log " + path + " has failed", failure);
+        }
+
+        last.getAndSet(frame).next = frame;
+        long size = pendingBytes.addAndGet(frame.bytes.length);
+        appendedRecords.increment();
+        if (syncExecutor == null) {
+            flush(frame, true);
+        } else if (size >= config.getFlushThreshold() && flushScheduled.compareAndSet(false, true)) {
+            try {
+                syncExecutor.execute(this::earlyFlush);
+            } catch (RejectedExecutionException e) {
+                // the log is closing, its final sync writes the group
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    private void flush(boolean force) {
+        flush(null, force);
+    }
+
+    /*
+     * Write pending group to the log file, at least up to the frame if given, fsync the written mutations
+     * if requested
+     */
+    private void flush(Frame upTo, boolean force) {
+        syncLock.lock();
+        try {
+            long bytes = 0;
+            for (Frame frame = next(upTo); frame != null; frame = next(upTo)) {
+                bytes += frame.bytes.length;
+                if (frame.bytes.length > group.remaining()) {
+                    writeGroup();
+                }
+                if (frame.bytes.length > group.capacity()) {
+                    write(ByteBuffer.wrap(frame.bytes));
+                } else {
+                    group.put(frame.bytes);
+                }
+            }
+            pendingBytes.addAndGet(-bytes);
+            writeGroup();
+            if (force && unsynced) {
+                channel.force(false);
+                unsynced = false;
+                syncs.increment();
+            }
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException("Can't sync write-ahead log " + path, e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /*
+     * Unlink the frame following the drained ones, guarded by syncLock. Null when no frame is linked yet
+     * and the awaited frame is drained, an appender between its swap and link is waited for.
+     */
+    private Frame next(Frame upTo) {
+        Frame next = drained.next;
+        while (next == null && upTo != null && !upTo.drained) {
+            Thread.yield();
+            next = drained.next;
+        }
+        if (next != null) {
+            next.drained = true;
+            drained = next;
+        }
+
+        return next;
+    }
+
+    /*
+     * Write the buffered frames, guarded by syncLock
+     */
+    private void writeGroup() throws IOException {
+        if (group.position() > 0) {
+            group.flip();
+            write(group);
+            group.clear();
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        unsynced = true;
+    }
+
+    /**
+     * Drop all logged mutations, e.g. after they have been written to snapshot, and start a new generation.
+     * Tables shouldn't be modified while the log is truncated.
+     *
+     * @exception IOException - file writing exception
+     */
+    public void truncate() throws IOException {
+        syncLock.lock();
+        try {
+            long dropped = 0;
+            for (Frame frame = next(null); frame != null; frame = next(null)) {
+                dropped += frame.bytes.length;
+            }
+            pendingBytes.addAndGet(-dropped);
+            group.clear();
+            channel.truncate(0);
+            channel.position(0);
+            generation = startGeneration(channel);
+            unsynced = false;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Count of mutations appended since the log was opened
+     *
+     * @return long - appended mutations
+     */
+    public long getAppendedRecords() {
+        return appendedRecords.sum();
+    }
+
+    /**
+     * Count of group commits since the log was opened
+     *
+     * @return long - fsync count
+     */
+    public long getSyncs() {
+        return syncs.sum();
+    }
+
+    /**
+     * Commit pending mutations and close the log
+     */
+    @Override
+    public void close() throws IOException {
+        if (syncExecutor != null) {
+            syncExecutor.shutdown();
+        }
+        try {
+            sync();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /*
+     * Write of the group grown over the flush threshold, fsynced by the next group commit
+     */
+    private void earlyFlush() {
+        flushScheduled.set(false);
+        try {
+            flush(false);
+        } catch (UncheckedIOException e) {
+            log.error("Write of write-ahead log {} failed", path, e);
+        }
+    }
+
+    /*
+     * Scheduled group commit, failures are kept and reported to the following appends
+     */
+    private void groupCommit() {
+        try {
+            sync();
+        } catch (UncheckedIOException e) {
+            log.error("Group commit of write-ahead log {} failed", path, e);
+        }
+    }
+
+    /*
+     * Sealed frame of a mutation and the link to the frame appended after it
+     */
+    private final class Frame implements Entry {
+        private final byte[] bytes;
+        private volatile Frame next;
+        /*
+         * The frame is taken from the pending group, guarded by syncLock
+         */
+        private boolean drained;
+
+        private Frame(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void append() {
+            WriteAheadLog.this.append(this);
+        }
+    }
+
+    /*
+     * Write the marker of a new random generation at the channel position of the empty log and fsync it
+     */
+    private static long startGeneration(FileChannel channel) throws IOException {
+        long generation = 0;
+        while (generation == 0) {
+            generation = ThreadLocalRandom.current().nextLong();
+        }
+        ByteBuffer marker = ByteBuffer.wrap(LogRecord.encodeGeneration(new LogFrame(), generation).toByteArray());
+        while (marker.hasRemaining()) {
+            channel.write(marker);
+        }
+        channel.force(true);
+
+        return generation;
+    }
+
+    /*
+     * Read frames from the start of the log, decoding the mutations from the position if consumer is given.
+     * Mutations before the position are skipped if the log is of the generation of the position.
+     * Returns length of the log prefix of complete frames with valid checksums and the log generation.
+     */
+    private static Scan scan(Path path, LogPosition from, Consumer<LogRecord> consumer) throws IOException {
+        Scan scan = new Scan();
+        long validLength = 0;
+        long skipped = from.getGeneration() == 0 ? from.getOffset() : 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE))) {
+            long size = channel.size();
+            CRC32C checksum = new CRC32C();
+            while (size - validLength >= FRAME_HEADER_SIZE) {
+                int length = in.readInt();
+                int expected = in.readInt();
+                if (length < 0 || length > size - validLength - FRAME_HEADER_SIZE) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                checksum.reset();
+                checksum.update(payload, 0, length);
+                if ((int) checksum.getValue() != expected) {
+                    break;
+                }
+                Long generation = LogRecord.decodeGeneration(ByteBuffer.wrap(payload));
+                if (generation != null) {
+                    scan.generation = generation;
+                    skipped = generation == from.getGeneration() ? from.getOffset() : 0;
+                } else if (consumer != null && validLength >= skipped) {
+                    consumer.accept(LogRecord.decode(ByteBuffer.wrap(payload)));
+                }
+                validLength += FRAME_HEADER_SIZE + length;
+            }
+        } catch (EOFException e) {
+            log.debug("Write-ahead log {} ends with a torn frame", path);
+        }
+        scan.validLength = validLength;
+
+        return scan;
+    }
+
+    /*
+     * Length of the valid log prefix and generation of the log
+     */
+    private static final class Scan {
+        private long validLength;
+        private long generation;
+    }
+}
@@ -1,9 +1,15 @@
 package com.real.service;
 
 import com.real.matcher.Matcher;
+import com.real.model.CsvMetadata;
+import com.real.util.CsvProjection;
+import com.real.util.CsvUtil;
+import com.real.util.HashUtil;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import reactor.core.publisher.Flux;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
@@ -11,24 +17,66 @@ public interface IntegrationDataService<T> {
 
     Set<T> populateExternalData(Matcher.CsvStream externalDb);
 
+    /**
+     * Columns of the provider feed the service reads, the other feed columns are not decoded
+     *
+     * @return Set<CsvMetadata> - needed feed columns
+     */
+    Set<CsvMetadata> getRequiredColumns();
+
+    /**
+     * Projection of the feed rows on the required columns
+     *
+     * @param externalDb - CsvStream
+     * @return CsvProjection - feed projection
+     * @exception IllegalArgumentException - a required column is not in the feed header
+     */
+    default CsvProjection projection(Matcher.CsvStream externalDb) {
+        return CsvProjection.of(CsvUtil.tableColumnsIndexMap(externalDb), getRequiredColumns());
+    }
+
+    /**
+     * Lazily parse external data, rows are read from the CSV stream only when requested downstream
+     *
+     * @param externalDb - CsvStream
+     * @return Flux<T> - external DB records in feed order
+     */
+    Flux<T> streamExternalData(Matcher.CsvStream externalDb);
+
     @Data
     @AllArgsConstructor
     class ExternalDbRecord {
         private String externalId;
         private String director;
         private String complexKey;
+        /*
+         * Cast names in feed order, leading actors first
+         */
+        private List<String> actors;
+
+        /**
+         * 64-bit fingerprint of the fields the record is matched by, a changed fingerprint means the record
+         * has to be matched again
+         *
+         * @return long - fingerprint of the director, the title and year key and the cast
+         */
+        public long fingerprint() {
+            String key = director + '\u0000' + complexKey;
+            return HashUtil.hash64(actors.isEmpty() ? key : key + '\u0000' + String.join(",", actors));
+        }
 
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
             if (!(o instanceof ExternalDbRecord)) return false;
             ExternalDbRecord that = (ExternalDbRecord) o;
-            return Objects.equals(externalId, that.externalId) && Objects.equals(director, that.director) && Objects.equals(complexKey, that.complexKey);
+            return Objects.equals(externalId, that.externalId) && Objects.equals(director, that.director) && Objects.equals(complexKey, that.complexKey)
+                    && Objects.equals(actors, that.actors);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(externalId, director, complexKey);
+            return Objects.hash(externalId, director, complexKey, actors);
         }
     }
 }
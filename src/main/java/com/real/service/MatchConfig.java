@@ -0,0 +1,40 @@
+package com.real.service;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Batch match configuration.
+ * The external record set is split into chunks which are matched concurrently, each chunk by a single worker.
+ */
+@Data
+@Builder
+public class MatchConfig {
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    /*
+     * Count of workers matching chunks concurrently, 1 matches on the calling thread
+     */
+    @Builder.Default
+    private final int parallelism = CORES;
+    /*
+     * Minimal count of records in a chunk, smaller record sets are matched on the calling thread
+     */
+    @Builder.Default
+    private final int chunkSize = 2048;
+    /*
+     * Count of leading feed actors a title and year match has to cast when no movie of the title and year
+     * is directed by the record's director, records listing fewer actors need all of them, 0 disables the fallback
+     */
+    @Builder.Default
+    private final int leadActors = 2;
+
+    /**
+     * Configuration with parallelism equal to available processors
+     *
+     * @return MatchConfig - default configuration
+     */
+    public static MatchConfig defaults() {
+        return MatchConfig.builder().build();
+    }
+}
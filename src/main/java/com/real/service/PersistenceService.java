@@ -1,10 +1,13 @@
 package com.real.service;
 
 import com.real.matcher.Matcher;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.Set;
 
 public interface PersistenceService<T> {
     List<Matcher.IdMapping> match(Set<T> records);
+
+    Flux<Matcher.IdMapping> match(Flux<T> records);
 }
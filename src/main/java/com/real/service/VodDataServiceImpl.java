@@ -1,18 +1,28 @@
 package com.real.service;
 
+import com.real.execution.ExecutionContext;
+import com.real.execution.Workload;
 import com.real.matcher.Matcher;
 import com.real.model.CsvMetadata;
+import com.real.persistence.PersistenceManager;
+import com.real.persistence.core.LongIds;
 import com.real.persistence.core.Row;
+import com.real.persistence.join.JoinResult;
+import com.real.persistence.join.Tuple;
 import com.real.persistence.repository.movie.ActorRepository;
 import com.real.persistence.repository.movie.ActorRepositoryImpl;
 import com.real.persistence.repository.movie.MovieRepository;
 import com.real.persistence.repository.movie.MovieRepositoryImpl;
-import com.real.util.CsvUtil;
+import com.real.service.ingestion.IngestionPipeline;
+import com.real.service.ingestion.LoadReport;
+import com.real.service.ingestion.PipelineConfig;
+import com.real.service.ingestion.RecordParser;
+import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
-import reactor.core.scheduler.Schedulers;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
 
-import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -26,127 +36,277 @@ import static com.real.util.CsvUtil.tableColumnsIndexMap;
 public class VodDataServiceImpl implements PersistenceService<IntegrationDataService.ExternalDbRecord> {
 
     /*
-     * Function with two arguments for parsing movie csv records and building Row record of Movie table
+     * Function with two arguments for building Row record of a table from parsed csv record and the key column
      */
-    private static final BiFunction<String, Map<CsvMetadata, Integer>, Optional<Row>> MOVIE_ROW_BUILDER = (row, columns) ->
-    {
-        try {
-            return buildMovieRow(columns, row);
-        } catch (IOException e) {
-            log.error("Malformed CSV Row [ " + row + " ]");
-        }
-        return Optional.empty();
-    };
+    private static final BiFunction<ConcurrentHashMap<String, String>, String, Row> ROW_BUILDER =
+            VodDataServiceImpl::buildRow;
 
     /*
-     * Function with two arguments for parsing actors_and_directors csv records and building Row record of Movie table
+     * Count of external records requested from upstream at once by streaming match
      */
-    private static final BiFunction<String, Map<CsvMetadata, Integer>, Optional<Row>> ACTOR_ROW_BUILDER = (row, columns) ->
-    {
-        try {
-            return buildActorRow(columns, row);
-        } catch (IOException e) {
-            log.error("Malformed CSV Row [ " + row + " ]");
-        }
-        return Optional.empty();
-    };
+    private static final int STREAM_BUFFER_SIZE = 256;
 
     private final MovieRepository movieRepository;
 
     private final ActorRepository actorRepository;
 
+    private final IngestionPipeline ingestionPipeline;
+
+    private final MatchConfig matchConfig;
+
     /**
      * Non parameterized constructor.
      * Initializing MovieRepository and ActorRepository implementations instances.
      */
     public VodDataServiceImpl() {
+        this(PipelineConfig.defaults());
+    }
+
+    /**
+     * Parameterised constructor.
+     * Initializing MovieRepository and ActorRepository implementations instances.
+     *
+     * @param pipelineConfig - database load pipeline configuration
+     */
+    public VodDataServiceImpl(@NonNull final PipelineConfig pipelineConfig) {
+        this(pipelineConfig, MatchConfig.defaults());
+    }
+
+    /**
+     * Parameterised constructor.
+     * Initializing MovieRepository and ActorRepository implementations instances.
+     *
+     * @param pipelineConfig - database load pipeline configuration
+     * @param matchConfig - batch match parallelism
+     */
+    public VodDataServiceImpl(@NonNull final PipelineConfig pipelineConfig, @NonNull final MatchConfig matchConfig) {
         movieRepository = new MovieRepositoryImpl();
         actorRepository = new ActorRepositoryImpl();
-
+        ingestionPipeline = new IngestionPipeline(pipelineConfig);
+        this.matchConfig = matchConfig;
     }
 
     /**
-     * Finding records from internal database according to external data and building matcher mapping
+     * Finding records from internal database according to external data and building matcher mapping.
+     * Large record sets are split into contiguous chunks in the set iteration order and matched in parallel,
+     * every worker probes the movie and director join on its own and collects mappings in its chunk buffer.
+     * The buffers are concatenated in chunk order, so the mappings are in the same order as by sequential match,
+     * which is the feed order for the record sets of the data services.
+     * An external ID shared by several records is mapped once, by the first of its records with a match.
      *
      * @param records - external data records
      * @return List<Matcher.IdMapping> - list of mappings
      */
     @Override
     public List<Matcher.IdMapping> match(Set<IntegrationDataService.ExternalDbRecord> records) {
-        List<Matcher.IdMapping> mappings = new ArrayList<>();
+        IntegrationDataService.ExternalDbRecord[] feed = records.toArray(new IntegrationDataService.ExternalDbRecord[0]);
+        int parallelism = matchConfig.getParallelism();
+        if (parallelism <= 1 || feed.length < matchConfig.getChunkSize() << 1) {
+            return distinct(List.of(match(feed, 0, feed.length)));
+        }
 
-        records.forEach(record -> {
-            Optional<String> movieId = movieRepository.findIdByIndex(record.getComplexKey());
-            movieId.ifPresent(s -> actorRepository.findIdByIndex(s)
-                    .filter(director -> record.getDirector().equalsIgnoreCase(director))
-                    .map(director -> mappings.add(new Matcher.IdMapping(Integer.parseInt(s), record.getExternalId()))));
-        });
+        // a few chunks per worker keep the workers busy when chunks have different match costs
+        int chunkSize = Math.max(matchConfig.getChunkSize(), -Math.floorDiv(-feed.length, parallelism << 2));
+        int chunks = -Math.floorDiv(-feed.length, chunkSize);
+        List<List<Matcher.IdMapping>> buffers = Flux.range(0, chunks)
+                .parallel(parallelism)
+                .runOn(ExecutionContext.getInstance().scheduler(Workload.CPU_BOUND), 1)
+                .map(chunk -> Tuples.of(chunk, match(feed, chunk * chunkSize, Math.min(feed.length, (chunk + 1) * chunkSize))))
+                .sequential()
+                .collect(() -> new ArrayList<List<Matcher.IdMapping>>(Collections.nCopies(chunks, List.of())),
+                        (result, buffer) -> result.set(buffer.getT1(), buffer.getT2()))
+                .block();
 
-        return new ArrayList<>(mappings);
+        return distinct(buffers);
     }
 
     /**
-     * Populate internal database from CSV stream records
+     * Streaming match of external data records against internal database.
+     * Records are requested from upstream in bounded batches and every mapping is emitted as soon as it's found,
+     * an external ID is mapped only once. Already mapped external IDs are remembered and compared by their full value,
+     * so distinct IDs with colliding hashes are both mapped.
      *
-     * @param movieDb            - CsvStream
-     * @param actorAndDirectorDb - CsvStream
+     * @param records - external data records
+     * @return Flux<Matcher.IdMapping> - mappings in feed order
      */
-    public void populateDatabase(Matcher.CsvStream movieDb, Matcher.CsvStream actorAndDirectorDb) {
-        initializeMovieTable(movieDb);
-        initializeActorTable(actorAndDirectorDb);
+    @Override
+    public Flux<Matcher.IdMapping> match(Flux<IntegrationDataService.ExternalDbRecord> records) {
+        return Flux.defer(() -> {
+            Set<String> mappedExternalIds = new HashSet<>();
+
+            return records
+                    .publishOn(ExecutionContext.getInstance().scheduler(Workload.CPU_BOUND), STREAM_BUFFER_SIZE)
+                    .handle((record, sink) -> match(record)
+                            .filter(mapping -> mappedExternalIds.add(mapping.getExternalId()))
+                            .ifPresent(sink::next));
+        });
     }
 
-    private static Optional<Row> buildMovieRow(Map<CsvMetadata, Integer> columns, String row) throws IOException {
-        String[] values = CsvUtil.parse(row);
-        ConcurrentHashMap<String, String> rowColumnValues = new ConcurrentHashMap<>();
-        rowColumnValues.put(CsvMetadata.ID.name(), values[columns.get(CsvMetadata.ID)].trim());
-        rowColumnValues.put(CsvMetadata.TITLE.name(), values[columns.get(CsvMetadata.TITLE)].trim());
-        rowColumnValues.put(CsvMetadata.YEAR.name(), values[columns.get(CsvMetadata.YEAR)].trim());
-        ConcurrentLinkedQueue<ConcurrentHashMap<String, String>> valueList = new ConcurrentLinkedQueue<>();
-        valueList.add(rowColumnValues);
+    /*
+     * Concatenate the buffers, only the first mapping of every external ID is kept
+     */
+    private static List<Matcher.IdMapping> distinct(List<List<Matcher.IdMapping>> buffers) {
+        int size = 0;
+        for (List<Matcher.IdMapping> buffer : buffers) {
+            size += buffer.size();
+        }
+        List<Matcher.IdMapping> mappings = new ArrayList<>(size);
+        Set<String> mappedExternalIds = new HashSet<>(size * 4 / 3 + 1);
+        for (List<Matcher.IdMapping> buffer : buffers) {
+            for (Matcher.IdMapping mapping : buffer) {
+                if (mappedExternalIds.add(mapping.getExternalId())) {
+                    mappings.add(mapping);
+                }
+            }
+        }
 
-        return Optional.of(Row.builder()
-                .rowId(rowColumnValues.get(CsvMetadata.ID.name()))
-                .rowValues(valueList)
-                .createdAt(LocalDateTime.now())
-                .updatedAt(LocalDateTime.now())
-                .build());
+        return mappings;
+    }
+
+    /*
+     * Match records of the feed range into a worker-local buffer with one join pass over the range,
+     * records without a director match fall back to their leading actors
+     */
+    private List<Matcher.IdMapping> match(IntegrationDataService.ExternalDbRecord[] feed, int from, int to) {
+        List<String> keys = new ArrayList<>(to - from);
+        List<String> directors = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            keys.add(feed[i].getComplexKey());
+            directors.add(feed[i].getDirector());
+        }
+        JoinResult movies = movieRepository.findDirectedMovies(keys, directors);
+
+        Matcher.IdMapping[] found = new Matcher.IdMapping[to - from];
+        for (int i = 0; i < movies.size(); i++) {
+            int position = movies.position(i);
+            // the first match of a record has the smallest movie ID
+            if (found[position] == null) {
+                found[position] = mapping(feed[from + position], movies.tuple(i));
+            }
+        }
+        matchByCast(feed, from, found);
+
+        List<Matcher.IdMapping> buffer = new ArrayList<>(found.length);
+        for (Matcher.IdMapping mapping : found) {
+            if (mapping != null) {
+                buffer.add(mapping);
+            }
+        }
+
+        return buffer;
+    }
+
+    /*
+     * Match the unmatched records of the feed range by title, year and leading actors,
+     * title and year candidates of all the records are probed at once and confirmed by the cast index
+     */
+    private void matchByCast(IntegrationDataService.ExternalDbRecord[] feed, int from, Matcher.IdMapping[] found) {
+        if (matchConfig.getLeadActors() <= 0) {
+            return;
+        }
+
+        int[] unmatched = new int[found.length];
+        int count = 0;
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < found.length; i++) {
+            if (found[i] == null && !feed[from + i].getActors().isEmpty()) {
+                unmatched[count++] = i;
+                keys.add(feed[from + i].getComplexKey());
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+
+        List<LongIds> movieIds = movieRepository.findMovieIds(keys);
+        for (int j = 0; j < count; j++) {
+            if (!movieIds.get(j).isEmpty()) {
+                int i = unmatched[j];
+                found[i] = matchByCast(feed[from + i], movieIds.get(j)).orElse(null);
+            }
+        }
+    }
+
+    /*
+     * Map the record to the smallest title and year match casting the record's leading actors
+     */
+    private Optional<Matcher.IdMapping> matchByCast(IntegrationDataService.ExternalDbRecord record, LongIds movieIds) {
+        List<String> actors = record.getActors();
+        LongIds confirmed = actorRepository.findMovieIdsWithCast(movieIds,
+                actors.subList(0, Math.min(matchConfig.getLeadActors(), actors.size())));
+
+        return confirmed.isEmpty()
+                ? Optional.empty()
+                : Optional.of(new Matcher.IdMapping(Math.toIntExact(confirmed.min()), record.getExternalId()));
+    }
+
+    /*
+     * Find internal movie directed by the record's director with the record's title and year,
+     * or casting the record's leading actors if the director doesn't match.
+     * The smallest movie ID wins when there are several such movies.
+     */
+    private Optional<Matcher.IdMapping> match(IntegrationDataService.ExternalDbRecord record) {
+        JoinResult movies = movieRepository.findDirectedMovies(Collections.singletonList(record.getComplexKey()),
+                Collections.singletonList(record.getDirector()));
+
+        if (movies.size() > 0) {
+            return Optional.of(mapping(record, movies.tuple(0)));
+        }
+        if (matchConfig.getLeadActors() <= 0 || record.getActors().isEmpty()) {
+            return Optional.empty();
+        }
+
+        LongIds movieIds = movieRepository.findMovieIds(record.getComplexKey());
+        return movieIds.isEmpty() ? Optional.empty() : matchByCast(record, movieIds);
+    }
+
+    private static Matcher.IdMapping mapping(IntegrationDataService.ExternalDbRecord record, Tuple movie) {
+        return new Matcher.IdMapping(Math.toIntExact(movie.getId()), record.getExternalId());
+    }
+
+    /**
+     * Populate internal database from CSV stream records, movie and actor tables are loaded concurrently.
+     * Records are parsed against the table column types, malformed records are skipped up to the pipeline limit.
+     *
+     * @param movieDb            - CsvStream
+     * @param actorAndDirectorDb - CsvStream
+     * @return Mono<List<LoadReport>> - tables load reports, emitted when both tables are completely loaded,
+     * or IllegalStateException if a table load failed
+     */
+    public Mono<List<LoadReport>> populateDatabase(Matcher.CsvStream movieDb, Matcher.CsvStream actorAndDirectorDb) {
+        return Flux.merge(initializeMovieTable(movieDb), initializeActorTable(actorAndDirectorDb))
+                .collectList();
     }
 
-    private static Optional<Row> buildActorRow(Map<CsvMetadata, Integer> columns, String row) throws IOException {
-        String[] values = CsvUtil.parse(row);
-        ConcurrentHashMap<String, String> rowColumnValues = new ConcurrentHashMap<>();
-        rowColumnValues.put(CsvMetadata.MOVIE_ID.name(), values[columns.get(CsvMetadata.MOVIE_ID)].trim());
-        rowColumnValues.put(CsvMetadata.NAME.name(), values[columns.get(CsvMetadata.NAME)].trim());
-        rowColumnValues.put(CsvMetadata.ROLE.name(), values[columns.get(CsvMetadata.ROLE)].trim());
+    private static Row buildRow(ConcurrentHashMap<String, String> rowColumnValues, String keyColumn) {
         ConcurrentLinkedQueue<ConcurrentHashMap<String, String>> valueList = new ConcurrentLinkedQueue<>();
         valueList.add(rowColumnValues);
 
-        return Optional.of(Row.builder()
-                .rowId(rowColumnValues.get(CsvMetadata.MOVIE_ID.name()))
+        return Row.builder()
+                .rowId(rowColumnValues.get(keyColumn))
                 .rowValues(valueList)
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
-                .build());
+                .build();
     }
 
-    private void initializeMovieTable(Matcher.CsvStream movieDb) {
-        Map<CsvMetadata, Integer> moviesColumnIndexMap = tableColumnsIndexMap(movieDb);
+    private Mono<LoadReport> initializeMovieTable(Matcher.CsvStream movieDb) {
+        RecordParser parser = RecordParser.of(tableColumnsIndexMap(movieDb),
+                PersistenceManager.getInstance().loadTable(MovieRepository.MOVIE_TABLE).getTableMetadata(),
+                CsvMetadata.ID.name());
 
-        Flux.fromStream(movieDb.getDataRows())
-                .parallel()
-                .runOn(Schedulers.parallel())
-                .map(row -> MOVIE_ROW_BUILDER.apply(row, moviesColumnIndexMap))
-                .subscribe(tableRow -> tableRow.ifPresent(movieRepository::save));
+        return ingestionPipeline.load(MovieRepository.MOVIE_TABLE, movieDb, parser::parse,
+                record -> ROW_BUILDER.apply(record, parser.getKeyColumn()),
+                movieRepository::saveAll);
     }
 
-    private void initializeActorTable(Matcher.CsvStream actorAndDirectorDb) {
-        Map<CsvMetadata, Integer> actorsColumnIndexMap = tableColumnsIndexMap(actorAndDirectorDb);
+    private Mono<LoadReport> initializeActorTable(Matcher.CsvStream actorAndDirectorDb) {
+        RecordParser parser = RecordParser.of(tableColumnsIndexMap(actorAndDirectorDb),
+                PersistenceManager.getInstance().loadTable(ActorRepository.ACTOR_TABLE).getTableMetadata(),
+                CsvMetadata.MOVIE_ID.name());
 
-        Flux.fromStream(actorAndDirectorDb.getDataRows())
-                .parallel()
-                .runOn(Schedulers.parallel())
-                .map(row -> ACTOR_ROW_BUILDER.apply(row, actorsColumnIndexMap))
-                .subscribe(tableRow -> tableRow.ifPresent(actorRepository::save));
+        return ingestionPipeline.load(ActorRepository.ACTOR_TABLE, actorAndDirectorDb, parser::parse,
+                record -> ROW_BUILDER.apply(record, parser.getKeyColumn()),
+                actorRepository::saveAll);
     }
 }
@@ -2,10 +2,17 @@ package com.real.service;
 
 import com.real.matcher.Matcher;
 import com.real.model.CsvMetadata;
-import com.real.util.CsvUtil;
+import com.real.persistence.core.IndexDefinition;
+import com.real.util.CsvProjection;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -16,31 +23,72 @@ import static com.real.util.DateUtil.getDateYear;
 
 @Slf4j
 public class XBoxDataService implements IntegrationDataService<IntegrationDataService.ExternalDbRecord> {
+    /*
+     * Feed columns read by the matcher, the long XBOXLIVEURL field is skipped
+     */
+    private static final Set<CsvMetadata> REQUIRED_COLUMNS = Collections.unmodifiableSet(EnumSet.of(
+            CsvMetadata.MEDIAID, CsvMetadata.TITLE, CsvMetadata.ORIGINALRELEASEDATE, CsvMetadata.ACTORS,
+            CsvMetadata.DIRECTOR));
+    /*
+     * Separator of the names of the ACTORS column
+     */
+    private static final String ACTORS_SEPARATOR = ",";
 
     /**
      * Parse Xbox CSV data and build ExternalDbRecord instance
      *
      * @param externalDb - CsvStream
-     * @return List<ExternalDbRecord> - List of external DB records
+     * @return Set<ExternalDbRecord> - external DB records iterated in feed order
      */
     @Override
     public Set<ExternalDbRecord> populateExternalData(Matcher.CsvStream externalDb) {
         Map<CsvMetadata, Integer> moviesColumnIndexMap = tableColumnsIndexMap(externalDb);
+        CsvProjection projection = projection(externalDb);
 
-        return externalDb.getDataRows().map(row -> buildQuerySpec(row, moviesColumnIndexMap))
+        return externalDb.getDataRows().map(row -> buildQuerySpec(row, projection, moviesColumnIndexMap))
                 .filter(Optional::isPresent)
                 .map(Optional::get)
-                .collect(Collectors.toUnmodifiableSet());
+                .collect(Collectors.collectingAndThen(Collectors.toCollection(LinkedHashSet::new),
+                        Collections::unmodifiableSet));
+    }
+
+    /**
+     * Lazily parse Xbox CSV data, malformed rows are skipped
+     *
+     * @param externalDb - CsvStream
+     * @return Flux<ExternalDbRecord> - external DB records in feed order
+     */
+    @Override
+    public Flux<ExternalDbRecord> streamExternalData(Matcher.CsvStream externalDb) {
+        return Flux.defer(() -> {
+            Map<CsvMetadata, Integer> moviesColumnIndexMap = tableColumnsIndexMap(externalDb);
+            CsvProjection projection = projection(externalDb);
+
+            return Flux.fromStream(externalDb.getDataRows())
+                    .mapNotNull(row -> buildQuerySpec(row, projection, moviesColumnIndexMap).orElse(null));
+        });
     }
 
-    private Optional<ExternalDbRecord> buildQuerySpec(String row, Map<CsvMetadata, Integer> moviesColumnIndexMap) {
+    /**
+     * Xbox feed columns read by the matcher
+     *
+     * @return Set<CsvMetadata> - media ID, title, original release date, actors and director columns
+     */
+    @Override
+    public Set<CsvMetadata> getRequiredColumns() {
+        return REQUIRED_COLUMNS;
+    }
+
+    private Optional<ExternalDbRecord> buildQuerySpec(String row, CsvProjection projection,
+                                                      Map<CsvMetadata, Integer> moviesColumnIndexMap) {
         try {
-            String[] values = CsvUtil.parse(row);
-            String complexKey = String.format("%s_%s", values[moviesColumnIndexMap.get(CsvMetadata.TITLE)],
-                    getDateYear(values[moviesColumnIndexMap.get(CsvMetadata.ORIGINALRELEASEDATE)], "M/d/yyyy hh:mm:ss a"));
+            String[] values = projection.parse(row);
+            String complexKey = values[moviesColumnIndexMap.get(CsvMetadata.TITLE)] + IndexDefinition.KEY_DELIMITER
+                    + getDateYear(values[moviesColumnIndexMap.get(CsvMetadata.ORIGINALRELEASEDATE)], "M/d/yyyy hh:mm:ss a");
 
             return Optional.of(new ExternalDbRecord(values[moviesColumnIndexMap.get(CsvMetadata.MEDIAID)],
-                    values[moviesColumnIndexMap.get(CsvMetadata.DIRECTOR)], complexKey));
+                    values[moviesColumnIndexMap.get(CsvMetadata.DIRECTOR)], complexKey,
+                    actors(values[moviesColumnIndexMap.get(CsvMetadata.ACTORS)])));
 
         } catch (IOException e) {
             log.error("Malformed CSV Row [ " + row + " ]");
@@ -48,4 +96,23 @@ public class XBoxDataService implements IntegrationDataService<IntegrationDataSe
 
         return Optional.empty();
     }
+
+    /*
+     * Cast names of the ACTORS column in feed order, blank names are skipped
+     */
+    private static List<String> actors(String value) {
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+
+        List<String> actors = new ArrayList<>();
+        for (String name : value.split(ACTORS_SEPARATOR)) {
+            String actor = name.trim();
+            if (!actor.isEmpty()) {
+                actors.add(actor);
+            }
+        }
+
+        return Collections.unmodifiableList(actors);
+    }
 }
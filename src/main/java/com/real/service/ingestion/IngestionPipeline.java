@@ -0,0 +1,139 @@
+package com.real.service.ingestion;
+
+import com.real.execution.ExecutionContext;
+import com.real.execution.Workload;
+import com.real.matcher.Matcher;
+import com.real.persistence.core.Row;
+import com.real.util.CsvRecord;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Staged CSV ingestion pipeline: parse CSV records into typed records, build table rows and insert them in batches,
+ * or in bigger bulk batches. Batches are requested from the parse stage as the inserts complete,
+ * so memory is bounded by the in-flight batches and not by the feed size.
+ * The load starts on subscription and the returned Mono completes only when every batch has been inserted.
+ * Records rejected by the parse or build stage are logged, skipped and counted in the load report,
+ * a failed insert or more rejected records than the configured limit, if any, fail the returned Mono.
+ * Records are tokenized on the parse rails, parsers decode only the fields they read.
+ * Stages run on the schedulers of their workloads from the execution context.
+ */
+@Slf4j
+public class IngestionPipeline {
+    private final PipelineConfig config;
+
+    /**
+     * Parameterised constructor
+     *
+     * @param config - stages parallelism, batch size and error limit
+     */
+    public IngestionPipeline(@NonNull final PipelineConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Load CSV stream into table
+     *
+     * @param tableName - loaded table name, used for reporting
+     * @param csvStream - CSV stream
+     * @param parser - function parsing CSV record into typed record, throws IllegalArgumentException for malformed records
+     * @param rowBuilder - function building table row from parsed record
+     * @param writer - batch insert operation
+     * @return Mono<LoadReport> - load report, emitted when all rows are inserted, or IllegalStateException
+     * if an insert failed or more records were rejected than the configured limit
+     */
+    public <R> Mono<LoadReport> load(@NonNull final String tableName, @NonNull final Matcher.CsvStream csvStream,
+                                     @NonNull final Function<CsvRecord, R> parser,
+                                     @NonNull final Function<R, Row> rowBuilder,
+                                     @NonNull final Consumer<List<Row>> writer) {
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            final LoadReport.StageReport parse = new LoadReport.StageReport("parse", config.getParseParallelism());
+            final LoadReport.StageReport build = new LoadReport.StageReport("build", config.getParseParallelism());
+            final LoadReport.StageReport insert = new LoadReport.StageReport("insert", config.getInsertParallelism());
+            final ExecutionContext context = ExecutionContext.getInstance();
+            final Scheduler parseScheduler = context.scheduler(Workload.CPU_BOUND);
+            final Scheduler insertScheduler = context.scheduler(config.getInsertWorkload());
+            final Supplier<LoadReport> report = () -> new LoadReport(tableName, List.of(parse, build, insert),
+                    Duration.ofNanos(System.nanoTime() - start));
+
+            final Flux<Row> rows = Flux.fromStream(csvStream::getRecords)
+                    .parallel(config.getParseParallelism())
+                    .runOn(parseScheduler)
+                    .map(record -> parse(record, parser, parse).flatMap(parsed -> build(parsed, rowBuilder, build)))
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .sequential();
+            final Flux<List<Row>> batches = rows.buffer(config.isBulkLoad()
+                    ? config.getBulkBatchSize() : config.getBatchSize());
+
+            return batches
+                    .flatMap(batch -> Mono.fromRunnable(() -> insert(batch, writer, insert))
+                            .subscribeOn(insertScheduler), config.getInsertParallelism())
+                    .onErrorMap(e -> new IllegalStateException("Load failed: " + report.get(), e))
+                    .then(Mono.fromCallable(() -> {
+                        long rejected = parse.getErrors() + build.getErrors();
+                        if (rejected > config.getMaxRejectedRecords()) {
+                            throw new IllegalStateException(rejected + " records rejected, at most "
+                                    + config.getMaxRejectedRecords() + " allowed: " + report.get());
+                        }
+                        return report.get();
+                    }));
+        });
+    }
+
+    private static <R> Optional<R> parse(CsvRecord record, Function<CsvRecord, R> parser,
+                                         LoadReport.StageReport stage) {
+        long start = System.nanoTime();
+        try {
+            R parsed = parser.apply(record);
+            stage.success(1, start);
+            return Optional.of(parsed);
+        } catch (UncheckedIOException | IllegalArgumentException e) {
+            stage.failure(1, start);
+            log.error(e.getMessage());
+        }
+
+        return Optional.empty();
+    }
+
+    private static <R> Optional<Row> build(R record, Function<R, Row> rowBuilder, LoadReport.StageReport stage) {
+        long start = System.nanoTime();
+        try {
+            Row row = rowBuilder.apply(record);
+            stage.success(1, start);
+            return Optional.of(row);
+        } catch (RuntimeException e) {
+            stage.failure(1, start);
+            log.error("Can't build table row from record {}", record, e);
+        }
+
+        return Optional.empty();
+    }
+
+    /*
+     * Rows of a failed batch may be partially inserted, the failure is rethrown to fail the load
+     */
+    private static void insert(List<Row> batch, Consumer<List<Row>> writer, LoadReport.StageReport stage) {
+        long start = System.nanoTime();
+        try {
+            writer.accept(batch);
+            stage.success(batch.size(), start);
+        } catch (RuntimeException e) {
+            stage.failure(batch.size(), start);
+            log.error("Can't insert batch of {} rows", batch.size(), e);
+            throw e;
+        }
+    }
+}
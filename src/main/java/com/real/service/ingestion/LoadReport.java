@@ -0,0 +1,141 @@
+package com.real.service.ingestion;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Table load report with per stage counters
+ */
+@Getter
+public class LoadReport {
+    private final String tableName;
+    private final List<StageReport> stages;
+    private final Duration elapsed;
+
+    /**
+     * Parameterised constructor
+     *
+     * @param tableName - loaded table name
+     * @param stages - pipeline stages reports
+     * @param elapsed - wall clock time of the load
+     */
+    public LoadReport(@NonNull final String tableName, @NonNull final List<StageReport> stages,
+                      @NonNull final Duration elapsed) {
+        this.tableName = tableName;
+        this.stages = List.copyOf(stages);
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * Count of rows written by the last stage
+     *
+     * @return long - loaded rows count
+     */
+    public long getLoadedRows() {
+        return stages.isEmpty() ? 0 : stages.get(stages.size() - 1).getProcessed();
+    }
+
+    /**
+     * Count of rows failed in any stage
+     *
+     * @return long - failed rows count
+     */
+    public long getErrors() {
+        return stages.stream().mapToLong(StageReport::getErrors).sum();
+    }
+
+    /**
+     * Loaded rows per second of wall clock time
+     *
+     * @return double - load throughput
+     */
+    public double getThroughput() {
+        return StageReport.perSecond(getLoadedRows(), elapsed.toNanos());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder(String.format("table %s: %d rows in %d ms (%.0f rows/s), %d errors",
+                tableName, getLoadedRows(), elapsed.toMillis(), getThroughput(), getErrors()));
+        stages.forEach(stage -> report.append(System.lineSeparator()).append("  ").append(stage));
+
+        return report.toString();
+    }
+
+    /**
+     * Counters of a single pipeline stage, safe for concurrent workers
+     */
+    public static class StageReport {
+        @Getter
+        private final String name;
+        @Getter
+        private final int parallelism;
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+
+        /**
+         * Parameterised constructor
+         *
+         * @param name - stage name
+         * @param parallelism - count of stage workers
+         */
+        public StageReport(@NonNull final String name, int parallelism) {
+            this.name = name;
+            this.parallelism = parallelism;
+        }
+
+        /**
+         * Record successfully processed rows
+         *
+         * @param rows - processed rows count
+         * @param startNanos - System.nanoTime() when the processing started
+         */
+        public void success(long rows, long startNanos) {
+            processed.add(rows);
+            busyNanos.add(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Record failed rows
+         *
+         * @param rows - failed rows count
+         * @param startNanos - System.nanoTime() when the processing started
+         */
+        public void failure(long rows, long startNanos) {
+            errors.add(rows);
+            busyNanos.add(System.nanoTime() - startNanos);
+        }
+
+        public long getProcessed() {
+            return processed.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * Rows per second the stage sustains with all its workers busy
+         *
+         * @return double - stage throughput
+         */
+        public double getThroughput() {
+            return perSecond(getProcessed() * parallelism, busyNanos.sum());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s x%d: %d rows, %d errors, %.0f rows/s", name, parallelism, getProcessed(),
+                    getErrors(), getThroughput());
+        }
+
+        static double perSecond(long rows, long nanos) {
+            return nanos == 0 ? 0 : rows * 1_000_000_000d / nanos;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.real.service.ingestion;
+
+import com.real.execution.Workload;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NonNull;
+
+/**
+ * Ingestion pipeline configuration.
+ * Parse and build stages share the same rails, insert stage writes batches with its own concurrency.
+ * Parse and build stages are CPU-bound, the insert stage declares its workload.
+ * A bulk load inserts bounded bulk batches, so the indexes are built in one pass per batch after its rows are stored
+ * while no more than the in-flight batches of the feed are held in memory.
+ * Malformed records are skipped and counted in the load report by default, a rejected records limit
+ * opts in to failing the load past it.
+ */
+@Data
+@Builder
+public class PipelineConfig {
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    /*
+     * Count of rails parsing CSV rows and building table rows
+     */
+    @Builder.Default
+    private final int parseParallelism = CORES;
+    /*
+     * Count of batches inserted concurrently
+     */
+    @Builder.Default
+    private final int insertParallelism = CORES;
+    /*
+     * Count of table rows inserted at once
+     */
+    @Builder.Default
+    private final int batchSize = 1024;
+    /*
+     * Insert built rows in batches of the bulk batch size instead of the batch size
+     */
+    @Builder.Default
+    private final boolean bulkLoad = false;
+    /*
+     * Count of table rows inserted at once by a bulk load
+     */
+    @Builder.Default
+    private final int bulkBatchSize = 65536;
+    /*
+     * Count of records rejected by the parse and build stages a load tolerates, unlimited by default
+     */
+    @Builder.Default
+    private final long maxRejectedRecords = Long.MAX_VALUE;
+    /*
+     * Workload of the insert stage, blocking when every insert waits for the write-ahead log fsync
+     */
+    @NonNull
+    @Builder.Default
+    private final Workload insertWorkload = Workload.CPU_BOUND;
+
+    /**
+     * Configuration with parallelism of all stages equal to available processors
+     *
+     * @return PipelineConfig - default configuration
+     */
+    public static PipelineConfig defaults() {
+        return PipelineConfig.builder().build();
+    }
+}
@@ -0,0 +1,150 @@
+package com.real.service.ingestion;
+
+import com.real.model.CsvMetadata;
+import com.real.persistence.core.TableMetadata;
+import com.real.util.CsvRecord;
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Typed parser of CSV records into table record values.
+ * Only the fields of the table columns are decoded, values are trimmed and checked against the column types:
+ * numbers have to parse as the column type and dates have to start with a four digit year.
+ * Blank values are kept in data columns, the key column needs a value.
+ * Malformed records are rejected by the parse stage, so row builders only see checked values.
+ */
+public final class RecordParser {
+    /*
+     * Initial capacity for record column values map, big enough to hold the table columns without resizing
+     */
+    private static final int MIN_RECORD_CAPACITY = 4;
+
+    private final String[] columns;
+    private final int[] positions;
+    private final TableMetadata[] types;
+    private final String keyColumn;
+    private final int capacity;
+
+    private RecordParser(String[] columns, int[] positions, TableMetadata[] types, String keyColumn) {
+        this.columns = columns;
+        this.positions = positions;
+        this.types = types;
+        this.keyColumn = keyColumn;
+        this.capacity = Math.max(MIN_RECORD_CAPACITY, columns.length);
+    }
+
+    /**
+     * Build parser of CSV records of the header into records of the table columns
+     *
+     * @param columnsIndexMap - map of header name as KEY and position index as VALUE, see CsvUtil.tableColumnsIndexMap
+     * @param tableMetadata - table column types by column name
+     * @param keyColumn - column of the row ID
+     * @return RecordParser - parser
+     * @exception IllegalArgumentException - a table column is not in the header or the key column is not a table column
+     */
+    public static RecordParser of(@NonNull final Map<CsvMetadata, Integer> columnsIndexMap,
+                                  @NonNull final Map<String, TableMetadata> tableMetadata,
+                                  @NonNull final String keyColumn) {
+        if (!tableMetadata.containsKey(keyColumn)) {
+            throw new IllegalArgumentException("Key column " + keyColumn + " is not a table column");
+        }
+
+        String[] columns = new String[tableMetadata.size()];
+        int[] positions = new int[columns.length];
+        TableMetadata[] types = new TableMetadata[columns.length];
+        int i = 0;
+        for (Map.Entry<String, TableMetadata> column : tableMetadata.entrySet()) {
+            Integer position = columnsIndexMap.get(CsvMetadata.valueOf(column.getKey()));
+            if (position == null) {
+                throw new IllegalArgumentException("CSV header has no column " + column.getKey());
+            }
+            columns[i] = column.getKey();
+            positions[i] = position;
+            types[i++] = column.getValue();
+        }
+
+        return new RecordParser(columns, positions, types, keyColumn);
+    }
+
+    /**
+     * Column of the row ID
+     *
+     * @return String - key column name
+     */
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    /**
+     * Parse CSV record into checked column values
+     *
+     * @param record - CSV record
+     * @return ConcurrentHashMap<String, String> - trimmed values by column name
+     * @exception IllegalArgumentException - the record misses a column or a value doesn't match the column type
+     */
+    public ConcurrentHashMap<String, String> parse(@NonNull final CsvRecord record) {
+        ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>(capacity);
+        for (int i = 0; i < columns.length; i++) {
+            String field = record.get(positions[i]);
+            if (field == null) {
+                throw new IllegalArgumentException("CSV Row has no column " + columns[i] + " [ " + record.line() + " ]");
+            }
+            String value = field.trim();
+            if (value.isEmpty() ? columns[i].equals(keyColumn) : !matches(types[i], value)) {
+                throw new IllegalArgumentException("Value '" + value + "' of column " + columns[i] + " is not "
+                        + types[i] + " [ " + record.line() + " ]");
+            }
+            values.put(columns[i], value);
+        }
+
+        return values;
+    }
+
+    /*
+     * Check whether the non-empty value is of the type
+     */
+    private static boolean matches(TableMetadata type, String value) {
+        try {
+            switch (type) {
+                case INTEGER:
+                    Integer.parseInt(value);
+                    return true;
+                case LONG:
+                    Long.parseLong(value);
+                    return true;
+                case DOUBLE:
+                    Double.parseDouble(value);
+                    return true;
+                case DATE:
+                case DATE_TIME:
+                    return startsWithYear(value);
+                default:
+                    return true;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /*
+     * ISO date or plain year value
+     */
+    private static boolean startsWithYear(String value) {
+        if (value.length() < 4 || value.length() > 4 && isDigit(value.charAt(4))) {
+            return false;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (!isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,102 @@
+package com.real.util;
+
+import lombok.NonNull;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Utility class for compact binary encoding of persisted values.
+ * Integers are unsigned varints, strings are UTF-8 bytes prefixed by their length
+ * and timestamps are epoch milliseconds UTC.
+ */
+public final class BinaryCodec {
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * Write unsigned varint, 7 bits per byte with the high bit set on all bytes but the last one
+     *
+     * @param out - binary output
+     * @param value - non-negative value
+     * @exception IOException - writing exception
+     */
+    public static void writeVarInt(@NonNull final DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Read unsigned varint
+     *
+     * @param in - binary input
+     * @return int - value
+     */
+    public static int readVarInt(@NonNull final ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Write length prefixed UTF-8 string
+     *
+     * @param out - binary output
+     * @param value - string value
+     * @exception IOException - writing exception
+     */
+    public static void writeString(@NonNull final DataOutput out, @NonNull final String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read length prefixed UTF-8 string
+     *
+     * @param in - binary input
+     * @return String - string value
+     */
+    public static String readString(@NonNull final ByteBuffer in) {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Convert local date-time to epoch milliseconds, the date-time is treated as UTC.
+     * Computed from the date-time fields, so logging a mutation doesn't allocate an Instant.
+     *
+     * @param dateTime - date-time
+     * @return long - epoch milliseconds
+     */
+    public static long toEpochMilli(@NonNull final LocalDateTime dateTime) {
+        return Math.addExact(Math.multiplyExact(dateTime.toEpochSecond(ZoneOffset.UTC), 1000L),
+                dateTime.getNano() / 1_000_000);
+    }
+
+    /**
+     * Convert epoch milliseconds to UTC local date-time
+     *
+     * @param epochMilli - epoch milliseconds
+     * @return LocalDateTime - date-time
+     */
+    public static LocalDateTime toDateTime(long epochMilli) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMilli, 1000L),
+                (int) Math.floorMod(epochMilli, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,114 @@
+package com.real.util;
+
+import com.real.model.CsvMetadata;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Projection of CSV rows on a set of columns.
+ * Only the projected fields are decoded into strings, the other fields are skipped by scanning for the separator
+ * and the row isn't scanned past the last projected column. Quoted fields may contain separators and doubled quotes.
+ */
+public final class CsvProjection {
+    private static final char QUOTE = '"';
+    private static final char SEPARATOR = ',';
+
+    private final boolean[] projected;
+    private final int lastColumn;
+
+    private CsvProjection(boolean[] projected) {
+        this.projected = projected;
+        this.lastColumn = projected.length - 1;
+    }
+
+    /**
+     * Build projection of the CSV header on the needed columns
+     *
+     * @param columnsIndexMap - map of header name as KEY and position index as VALUE, see CsvUtil.tableColumnsIndexMap
+     * @param columns - needed columns
+     * @return CsvProjection - projection
+     * @exception IllegalArgumentException - a needed column is not in the header
+     */
+    public static CsvProjection of(@NonNull final Map<CsvMetadata, Integer> columnsIndexMap,
+                                   @NonNull final Set<CsvMetadata> columns) {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("Projection needs at least one column");
+        }
+
+        int lastColumn = 0;
+        for (CsvMetadata column : columns) {
+            Integer index = columnsIndexMap.get(column);
+            if (index == null) {
+                throw new IllegalArgumentException("CSV header has no column " + column);
+            }
+            lastColumn = Math.max(lastColumn, index);
+        }
+        boolean[] projected = new boolean[lastColumn + 1];
+        columns.forEach(column -> projected[columnsIndexMap.get(column)] = true);
+
+        return new CsvProjection(projected);
+    }
+
+    /**
+     * Parse projected fields of CSV row
+     *
+     * @param data - CSV row
+     * @return String[] - field values by column position up to the last projected column, null for skipped columns
+     * @exception IOException - the row ends before the last projected column or has an unterminated quoted field
+     */
+    public String[] parse(@NonNull final String data) throws IOException {
+        String[] values = new String[lastColumn + 1];
+        int length = data.length();
+        int start = 0;
+        for (int column = 0; ; column++) {
+            int end = fieldEnd(data, start, length);
+            if (projected[column]) {
+                values[column] = decode(data, start, end);
+            }
+            if (column == lastColumn) {
+                return values;
+            }
+            if (end == length) {
+                throw new IOException("CSV Row has " + (column + 1) + " columns, column " + (lastColumn + 1)
+                        + " expected [ " + data + " ]");
+            }
+            start = end + 1;
+        }
+    }
+
+    /*
+     * Position of the separator ending the field, or the row length for the last field
+     */
+    private static int fieldEnd(String data, int start, int length) throws IOException {
+        boolean inQuotes = false;
+        for (int i = start; i < length; i++) {
+            char c = data.charAt(i);
+            if (c == QUOTE) {
+                inQuotes = !inQuotes;
+            } else if (c == SEPARATOR && !inQuotes) {
+                return i;
+            }
+        }
+        if (inQuotes) {
+            throw new IOException("Unterminated quoted field in CSV Row [ " + data + " ]");
+        }
+
+        return length;
+    }
+
+    private static String decode(String data, int start, int end) {
+        int from = start;
+        while (from < end && data.charAt(from) == ' ') {
+            from++;
+        }
+        if (end - from >= 2 && data.charAt(from) == QUOTE && data.charAt(end - 1) == QUOTE) {
+            String value = data.substring(from + 1, end - 1);
+            return value.indexOf(QUOTE) < 0 ? value : value.replace("\"\"", "\"");
+        }
+
+        return data.substring(start, end);
+    }
+}
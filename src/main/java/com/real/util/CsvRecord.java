@@ -0,0 +1,31 @@
+package com.real.util;
+
+/**
+ * View of a single CSV record.
+ * Fields are tokenized on first access and decoded to strings only when requested,
+ * tokenizing errors are reported as UncheckedIOException.
+ */
+public interface CsvRecord {
+
+    /**
+     * Count of record fields
+     *
+     * @return int - fields count
+     */
+    int size();
+
+    /**
+     * Decode field value
+     *
+     * @param index - field position
+     * @return String - unquoted field value or null if the record has no such field
+     */
+    String get(int index);
+
+    /**
+     * Raw record text
+     *
+     * @return String - record as it's written in CSV
+     */
+    String line();
+}
@@ -4,11 +4,18 @@ import lombok.NonNull;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Date Utility class
  */
 public final class DateUtil {
+    /*
+     * Formatters are immutable and thread-safe, a pattern is compiled only once
+     */
+    private static final Map<String, DateTimeFormatter> FORMATTERS = new ConcurrentHashMap<>();
+
     private DateUtil() {
     }
 
@@ -21,7 +28,7 @@ public final class DateUtil {
      * @return LocalDateTime
      */
     public static LocalDateTime parse(@NonNull final String date, @NonNull final String pattern) {
-        return LocalDateTime.parse(date, DateTimeFormatter.ofPattern(pattern));
+        return LocalDateTime.parse(date, formatter(pattern));
     }
 
     /**
@@ -33,6 +40,10 @@ public final class DateUtil {
      * @return String - Year of Date
      */
     public static String getDateYear(@NonNull final String date, @NonNull final String pattern) {
-        return String.valueOf(LocalDateTime.parse(date, DateTimeFormatter.ofPattern(pattern)).getYear());
+        return String.valueOf(LocalDateTime.parse(date, formatter(pattern)).getYear());
+    }
+
+    private static DateTimeFormatter formatter(String pattern) {
+        return FORMATTERS.computeIfAbsent(pattern, DateTimeFormatter::ofPattern);
     }
 }
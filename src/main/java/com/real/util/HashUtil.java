@@ -0,0 +1,47 @@
+package com.real.util;
+
+import lombok.NonNull;
+
+/**
+ * Utility class for hashing values
+ */
+public final class HashUtil {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private HashUtil() {
+    }
+
+    /**
+     * 64-bit hash of character sequence, FNV-1a with a final avalanche mix
+     *
+     * @param value - hashed value
+     * @return long - 64-bit hash
+     */
+    public static long hash64(@NonNull final CharSequence value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+
+        return mix64(hash);
+    }
+
+    /**
+     * Avalanche mix of 64-bit value, every input bit affects every output bit
+     *
+     * @param value - mixed value
+     * @return long - mixed value
+     */
+    public static long mix64(long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+}
@@ -0,0 +1,51 @@
+package com.real.util;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * CSV record backed by a text line, the line is parsed on first field access
+ */
+public final class LineCsvRecord implements CsvRecord {
+    private final String line;
+    private String[] values;
+
+    /**
+     * Parameterised constructor
+     *
+     * @param line - CSV record text
+     */
+    public LineCsvRecord(@NonNull final String line) {
+        this.line = line;
+    }
+
+    @Override
+    public int size() {
+        return values().length;
+    }
+
+    @Override
+    public String get(int index) {
+        String[] fields = values();
+        return index < fields.length ? fields[index] : null;
+    }
+
+    @Override
+    public String line() {
+        return line;
+    }
+
+    private String[] values() {
+        if (values == null) {
+            try {
+                values = CsvUtil.parse(line);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Malformed CSV Row [ " + line + " ]", e);
+            }
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,331 @@
+package com.real.util;
+
+import com.real.matcher.Matcher;
+import lombok.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Memory-mapped CSV file.
+ * The file is mapped in read-only windows and records are handed out as views over the mapped bytes,
+ * nothing is copied until a field value is requested. Quoted fields may contain separators, line breaks
+ * and doubled quotes. Blank lines are skipped.
+ */
+public class MappedCsvFile implements Closeable {
+    private static final int DEFAULT_WINDOW_SIZE = 256 << 20;
+    private static final byte QUOTE = '"';
+    private static final byte SEPARATOR = ',';
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+    private final String headerRow;
+    private final long dataOffset;
+
+    private MappedCsvFile(FileChannel channel, int windowSize) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+
+        RecordIterator header = new RecordIterator(bomLength());
+        this.headerRow = header.hasNext() ? header.next().line().trim() : "";
+        this.dataOffset = header.offset();
+    }
+
+    /**
+     * Map CSV file, the first record is the header
+     *
+     * @param path - CSV file path
+     * @return MappedCsvFile - mapped file
+     * @exception IOException - file reading exception
+     */
+    public static MappedCsvFile open(@NonNull final Path path) throws IOException {
+        return open(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Map CSV file, the first record is the header
+     *
+     * @param path - CSV file path
+     * @param windowSize - size of mapped window in bytes, records longer than the window get a larger window
+     * @return MappedCsvFile - mapped file
+     * @exception IOException - file reading exception
+     */
+    public static MappedCsvFile open(@NonNull final Path path, int windowSize) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedCsvFile(channel, windowSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Header record text
+     *
+     * @return String - header row
+     */
+    public String getHeaderRow() {
+        return headerRow;
+    }
+
+    /**
+     * Lazy stream of the data records, every call starts from the first data record
+     *
+     * @return Stream<CsvRecord> - records following the header
+     */
+    public Stream<CsvRecord> records() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new RecordIterator(dataOffset),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * CSV stream over the data records
+     *
+     * @return Matcher.CsvStream - CSV stream
+     */
+    public Matcher.CsvStream toCsvStream() {
+        return Matcher.CsvStream.fromRecords(headerRow, records());
+    }
+
+    /**
+     * Close the file channel, the mapped windows stay valid until they are garbage collected
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int bomLength() throws IOException {
+        if (fileSize < BOM.length) {
+            return 0;
+        }
+        ByteBuffer start = channel.map(FileChannel.MapMode.READ_ONLY, 0, BOM.length);
+        for (int i = 0; i < BOM.length; i++) {
+            if (start.get(i) != BOM[i]) {
+                return 0;
+            }
+        }
+
+        return BOM.length;
+    }
+
+    /*
+     * Iterator finding record boundaries over mapped windows, a record crossing the window end is remapped
+     * in the next window starting at the record
+     */
+    private final class RecordIterator implements Iterator<CsvRecord> {
+        private ByteBuffer window;
+        private long windowOffset;
+        private int position;
+        private CsvRecord next;
+
+        RecordIterator(long offset) {
+            map(offset, windowSize);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+
+            return next != null;
+        }
+
+        @Override
+        public CsvRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            CsvRecord record = next;
+            next = null;
+
+            return record;
+        }
+
+        /*
+         * File offset of the first byte after the last returned record
+         */
+        long offset() {
+            return windowOffset + position;
+        }
+
+        private CsvRecord advance() {
+            while (true) {
+                int start = position;
+                int limit = window.limit();
+                if (start >= limit) {
+                    if (windowOffset + limit >= fileSize) {
+                        return null;
+                    }
+                    map(windowOffset + start, windowSize);
+                    continue;
+                }
+
+                int end = findRecordEnd(start, limit);
+                boolean lastWindow = windowOffset + limit >= fileSize;
+                if (end < 0 && !lastWindow) {
+                    // the record crosses the window end, remap from the record start
+                    map(windowOffset + start, start == 0 ? (long) limit << 1 : windowSize);
+                    continue;
+                }
+
+                int recordEnd = end < 0 ? limit : end;
+                position = end < 0 ? limit : end + 1;
+                if (recordEnd > start && window.get(recordEnd - 1) == CARRIAGE_RETURN) {
+                    recordEnd--;
+                }
+                if (!isBlank(start, recordEnd)) {
+                    return new MappedCsvRecord(window, start, recordEnd);
+                }
+            }
+        }
+
+        private int findRecordEnd(int start, int limit) {
+            boolean inQuotes = false;
+            for (int i = start; i < limit; i++) {
+                byte b = window.get(i);
+                if (b == QUOTE) {
+                    inQuotes = !inQuotes;
+                } else if (b == LINE_FEED && !inQuotes) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        private boolean isBlank(int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (!Character.isWhitespace(window.get(i))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /*
+         * Map window of the size at the file offset, clamped to the largest buffer and to the rest of the file
+         */
+        private void map(long offset, long size) {
+            try {
+                windowOffset = offset;
+                long mapped = Math.min(Math.min(size, Integer.MAX_VALUE), fileSize - offset);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, offset, mapped);
+                position = 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /*
+     * Record view over mapped bytes, field boundaries are found on first access
+     */
+    private static final class MappedCsvRecord implements CsvRecord {
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+        private int[] bounds;
+        private int size;
+
+        MappedCsvRecord(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int size() {
+            tokenize();
+            return size;
+        }
+
+        @Override
+        public String get(int index) {
+            tokenize();
+            if (index >= size) {
+                return null;
+            }
+
+            int from = bounds[index << 1];
+            int to = bounds[(index << 1) + 1];
+            while (from < to && buffer.get(from) == ' ') {
+                from++;
+            }
+            if (to - from >= 2 && buffer.get(from) == QUOTE && buffer.get(to - 1) == QUOTE) {
+                String value = decode(buffer, from + 1, to - 1);
+                return value.indexOf(QUOTE) < 0 ? value : value.replace("\"\"", "\"");
+            }
+
+            return decode(buffer, bounds[index << 1], to);
+        }
+
+        @Override
+        public String line() {
+            return decode(buffer, start, end);
+        }
+
+        private void tokenize() {
+            if (bounds != null) {
+                return;
+            }
+
+            int[] fields = new int[16];
+            int count = 0;
+            int fieldStart = start;
+            boolean inQuotes = false;
+            for (int i = start; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b == QUOTE) {
+                    inQuotes = !inQuotes;
+                } else if (b == SEPARATOR && !inQuotes) {
+                    if (count + 2 > fields.length) {
+                        fields = Arrays.copyOf(fields, fields.length << 1);
+                    }
+                    fields[count++] = fieldStart;
+                    fields[count++] = i;
+                    fieldStart = i + 1;
+                }
+            }
+            if (inQuotes) {
+                throw new UncheckedIOException(new IOException("Unterminated quoted field in CSV Row [ " + line() + " ]"));
+            }
+            if (count + 2 > fields.length) {
+                fields = Arrays.copyOf(fields, fields.length + 2);
+            }
+            fields[count++] = fieldStart;
+            fields[count++] = end;
+
+            size = count >> 1;
+            bounds = fields;
+        }
+
+        private static String decode(ByteBuffer buffer, int from, int to) {
+            byte[] bytes = new byte[to - from];
+            buffer.duplicate().position(from).get(bytes);
+
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.real.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+public class ExecutionContextTest {
+
+  @AfterEach
+  public void reset() {
+    ExecutionContext.getInstance().configure(ExecutionConfig.defaults());
+  }
+
+  @Test
+  public void strategiesTest() throws ReflectiveOperationException {
+    var context = ExecutionContext.getInstance();
+    for (var strategy : ExecutionStrategy.values()) {
+      context.configure(ExecutionConfig.builder().strategy(strategy).cpuParallelism(2).blockingParallelism(4).build());
+      var applied = context.getConfig().getStrategy();
+      assertEquals(strategy.isSupported() ? strategy : ExecutionStrategy.FIXED, applied);
+
+      var thread = Mono.fromCallable(Thread::currentThread)
+          .subscribeOn(context.scheduler(Workload.BLOCKING))
+          .block();
+      assertEquals(applied == ExecutionStrategy.VIRTUAL_THREADS, isVirtual(thread), strategy.name());
+
+      var sum = new AtomicInteger();
+      context.runChunks(100, sum::addAndGet);
+      assertEquals(4950, sum.get(), strategy.name());
+    }
+  }
+
+  @Test
+  public void virtualThreadsSupportTest() {
+    // the Java 21 class of the multi-release jar supports virtual threads, the Java 11 class never does
+    if (Runtime.version().feature() < 21) {
+      assertFalse(ExecutionStrategy.VIRTUAL_THREADS.isSupported());
+    } else if (Boolean.getBoolean("execution.multiReleaseJar")) {
+      assertTrue(ExecutionStrategy.VIRTUAL_THREADS.isSupported());
+    }
+    assertTrue(ExecutionStrategy.FIXED.isSupported() && ExecutionStrategy.WORK_STEALING.isSupported());
+  }
+
+  /*
+   * Thread.isVirtual exists since Java 21, so it's looked up reflectively on the Java 11 class path
+   */
+  private static boolean isVirtual(Thread thread) throws ReflectiveOperationException {
+    return Runtime.version().feature() >= 21 && (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+  }
+}
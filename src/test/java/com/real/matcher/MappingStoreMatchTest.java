@@ -0,0 +1,107 @@
+package com.real.matcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import com.real.matcher.Matcher.CsvStream;
+import com.real.matcher.Matcher.DatabaseType;
+import com.real.matcher.Matcher.IdMapping;
+import com.real.persistence.mapping.KnownMappingStore;
+import com.real.persistence.mapping.MappingStoreConfig;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappingStoreMatchTest {
+  private static final String FEED_HEADER = "MediaId,Title,OriginalReleaseDate,MediaType,Actors,Director,XboxLiveURL";
+
+  @Test
+  public void knownMappingsTest(@TempDir Path directory) throws IOException {
+    var matcher = new MatcherImpl(new CsvStream("id,title,year", Stream.empty()),
+        new CsvStream("movie_id,name,role", Stream.empty()));
+    matcher.reloadDatabase(movies(), credits());
+    var path = directory.resolve("mappings.kms");
+    matcher.enableMappingStore(path, MappingStoreConfig.defaults());
+
+    var first = matcher.match(DatabaseType.XBOX, feed(
+        "a,Saw,10/29/2004 12:00:00 AM,Movie,Cary Elwes,James Wan,url",
+        "b,Insidious,9/14/2010 12:00:00 AM,Movie,Patrick Wilson,James Wan,url"));
+    assertEquals(Map.of("a", 1, "b", 2), internalIds(first));
+
+    // the unchanged "b" is known, the changed record of the same ID is matched with it and "b" is mapped once
+    var second = matcher.match(DatabaseType.XBOX, feed(
+        "a,Saw,10/29/2004 12:00:00 AM,Movie,Cary Elwes,James Wan,url",
+        "b,Insidious,9/14/2010 12:00:00 AM,Movie,Patrick Wilson,James Wan,url",
+        "b,Insidious,9/14/2010 12:00:00 AM,Movie,Rose Byrne,James Wan,url"));
+    assertEquals(2, second.size());
+    assertEquals(Map.of("a", 1, "b", 2), internalIds(second));
+
+    // resolved and newly matched mappings keep the feed order
+    var third = matcher.match(DatabaseType.XBOX, feed(
+        "c,Insidious,9/14/2010 12:00:00 AM,Movie,Rose Byrne,James Wan,url",
+        "a,Saw,10/29/2004 12:00:00 AM,Movie,Cary Elwes,James Wan,url",
+        "d,Saw,10/29/2004 12:00:00 AM,Movie,Cary Elwes,James Wan,url"));
+    assertEquals(List.of("c", "a", "d"), third.stream().map(IdMapping::getExternalId).collect(Collectors.toList()));
+
+    // the reload clears the mappings of the replaced database
+    matcher.reloadDatabase(movies(), credits());
+    matcher.disableMappingStore();
+    try (var store = KnownMappingStore.open(path, MappingStoreConfig.defaults())) {
+      assertEquals(0, store.size());
+    }
+  }
+
+  @Test
+  public void malformedDatabaseRowTest() throws IOException {
+    // the bad movie row is skipped and counted, the rest of the database still loads
+    var matcher = new MatcherImpl(malformedMovies(), credits());
+    // tables are shared by the tests, the reload replaces them with the malformed database only
+    matcher.reloadDatabase(malformedMovies(), credits());
+
+    var mappings = matcher.match(DatabaseType.XBOX, feed(
+        "a,Saw,10/29/2004 12:00:00 AM,Movie,Cary Elwes,James Wan,url",
+        "b,Insidious,9/14/2010 12:00:00 AM,Movie,Patrick Wilson,James Wan,url"));
+    assertEquals(Map.of("a", 1), internalIds(mappings));
+  }
+
+  @Test
+  public void mappedDatabaseTest(@TempDir Path directory) throws IOException {
+    var moviesCsv = Files.writeString(directory.resolve("movies.csv"), "id,title,year\n1,Saw,2004\n2,Insidious,2010\n");
+    var creditsCsv = Files.writeString(directory.resolve("actors_and_directors.csv"),
+        "movie_id,name,role\n1,James Wan,director\n2,James Wan,director\r\n\n2,Rose Byrne,cast");
+    var matcher = new MatcherImpl(new CsvStream("id,title,year", Stream.empty()),
+        new CsvStream("movie_id,name,role", Stream.empty()));
+
+    // the memory-mapped files load the same database as the CSV streams
+    matcher.reloadDatabase(moviesCsv, creditsCsv);
+    var mappings = matcher.match(DatabaseType.XBOX, feed(
+        "a,Saw,10/29/2004 12:00:00 AM,Movie,Cary Elwes,James Wan,url",
+        "b,Insidious,9/14/2010 12:00:00 AM,Movie,Rose Byrne,James Wan,url"));
+    assertEquals(Map.of("a", 1, "b", 2), internalIds(mappings));
+  }
+
+  private static Map<String, Integer> internalIds(List<IdMapping> mappings) {
+    return mappings.stream().collect(Collectors.toMap(IdMapping::getExternalId, IdMapping::getInternalId));
+  }
+
+  private static CsvStream movies() {
+    return new CsvStream("id,title,year", Stream.of("1,Saw,2004", "2,Insidious,2010"));
+  }
+
+  private static CsvStream malformedMovies() {
+    return new CsvStream("id,title,year", Stream.of("1,Saw,2004", "x,Insidious,2010"));
+  }
+
+  private static CsvStream credits() {
+    return new CsvStream("movie_id,name,role", Stream.of("1,James Wan,director", "1,Cary Elwes,cast",
+        "2,James Wan,director", "2,Patrick Wilson,cast", "2,Rose Byrne,cast"));
+  }
+
+  private static CsvStream feed(String... rows) {
+    return new CsvStream(FEED_HEADER, Stream.of(rows));
+  }
+}
@@ -0,0 +1,66 @@
+package com.real.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.real.persistence.core.Row;
+import com.real.persistence.core.Schema;
+import com.real.persistence.core.TableMetadata;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.Test;
+
+public class MetricRegistryTest {
+
+  @Test
+  public void latencyHistogramTest() {
+    var histogram = new LatencyHistogram();
+    for (long nanos = 1; nanos <= 1000; nanos++) {
+      histogram.record(nanos);
+    }
+
+    assertEquals(1000, histogram.getCount());
+    assertTrue(Math.abs(histogram.quantile(0.5) - 500) <= 500 / 4);
+    assertTrue(Math.abs(histogram.quantile(0.99) - 990) <= 990 / 4);
+    assertEquals(1000, histogram.quantile(1.0));
+  }
+
+  @Test
+  public void tableMetricsTest() throws Exception {
+    var schema = new Schema("TEST");
+    schema.createTable("metered", Map.of("ID", TableMetadata.LONG, "TITLE", TableMetadata.STRING));
+    var table = schema.getTableMap().get("metered");
+    table.insertRow(row("1", "Saw"));
+    table.insertRow(row("2", "Insidious"));
+    table.findIdsByIndex("unknown", "Saw");
+
+    var snapshot = MetricRegistry.getInstance().snapshot();
+    assertEquals(2L, snapshot.get("table.metered.insert.count"));
+    assertEquals(2L, snapshot.get("table.metered.rows"));
+    assertEquals(1L, snapshot.get("table.metered.indexMisses"));
+    assertTrue(snapshot.get("table.metered.estimatedBytes").longValue() > 0);
+
+    var objectName = new ObjectName("com.real:type=Metrics,group=" + ObjectName.quote("table.metered"));
+    var mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    assertEquals(2L, mBeanServer.getAttribute(objectName, "rows"));
+
+    schema.dropTable("metered");
+    assertFalse(mBeanServer.isRegistered(objectName));
+    assertFalse(MetricRegistry.getInstance().snapshot().containsKey("table.metered.rows"));
+  }
+
+  private static Row row(String rowId, String title) {
+    var rowValues = new ConcurrentLinkedQueue<ConcurrentHashMap<String, String>>();
+    rowValues.add(new ConcurrentHashMap<>(Map.of("ID", rowId, "TITLE", title)));
+    return Row.builder()
+        .rowId(rowId)
+        .rowValues(rowValues)
+        .createdAt(LocalDateTime.now())
+        .updatedAt(LocalDateTime.now())
+        .build();
+  }
+}
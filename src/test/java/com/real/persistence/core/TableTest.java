@@ -0,0 +1,776 @@
+package com.real.persistence.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TableTest {
+
+  @Test
+  public void columnarTableTest() {
+    var schema = new Schema("TEST");
+    schema.createTable("credit", creditMetadata(), StorageType.COLUMNAR);
+    var table = schema.getTableMap().get("credit");
+    assertTrue(table.isColumnar());
+
+    table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "James Wan", "ROLE", "director")));
+    table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "Vin Diesel", "ROLE", "cast")));
+    table.insertRow(row("2", Map.of("MOVIE_ID", "2", "NAME", "Vin Diesel", "ROLE", "cast")));
+    table.insertRow(row("007", Map.of("MOVIE_ID", "007", "NAME", "Sean Connery", "ROLE", "cast")));
+    assertEquals(4, table.count());
+
+    var first = table.findById("1");
+    assertEquals(2, first.getRowValues().size());
+    assertEquals("James Wan", first.getRowValues().peek().get("NAME"));
+    assertEquals("007", table.findById("007").getRowValues().peek().get("MOVIE_ID"));
+
+    assertEquals(2, table.findByQuerySpec(Map.of("NAME", "Vin Diesel")).size());
+    assertEquals(List.of("2"), rowIds(table.findByQuerySpec(Map.of("NAME", "Vin Diesel", "MOVIE_ID", "2"))));
+    assertEquals(List.of("007"), rowIds(table.findByQuerySpec(Map.of("MOVIE_ID", "007"))));
+    assertTrue(table.findByQuerySpec(Map.of("NAME", "Nobody")).isEmpty());
+    assertTrue(table.findByQuerySpec(Map.of("NAME", "James Wan", "ROLE", "cast")).isEmpty());
+
+    table.deleteById("1");
+    assertFalse(table.existsById("1"));
+    assertNull(table.findById("1"));
+    assertEquals(2, table.count());
+    assertEquals(List.of("2"), rowIds(table.findByQuerySpec(Map.of("NAME", "Vin Diesel"))));
+
+    table.deleteAll();
+    assertEquals(0, table.count());
+  }
+
+  @Test
+  public void columnarCompactionTest() {
+    var schema = new Schema("TEST");
+    schema.createTable("credit", creditMetadata(), StorageType.COLUMNAR, RowMerger.REPLACE);
+    var table = schema.getTableMap().get("credit");
+    var store = (ColumnarStore) table.getStorage();
+
+    // every replace tombstones the row's records, compaction keeps the columns bounded by the live rows
+    for (int round = 0; round < 50; round++) {
+      for (int i = 0; i < 100; i++) {
+        var movieId = i % 10 == 0 ? "00" + i : Integer.toString(i);
+        var values = new HashMap<>(Map.of("MOVIE_ID", movieId, "NAME", "Actor " + round));
+        if (i % 7 != 0) {
+          values.put("ROLE", i % 2 == 0 ? "director" : "cast");
+        }
+        table.insertRow(row(Integer.toString(i), values));
+      }
+    }
+    assertTrue(store.positions() <= 2048, "positions " + store.positions());
+    assertEquals(100, table.count());
+    assertEquals("Actor 49", table.findById("42").getRowValues().peek().get("NAME"));
+    assertEquals("0010", table.findById("10").getRowValues().peek().get("MOVIE_ID"));
+    assertNull(table.findById("14").getRowValues().peek().get("ROLE"));
+    assertEquals(List.of("20"), rowIds(table.findByQuerySpec(Map.of("MOVIE_ID", "0020"))));
+    assertEquals(List.of("3"), rowIds(table.findByQuerySpec(Map.of("MOVIE_ID", "3", "ROLE", "cast"))));
+    assertEquals(100, table.findByQuerySpec(Map.of("NAME", "Actor 49")).size());
+    assertTrue(table.findByQuerySpec(Map.of("NAME", "Actor 48")).isEmpty());
+
+    for (int i = 0; i < 100; i += 2) {
+      table.deleteById(Integer.toString(i));
+    }
+    assertEquals(50, table.count());
+    assertEquals(50, store.findAll().size());
+    assertEquals("Actor 49", table.findById("43").getRowValues().peek().get("NAME"));
+  }
+
+  @Test
+  public void offHeapTableTest() {
+    var store = new OffHeapStore(256);
+    for (int i = 0; i < 5000; i++) {
+      store.insert(row(String.valueOf(i), Map.of("MOVIE_ID", String.valueOf(i), "NAME", "Actor " + i)));
+    }
+    store.insert(row("7", Map.of("MOVIE_ID", "7", "NAME", "Ånother Actör", "ROLE", "cast")));
+    assertEquals(5000, store.rowCount());
+    assertEquals(5001, store.count());
+    assertTrue(store.offHeapBytes() > 0);
+
+    var appended = store.find("7");
+    assertEquals(2, appended.getRowValues().size());
+    assertEquals(List.of("Actor 7", "Ånother Actör"), appended.getRowValues().stream()
+        .map(record -> record.get("NAME")).collect(Collectors.toList()));
+
+    // deletes shift the probe sequences and leave enough garbage to trigger compaction
+    for (int i = 0; i < 5000; i += 2) {
+      assertEquals(String.valueOf(i), store.delete(String.valueOf(i)).getRowId());
+    }
+    assertNull(store.delete("0"));
+    assertEquals(2500, store.rowCount());
+    for (int i = 0; i < 5000; i++) {
+      assertEquals(i % 2 == 1, store.contains(String.valueOf(i)));
+    }
+    assertEquals("Actor 4999", store.find("4999").getRowValues().peek().get("NAME"));
+    assertEquals(2, store.find("7").getRowValues().size());
+
+    var schema = new Schema("TEST");
+    schema.createTable("credit", creditMetadata(), StorageType.OFF_HEAP);
+    var table = schema.getTableMap().get("credit");
+    assertTrue(table.getDictionaries().isEmpty());
+    table.createIndex(directorIndex());
+    table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "James Wan", "ROLE", "director")));
+    table.insertRow(row("2", Map.of("MOVIE_ID", "2", "NAME", "Vin Diesel", "ROLE", "cast")));
+    assertEquals(Set.of("1"), table.findIdsByIndex("director", "james wan"));
+    assertEquals(List.of("2"), rowIds(table.findByQuerySpec(Map.of("NAME", "Vin Diesel"))));
+    table.deleteById("1");
+    assertTrue(table.findIdsByIndex("director", "james wan").isEmpty());
+    table.deleteAll();
+    assertEquals(0, table.count());
+  }
+
+  @Test
+  public void concurrentUpsertTest() throws InterruptedException {
+    var schema = new Schema("TEST");
+    for (StorageType storageType : StorageType.values()) {
+      schema.createTable(storageType.name(), creditMetadata(), storageType);
+      var table = schema.getTableMap().get(storageType.name());
+      table.createIndex(directorIndex());
+
+      // every thread adds a credit to each of the few hot movies
+      var threads = new ArrayList<Thread>();
+      for (int t = 0; t < 8; t++) {
+        final int thread = t;
+        threads.add(new Thread(() -> {
+          for (int i = 0; i < 200; i++) {
+            String movieId = String.valueOf(i % 4);
+            boolean director = i % 50 == thread;
+            table.insertRow(row(movieId, Map.of("MOVIE_ID", movieId,
+                "NAME", director ? "Director " + thread : "Actor " + thread + "-" + i, "ROLE", director ? "director" : "cast")));
+          }
+        }));
+      }
+      threads.forEach(Thread::start);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      assertEquals(1600, table.count(), storageType.name());
+      assertEquals(400, table.findById("1").getRowValues().size(), storageType.name());
+      assertEquals(Set.of("1", "3"), table.findIdsByIndex("director", "director 1"));
+    }
+  }
+
+  @Test
+  public void concurrentDeleteAllTest() throws InterruptedException {
+    var schema = new Schema("TEST");
+    for (StorageType storageType : StorageType.values()) {
+      schema.createTable(storageType.name(), creditMetadata(), storageType);
+      var table = schema.getTableMap().get(storageType.name());
+      table.createIndex(directorIndex());
+
+      // loaders keep inserting while the table is cleaned up
+      var threads = new ArrayList<Thread>();
+      for (int t = 0; t < 4; t++) {
+        final int thread = t;
+        threads.add(new Thread(() -> {
+          for (int i = 0; i < 500; i++) {
+            String movieId = String.valueOf(thread * 1000 + i);
+            table.insertRow(row(movieId, Map.of("MOVIE_ID", movieId, "NAME", "Director " + i, "ROLE", "director")));
+          }
+        }));
+      }
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 20; i++) {
+          table.deleteAll();
+          Thread.yield();
+        }
+      }));
+      threads.forEach(Thread::start);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      // every surviving row is complete and indexed, no index entry outlives its row
+      long records = 0;
+      for (Row row : table.findAll()) {
+        var values = row.getRowValues().peek();
+        assertEquals(row.getRowId(), values.get("MOVIE_ID"), storageType.name());
+        assertTrue(table.findIdsByIndex("director", values.get("NAME")).contains(row.getRowId()), storageType.name());
+        records += row.getRowValues().size();
+      }
+      assertEquals(records, table.count(), storageType.name());
+      for (int i = 0; i < 500; i++) {
+        for (String rowId : table.findIdsByIndex("director", "Director " + i)) {
+          assertTrue(table.existsById(rowId), storageType.name());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void rowMergerTest() {
+    var schema = new Schema("TEST");
+    schema.createTable("distinct", creditMetadata(), StorageType.HEAP, RowMerger.DISTINCT);
+    schema.createTable("replace", creditMetadata(), StorageType.OFF_HEAP, RowMerger.REPLACE);
+    for (Table table : schema.getTableMap().values()) {
+      table.createIndex(directorIndex());
+      table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "James Wan", "ROLE", "director")));
+      table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "James Wan", "ROLE", "director")));
+      table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "Leigh Whannell", "ROLE", "director")));
+    }
+
+    var distinct = schema.getTableMap().get("distinct");
+    assertEquals(2, distinct.count());
+    assertEquals(Set.of("1"), distinct.findIdsByIndex("director", "james wan"));
+    assertEquals(Set.of("1"), distinct.findIdsByIndex("director", "leigh whannell"));
+
+    // replaced records leave the indexes
+    var replace = schema.getTableMap().get("replace");
+    assertEquals(1, replace.count());
+    assertTrue(replace.findIdsByIndex("director", "james wan").isEmpty());
+    assertEquals(Set.of("1"), replace.findIdsByIndex("director", "leigh whannell"));
+  }
+
+  @Test
+  public void mergeReindexTest() {
+    var schema = new Schema("TEST");
+    // keeps the first stored record, drops the other stored ones and appends the inserted ones
+    RowMerger keepFirst = (stored, inserted) -> {
+      var rowValues = new ConcurrentLinkedQueue<ConcurrentHashMap<String, String>>();
+      rowValues.add(stored.getRowValues().peek());
+      rowValues.addAll(inserted.getRowValues());
+      return Row.builder().rowId(stored.getRowId()).rowValues(rowValues)
+          .createdAt(stored.getCreatedAt()).updatedAt(inserted.getUpdatedAt()).build();
+    };
+    schema.createTable("credit", creditMetadata(), StorageType.HEAP, keepFirst);
+    var table = schema.getTableMap().get("credit");
+    table.createIndex(directorIndex());
+    table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "James Wan", "ROLE", "director")));
+    table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "JAMES WAN", "ROLE", "director")));
+    table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "Leigh Whannell", "ROLE", "director")));
+
+    // the dropped record shares the index key with the kept one, the row stays indexed by it
+    assertEquals(2, table.count());
+    assertEquals(Set.of("1"), table.findIdsByIndex("director", "james wan"));
+    assertEquals(Set.of("1"), table.findIdsByIndex("director", "leigh whannell"));
+  }
+
+  @Test
+  public void batchLookupTest() {
+    var schema = new Schema("TEST");
+    schema.createTable("credit", creditMetadata());
+    var table = schema.getTableMap().get("credit");
+    table.createIndex(directorIndex());
+    table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "James Wan", "ROLE", "director")));
+    table.insertRow(row("2", Map.of("MOVIE_ID", "2", "NAME", "James Wan", "ROLE", "director")));
+    table.insertRow(row("3", Map.of("MOVIE_ID", "3", "NAME", "Vin Diesel", "ROLE", "cast")));
+
+    assertEquals(List.of("3", "1"), rowIds(table.findAllById(List.of("3", "404", "1"))));
+    assertEquals(List.of(Set.of(), Set.of("1", "2"), Set.of()),
+        table.findIdsByIndex("director", List.of("vin diesel", "JAMES WAN", "nobody")));
+    assertEquals(List.of(Set.of()), table.findIdsByIndex("unknown", List.of("James Wan")));
+  }
+
+  @Test
+  public void dictionaryEncodingTest() {
+    var schema = new Schema("TEST");
+    schema.createTable("credit", creditMetadata());
+    var table = schema.getTableMap().get("credit");
+
+    table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", new String("Vin Diesel"), "ROLE", "cast")));
+    table.insertRow(row("2", Map.of("MOVIE_ID", "2", "NAME", new String("Vin Diesel"), "ROLE", "cast")));
+    assertSame(table.findById("1").getRowValues().peek().get("NAME"),
+        table.findById("2").getRowValues().peek().get("NAME"));
+    assertEquals(1, table.getDictionaries().get("NAME").size());
+    assertFalse(table.getDictionaries().containsKey("MOVIE_ID"));
+
+    assertEquals(2, table.findByQuerySpec(Map.of("NAME", "Vin Diesel")).size());
+    assertTrue(table.findByQuerySpec(Map.of("NAME", "Paul Walker")).isEmpty());
+  }
+
+  @Test
+  public void secondaryIndexTest() {
+    var schema = new Schema("TEST");
+    schema.createTable("credit", creditMetadata());
+    var table = schema.getTableMap().get("credit");
+    table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "James Wan", "ROLE", "director")));
+    table.createIndex(IndexDefinition.builder()
+        .name("director")
+        .column("NAME")
+        .filterColumn("ROLE")
+        .filter(record -> "director".equals(record.get("ROLE")))
+        .caseInsensitive(true)
+        .build());
+    table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "Leigh Whannell", "ROLE", "director")));
+    table.insertRow(row("2", Map.of("MOVIE_ID", "2", "NAME", "James Wan", "ROLE", "director")));
+    table.insertRow(row("3", Map.of("MOVIE_ID", "3", "NAME", "James Wan", "ROLE", "cast")));
+
+    assertEquals(Set.of("1", "2"), table.findIdsByIndex("director", "JAMES WAN"));
+    assertEquals(Set.of("1"), table.findIdsByIndex("director", "Leigh Whannell"));
+    assertTrue(table.findIdsByIndex("director", "Vin Diesel").isEmpty());
+    assertTrue(table.findIdsByIndex("unknown", "James Wan").isEmpty());
+
+    table.deleteById("1");
+    assertEquals(Set.of("2"), table.findIdsByIndex("director", "James Wan"));
+    assertTrue(table.findIdByIndex("director", "Leigh Whannell").isEmpty());
+  }
+
+  @Test
+  public void indexFilterTest() {
+    var schema = new Schema("TEST");
+    schema.createTable("credit", creditMetadata());
+    var table = schema.getTableMap().get("credit");
+    table.createIndex(directorIndex());
+    // the filter is rebuilt several times while the keys outgrow it
+    for (int i = 0; i < 20000; i++) {
+      var id = Integer.toString(i);
+      table.insertRow(row(id, Map.of("MOVIE_ID", id, "NAME", "Director " + i, "ROLE", "director")));
+    }
+    for (int i = 0; i < 20000; i++) {
+      assertEquals(Set.of(Integer.toString(i)), table.findIdsByIndex("director", "director " + i));
+    }
+
+    var index = table.getIndexes().get("director");
+    for (int i = 0; i < 20000; i++) {
+      assertTrue(index.find("nobody " + i).isEmpty());
+    }
+    assertTrue(index.falsePositiveRate() < 0.05, "false positive rate " + index.falsePositiveRate());
+
+    // bits of removed keys stay set until the removed keys exceed half of the live keys
+    for (int i = 0; i < 20000; i += 2) {
+      table.deleteById(Integer.toString(i));
+    }
+    for (int i = 0; i < 20000; i++) {
+      assertEquals(i % 2 == 0, table.findIdsByIndex("director", "director " + i).isEmpty());
+    }
+  }
+
+  @Test
+  public void bulkLoadTest() {
+    for (var storageType : StorageType.values()) {
+      var schema = new Schema("TEST");
+      schema.createTable("credit", creditMetadata(), storageType);
+      var table = schema.getTableMap().get("credit");
+      table.createIndex(directorIndex());
+      var rows = new ArrayList<Row>();
+      for (int i = 0; i < 10000; i++) {
+        var id = Integer.toString(i);
+        rows.add(row(id, Map.of("MOVIE_ID", id, "NAME", "Director " + i, "ROLE", "director")));
+      }
+      // records of the same row ID in different chunks are appended to one row
+      rows.add(row("7", Map.of("MOVIE_ID", "7", "NAME", "Vin Diesel", "ROLE", "cast")));
+
+      table.bulkInsert(rows, rows.size());
+      assertEquals(10001, table.count(), storageType.name());
+      assertEquals(2, table.findById("7").getRowValues().size(), storageType.name());
+      for (int i = 0; i < 10000; i++) {
+        assertEquals(Set.of(Integer.toString(i)), table.findIdsByIndex("director", "director " + i));
+      }
+      assertEquals(List.of("7"), rowIds(table.findByQuerySpec(Map.of("NAME", "Vin Diesel"))));
+
+      // a non-empty table isn't pre-sized again
+      table.bulkInsert(List.of(row("10000", Map.of("MOVIE_ID", "10000", "NAME", "James Wan", "ROLE", "director"))), 1);
+      assertEquals(Set.of("10000"), table.findIdsByIndex("director", "james wan"));
+      assertEquals(10002, table.count(), storageType.name());
+    }
+  }
+
+  @Test
+  public void statisticsTest() {
+    for (var storageType : StorageType.values()) {
+      var metadata = new LinkedHashMap<String, TableMetadata>();
+      metadata.put("ID", TableMetadata.LONG);
+      metadata.put("TITLE", TableMetadata.STRING);
+      metadata.put("YEAR", TableMetadata.DATE);
+      var schema = new Schema("TEST");
+      schema.createTable("movie", metadata, storageType);
+      var table = schema.getTableMap().get("movie");
+      for (int i = 0; i < 20000; i++) {
+        var id = Integer.toString(i);
+        table.insertRow(i % 1000 == 0
+            ? row(id, Map.of("ID", id, "TITLE", " "))
+            : row(id, Map.of("ID", id, "TITLE", "Movie " + i % 5000, "YEAR", Integer.toString(2000 + i % 10))));
+      }
+      table.insertRow(row("1", Map.of("ID", "1", "TITLE", "Movie 1", "YEAR", "2001")));
+
+      var statistics = table.getStatistics();
+      assertEquals(20000, statistics.rowCount(), storageType.name());
+      assertEquals(20001, statistics.recordCount(), storageType.name());
+      var ids = statistics.column("ID").orElseThrow();
+      assertEquals(20000, ids.distinctCount(), 20000 * 0.05, storageType.name());
+      var titles = statistics.column("TITLE").orElseThrow();
+      assertEquals(20, titles.emptyCount());
+      assertEquals(4996, titles.distinctCount(), 5000 * 0.05, storageType.name());
+      assertEquals(20, titles.lengthHistogram()[1]);
+      var years = statistics.column("YEAR").orElseThrow();
+      assertEquals(20, years.nullCount());
+      assertEquals(2001, years.yearHistogram().get(2001));
+      assertTrue(statistics.column("TITLE").orElseThrow().yearHistogram().isEmpty());
+      assertTrue(statistics.column("ROLE").isEmpty());
+
+      // counts follow deletes, distinct values estimates drop deleted values when the table is analyzed
+      for (int i = 0; i < 20000; i += 2) {
+        table.deleteById(Integer.toString(i));
+      }
+      assertEquals(10000, statistics.rowCount());
+      assertEquals(10001, years.yearHistogram().values().stream().mapToLong(Long::longValue).sum());
+      assertEquals(0, titles.emptyCount());
+      assertTrue(titles.distinctCount() > 4500);
+      table.analyze();
+      assertEquals(2500, titles.distinctCount(), 2500 * 0.05, storageType.name());
+
+      table.deleteAll();
+      assertEquals(0, ids.valueCount());
+      assertEquals(0, ids.distinctCount());
+    }
+  }
+
+  @Test
+  public void queryPlannerTest() {
+    var schema = new Schema("TEST");
+    schema.createTable("credit", creditMetadata());
+    var table = schema.getTableMap().get("credit");
+    table.createIndex(IndexDefinition.builder().name("name").column("NAME").build());
+    table.createIndex(IndexDefinition.builder().name("role").column("ROLE").build());
+    table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "James Wan", "ROLE", "director")));
+    table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "Vin Diesel", "ROLE", "cast")));
+    table.insertRow(row("2", Map.of("MOVIE_ID", "2", "NAME", "Vin Diesel", "ROLE", "cast")));
+    table.insertRow(row("3", Map.of("MOVIE_ID", "3", "NAME", "Paul Walker", "ROLE", "cast")));
+
+    var plan = table.explain(Map.of("NAME", "Vin Diesel", "ROLE", "cast"));
+    assertEquals(QueryPlan.Access.INDEX_INTERSECTION, plan.getAccess());
+    assertEquals("name", plan.getProbes().get(0).getIndexName());
+    assertEquals(Set.of("NAME", "ROLE"), plan.getResidual().keySet());
+    assertEquals(Set.of("1", "2"), Set.copyOf(rowIds(table.findByQuerySpec(Map.of("NAME", "Vin Diesel", "ROLE", "cast")))));
+
+    plan = table.explain(Map.of("NAME", "James Wan", "MOVIE_ID", "1"));
+    assertEquals(QueryPlan.Access.INDEX_LOOKUP, plan.getAccess());
+    assertEquals(Set.of("NAME", "MOVIE_ID"), plan.getResidual().keySet());
+    assertEquals(List.of("1"), rowIds(table.findByQuerySpec(Map.of("NAME", "James Wan", "MOVIE_ID", "1"))));
+    assertTrue(table.findByQuerySpec(Map.of("NAME", "James Wan", "MOVIE_ID", "2")).isEmpty());
+
+    assertTrue(table.explain(Map.of("NAME", "Paul Walker")).getResidual().isEmpty());
+    assertEquals(QueryPlan.Access.FULL_SCAN, table.explain(Map.of("MOVIE_ID", "3")).getAccess());
+    assertEquals(List.of("3"), rowIds(table.findByQuerySpec(Map.of("MOVIE_ID", "3"))));
+    assertEquals(QueryPlan.Access.EMPTY, table.explain(Map.of("NAME", "Nobody")).getAccess());
+    assertTrue(table.findByQuerySpec(Map.of("NAME", "Paul Walker", "ROLE", "director")).isEmpty());
+  }
+
+  @Test
+  public void indexIntersectionTest() {
+    for (StorageType storageType : StorageType.values()) {
+      for (var keyType : List.of(TableMetadata.STRING, TableMetadata.LONG)) {
+        var schema = new Schema("TEST");
+        schema.createTable("credit", creditMetadata(), storageType, RowMerger.APPEND, keyType);
+        var table = schema.getTableMap().get("credit");
+        table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "Vin Diesel", "ROLE", "cast")));
+        table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "James Wan", "ROLE", "director")));
+        table.insertRow(row("2", Map.of("MOVIE_ID", "2", "NAME", "Vin Diesel", "ROLE", "director")));
+        table.insertRow(row("3", Map.of("MOVIE_ID", "3", "NAME", "Vin Diesel", "ROLE", "cast")));
+        var queries = List.of(
+            Map.of("NAME", "Vin Diesel", "ROLE", "director"),
+            Map.of("NAME", "James Wan", "ROLE", "cast"),
+            Map.of("NAME", "Vin Diesel", "ROLE", "cast"),
+            Map.of("NAME", "Vin Diesel", "MOVIE_ID", "1"));
+        var scanned = queries.stream().map(query -> Set.copyOf(rowIds(table.findByQuerySpec(query))))
+            .collect(Collectors.toList());
+
+        table.createIndex(IndexDefinition.builder().name("name").column("NAME").build());
+        table.createIndex(IndexDefinition.builder().name("role").column("ROLE").build());
+        // row 1 has a Vin Diesel record and a director record, but no record of both
+        assertEquals(List.of(Set.of("2"), Set.of(), Set.of("1", "3"), Set.of("1")), scanned, storageType.name());
+        for (int i = 0; i < queries.size(); i++) {
+          assertTrue(table.explain(queries.get(i)).getAccess() != QueryPlan.Access.FULL_SCAN, storageType.name());
+          assertEquals(scanned.get(i), Set.copyOf(rowIds(table.findByQuerySpec(queries.get(i)))),
+              storageType + " " + keyType + " " + queries.get(i));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void filteredIndexPlanTest() {
+    var schema = new Schema("TEST");
+    schema.createTable("credit", creditMetadata());
+    var table = schema.getTableMap().get("credit");
+    table.createIndex(directorIndex());
+    table.createIndex(IndexDefinition.builder()
+        .name("cast")
+        .column("NAME")
+        .filterColumn("ROLE")
+        .filter(record -> !"director".equals(record.get("ROLE")))
+        .build());
+    table.createIndex(IndexDefinition.builder()
+        .name("undeclared")
+        .column("MOVIE_ID")
+        .filter(record -> "cast".equals(record.get("ROLE")))
+        .build());
+    table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "James Wan", "ROLE", "director")));
+    table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "Vin Diesel", "ROLE", "cast")));
+    table.insertRow(row("2", Map.of("MOVIE_ID", "2", "NAME", "James Wan", "ROLE", "cast")));
+
+    // the negative filter accepts the query without ROLE, but the index misses the director record
+    assertEquals(QueryPlan.Access.FULL_SCAN, table.explain(Map.of("NAME", "James Wan")).getAccess());
+    assertEquals(Set.of("1", "2"), Set.copyOf(rowIds(table.findByQuerySpec(Map.of("NAME", "James Wan")))));
+
+    var plan = table.explain(Map.of("NAME", "James Wan", "ROLE", "director"));
+    assertEquals(QueryPlan.Access.INDEX_LOOKUP, plan.getAccess());
+    assertEquals("director", plan.getProbes().get(0).getIndexName());
+    assertEquals(List.of("1"), rowIds(table.findByQuerySpec(Map.of("NAME", "James Wan", "ROLE", "director"))));
+    plan = table.explain(Map.of("NAME", "James Wan", "ROLE", "cast"));
+    assertEquals("cast", plan.getProbes().get(0).getIndexName());
+    assertEquals(List.of("2"), rowIds(table.findByQuerySpec(Map.of("NAME", "James Wan", "ROLE", "cast"))));
+
+    assertEquals(QueryPlan.Access.FULL_SCAN, table.explain(Map.of("MOVIE_ID", "1", "ROLE", "cast")).getAccess());
+    assertEquals(List.of("1"), rowIds(table.findByQuerySpec(Map.of("MOVIE_ID", "1", "ROLE", "cast"))));
+  }
+
+  @Test
+  public void snapshotTest(@TempDir Path directory) throws IOException {
+    var schema = new Schema("TEST");
+    schema.createTable("credit", creditMetadata());
+    schema.createTable("columnar_credit", creditMetadata(), StorageType.COLUMNAR);
+    schema.createTable("off_heap_credit", creditMetadata(), StorageType.OFF_HEAP);
+    for (Table table : schema.getTableMap().values()) {
+      table.createIndex(directorIndex());
+      table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "James Wan", "ROLE", "director")));
+      table.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "Vin Diesel", "ROLE", "cast")));
+      table.insertRow(row("007", Map.of("MOVIE_ID", "007", "NAME", "Terence Young", "ROLE", "director")));
+    }
+    var snapshot = directory.resolve("schema.snapshot");
+    schema.snapshot(snapshot);
+
+    var restored = new Schema("TEST");
+    restored.restore(snapshot);
+    var storageTypes = Map.of("credit", StorageType.HEAP, "columnar_credit", StorageType.COLUMNAR,
+        "off_heap_credit", StorageType.OFF_HEAP);
+    for (Map.Entry<String, StorageType> tableName : storageTypes.entrySet()) {
+      var table = restored.getTableMap().get(tableName.getKey());
+      assertEquals(tableName.getValue(), table.getStorageType());
+      assertEquals(creditMetadata(), table.getTableMetadata());
+      assertEquals(3, table.count());
+      assertEquals(2, table.findById("1").getRowValues().size());
+      assertEquals("007", table.findById("007").getRowValues().peek().get("MOVIE_ID"));
+      if (tableName.getValue().isDictionaryEncoded()) {
+        assertSame(table.intern("NAME", new String("Vin Diesel")), table.findById("1").getRowValues().stream()
+            .filter(record -> "cast".equals(record.get("ROLE"))).findAny().orElseThrow().get("NAME"));
+      }
+
+      // restored index keeps its posting lists and is taken over by the declaration
+      assertTrue(table.getIndexes().get("director").isRestored());
+      table.createIndex(directorIndex());
+      assertFalse(table.getIndexes().get("director").isRestored());
+      assertEquals(Set.of("1"), table.findIdsByIndex("director", "james wan"));
+      table.insertRow(row("2", Map.of("MOVIE_ID", "2", "NAME", "James Wan", "ROLE", "cast")));
+      assertEquals(Set.of("1"), table.findIdsByIndex("director", "James Wan"));
+      table.deleteById("007");
+      assertTrue(table.findIdsByIndex("director", "Terence Young").isEmpty());
+    }
+  }
+
+  @Test
+  public void numericKeyTest(@TempDir Path directory) throws IOException {
+    var schema = new Schema("TEST");
+    schema.createTable("credit", creditMetadata(), StorageType.HEAP, RowMerger.APPEND, TableMetadata.LONG);
+    var table = schema.getTableMap().get("credit");
+    assertTrue(table.getStorage() instanceof LongKeyStore);
+    table.createIndex(directorIndex());
+    table.insertRow(row("12", Map.of("MOVIE_ID", "12", "NAME", "James Wan", "ROLE", "director")));
+    table.insertRow(row("007", Map.of("MOVIE_ID", "7", "NAME", "James Wan", "ROLE", "director")));
+    table.insertRow(row("7", Map.of("MOVIE_ID", "7", "NAME", "Vin Diesel", "ROLE", "cast")));
+    table.insertRow(row("9", Map.of("MOVIE_ID", "9", "NAME", "Vin Diesel", "ROLE", "cast")));
+    assertThrows(IllegalArgumentException.class,
+        () -> table.insertRow(row("x1", Map.of("MOVIE_ID", "1", "NAME", "Nobody", "ROLE", "cast"))));
+
+    assertEquals(3, table.getStorage().rowCount());
+    assertEquals(2, table.findById("7").getRowValues().size());
+    assertNull(table.findById("x1"));
+    var ids = table.findLongIdsByIndex("director", "james wan");
+    assertEquals(2, ids.size());
+    assertEquals(7, ids.min());
+    assertTrue(ids.contains(12));
+    assertEquals(Set.of("7", "12"), table.findIdsByIndex("director", "James Wan"));
+    assertTrue(table.findLongIdsByIndex("director", "Nobody").isEmpty());
+    table.deleteById("7");
+    assertEquals(List.of(12L), toList(table.findLongIdsByIndex("director", List.of("James Wan")).get(0)));
+
+    var snapshot = directory.resolve("schema.snapshot");
+    schema.snapshot(snapshot);
+    var restored = new Schema("TEST");
+    restored.restore(snapshot);
+    var restoredTable = restored.getTableMap().get("credit");
+    assertEquals(TableMetadata.LONG, restoredTable.getKeyType());
+    assertEquals(12, restoredTable.findLongIdsByIndex("director", "James Wan").min());
+
+    schema.createTable("named", creditMetadata());
+    var named = schema.getTableMap().get("named");
+    named.createIndex(directorIndex());
+    assertThrows(IllegalStateException.class, () -> named.findLongIdsByIndex("director", "James Wan"));
+  }
+
+  @Test
+  public void postingListOrderTest() {
+    var schema = new Schema("TEST");
+    schema.createTable("credit", creditMetadata(), StorageType.HEAP, RowMerger.APPEND, TableMetadata.LONG);
+    var table = schema.getTableMap().get("credit");
+    table.createIndex(directorIndex());
+    // rows indexed out of ID order and twice, with lookups between the inserts
+    var expected = new ArrayList<Long>();
+    for (int i = 2000; i > 0; i -= 2) {
+      var id = Integer.toString(i);
+      table.insertRow(row(id, Map.of("MOVIE_ID", id, "NAME", "James Wan", "ROLE", "director")));
+      table.insertRow(row(id, Map.of("MOVIE_ID", id, "NAME", "James Wan", "ROLE", "director")));
+      expected.add(0, (long) i);
+      if (i % 100 == 0) {
+        assertEquals(expected, toList(table.findLongIdsByIndex("director", "James Wan")));
+      }
+    }
+    table.insertRow(row("1001", Map.of("MOVIE_ID", "1001", "NAME", "James Wan", "ROLE", "director")));
+    table.deleteById("2");
+    expected.remove(Long.valueOf(2));
+    expected.add(expected.indexOf(1002L), 1001L);
+
+    var ids = table.findLongIdsByIndex("director", "James Wan");
+    assertEquals(expected, toList(ids));
+    assertTrue(ids.contains(1001));
+    assertEquals(Optional.of("4"), table.findIdByIndex("director", "James Wan"));
+
+    // the lowest of string row IDs is taken by their natural order
+    schema.createTable("named", creditMetadata());
+    var named = schema.getTableMap().get("named");
+    named.createIndex(directorIndex());
+    for (var id : List.of("m3", "m10", "m2")) {
+      named.insertRow(row(id, Map.of("MOVIE_ID", "1", "NAME", "James Wan", "ROLE", "director")));
+    }
+    assertEquals(Optional.of("m10"), named.findIdByIndex("director", "James Wan"));
+  }
+
+  @Test
+  public void invertedIndexTest() {
+    var schema = new Schema("TEST");
+    schema.createTable("credit", creditMetadata(), StorageType.HEAP, RowMerger.APPEND, TableMetadata.LONG);
+    var table = schema.getTableMap().get("credit");
+    var rows = new ArrayList<Row>();
+    for (int movie = 1000; movie > 0; movie--) {
+      rows.add(row(String.valueOf(movie), Map.of("MOVIE_ID", String.valueOf(movie), "NAME", "Actor " + movie % 7,
+          "ROLE", "cast")));
+      if (movie % 3 == 0) {
+        rows.add(row(String.valueOf(movie), Map.of("MOVIE_ID", String.valueOf(movie), "NAME", "Extra",
+            "ROLE", "cast")));
+      }
+    }
+    rows.add(row("500", Map.of("MOVIE_ID", "500", "NAME", "James Wan", "ROLE", "director")));
+    table.bulkInsert(rows, rows.size());
+
+    var index = InvertedIndex.build(table, IndexDefinition.builder()
+        .name("cast")
+        .column("NAME")
+        .filter(record -> "cast".equals(record.get("ROLE")))
+        .caseInsensitive(true)
+        .build());
+    assertEquals(8, index.size());
+    var actor = index.find("ACTOR 3");
+    assertEquals(143, actor.size());
+    assertTrue(actor.contains(997));
+    assertFalse(actor.contains(998));
+    var ids = actor.toLongIds();
+    assertEquals(3, ids.min());
+    assertEquals(997, ids.get(ids.size() - 1));
+    assertTrue(index.sizeInBytes() < 1000 * Long.BYTES);
+    assertTrue(index.find("James Wan").isEmpty());
+
+    var both = index.intersect(List.of("Actor 3", "extra"));
+    assertEquals(48, both.size());
+    assertEquals(3, both.min());
+    assertTrue(index.intersect(List.of("Actor 3", "Actor 4")).isEmpty());
+    assertTrue(index.intersect(List.of("Actor 3", "Nobody")).isEmpty());
+    var candidates = table.findLongIdsByIndex("missing", "key");
+    assertTrue(index.retain(candidates, List.of("Actor 3")).isEmpty());
+    var movieIds = new long[]{3, 24, 45, 66, 500, 997};
+    var retained = CompressedIds.retain(LongIds.of(movieIds, movieIds.length),
+        List.of(index.find("Actor 3"), index.find("Extra")));
+    assertEquals(List.of(3L, 24L, 45L, 66L), toList(retained));
+
+    schema.createTable("named", creditMetadata());
+    assertThrows(IllegalStateException.class,
+        () -> InvertedIndex.build(schema.getTableMap().get("named"), directorIndex()));
+  }
+
+  @Test
+  public void canonicalNumericKeyTest() {
+    for (StorageType storageType : StorageType.values()) {
+      var schema = new Schema("TEST");
+      schema.createTable("credit", creditMetadata(), storageType, RowMerger.REPLACE, TableMetadata.LONG);
+      var table = schema.getTableMap().get("credit");
+      table.createIndex(directorIndex());
+      table.insertRow(row("007", Map.of("MOVIE_ID", "7", "NAME", "Terence Young", "ROLE", "director")));
+      table.insertRow(row("7", Map.of("MOVIE_ID", "7", "NAME", "Guy Hamilton", "ROLE", "director")));
+      table.insertRow(row("+8", Map.of("MOVIE_ID", "8", "NAME", "Guy Hamilton", "ROLE", "director")));
+
+      assertEquals(2, table.getStorage().rowCount(), storageType.name());
+      assertEquals("7", table.findById("007").getRowId());
+      assertEquals("Guy Hamilton", table.findById("+7").getRowValues().peek().get("NAME"));
+      assertTrue(table.existsById("0008"));
+      assertEquals(Set.of("7", "8"), Set.copyOf(rowIds(table.findByQuerySpec(Map.of("NAME", "Guy Hamilton")))));
+      assertTrue(table.findByQuerySpec(Map.of("NAME", "Terence Young")).isEmpty());
+      assertEquals(2, table.findAllById(List.of("07", "8", "x")).size());
+      table.bulkInsert(List.of(row("0009", Map.of("MOVIE_ID", "9", "NAME", "Sam Mendes", "ROLE", "director"))), 3);
+      assertEquals(Set.of("9"), table.findIdsByIndex("director", "sam mendes"));
+      table.deleteById("+0007");
+      assertNull(table.findById("7"));
+      assertTrue(table.findIdsByIndex("director", "Guy Hamilton").contains("8"));
+      assertThrows(IllegalArgumentException.class,
+          () -> table.insertRow(row("7a", Map.of("MOVIE_ID", "7", "NAME", "Nobody", "ROLE", "cast"))));
+    }
+  }
+
+  private static List<Long> toList(LongIds ids) {
+    var list = new ArrayList<Long>();
+    for (int i = 0; i < ids.size(); i++) {
+      list.add(ids.get(i));
+    }
+    return list;
+  }
+
+  private static IndexDefinition directorIndex() {
+    return IndexDefinition.builder()
+        .name("director")
+        .column("NAME")
+        .filterColumn("ROLE")
+        .filter(record -> "director".equals(record.get("ROLE")))
+        .caseInsensitive(true)
+        .build();
+  }
+
+  private static Map<String, TableMetadata> creditMetadata() {
+    Map<String, TableMetadata> metadata = new LinkedHashMap<>();
+    metadata.put("MOVIE_ID", TableMetadata.LONG);
+    metadata.put("NAME", TableMetadata.STRING);
+    metadata.put("ROLE", TableMetadata.STRING);
+    return metadata;
+  }
+
+  private static Row row(String rowId, Map<String, String> values) {
+    var rowValues = new ConcurrentLinkedQueue<ConcurrentHashMap<String, String>>();
+    rowValues.add(new ConcurrentHashMap<>(values));
+    return Row.builder()
+        .rowId(rowId)
+        .rowValues(rowValues)
+        .createdAt(LocalDateTime.now())
+        .updatedAt(LocalDateTime.now())
+        .build();
+  }
+
+  private static List<String> rowIds(List<Row> rows) {
+    return rows.stream().map(Row::getRowId).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,127 @@
+package com.real.persistence.join;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.real.persistence.core.CompressedIds;
+import com.real.persistence.core.IndexDefinition;
+import com.real.persistence.core.Row;
+import com.real.persistence.core.RowMerger;
+import com.real.persistence.core.Schema;
+import com.real.persistence.core.StorageType;
+import com.real.persistence.core.TableMetadata;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class HashJoinTest {
+
+  @Test
+  public void joinTest() {
+    var schema = new Schema("TEST");
+    schema.createTable("movie", Map.of("ID", TableMetadata.LONG, "TITLE", TableMetadata.STRING));
+    schema.createTable("credit", Map.of("MOVIE_ID", TableMetadata.LONG, "NAME", TableMetadata.STRING,
+        "ROLE", TableMetadata.STRING));
+    var movies = schema.getTableMap().get("movie");
+    var credits = schema.getTableMap().get("credit");
+    movies.insertRow(row("1", Map.of("ID", "1", "TITLE", "Saw")));
+    movies.insertRow(row("2", Map.of("ID", "2", "TITLE", "Aquaman")));
+    movies.insertRow(row("3", Map.of("ID", "3", "TITLE", "Dr. No")));
+    credits.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "James Wan", "ROLE", "director")));
+    credits.insertRow(row("1", Map.of("MOVIE_ID", "1", "NAME", "Cary Elwes", "ROLE", "cast")));
+    credits.insertRow(row("2", Map.of("MOVIE_ID", "2", "NAME", "James Wan", "ROLE", "director")));
+    credits.insertRow(row("2", Map.of("MOVIE_ID", "2", "NAME", "Jason Momoa", "ROLE", "cast")));
+
+    var directors = HashJoin.build(credits, IndexDefinition.builder()
+        .name("director")
+        .column("NAME")
+        .filter(record -> "director".equals(record.get("ROLE")))
+        .caseInsensitive(true)
+        .build(), List.of("MOVIE_ID"));
+    assertEquals(2, directors.size());
+    assertEquals(List.of("MOVIE_ID"), directors.getColumns());
+
+    // batched probe by keys, every key position is matched in build order
+    var result = directors.probe(Arrays.asList("james wan", null, "jason momoa", "james wan"), JoinType.INNER);
+    assertEquals(4, result.size());
+    assertEquals(List.of(0, 0, 3, 3), List.of(result.position(0), result.position(1), result.position(2),
+        result.position(3)));
+    assertEquals(Set.of("1", "2"), Set.of(result.tuple(0).get(0), result.tuple(1).get(0)));
+    var semi = directors.probe(Arrays.asList("james wan", "jason momoa", "JAMES WAN"), JoinType.SEMI);
+    assertEquals(1, semi.size());
+    assertEquals(0, semi.position(0));
+    assertNull(semi.tuple(0));
+
+    // table probe, output tuples have the probe projection followed by the build projection
+    var byMovie = HashJoin.build(credits, IndexDefinition.builder().name("movie").column("MOVIE_ID").build(),
+        List.of("NAME", "ROLE"));
+    var joined = byMovie.join(movies, IndexDefinition.builder().name("id").column("ID").build(),
+        List.of("TITLE"), JoinType.INNER);
+    assertEquals(4, joined.size());
+    assertTrue(joined.contains(new Tuple("2", "Aquaman", "Jason Momoa", "cast")));
+    var credited = byMovie.join(movies, IndexDefinition.builder().name("id").column("ID").build(),
+        List.of("TITLE"), JoinType.SEMI);
+    assertEquals(Set.of("Saw", "Aquaman"), credited.stream().map(tuple -> tuple.get(0)).collect(Collectors.toSet()));
+
+    // join output as build side of the next join
+    var titles = HashJoin.build(List.of("TITLE", "NAME", "ROLE"), joined,
+        tuple -> "director".equals(tuple.get(2)) ? tuple.get(0) + "|" + tuple.get(1) : null);
+    assertEquals(2, titles.size());
+    var directed = titles.probe(List.of("Saw|James Wan", "Saw|Cary Elwes", "Dr. No|Terence Young"), JoinType.INNER);
+    assertEquals(1, directed.size());
+    assertEquals("1", directed.tuple(0).getRowId());
+
+    // tuples of tables keyed by numeric row IDs carry the primitive row ID
+    schema.createTable("film", Map.of("ID", TableMetadata.LONG, "TITLE", TableMetadata.STRING), StorageType.HEAP,
+        RowMerger.APPEND, TableMetadata.LONG);
+    var films = schema.getTableMap().get("film");
+    films.insertRow(row("2", Map.of("ID", "2", "TITLE", "Aquaman")));
+    var filmJoin = byMovie.join(films, IndexDefinition.builder().name("id").column("ID").build(),
+        List.of("TITLE"), JoinType.SEMI);
+    assertEquals(1, filmJoin.size());
+    assertTrue(filmJoin.get(0).isNumeric());
+    assertEquals(2L, filmJoin.get(0).getId());
+    assertEquals("2", filmJoin.get(0).getRowId());
+    assertThrows(IllegalStateException.class, () -> joined.get(0).getId());
+  }
+
+  @Test
+  public void postingListJoinTest() {
+    // director posting lists as build side, candidate movie IDs of every record as probe keys
+    var directed = HashJoin.build("NAME", List.of("james wan", "terence young"),
+        List.of(CompressedIds.of(new long[]{1, 2, 7}, 3).toLongIds(), CompressedIds.of(new long[]{3}, 1).toLongIds()));
+    assertEquals(4, directed.size());
+    var keys = List.of(HashJoin.postingKey("james wan", 5), HashJoin.postingKey("james wan", 7),
+        HashJoin.postingKey("james wan", 2), HashJoin.postingKey("terence young", 2),
+        HashJoin.postingKey("terence young", 3));
+    var owners = new int[]{0, 0, 0, 1, 2};
+    var result = directed.probe(keys, owners, JoinType.INNER);
+    assertEquals(3, result.size());
+    assertEquals(List.of(0, 0, 2), List.of(result.position(0), result.position(1), result.position(2)));
+    assertEquals(List.of(7L, 2L, 3L), List.of(result.tuple(0).getId(), result.tuple(1).getId(),
+        result.tuple(2).getId()));
+    assertEquals("terence young", result.tuple(2).get(0));
+    var semi = directed.probe(keys, owners, JoinType.SEMI);
+    assertEquals(2, semi.size());
+    assertEquals(List.of(0, 2), List.of(semi.position(0), semi.position(1)));
+    assertThrows(IllegalArgumentException.class, () -> HashJoin.build("NAME", List.of("x"), List.of()));
+  }
+
+  private static Row row(String rowId, Map<String, String> values) {
+    var rowValues = new ConcurrentLinkedQueue<ConcurrentHashMap<String, String>>();
+    rowValues.add(new ConcurrentHashMap<>(values));
+    return Row.builder()
+        .rowId(rowId)
+        .rowValues(rowValues)
+        .createdAt(LocalDateTime.now())
+        .updatedAt(LocalDateTime.now())
+        .build();
+  }
+}
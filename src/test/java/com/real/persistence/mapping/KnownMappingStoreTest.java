@@ -0,0 +1,115 @@
+package com.real.persistence.mapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class KnownMappingStoreTest {
+
+  @Test
+  public void reopenTest(@TempDir Path directory) throws IOException {
+    var path = directory.resolve("mappings.kms");
+    var config = MappingStoreConfig.builder().cacheSize(2).build();
+    try (var store = KnownMappingStore.open(path, config)) {
+      store.put("XBOX", "a", new KnownMapping(1L, 10));
+      store.put("XBOX", "b", new KnownMapping(2L, KnownMapping.NO_MATCH));
+      store.put("XBOX", "c", new KnownMapping(3L, 30));
+      store.put("XBOX", "a", new KnownMapping(4L, 11));
+
+      // "b" is evicted from the cache and read back from the file
+      assertEquals(Optional.of(new KnownMapping(2L, KnownMapping.NO_MATCH)), store.get("XBOX", "b"));
+      assertFalse(store.get("XBOX", "b").get().isMatched());
+      assertEquals(Optional.empty(), store.get("GOOGLE", "a"));
+      assertEquals(3, store.size());
+    }
+
+    // torn frame left by a crash in the middle of a write
+    Files.write(path, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+    try (var store = KnownMappingStore.open(path, config)) {
+      assertEquals(3, store.size());
+      assertEquals(Optional.of(new KnownMapping(4L, 11)), store.get("XBOX", "a"));
+      assertEquals(Optional.of(new KnownMapping(3L, 30)), store.get("XBOX", "c"));
+      assertEquals(0, store.getCacheHits());
+
+      store.clear();
+      assertEquals(Optional.empty(), store.get("XBOX", "a"));
+    }
+  }
+
+  @Test
+  public void compactionTest(@TempDir Path directory) throws IOException {
+    var path = directory.resolve("mappings.kms");
+    try (var store = KnownMappingStore.open(path, MappingStoreConfig.builder().cacheSize(0).build())) {
+      for (int run = 0; run < 20; run++) {
+        for (int id = 0; id < 1000; id++) {
+          store.put("XBOX", Integer.toString(id), new KnownMapping(run, id));
+        }
+        store.sync();
+      }
+    }
+
+    // 20000 frames are compacted down to the last mapping of every key
+    assertTrue(Files.size(path) < 20 * 1000 * 8);
+    try (var store = KnownMappingStore.open(path, MappingStoreConfig.defaults())) {
+      assertEquals(1000, store.size());
+      assertEquals(Optional.of(new KnownMapping(19L, 999)), store.get("XBOX", "999"));
+    }
+  }
+
+  @Test
+  public void concurrentLookupTest(@TempDir Path directory) throws Exception {
+    var path = directory.resolve("mappings.kms");
+    try (var store = KnownMappingStore.open(path, MappingStoreConfig.builder().cacheSize(1024).build())) {
+      for (int id = 0; id < 5000; id++) {
+        store.put("XBOX", Integer.toString(id), new KnownMapping(id, id));
+      }
+      store.sync();
+
+      var failures = new AtomicInteger();
+      var readers = new ArrayList<Thread>();
+      for (int t = 0; t < 4; t++) {
+        var reader = new Thread(() -> {
+          try {
+            for (int round = 0; round < 4; round++) {
+              for (int id = 0; id < 5000; id++) {
+                var mapping = store.get("XBOX", Integer.toString(id)).orElseThrow();
+                if (mapping.getInternalId() != id
+                    || mapping.getFingerprint() != id && mapping.getFingerprint() != id + 1_000_000L) {
+                  failures.incrementAndGet();
+                }
+              }
+            }
+          } catch (IOException e) {
+            failures.incrementAndGet();
+          }
+        });
+        readers.add(reader);
+        reader.start();
+      }
+      // mappings are overwritten, buffered and synced while they're looked up
+      for (int id = 0; id < 5000; id++) {
+        store.put("XBOX", Integer.toString(id), new KnownMapping(id + 1_000_000L, id));
+        if (id % 1000 == 0) {
+          store.sync();
+        }
+      }
+      for (var reader : readers) {
+        reader.join();
+      }
+
+      assertEquals(0, failures.get());
+      assertEquals(5000, store.size());
+      assertEquals(Optional.of(new KnownMapping(1_004_999L, 4999)), store.get("XBOX", "4999"));
+      assertEquals(4 * 4 * 5000 + 1, store.getCacheHits() + store.getCacheMisses());
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.real.persistence.repository.movie;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.real.persistence.core.Row;
+import com.real.persistence.repository.ReactiveRepositoryConfig;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+public class ReactiveRepositoryTest {
+
+  @Test
+  public void bulkSaveTest() {
+    var repository = new ReactiveActorRepositoryImpl(new ActorRepositoryImpl(),
+        ReactiveRepositoryConfig.builder().concurrency(2).batchSize(100).build());
+    var requested = new AtomicLong();
+    var credits = Flux.range(1, 1000)
+        .doOnRequest(requested::addAndGet)
+        .map(id -> row(Integer.toString(id), id % 10 == 0 ? "director" : "cast"));
+
+    StepVerifier.create(repository.deleteAll().then(repository.saveAll(credits)))
+        .expectNext(1000L)
+        .verifyComplete();
+    // batches are requested on demand, not the whole source at once
+    assertTrue(requested.get() < Long.MAX_VALUE);
+
+    StepVerifier.create(repository.findById("10").map(Row::getRowId))
+        .expectNext("10")
+        .verifyComplete();
+    StepVerifier.create(repository.findById("1001")).verifyComplete();
+    StepVerifier.create(repository.findByQuerySpec(Map.of("ROLE", "director")).count())
+        .expectNext(100L)
+        .verifyComplete();
+
+    StepVerifier.create(repository.saveAll(credits.concatWith(Flux.error(new IllegalStateException("feed failed")))))
+        .verifyErrorMessage("feed failed");
+    StepVerifier.create(repository.deleteAll().then(repository.findById("10"))).verifyComplete();
+  }
+
+  @Test
+  public void batchOperationsTest() {
+    var actors = new ActorRepositoryImpl();
+    actors.deleteAll();
+    var credits = new ArrayList<Row>();
+    for (int id = 1; id <= 3000; id++) {
+      credits.add(row(Integer.toString(id), "cast"));
+    }
+
+    // batch operations return when every entity is written, like saveAll
+    actors.saveBatch(credits);
+    assertEquals(3000, actors.count());
+    actors.deleteAllById(credits.stream().map(Row::getRowId).limit(2500).collect(Collectors.toList()));
+    assertEquals(500, actors.count());
+    actors.deleteAll();
+  }
+
+  private static Row row(String movieId, String role) {
+    var record = new ConcurrentHashMap<String, String>();
+    record.put("MOVIE_ID", movieId);
+    record.put("NAME", "Person " + movieId);
+    record.put("ROLE", role);
+    var records = new ConcurrentLinkedQueue<ConcurrentHashMap<String, String>>();
+    records.add(record);
+    return Row.builder()
+        .rowId(movieId)
+        .rowValues(records)
+        .createdAt(LocalDateTime.now())
+        .updatedAt(LocalDateTime.now())
+        .build();
+  }
+}
@@ -0,0 +1,182 @@
+package com.real.persistence.wal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.real.persistence.core.Row;
+import com.real.persistence.core.RowMerger;
+import com.real.persistence.core.Schema;
+import com.real.persistence.core.StorageType;
+import com.real.persistence.core.Table;
+import com.real.persistence.core.TableMetadata;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WriteAheadLogTest {
+
+  @Test
+  public void replayTest(@TempDir Path directory) throws IOException {
+    var logPath = directory.resolve("tables.wal");
+    var schema = new Schema("TEST");
+    schema.createTable("movie", Map.of("ID", TableMetadata.LONG, "TITLE", TableMetadata.STRING));
+    try (var wal = WriteAheadLog.open(logPath, WalConfig.builder().syncInterval(Duration.ofMillis(5)).build())) {
+      schema.setMutationLog(wal);
+      var table = schema.getTableMap().get("movie");
+      table.insertRow(row("1", "Saw"));
+      table.insertRow(row("2", "Insidious"));
+      table.deleteById("1");
+      table.deleteAll();
+      table.insertRow(row("3", "Aquaman"));
+      assertEquals(5, wal.getAppendedRecords());
+    }
+
+    // torn frame left by a crash in the middle of a write
+    Files.write(logPath, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+    var recovered = new Schema("TEST");
+    recovered.createTable("movie", Map.of("ID", TableMetadata.LONG, "TITLE", TableMetadata.STRING));
+    var table = recovered.getTableMap().get("movie");
+    long replayed = WriteAheadLog.replay(logPath, record -> {
+      switch (record.getType()) {
+        case INSERT:
+          table.insertRow(record.getRow());
+          break;
+        case DELETE:
+          table.deleteById(record.getRowId());
+          break;
+        case CLEAR:
+          table.deleteAll();
+          break;
+      }
+    });
+
+    assertEquals(5, replayed);
+    assertEquals(1, table.count());
+    assertFalse(table.existsById("2"));
+    assertTrue(table.existsById("3"));
+    assertEquals("Aquaman", table.findById("3").getRowValues().peek().get("TITLE"));
+
+    // the torn tail is truncated, so appends continue after the last complete frame
+    try (var wal = WriteAheadLog.open(logPath, WalConfig.builder().syncInterval(Duration.ZERO).build())) {
+      wal.deleted("movie", "3").append();
+      assertEquals(1, wal.getSyncs());
+    }
+    assertEquals(6, WriteAheadLog.replay(logPath, record -> { }));
+  }
+
+  @Test
+  public void concurrentAppendTest(@TempDir Path directory) throws Exception {
+    // grouped and per mutation synced appends from concurrent loaders replay to the same table
+    for (var interval : new Duration[]{Duration.ofMillis(1), Duration.ZERO}) {
+      var logPath = directory.resolve("tables-" + interval.toMillis() + ".wal");
+      var schema = new Schema("TEST");
+      schema.createTable("movie", Map.of("ID", TableMetadata.LONG, "TITLE", TableMetadata.STRING),
+          StorageType.HEAP, RowMerger.REPLACE, TableMetadata.LONG);
+      var table = schema.getTableMap().get("movie");
+      try (var wal = WriteAheadLog.open(logPath, WalConfig.builder().syncInterval(interval).flushThreshold(512).build())) {
+        schema.setMutationLog(wal);
+        var executor = Executors.newFixedThreadPool(4);
+        var loaders = new ArrayList<Future<?>>();
+        for (int t = 0; t < 4; t++) {
+          var loader = t;
+          loaders.add(executor.submit(() -> {
+            for (int i = 0; i < 500; i++) {
+              // loaders overwrite each other's rows, so the replayed titles depend on the logged order
+              table.insertRow(row(Integer.toString(i % 100), "Movie " + loader + "-" + i));
+            }
+          }));
+        }
+        for (var loader : loaders) {
+          loader.get();
+        }
+        executor.shutdown();
+        assertEquals(2000, wal.getAppendedRecords());
+      }
+
+      var recovered = new Schema("TEST");
+      recovered.createTable("movie", Map.of("ID", TableMetadata.LONG, "TITLE", TableMetadata.STRING),
+          StorageType.HEAP, RowMerger.REPLACE, TableMetadata.LONG);
+      var replayedTable = recovered.getTableMap().get("movie");
+      assertEquals(2000, WriteAheadLog.replay(logPath, record -> replayedTable.insertRow(record.getRow())));
+      assertEquals(100, replayedTable.count());
+      for (int i = 0; i < 100; i++) {
+        var id = Integer.toString(i);
+        assertEquals(table.findById(id).getRowValues().peek().get("TITLE"),
+            replayedTable.findById(id).getRowValues().peek().get("TITLE"));
+      }
+    }
+  }
+
+  @Test
+  public void checkpointCrashTest(@TempDir Path directory) throws IOException {
+    var logPath = directory.resolve("tables.wal");
+    var snapshotPath = directory.resolve("tables.snapshot");
+    var schema = new Schema("TEST");
+    schema.createTable("movie", Map.of("ID", TableMetadata.LONG, "TITLE", TableMetadata.STRING),
+        StorageType.HEAP, RowMerger.APPEND);
+    var table = schema.getTableMap().get("movie");
+    try (var wal = WriteAheadLog.open(logPath, WalConfig.builder().syncInterval(Duration.ofMillis(5)).build())) {
+      schema.setMutationLog(wal);
+      table.insertRow(row("1", "Saw"));
+      table.insertRow(row("2", "Insidious"));
+      // crash after the checkpoint snapshot is written and before the log is truncated
+      schema.withoutWriters(() -> schema.snapshot(snapshotPath, wal.position()));
+      table.insertRow(row("1", "Saw II"));
+      assertEquals(3, wal.getAppendedRecords());
+    }
+
+    // the appended rows included in the snapshot aren't replayed twice, the later ones are replayed
+    var recovered = recover(snapshotPath, logPath);
+    assertEquals(3, recovered.count());
+    assertEquals(2, recovered.findById("1").getRowValues().size());
+    assertEquals(1, recovered.findById("2").getRowValues().size());
+
+    // the completed checkpoint starts a new log generation replayed from its start
+    try (var wal = WriteAheadLog.open(logPath, WalConfig.builder().syncInterval(Duration.ZERO).build())) {
+      schema.setMutationLog(wal);
+      var generation = wal.getGeneration();
+      schema.withoutWriters(() -> {
+        schema.snapshot(snapshotPath, wal.position());
+        wal.truncate();
+      });
+      assertTrue(wal.getGeneration() != generation);
+      table.insertRow(row("3", "Aquaman"));
+    }
+    recovered = recover(snapshotPath, logPath);
+    assertEquals(4, recovered.count());
+    assertEquals(2, recovered.findById("1").getRowValues().size());
+    assertEquals(1, recovered.findById("3").getRowValues().size());
+  }
+
+  private static Table recover(Path snapshotPath, Path logPath) throws IOException {
+    var recovered = new Schema("TEST");
+    recovered.createTable("movie", Map.of("ID", TableMetadata.LONG, "TITLE", TableMetadata.STRING),
+        StorageType.HEAP, RowMerger.APPEND);
+    var covered = recovered.restore(snapshotPath);
+    var table = recovered.getTableMap().get("movie");
+    WriteAheadLog.replay(logPath, covered, record -> table.insertRow(record.getRow()));
+    return table;
+  }
+
+  private static Row row(String rowId, String title) {
+    var rowValues = new ConcurrentLinkedQueue<ConcurrentHashMap<String, String>>();
+    rowValues.add(new ConcurrentHashMap<>(Map.of("ID", rowId, "TITLE", title)));
+    return Row.builder()
+        .rowId(rowId)
+        .rowValues(rowValues)
+        .createdAt(LocalDateTime.now())
+        .updatedAt(LocalDateTime.now())
+        .build();
+  }
+}
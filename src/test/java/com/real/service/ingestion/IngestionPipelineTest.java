@@ -0,0 +1,122 @@
+package com.real.service.ingestion;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.real.matcher.Matcher;
+import com.real.model.CsvMetadata;
+import com.real.persistence.core.Row;
+import com.real.persistence.core.TableMetadata;
+import com.real.util.CsvUtil;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class IngestionPipelineTest {
+  private static final String HEADER = "id,title,year";
+
+  @Test
+  public void typedParseTest() {
+    var parser = parser();
+    var rows = Collections.synchronizedList(new ArrayList<Row>());
+    var pipeline = new IngestionPipeline(PipelineConfig.builder().maxRejectedRecords(3).build());
+
+    var report = pipeline.load("movie", movies(), parser::parse, IngestionPipelineTest::row, rows::addAll).block();
+
+    assertEquals(2, report.getLoadedRows());
+    assertEquals(3, report.getErrors());
+    assertEquals(3, report.getStages().get(0).getErrors());
+    assertEquals(2, rows.size());
+    var values = rows.stream().filter(row -> "2".equals(row.getRowId())).findFirst().orElseThrow()
+        .getRowValues().peek();
+    assertEquals(Map.of("ID", "2", "TITLE", "The Conjuring", "YEAR", ""), values);
+  }
+
+  @Test
+  public void skippedRecordsTest() {
+    // malformed records are skipped and counted unless a limit is configured
+    var parser = parser();
+    var rows = Collections.synchronizedList(new ArrayList<Row>());
+
+    var report = new IngestionPipeline(PipelineConfig.defaults())
+        .load("movie", movies(), parser::parse, IngestionPipelineTest::row, rows::addAll).block();
+
+    assertEquals(2, report.getLoadedRows());
+    assertEquals(3, report.getErrors());
+    assertEquals(2, rows.size());
+  }
+
+  @Test
+  public void rejectedRecordsLimitTest() {
+    var parser = parser();
+    var pipeline = new IngestionPipeline(PipelineConfig.builder().maxRejectedRecords(2).build());
+
+    var error = assertThrows(IllegalStateException.class,
+        () -> pipeline.load("movie", movies(), parser::parse, IngestionPipelineTest::row, rows -> { }).block());
+    assertTrue(error.getMessage().startsWith("3 records rejected"));
+  }
+
+  @Test
+  public void failedInsertTest() {
+    var parser = parser();
+    var pipeline = new IngestionPipeline(PipelineConfig.builder().maxRejectedRecords(3).batchSize(1).build());
+
+    var error = assertThrows(IllegalStateException.class,
+        () -> pipeline.load("movie", movies(), parser::parse, IngestionPipelineTest::row, rows -> {
+          throw new IllegalArgumentException("table is gone");
+        }).block());
+    assertEquals("table is gone", error.getCause().getMessage());
+  }
+
+  @Test
+  public void bulkBatchTest() {
+    var parser = parser();
+    var batches = Collections.synchronizedList(new ArrayList<Integer>());
+    var pipeline = new IngestionPipeline(PipelineConfig.builder().bulkLoad(true).bulkBatchSize(4).build());
+    var csvStream = new Matcher.CsvStream(HEADER, IntStream.rangeClosed(1, 10).mapToObj(i -> i + ",Saw " + i + ",2004"));
+
+    var report = pipeline.load("movie", csvStream, parser::parse, IngestionPipelineTest::row,
+        rows -> batches.add(rows.size())).block();
+
+    assertEquals(10, report.getLoadedRows());
+    assertEquals(10, batches.stream().mapToInt(Integer::intValue).sum());
+    assertTrue(batches.stream().allMatch(size -> size <= 4));
+    assertFalse(PipelineConfig.defaults().isBulkLoad());
+  }
+
+  private static RecordParser parser() {
+    Map<String, TableMetadata> metadata = new LinkedHashMap<>();
+    metadata.put(CsvMetadata.ID.name(), TableMetadata.LONG);
+    metadata.put(CsvMetadata.TITLE.name(), TableMetadata.STRING);
+    metadata.put(CsvMetadata.YEAR.name(), TableMetadata.DATE);
+    return RecordParser.of(CsvUtil.tableColumnsIndexMap(movies()), metadata, CsvMetadata.ID.name());
+  }
+
+  private static Matcher.CsvStream movies() {
+    return new Matcher.CsvStream(HEADER, Stream.of(
+        "1, Saw ,2004",
+        "2,The Conjuring, ",
+        "x,Insidious,2010",
+        ",Malignant,2021",
+        "5,Dead Silence,04"));
+  }
+
+  private static Row row(ConcurrentHashMap<String, String> record) {
+    var values = new ConcurrentLinkedQueue<ConcurrentHashMap<String, String>>();
+    values.add(record);
+    return Row.builder()
+        .rowId(record.get(CsvMetadata.ID.name()))
+        .rowValues(values)
+        .createdAt(LocalDateTime.now())
+        .updatedAt(LocalDateTime.now())
+        .build();
+  }
+}
@@ -0,0 +1,39 @@
+package com.real.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import com.real.matcher.Matcher;
+import com.real.model.CsvMetadata;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class CsvProjectionTest {
+
+  private static final String HEADER = "MediaId,Title,OriginalReleaseDate,MediaType,Actors,Director,XboxLiveURL";
+
+  @Test
+  public void projectedFieldsTest() throws IOException {
+    var columns = CsvUtil.tableColumnsIndexMap(new Matcher.CsvStream(HEADER, Stream.empty()));
+    var projection = CsvProjection.of(columns,
+        EnumSet.of(CsvMetadata.MEDIAID, CsvMetadata.TITLE, CsvMetadata.DIRECTOR));
+    var row = "42,\"Fast, \"\"Furious\"\"\",4/3/2009 12:00:00 AM,Movie,\"Vin Diesel, Paul Walker\",Justin Lin,http://x";
+
+    String[] values = projection.parse(row);
+    String[] expected = CsvUtil.parse(row);
+    assertEquals(6, values.length);
+    assertEquals(expected[0], values[0]);
+    assertEquals("Fast, \"Furious\"", values[1]);
+    assertEquals(expected[5], values[5]);
+    assertNull(values[2]);
+    assertNull(values[4]);
+
+    // the row isn't scanned after the last projected column
+    assertArrayEquals(values, projection.parse(row.replace("http://x", "\"unterminated")));
+    assertThrows(IOException.class, () -> projection.parse("42,Title,4/3/2009 12:00:00 AM"));
+    assertThrows(IllegalArgumentException.class, () -> CsvProjection.of(columns, EnumSet.of(CsvMetadata.YEAR)));
+  }
+}
@@ -0,0 +1,54 @@
+package com.real.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedCsvFileTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  public void mappedRecordsTest() throws IOException {
+    var csv = directory.resolve("movies.csv");
+    Files.write(csv, ("﻿ID,TITLE,YEAR\r\n"
+        + "1,\"Fast, Furious\",2009\r\n"
+        + "\r\n"
+        + "2, \"The \"\"Best\"\" Movie\",2010\n"
+        + "3,\"Two\nLines\",2011\n"
+        + "4,Amélie,2001").getBytes(StandardCharsets.UTF_8));
+
+    // tiny window forces records to be remapped across window ends
+    try (var file = MappedCsvFile.open(csv, 8)) {
+      assertEquals("ID,TITLE,YEAR", file.getHeaderRow());
+
+      List<CsvRecord> records = file.records().collect(Collectors.toList());
+      assertEquals(4, records.size());
+      assertEquals(3, records.get(0).size());
+      assertEquals("Fast, Furious", records.get(0).get(1));
+      assertEquals("The \"Best\" Movie", records.get(1).get(1));
+      assertEquals("Two\nLines", records.get(2).get(1));
+      assertEquals("Amélie", records.get(3).get(1));
+      assertEquals("2001", records.get(3).get(2));
+      assertNull(records.get(3).get(3));
+      assertEquals("1,\"Fast, Furious\",2009", records.get(0).line());
+
+      // mapped tokenizer agrees with the line parser
+      for (CsvRecord record : records) {
+        String[] parsed = CsvUtil.parse(record.line());
+        assertEquals(parsed.length, record.size());
+        for (int i = 0; i < parsed.length; i++) {
+          assertEquals(parsed[i], record.get(i));
+        }
+      }
+    }
+  }
+}